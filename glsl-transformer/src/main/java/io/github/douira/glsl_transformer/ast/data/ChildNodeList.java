@@ -1,7 +1,7 @@
 package io.github.douira.glsl_transformer.ast.data;
 
-import java.util.Collection;
-import java.util.function.Consumer;
+import java.util.*;
+import java.util.function.*;
 import java.util.stream.Stream;
 
 import io.github.douira.glsl_transformer.ast.node.basic.*;
@@ -36,6 +36,7 @@ public class ChildNodeList<Child extends ASTNode> extends ProxyArrayList<Child>
 
   @Override
   protected void notifyAddition(Child added) {
+    parent.invalidateStructuralHash();
     added.setParent(parent, makeChildReplacer(this, added));
   }
 
@@ -44,6 +45,32 @@ public class ChildNodeList<Child extends ASTNode> extends ProxyArrayList<Child>
     removed.detachParent();
   }
 
+  // these change the list without notifying about each changed child
+
+  @Override
+  public void sort(Comparator<? super Child> c) {
+    super.sort(c);
+    parent.invalidateStructuralHash();
+  }
+
+  @Override
+  public boolean removeIf(Predicate<? super Child> filter) {
+    parent.invalidateStructuralHash();
+    return super.removeIf(filter);
+  }
+
+  @Override
+  public boolean removeAll(Collection<?> c) {
+    parent.invalidateStructuralHash();
+    return super.removeAll(c);
+  }
+
+  @Override
+  public boolean retainAll(Collection<?> c) {
+    parent.invalidateStructuralHash();
+    return super.retainAll(c);
+  }
+
   protected static <Child extends ASTNode> Consumer<Child> makeChildReplacer(ChildNodeList<Child> list, Child child) {
     return newNode -> {
       if (newNode == child) {
@@ -3,40 +3,104 @@ package io.github.douira.glsl_transformer.ast.data;
 import java.util.function.*;
 
 import io.github.douira.glsl_transformer.ast.data.TypedTreeCache.CacheKey;
+import io.github.douira.glsl_transformer.basic.ParseInput;
 import io.github.douira.glsl_transformer.tree.ExtendedContext;
-import io.github.douira.glsl_transformer.util.LRUCache;
+import io.github.douira.glsl_transformer.util.ConcurrentLRUCache;
 
-public class TypedTreeCache<V> extends LRUCache<CacheKey, V> {
+/**
+ * The typed tree cache stores parse trees or ASTs by the string or
+ * {@link ParseInput} they were parsed from and the rule type they were parsed
+ * with. It's bounded by both the number of entries and the estimated retained
+ * size of the cached trees. Since it is thread-safe, it can be shared between
+ * multiple parsers.
+ */
+public class TypedTreeCache<V> extends ConcurrentLRUCache<CacheKey, V> {
   private static final int defaultCacheSize = 400;
 
+  /**
+   * The default maximum estimated retained size of all cached trees in bytes.
+   */
+  public static final long defaultMaxWeight = 64L << 20;
+
+  /**
+   * The roughly estimated number of bytes a parse tree or AST retains for each
+   * character of the input it was parsed from. This includes tokens, context
+   * objects and child lists.
+   */
+  public static final int inputCharWeight = 128;
+
+  /**
+   * The estimated number of bytes of a cache entry independent of the input
+   * length.
+   */
+  public static final int entryWeight = 256;
+
+  public TypedTreeCache(int maxSize, long maxWeight, float loadFactor) {
+    super(maxSize, maxWeight, TypedTreeCache::estimateWeight, DEFAULT_CONCURRENCY_LEVEL, loadFactor);
+  }
+
   public TypedTreeCache(int maxSize, float loadFactor) {
-    super(maxSize, loadFactor);
+    this(maxSize, defaultMaxWeight, loadFactor);
+  }
+
+  public TypedTreeCache(int maxSize, long maxWeight) {
+    super(maxSize, maxWeight, TypedTreeCache::estimateWeight);
   }
 
   public TypedTreeCache(int maxSize) {
-    super(maxSize);
+    this(maxSize, defaultMaxWeight);
   }
 
   public TypedTreeCache() {
-    super(defaultCacheSize);
+    this(defaultCacheSize);
   }
 
+  /**
+   * The key of a cached tree. The input is either a string or a
+   * {@link ParseInput} and keys with the same content are equal regardless of
+   * the type of the input. The hash code is computed once when the key is
+   * created. Keys of parse inputs that aren't backed by a string are only used
+   * for lookups and never stored in the cache. The variant distinguishes values
+   * that were created from the same input with different settings.
+   */
   public static class CacheKey {
-    final String input;
+    final CharSequence input;
     final Class<? extends ExtendedContext> ruleType;
+    final int variant;
+    private final int hash;
 
     public CacheKey(String input, Class<? extends ExtendedContext> ruleType) {
+      this(input, ruleType, 0);
+    }
+
+    public CacheKey(String input, Class<? extends ExtendedContext> ruleType, int variant) {
+      this((CharSequence) input, ruleType, variant);
+    }
+
+    public CacheKey(ParseInput input, Class<? extends ExtendedContext> ruleType) {
+      this(input, ruleType, 0);
+    }
+
+    public CacheKey(ParseInput input, Class<? extends ExtendedContext> ruleType, int variant) {
+      this(input == null ? null : input.unwrap(), ruleType, variant);
+    }
+
+    private CacheKey(CharSequence input, Class<? extends ExtendedContext> ruleType, int variant) {
       this.input = input;
       this.ruleType = ruleType;
-    }
+      this.variant = variant;
 
-    @Override
-    public int hashCode() {
       final int prime = 31;
       int result = 1;
       result = prime * result + ((input == null) ? 0 : input.hashCode());
       result = prime * result + ((ruleType == null) ? 0 : ruleType.hashCode());
-      return result;
+      result = prime * result + variant;
+      hash = result;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
     }
 
     @Override
@@ -48,10 +112,12 @@ public class TypedTreeCache<V> extends LRUCache<CacheKey, V> {
       if (getClass() != obj.getClass())
         return false;
       CacheKey other = (CacheKey) obj;
+      if (hash != other.hash || variant != other.variant)
+        return false;
       if (input == null) {
         if (other.input != null)
           return false;
-      } else if (!input.equals(other.input))
+      } else if (other.input == null || !ParseInput.contentEquals(input, other.input))
         return false;
       if (ruleType == null) {
         if (other.ruleType != null)
@@ -62,13 +128,77 @@ public class TypedTreeCache<V> extends LRUCache<CacheKey, V> {
     }
   }
 
+  /**
+   * Estimates the retained size of a cached tree in bytes. The size of a tree is
+   * roughly proportional to the length of the input it was parsed from.
+   * 
+   * @param key   The key of the cached tree
+   * @param value The cached tree
+   * @return The estimated retained size in bytes
+   */
+  public static long estimateWeight(CacheKey key, Object value) {
+    return entryWeight + (key.input == null ? 0 : (long) key.input.length() * inputCharWeight);
+  }
+
   public V cachedGet(String str, Class<? extends ExtendedContext> ruleType,
       Supplier<V> supplier) {
     return super.cachedGet(new CacheKey(str, ruleType), supplier);
   }
 
+  public V cachedGet(String str, Class<? extends ExtendedContext> ruleType, int variant,
+      Supplier<V> supplier) {
+    return super.cachedGet(new CacheKey(str, ruleType, variant), supplier);
+  }
+
   public V cachedGetHydrateHit(String str, Class<? extends ExtendedContext> ruleType,
       Supplier<V> supplier, Function<V, V> hydrator) {
     return super.cachedGetHydrateHit(new CacheKey(str, ruleType), supplier, hydrator);
   }
+
+  /**
+   * Returns the value cached for the given input or loads it from a snapshot
+   * of the input. The input is looked up without copying it. If it's missing,
+   * it's copied into a string with {@link ParseInput#snapshot()} and both the
+   * stored key and the loaded value only refer to the snapshot. This way the
+   * cache never keeps the buffer or file of the given input alive and changes
+   * to it don't affect the cache.
+   *
+   * @param input    The input to look up
+   * @param ruleType The rule type the input is parsed with
+   * @param loader   The function that loads the value from the snapshot
+   * @return The cached or newly loaded value
+   */
+  public V cachedGet(ParseInput input, Class<? extends ExtendedContext> ruleType,
+      Function<ParseInput, V> loader) {
+    return cachedGet(input, ruleType, 0, loader);
+  }
+
+  /**
+   * Returns the value cached for the given input and variant or loads it from a
+   * snapshot of the input.
+   *
+   * @param input    The input to look up
+   * @param ruleType The rule type the input is parsed with
+   * @param variant  The variant of the value
+   * @param loader   The function that loads the value from the snapshot
+   * @return The cached or newly loaded value
+   * @see #cachedGet(ParseInput, Class, Function)
+   */
+  public V cachedGet(ParseInput input, Class<? extends ExtendedContext> ruleType, int variant,
+      Function<ParseInput, V> loader) {
+    var value = get(new CacheKey(input, ruleType, variant));
+    return value == null ? loadSnapshot(input, ruleType, variant, loader) : value;
+  }
+
+  public V cachedGetHydrateHit(ParseInput input, Class<? extends ExtendedContext> ruleType,
+      Function<ParseInput, V> loader, Function<V, V> hydrator) {
+    var value = get(new CacheKey(input, ruleType));
+    return value == null ? loadSnapshot(input, ruleType, 0, loader) : hydrator.apply(value);
+  }
+
+  private V loadSnapshot(ParseInput input, Class<? extends ExtendedContext> ruleType, int variant,
+      Function<ParseInput, V> loader) {
+    var snapshot = input.snapshot();
+    return load(new CacheKey(snapshot, ruleType, variant), () -> loader.apply(snapshot));
+  }
 }
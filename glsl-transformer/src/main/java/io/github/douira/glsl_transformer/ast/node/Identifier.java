@@ -30,6 +30,7 @@ public class Identifier extends ASTNode {
     getRoot().unregisterIdentifierRename(this);
     this.name = name;
     getRoot().registerIdentifierRename(this);
+    invalidateStructuralHash();
   }
 
   /**
@@ -42,6 +43,7 @@ public class Identifier extends ASTNode {
   @Deprecated
   public void setNameInternal(String name) {
     this.name = name;
+    invalidateStructuralHash();
   }
 
   public static final void validateContents(String str) {
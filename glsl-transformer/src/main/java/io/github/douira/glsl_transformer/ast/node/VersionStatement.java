@@ -28,6 +28,24 @@ public class VersionStatement extends ASTNode {
         : profile;
   }
 
+  public Version getVersion() {
+    return version;
+  }
+
+  public void setVersion(Version version) {
+    this.version = version;
+    invalidateStructuralHash();
+  }
+
+  public Profile getProfile() {
+    return profile;
+  }
+
+  public void setProfile(Profile profile) {
+    this.profile = profile;
+    invalidateStructuralHash();
+  }
+
   @Override
   public <R> R accept(ASTVisitor<R> visitor) {
     return visitor.visitVersionStatement(this);
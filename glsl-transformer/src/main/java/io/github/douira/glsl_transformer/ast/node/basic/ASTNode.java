@@ -1,6 +1,6 @@
 package io.github.douira.glsl_transformer.ast.node.basic;
 
-import java.util.Objects;
+import java.util.*;
 import java.util.function.*;
 import java.util.stream.Stream;
 
@@ -40,7 +40,7 @@ public abstract class ASTNode {
   private Root root = Root.getActiveBuildRoot();
   protected Template<?> template = null;
   public static final Interval SYNTHETIC_SOURCE = new Interval(0, 0);
-  private final Interval sourceLines = ASTBuilder.getActiveSourceLines();
+  private Interval sourceLines = ASTBuilder.getActiveSourceLines();
 
   /**
    * Whether this node has been registered with the root. This is only used when
@@ -269,6 +269,189 @@ public abstract class ASTNode {
     }
   }
 
+  private static class ShiftSourceLinesVisitor extends ASTVoidVisitor {
+    private int offset;
+
+    public ShiftSourceLinesVisitor(int offset) {
+      this.offset = offset;
+    }
+
+    @Override
+    public void visitVoid(ASTNode node) {
+      if (node.sourceLines != SYNTHETIC_SOURCE) {
+        node.sourceLines = new Interval(node.sourceLines.a + offset, node.sourceLines.b + offset);
+        if (node.root != null) {
+          node.root.sourceLinesChanged(node);
+        }
+      }
+    }
+  }
+
+  /**
+   * Shifts the source lines of this node and all its children by the given
+   * number of lines. Synthetic nodes are not changed. This is used when a
+   * subtree is reused in a tree parsed from source code where it starts on a
+   * different line.
+   * 
+   * @param offset The number of lines to shift by
+   */
+  public void shiftSourceLines(int offset) {
+    if (offset != 0) {
+      new ShiftSourceLinesVisitor(offset).visit(this);
+    }
+  }
+
+  /**
+   * Marks an optional child that is absent. This is recorded as an item so that
+   * a child can't be confused with a child of the same type in another position.
+   */
+  private static final Object absentChild = new Object();
+
+  /**
+   * Visits the direct children and data items of a node without descending into
+   * the children.
+   */
+  private static abstract class DirectItemVisitor extends ASTVoidVisitor {
+    abstract void visitItem(Object item);
+
+    @Override
+    public Void visit(ASTNode node) {
+      visitItem(node);
+      return null;
+    }
+
+    @Override
+    public Void visitSafe(Void previousResult, ASTNode node) {
+      if (node == null) {
+        visitItem(absentChild);
+      } else {
+        visit(node);
+      }
+      return null;
+    }
+
+    @Override
+    public Void visitChildren(Void previousResult, ListNode<? extends ASTNode> node) {
+      for (var child : node.getChildren()) {
+        visitSafe(previousResult, child);
+      }
+      return null;
+    }
+
+    @Override
+    public void visitVoidData(Object data) {
+      visitItem(data);
+    }
+  }
+
+  private static class StructuralHashVisitor extends DirectItemVisitor {
+    private int hash;
+
+    public StructuralHashVisitor(Class<?> nodeClass) {
+      hash = nodeClass.getName().hashCode();
+    }
+
+    @Override
+    void visitItem(Object item) {
+      int itemHash;
+      if (item instanceof ASTNode node) {
+        itemHash = node.getStructuralHash();
+      } else if (item == absentChild) {
+        itemHash = 0x9E3779B9;
+      } else {
+        itemHash = Objects.hashCode(item);
+      }
+      hash = hash * 31 + itemHash;
+    }
+  }
+
+  private static class ItemCollector extends DirectItemVisitor {
+    private final List<Object> items = new ArrayList<>();
+
+    @Override
+    void visitItem(Object item) {
+      items.add(item);
+    }
+  }
+
+  int computeStructuralHash() {
+    var visitor = new StructuralHashVisitor(getClass());
+    accept(visitor);
+    return visitor.hash;
+  }
+
+  /**
+   * Returns a hash of the subtree of this node that only depends on the classes
+   * of the nodes and their data, like identifier names and literal values.
+   * Subtrees that are structurally equal have the same structural hash. Inner
+   * nodes cache their hash until they or one of their descendants are changed.
+   * 
+   * @return The structural hash of this subtree
+   */
+  public int getStructuralHash() {
+    return computeStructuralHash();
+  }
+
+  /**
+   * Checks if the subtree of this node has the same structure as the subtree of
+   * the given node. This is the case if the nodes have the same classes, the
+   * same data and structurally equal children in the same positions. The
+   * cached structural hashes are compared first so most unequal subtrees are
+   * rejected without traversing them.
+   * 
+   * @param other The node to compare with
+   * @return {@code true} if the subtrees are structurally equal, {@code false}
+   *         otherwise
+   */
+  public boolean structurallyEquals(ASTNode other) {
+    if (other == this) {
+      return true;
+    }
+    if (other == null || other.getClass() != getClass()
+        || other.getStructuralHash() != getStructuralHash()) {
+      return false;
+    }
+    var collector = new ItemCollector();
+    accept(collector);
+    var otherCollector = new ItemCollector();
+    other.accept(otherCollector);
+    var items = collector.items;
+    var otherItems = otherCollector.items;
+    if (items.size() != otherItems.size()) {
+      return false;
+    }
+    for (int i = 0, size = items.size(); i < size; i++) {
+      var item = items.get(i);
+      var otherItem = otherItems.get(i);
+      if (item instanceof ASTNode node) {
+        if (!(otherItem instanceof ASTNode otherNode) || !node.structurallyEquals(otherNode)) {
+          return false;
+        }
+      } else if (!Objects.equals(item, otherItem)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Discards the cached structural hashes of this node and its ancestors. This
+   * happens automatically when children are changed or data is changed through
+   * setters. It only needs to be called after directly assigning a public data
+   * field of a node, like the type of a qualifier.
+   */
+  public void invalidateStructuralHash() {
+    for (var node = this; node != null; node = node.parent) {
+      if (node instanceof InnerASTNode inner) {
+        // the ancestors of a node without a cached hash don't have one either
+        if (!inner.structuralHashValid) {
+          return;
+        }
+        inner.structuralHashValid = false;
+      }
+    }
+  }
+
   private static class UnregisterVisitor extends ASTVoidVisitor {
     @Override
     public void visitVoid(ASTNode node) {
@@ -321,6 +504,9 @@ public abstract class ASTNode {
     // this is the normal case for building the AST or moving nodes around
     if (root == parent.root) {
       this.parent = parent;
+      if (root != null) {
+        root.parentChanged();
+      }
 
       // when the root node of a newly built subtree that already has the same root
       // references is added to the main tree, only the root node isn't registered yet
@@ -394,6 +580,12 @@ public abstract class ASTNode {
    * been (efficiently) removed from the parent.
    */
   public void detachParent() {
+    if (parent != null) {
+      parent.invalidateStructuralHash();
+      if (root != null) {
+        root.parentChanged();
+      }
+    }
     parent = null;
     selfReplacer = null;
   }
@@ -471,6 +663,7 @@ public abstract class ASTNode {
     if (currentNode == newNode && newNode.getParent() == this) {
       return;
     }
+    invalidateStructuralHash();
 
     if (currentNode != null) {
       currentNode.detachParent();
@@ -489,15 +682,15 @@ public abstract class ASTNode {
   protected abstract ASTNode clone();
 
   public ASTNode cloneInto(Root root) {
-    return Root.indexNodes(root, this::clone);
+    return Root.indexNodesBulk(root, this::clone);
   }
 
   public ASTNode cloneInto(ASTNode treeMember) {
-    return Root.indexNodes(treeMember, this::clone);
+    return Root.indexNodesBulk(treeMember, this::clone);
   }
 
   public ASTNode cloneSeparate() {
-    return Root.indexNodes(this::clone);
+    return Root.indexNodesBulk(this::clone);
   }
 
   @SuppressWarnings("unchecked") // the nodes clone themselves correctly
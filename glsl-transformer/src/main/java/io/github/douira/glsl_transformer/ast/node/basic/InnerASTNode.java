@@ -4,10 +4,27 @@ import io.github.douira.glsl_transformer.ast.query.Root;
 import io.github.douira.glsl_transformer.ast.traversal.ASTListener;
 
 public abstract class InnerASTNode extends ASTNode {
+  private int structuralHash;
+
+  /**
+   * Whether the cached structural hash is up to date. If it isn't, the hashes
+   * of all ancestors aren't up to date either.
+   */
+  boolean structuralHashValid = false;
+
   public abstract void enterNode(ASTListener listener);
 
   public abstract void exitNode(ASTListener listener);
 
+  @Override
+  public int getStructuralHash() {
+    if (!structuralHashValid) {
+      structuralHash = computeStructuralHash();
+      structuralHashValid = true;
+    }
+    return structuralHash;
+  }
+
   @Override
   public abstract InnerASTNode clone();
 
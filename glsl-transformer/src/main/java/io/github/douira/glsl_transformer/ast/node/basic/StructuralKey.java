@@ -0,0 +1,29 @@
+package io.github.douira.glsl_transformer.ast.node.basic;
+
+/**
+ * A structural key wraps a node so that it can be used as a key in hash based
+ * collections where subtrees with the same structure should be treated as the
+ * same key. Nodes themselves keep identity based equality since the indexes
+ * rely on it. The node must not be changed while the key is in a collection.
+ */
+public final class StructuralKey<T extends ASTNode> {
+  private final T node;
+
+  public StructuralKey(T node) {
+    this.node = node;
+  }
+
+  public T getNode() {
+    return node;
+  }
+
+  @Override
+  public int hashCode() {
+    return node.getStructuralHash();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof StructuralKey<?> other && node.structurallyEquals(other.node);
+  }
+}
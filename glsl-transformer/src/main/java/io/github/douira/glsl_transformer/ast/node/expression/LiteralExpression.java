@@ -111,6 +111,7 @@ public class LiteralExpression extends TerminalExpression {
     this.integerValue = 0;
     this.floatingValue = 0;
     this.literalType = Type.BOOL;
+    invalidateStructuralHash();
   }
 
   public void changeBoolean(boolean booleanValue) {
@@ -118,6 +119,7 @@ public class LiteralExpression extends TerminalExpression {
       throw new IllegalStateException("Literal type must be a boolean!");
     }
     this.booleanValue = booleanValue;
+    invalidateStructuralHash();
   }
 
   public long getInteger() {
@@ -139,6 +141,7 @@ public class LiteralExpression extends TerminalExpression {
     this.integerFormat = integerFormat;
     this.floatingValue = 0;
     this.literalType = integerType;
+    invalidateStructuralHash();
   }
 
   public void setInteger(Type integerType, long integerValue) {
@@ -154,6 +157,7 @@ public class LiteralExpression extends TerminalExpression {
       throw new IllegalStateException("Literal type must be an integer!");
     }
     this.integerValue = integerValue;
+    invalidateStructuralHash();
   }
 
   public IntegerFormat getIntegerFormat() {
@@ -169,6 +173,7 @@ public class LiteralExpression extends TerminalExpression {
       throw new IllegalStateException("Literal type must be an integer!");
     }
     this.integerFormat = integerFormat;
+    invalidateStructuralHash();
   }
 
   public double getFloating() {
@@ -185,6 +190,7 @@ public class LiteralExpression extends TerminalExpression {
     this.integerValue = 0;
     this.integerFormat = null;
     this.literalType = floatingType;
+    invalidateStructuralHash();
   }
 
   public void setFloating(float floatingValue) {
@@ -196,6 +202,7 @@ public class LiteralExpression extends TerminalExpression {
       throw new IllegalStateException("Literal type must be a floating point!");
     }
     this.floatingValue = floatingValue;
+    invalidateStructuralHash();
   }
 
   public boolean isBoolean() {
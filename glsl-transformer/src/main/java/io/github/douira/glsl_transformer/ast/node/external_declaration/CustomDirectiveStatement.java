@@ -10,6 +10,15 @@ public class CustomDirectiveStatement extends ExternalDeclaration {
     this.content = content;
   }
 
+  public String getContent() {
+    return content;
+  }
+
+  public void setContent(String content) {
+    this.content = content;
+    invalidateStructuralHash();
+  }
+
   @Override
   public ExternalDeclarationType getExternalDeclarationType() {
     return ExternalDeclarationType.CUSTOM_DIRECTIVE_STATEMENT;
@@ -42,6 +42,24 @@ public class ExtensionStatement extends ExternalDeclaration {
     this.name = name;
   }
 
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+    invalidateStructuralHash();
+  }
+
+  public ExtensionBehavior getBehavior() {
+    return behavior;
+  }
+
+  public void setBehavior(ExtensionBehavior behavior) {
+    this.behavior = behavior;
+    invalidateStructuralHash();
+  }
+
   @Override
   public ExternalDeclarationType getExternalDeclarationType() {
     return ExternalDeclarationType.EXTENSION_STATEMENT;
@@ -1,19 +1,45 @@
 package io.github.douira.glsl_transformer.ast.node.external_declaration;
 
+import io.github.douira.glsl_transformer.GLSLParser.CompoundStatementContext;
 import io.github.douira.glsl_transformer.ast.node.statement.CompoundStatement;
 import io.github.douira.glsl_transformer.ast.node.type.specifier.FunctionPrototype;
 import io.github.douira.glsl_transformer.ast.query.Root;
+import io.github.douira.glsl_transformer.ast.transform.ASTBuilder;
 import io.github.douira.glsl_transformer.ast.traversal.*;
 
 public class FunctionDefinition extends ExternalDeclaration {
   protected FunctionPrototype functionPrototype;
   protected CompoundStatement body;
 
+  /**
+   * The parse tree of the body if it hasn't been built yet.
+   */
+  private CompoundStatementContext lazyBody;
+
   public FunctionDefinition(FunctionPrototype functionPrototype, CompoundStatement body) {
     this.functionPrototype = setup(functionPrototype, this::setFunctionPrototype);
     this.body = setup(body, this::setBody);
   }
 
+  private FunctionDefinition(FunctionPrototype functionPrototype, CompoundStatementContext lazyBody) {
+    this.functionPrototype = setup(functionPrototype, this::setFunctionPrototype);
+    this.lazyBody = lazyBody;
+  }
+
+  /**
+   * Creates a function definition whose body is only built from the given parse
+   * tree when it's first accessed or when an index of the root is queried.
+   * 
+   * @param functionPrototype The function prototype
+   * @param lazyBody          The parse tree of the body
+   * @return The function definition with the unbuilt body
+   */
+  public static FunctionDefinition withLazyBody(
+      FunctionPrototype functionPrototype,
+      CompoundStatementContext lazyBody) {
+    return new FunctionDefinition(functionPrototype, lazyBody);
+  }
+
   public FunctionPrototype getFunctionPrototype() {
     return functionPrototype;
   }
@@ -23,15 +49,52 @@ public class FunctionDefinition extends ExternalDeclaration {
     this.functionPrototype = functionPrototype;
   }
 
+  /**
+   * Returns the body and builds it first if it hasn't been built yet.
+   * 
+   * @return The body
+   */
   public CompoundStatement getBody() {
+    if (lazyBody != null) {
+      var context = lazyBody;
+      lazyBody = null;
+      getRoot().lazyBodyBuilt(this);
+      body = setup(
+          ASTBuilder.buildSubtree(this, context, ASTBuilder::visitCompoundStatement),
+          this::setBody);
+    }
     return body;
   }
 
   public void setBody(CompoundStatement body) {
+    if (lazyBody != null) {
+      lazyBody = null;
+      getRoot().lazyBodyBuilt(this);
+    }
     updateParents(this.body, body, this::setBody);
     this.body = body;
   }
 
+  /**
+   * Checks if the body has been built. Only function definitions built in lazy
+   * mode can have a body that hasn't been built yet.
+   * 
+   * @return {@code true} if the body is built
+   */
+  public boolean isBodyBuilt() {
+    return lazyBody == null;
+  }
+
+  /**
+   * Returns the parse tree of the body if it hasn't been built yet. This can be
+   * used to print the body without building it.
+   * 
+   * @return The parse tree of the body or {@code null} if it's built
+   */
+  public CompoundStatementContext getLazyBody() {
+    return lazyBody;
+  }
+
   @Override
   public ExternalDeclarationType getExternalDeclarationType() {
     return ExternalDeclarationType.FUNCTION_DEFINITION;
@@ -56,7 +119,10 @@ public class FunctionDefinition extends ExternalDeclaration {
 
   @Override
   public FunctionDefinition clone() {
-    return new FunctionDefinition(clone(functionPrototype), clone(body));
+    // the parse tree isn't changed by building and can be shared by the clones
+    return lazyBody == null
+        ? new FunctionDefinition(clone(functionPrototype), clone(body))
+        : new FunctionDefinition(clone(functionPrototype), lazyBody);
   }
 
   @Override
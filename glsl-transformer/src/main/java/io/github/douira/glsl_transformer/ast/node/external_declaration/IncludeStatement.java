@@ -16,6 +16,24 @@ public class IncludeStatement extends ExternalDeclaration {
     this(content, false);
   }
 
+  public String getContent() {
+    return content;
+  }
+
+  public void setContent(String content) {
+    this.content = content;
+    invalidateStructuralHash();
+  }
+
+  public boolean isAngleBrackets() {
+    return isAngleBrackets;
+  }
+
+  public void setAngleBrackets(boolean isAngleBrackets) {
+    this.isAngleBrackets = isAngleBrackets;
+    invalidateStructuralHash();
+  }
+
   @Override
   public ExternalDeclarationType getExternalDeclarationType() {
     return ExternalDeclarationType.INCLUDE_STATEMENT;
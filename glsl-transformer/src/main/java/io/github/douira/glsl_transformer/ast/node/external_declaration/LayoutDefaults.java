@@ -48,6 +48,15 @@ public class LayoutDefaults extends ExternalDeclaration {
     this.qualifier = qualifier;
   }
 
+  public LayoutMode getMode() {
+    return mode;
+  }
+
+  public void setMode(LayoutMode mode) {
+    this.mode = mode;
+    invalidateStructuralHash();
+  }
+
   @Override
   public ExternalDeclarationType getExternalDeclarationType() {
     return ExternalDeclarationType.LAYOUT_DEFAULTS;
@@ -75,6 +75,42 @@ public class PragmaStatement extends ExternalDeclaration {
     this.state = state;
   }
 
+  public boolean isStdGL() {
+    return stdGL;
+  }
+
+  public void setStdGL(boolean stdGL) {
+    this.stdGL = stdGL;
+    invalidateStructuralHash();
+  }
+
+  public PragmaType getType() {
+    return type;
+  }
+
+  public void setType(PragmaType type) {
+    this.type = type;
+    invalidateStructuralHash();
+  }
+
+  public String getCustomName() {
+    return customName;
+  }
+
+  public void setCustomName(String customName) {
+    this.customName = customName;
+    invalidateStructuralHash();
+  }
+
+  public PragmaState getState() {
+    return state;
+  }
+
+  public void setState(PragmaState state) {
+    this.state = state;
+    invalidateStructuralHash();
+  }
+
   @Override
   public ExternalDeclarationType getExternalDeclarationType() {
     return ExternalDeclarationType.PRAGMA_STATEMENT;
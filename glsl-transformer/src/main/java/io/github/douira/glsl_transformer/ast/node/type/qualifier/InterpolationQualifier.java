@@ -35,6 +35,15 @@ public class InterpolationQualifier extends TypeQualifierPart {
     this.interpolationType = interpolationType;
   }
 
+  public InterpolationType getInterpolationType() {
+    return interpolationType;
+  }
+
+  public void setInterpolationType(InterpolationType interpolationType) {
+    this.interpolationType = interpolationType;
+    invalidateStructuralHash();
+  }
+
   @Override
   public QualifierType getQualifierType() {
     return QualifierType.INTERPOLATION;
@@ -35,6 +35,15 @@ public class PrecisionQualifier extends TypeQualifierPart {
     this.precisionLevel = storageType;
   }
 
+  public PrecisionLevel getPrecisionLevel() {
+    return precisionLevel;
+  }
+
+  public void setPrecisionLevel(PrecisionLevel precisionLevel) {
+    this.precisionLevel = precisionLevel;
+    invalidateStructuralHash();
+  }
+
   @Override
   public QualifierType getQualifierType() {
     return QualifierType.PRECISION;
@@ -75,6 +75,15 @@ public class StorageQualifier extends TypeQualifierPart {
     return typeNames;
   }
 
+  public StorageType getStorageType() {
+    return storageType;
+  }
+
+  public void setStorageType(StorageType storageType) {
+    this.storageType = storageType;
+    invalidateStructuralHash();
+  }
+
   @Override
   public QualifierType getQualifierType() {
     return QualifierType.STORAGE;
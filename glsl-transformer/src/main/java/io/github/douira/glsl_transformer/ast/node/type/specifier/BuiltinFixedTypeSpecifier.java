@@ -133,6 +133,15 @@ public class BuiltinFixedTypeSpecifier extends TypeSpecifier {
     this.type = type;
   }
 
+  public BuiltinType getType() {
+    return type;
+  }
+
+  public void setType(BuiltinType type) {
+    this.type = type;
+    invalidateStructuralHash();
+  }
+
   @Override
   public SpecifierType getSpecifierType() {
     return SpecifierType.BULTIN_FIXED;
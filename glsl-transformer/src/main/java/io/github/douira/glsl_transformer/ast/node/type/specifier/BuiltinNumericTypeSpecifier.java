@@ -16,6 +16,15 @@ public class BuiltinNumericTypeSpecifier extends TypeSpecifier {
     this.type = type;
   }
 
+  public Type getType() {
+    return type;
+  }
+
+  public void setType(Type type) {
+    this.type = type;
+    invalidateStructuralHash();
+  }
+
   @Override
   public SpecifierType getSpecifierType() {
     return SpecifierType.BUILTIN_NUMERIC;
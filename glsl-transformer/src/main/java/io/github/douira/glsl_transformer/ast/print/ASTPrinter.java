@@ -3,6 +3,7 @@ package io.github.douira.glsl_transformer.ast.print;
 import java.util.*;
 
 import io.github.douira.glsl_transformer.GLSLLexer;
+import io.github.douira.glsl_transformer.GLSLParser.CompoundStatementContext;
 import io.github.douira.glsl_transformer.ast.node.*;
 import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
 import io.github.douira.glsl_transformer.ast.node.declaration.*;
@@ -23,6 +24,7 @@ import io.github.douira.glsl_transformer.ast.node.type.qualifier.*;
 import io.github.douira.glsl_transformer.ast.node.type.specifier.*;
 import io.github.douira.glsl_transformer.ast.node.type.struct.*;
 import io.github.douira.glsl_transformer.ast.print.token.EOFToken;
+import io.github.douira.glsl_transformer.ast.transform.ASTBuilder;
 
 /**
  * The AST printer emits tokens to convert an AST node into a string with the
@@ -82,10 +84,10 @@ public class ASTPrinter extends ASTPrinterBase {
   public Void visitVersionStatement(VersionStatement node) {
     emitType(GLSLLexer.NR, GLSLLexer.NR_VERSION);
     emitExtendableSpace();
-    emitType(node.version.tokenType);
-    if (node.profile != null) {
+    emitType(node.getVersion().tokenType);
+    if (node.getProfile() != null) {
       emitExtendableSpace();
-      emitType(node.profile.tokenType);
+      emitType(node.getProfile().tokenType);
     }
     emitExactNewline();
     return null;
@@ -95,10 +97,24 @@ public class ASTPrinter extends ASTPrinterBase {
   public Void visitFunctionDefinition(FunctionDefinition node) {
     visit(node.getFunctionPrototype());
     emitBreakableSpace();
-    visit(node.getBody());
+    if (node.isBodyBuilt()) {
+      visit(node.getBody());
+    } else {
+      emitUnbuiltBody(node.getLazyBody());
+    }
     return null;
   }
 
+  /**
+   * Prints a function body that hasn't been built yet without building it in
+   * the tree. A separate copy of the body is built from its parse tree and
+   * printed like a built body, which makes the output the same as if the body
+   * had been built.
+   */
+  private void emitUnbuiltBody(CompoundStatementContext body) {
+    visit(ASTBuilder.build(body, ASTBuilder::visitCompoundStatement));
+  }
+
   @Override
   public Void visitEmptyDeclaration(EmptyDeclaration node) {
     emitStatementEnd();
@@ -109,17 +125,17 @@ public class ASTPrinter extends ASTPrinterBase {
   public Void visitPragmaStatement(PragmaStatement node) {
     emitType(GLSLLexer.NR, GLSLLexer.NR_PRAGMA);
     emitExtendableSpace();
-    if (node.stdGL) {
+    if (node.isStdGL()) {
       emitType(GLSLLexer.NR_STDGL);
       emitExtendableSpace();
     }
-    if (node.type == PragmaType.CUSTOM) {
-      emitLiteral(node.customName);
+    if (node.getType() == PragmaType.CUSTOM) {
+      emitLiteral(node.getCustomName());
     } else {
       emitType(
-          node.type.tokenType,
+          node.getType().tokenType,
           GLSLLexer.NR_LPAREN,
-          node.state.tokenType,
+          node.getState().tokenType,
           GLSLLexer.NR_RPAREN);
     }
     emitExactNewline();
@@ -130,11 +146,11 @@ public class ASTPrinter extends ASTPrinterBase {
   public Void visitExtensionStatement(ExtensionStatement node) {
     emitType(GLSLLexer.NR, GLSLLexer.NR_EXTENSION);
     emitExtendableSpace();
-    emitLiteral(node.name);
-    if (node.behavior != null) {
+    emitLiteral(node.getName());
+    if (node.getBehavior() != null) {
       emitType(GLSLLexer.NR_COLON);
       emitExtendableSpace();
-      emitType(node.behavior.tokenType);
+      emitType(node.getBehavior().tokenType);
     }
     emitExactNewline();
     return null;
@@ -148,9 +164,9 @@ public class ASTPrinter extends ASTPrinterBase {
       return null;
     }
     emitType(GLSLLexer.NR, GLSLLexer.NR_CUSTOM);
-    if (node.content != null) {
+    if (node.getContent() != null) {
       emitExtendableSpace();
-      emitLiteral(node.content);
+      emitLiteral(node.getContent());
     }
     emitExactNewline();
     return null;
@@ -160,18 +176,18 @@ public class ASTPrinter extends ASTPrinterBase {
   public Void visitIncludeStatement(IncludeStatement node) {
     emitType(GLSLLexer.NR, GLSLLexer.NR_INCLUDE);
     emitExtendableSpace();
-    emitType(node.isAngleBrackets ? GLSLLexer.NR_STRING_START_ANGLE : GLSLLexer.NR_STRING_START);
-    if (node.content != null) {
-      emitLiteral(node.content);
+    emitType(node.isAngleBrackets() ? GLSLLexer.NR_STRING_START_ANGLE : GLSLLexer.NR_STRING_START);
+    if (node.getContent() != null) {
+      emitLiteral(node.getContent());
     }
-    emitType(node.isAngleBrackets ? GLSLLexer.S_STRING_END_ANGLE : GLSLLexer.S_STRING_END);
+    emitType(node.isAngleBrackets() ? GLSLLexer.S_STRING_END_ANGLE : GLSLLexer.S_STRING_END);
     emitExactNewline();
     return null;
   }
 
   @Override
   public void exitLayoutDefaults(LayoutDefaults node) {
-    emitType(node.mode.tokenType);
+    emitType(node.getMode().tokenType);
     emitBreakableSpace();
     emitStatementEnd();
   }
@@ -1040,7 +1056,7 @@ public class ASTPrinter extends ASTPrinterBase {
 
   @Override
   public Void visitInterpolationQualifier(InterpolationQualifier node) {
-    emitType(node.interpolationType.tokenType);
+    emitType(node.getInterpolationType().tokenType);
     return null;
   }
 
@@ -1084,13 +1100,13 @@ public class ASTPrinter extends ASTPrinterBase {
 
   @Override
   public Void visitPrecisionQualifier(PrecisionQualifier node) {
-    emitType(node.precisionLevel.tokenType);
+    emitType(node.getPrecisionLevel().tokenType);
     return null;
   }
 
   @Override
   public Void visitStorageQualifier(StorageQualifier node) {
-    emitType(node.storageType.tokenType);
+    emitType(node.getStorageType().tokenType);
     if (node.getTypeNames() != null) {
       emitType(GLSLLexer.LPAREN);
       visitCommaSpaced(node.getTypeNames());
@@ -1122,13 +1138,13 @@ public class ASTPrinter extends ASTPrinterBase {
 
   @Override
   public Void visitBuiltinFixedTypeSpecifier(BuiltinFixedTypeSpecifier node) {
-    emitType(node.type.tokenType);
+    emitType(node.getType().tokenType);
     return null;
   }
 
   @Override
   public Void visitBuiltinNumericTypeSpecifier(BuiltinNumericTypeSpecifier node) {
-    emitLiteral(node.type.getMostCompactName());
+    emitLiteral(node.getType().getMostCompactName());
     return null;
   }
 
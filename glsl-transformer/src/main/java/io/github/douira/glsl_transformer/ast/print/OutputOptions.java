@@ -27,6 +27,14 @@ public class OutputOptions {
     printInfo = false;
   }
 
+  public boolean getPrintInfo() {
+    return printInfo;
+  }
+
+  public String getHeaderSuffix() {
+    return headerSuffix;
+  }
+
   public void setHeaderSuffix(String headerSuffix) {
     this.headerSuffix = headerSuffix;
   }
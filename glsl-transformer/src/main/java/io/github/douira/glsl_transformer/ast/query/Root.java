@@ -6,6 +6,7 @@ import java.util.stream.Stream;
 
 import io.github.douira.glsl_transformer.ast.node.Identifier;
 import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
+import io.github.douira.glsl_transformer.ast.node.external_declaration.FunctionDefinition;
 import io.github.douira.glsl_transformer.ast.node.expression.*;
 import io.github.douira.glsl_transformer.ast.query.index.*;
 import io.github.douira.glsl_transformer.ast.query.match.*;
@@ -34,29 +35,74 @@ public class Root {
    */
   public final IdentifierIndex<?, ?> identifierIndex;
 
+  /**
+   * The optional source line index is used to query nodes by the source lines
+   * they were parsed from. It is {@code null} unless a source line index factory
+   * is set or one is passed to the constructor.
+   */
+  public final SourceLineIndex sourceLineIndex;
+
   public static final Supplier<NodeIndex<?>> nodeIndexFactoryDefault = NodeIndex::withUnordered;
   public static Supplier<IdentifierIndex<?, ?>> identifierIndexFactoryDefault = IdentifierIndex::withOnlyExact;
   public static Supplier<NodeIndex<?>> nodeIndexFactory = nodeIndexFactoryDefault;
   public static Supplier<IdentifierIndex<?, ?>> identifierIndexFactory = identifierIndexFactoryDefault;
+  public static final Supplier<SourceLineIndex> sourceLineIndexFactoryDefault = () -> null;
+  public static Supplier<SourceLineIndex> sourceLineIndexFactory = sourceLineIndexFactoryDefault;
 
   // internal utility state
-  private static Deque<Root> activeBuildRoots = new ArrayDeque<>();
+  private static final ThreadLocal<Deque<Root>> activeBuildRoots = ThreadLocal.withInitial(ArrayDeque::new);
+  private static final ThreadLocal<Boolean> deferredIndexing = ThreadLocal.withInitial(() -> false);
   private List<? extends ASTNode> nodeList;
   private boolean activity;
 
   /**
-   * Constructs a new root with the given node and identifier indexes.
+   * The registered function definitions whose bodies haven't been built yet.
+   * They are built before the indexes are queried.
+   */
+  private final Set<FunctionDefinition> unbuiltBodies = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /**
+   * The nodes registered during a bulk registration that haven't been added to
+   * the indexes yet.
+   */
+  private final List<ASTNode> pendingNodes = new ArrayList<>();
+  private int bulkRegistrationDepth;
+
+  /**
+   * Constructs a new root with the given node, identifier and source line
+   * indexes.
    * 
    * @param nodeIndex       The node index
    * @param identifierIndex The identifier index
+   * @param sourceLineIndex The source line index or {@code null}
    */
-  public Root(NodeIndex<?> nodeIndex, IdentifierIndex<?, ?> identifierIndex) {
+  public Root(NodeIndex<?> nodeIndex, IdentifierIndex<?, ?> identifierIndex, SourceLineIndex sourceLineIndex) {
     this.nodeIndex = nodeIndex;
     this.identifierIndex = identifierIndex;
+    this.sourceLineIndex = sourceLineIndex;
+    if (nodeIndex != null) {
+      nodeIndex.setQueryPreparation(this::prepareQuery);
+    }
+    if (identifierIndex != null) {
+      identifierIndex.setQueryPreparation(this::prepareQuery);
+    }
+    if (sourceLineIndex != null) {
+      sourceLineIndex.setQueryPreparation(this::prepareQuery);
+    }
+  }
+
+  /**
+   * Constructs a new root with the given node and identifier indexes.
+   * 
+   * @param nodeIndex       The node index
+   * @param identifierIndex The identifier index
+   */
+  public Root(NodeIndex<?> nodeIndex, IdentifierIndex<?, ?> identifierIndex) {
+    this(nodeIndex, identifierIndex, null);
   }
   
   public Root() {
-    this(nodeIndexFactory.get(), identifierIndexFactory.get());
+    this(nodeIndexFactory.get(), identifierIndexFactory.get(), sourceLineIndexFactory.get());
   }
 
   /**
@@ -90,18 +136,20 @@ public class Root {
   public static void resetRootFactories() {
     nodeIndexFactory = nodeIndexFactoryDefault;
     identifierIndexFactory = identifierIndexFactoryDefault;
+    sourceLineIndexFactory = sourceLineIndexFactoryDefault;
   }
 
   /**
    * Returns the currently active build root. When nodes are constructed within a
    * build session, this method returns the root of the build session. Nodes can't
    * be constructed with children if they have no root since the children must be
-   * registered with the root.
+   * registered with the root. The build root is only active on the thread that
+   * started the build session.
    * 
    * @return the currently active build root
    */
   public static Root getActiveBuildRoot() {
-    return activeBuildRoots.peekFirst();
+    return activeBuildRoots.get().peekFirst();
   }
 
   /**
@@ -112,14 +160,15 @@ public class Root {
    * @param rootConsumer The consumer to run
    * @return The return value of the consumer
    */
-  protected static final synchronized <R> R withActiveBuildRoot(
+  protected static final <R> R withActiveBuildRoot(
       Root instance,
       Function<Root, R> rootConsumer) {
-    activeBuildRoots.push(instance);
+    var buildRoots = activeBuildRoots.get();
+    buildRoots.push(instance);
     try {
       return rootConsumer.apply(instance);
     } finally {
-      activeBuildRoots.pop();
+      buildRoots.pop();
     }
   }
 
@@ -135,7 +184,7 @@ public class Root {
    * @param builder    The builder to run
    * @return The built and registered node
    */
-  public static synchronized <NodeType extends ASTNode> NodeType indexNodes(
+  public static <NodeType extends ASTNode> NodeType indexNodes(
       Root instance, Supplier<NodeType> builder) {
     return withActiveBuildRoot(instance, root -> {
       var result = builder.get();
@@ -144,6 +193,81 @@ public class Root {
     });
   }
 
+  /**
+   * Runs the given supplier with deferred indexing on the current thread. The
+   * nodes registered in bulk by it are only added to the indexes of their root
+   * when the indexes are first queried. This avoids the cost of indexing for
+   * trees that are never queried.
+   * 
+   * @param <R>      The return type of the supplier
+   * @param supplier The supplier to run
+   * @return The return value of the supplier
+   */
+  public static <R> R withDeferredIndexing(Supplier<R> supplier) {
+    var previous = deferredIndexing.get();
+    deferredIndexing.set(true);
+    try {
+      return supplier.get();
+    } finally {
+      deferredIndexing.set(previous);
+    }
+  }
+
+  /**
+   * Runs the given builder supplier with the given root as the active build root
+   * and registers the built nodes in bulk. Instead of adding each node to the
+   * indexes as it's registered, the nodes are collected and added to the
+   * indexes in one pass at the end of the build. If indexing is deferred on the
+   * current thread, the nodes are only added to the indexes when they're first
+   * queried.
+   * 
+   * @param <NodeType> The type of the node to build
+   * @param instance   The root to run the builder with
+   * @param builder    The builder to run
+   * @return The built and registered node
+   * @see #withDeferredIndexing(Supplier)
+   */
+  public static <NodeType extends ASTNode> NodeType indexNodesBulk(
+      Root instance, Supplier<NodeType> builder) {
+    return withActiveBuildRoot(instance, root -> {
+      root.beginBulkRegistration();
+      try {
+        var result = builder.get();
+        root.registerNode(result);
+        return result;
+      } finally {
+        root.endBulkRegistration(deferredIndexing.get());
+      }
+    });
+  }
+
+  /**
+   * Runs the given builder supplier with a new root as the active build root and
+   * registers the built nodes in bulk.
+   * 
+   * @param <NodeType> The type of the node to build
+   * @param builder    The builder to run
+   * @return The built and registered node
+   */
+  public static <NodeType extends ASTNode> NodeType indexNodesBulk(
+      Supplier<NodeType> builder) {
+    return indexNodesBulk(new Root(), builder);
+  }
+
+  /**
+   * Runs the given builder supplier with the same root as a given tree node as
+   * the active build root and registers the built nodes in bulk.
+   * 
+   * @param <NodeType>       The type of the node to build
+   * @param parentTreeMember The tree member to get the root from
+   * @param builder          The builder to run
+   * @return The built and registered node
+   */
+  public static <NodeType extends ASTNode> NodeType indexNodesBulk(
+      ASTNode parentTreeMember, Supplier<NodeType> builder) {
+    return indexNodesBulk(parentTreeMember.getRoot(), builder);
+  }
+
   /**
    * Runs the given builder supplier with a new root as the active build root.
    * 
@@ -178,7 +302,7 @@ public class Root {
    * @param instance The root to use as the active build root
    * @param session  The runnable to run
    */
-  public static synchronized void indexBuildSession(Root instance, Runnable session) {
+  public static void indexBuildSession(Root instance, Runnable session) {
     withActiveBuildRoot(instance, root -> {
       session.run();
       return null;
@@ -215,7 +339,7 @@ public class Root {
    * @param instance           the root to register the nodes with
    * @param registererConsumer The consumer to run
    */
-  public static synchronized <NodeType extends ASTNode> void indexSeparateTrees(
+  public static <NodeType extends ASTNode> void indexSeparateTrees(
       Root instance, Consumer<Passthrough<NodeType>> registererConsumer) {
     withActiveBuildRoot(instance, root -> {
       registererConsumer.accept(Passthrough.of(root::registerNode));
@@ -254,10 +378,108 @@ public class Root {
    * @param node The node to register
    */
   public void registerNode(ASTNode node) {
+    if (node instanceof FunctionDefinition definition && !definition.isBodyBuilt()) {
+      unbuiltBodies.add(definition);
+    }
+
+    // keep collecting after a deferred bulk registration to preserve the order
+    if (bulkRegistrationDepth > 0 || !pendingNodes.isEmpty()) {
+      pendingNodes.add(node);
+      return;
+    }
     nodeIndex.add(node);
     if (node instanceof Identifier identifier) {
       identifierIndex.add(identifier);
     }
+    if (sourceLineIndex != null) {
+      sourceLineIndex.add(node);
+    }
+  }
+
+  /**
+   * Starts a bulk registration. Until it's ended, registered nodes are only
+   * collected and not added to the indexes. Bulk registrations can be nested.
+   */
+  public void beginBulkRegistration() {
+    bulkRegistrationDepth++;
+  }
+
+  /**
+   * Ends a bulk registration. When the outermost bulk registration ends, the
+   * collected nodes are added to the indexes unless indexing is deferred. The
+   * collected nodes are always added to the indexes before they're queried or
+   * any node is unregistered.
+   * 
+   * @param deferred If adding the collected nodes to the indexes should be
+   *                 deferred until they're queried
+   */
+  public void endBulkRegistration(boolean deferred) {
+    if (bulkRegistrationDepth <= 0) {
+      throw new IllegalStateException("There is no bulk registration to end.");
+    }
+    bulkRegistrationDepth--;
+    if (bulkRegistrationDepth == 0 && !deferred) {
+      indexPendingNodes();
+    }
+  }
+
+  /**
+   * Returns whether there are registered nodes that haven't been added to the
+   * indexes yet.
+   * 
+   * @return If there are pending nodes
+   */
+  public boolean hasPendingNodes() {
+    return !pendingNodes.isEmpty();
+  }
+
+  /**
+   * Adds the nodes collected during bulk registration to the indexes. The nodes
+   * are grouped by their class so that each set in the node index is accessed
+   * once and created with the right capacity. The identifiers are grouped by
+   * name.
+   */
+  @SuppressWarnings("unchecked")
+  public void indexPendingNodes() {
+    if (pendingNodes.isEmpty()) {
+      return;
+    }
+    var nodesByClass = new HashMap<Class<? extends ASTNode>, List<ASTNode>>();
+    var identifiers = new ArrayList<Identifier>();
+    Class<? extends ASTNode> previousClass = null;
+    List<ASTNode> previousList = null;
+    for (var node : pendingNodes) {
+      // consecutive nodes often have the same class
+      var nodeClass = (Class<? extends ASTNode>) node.getClass();
+      if (nodeClass != previousClass) {
+        previousClass = nodeClass;
+        previousList = nodesByClass.computeIfAbsent(nodeClass, key -> new ArrayList<>());
+      }
+      previousList.add(node);
+      if (node instanceof Identifier identifier) {
+        identifiers.add(identifier);
+      }
+    }
+    pendingNodes.clear();
+
+    for (var entry : nodesByClass.entrySet()) {
+      nodeIndex.addAll(entry.getKey(), entry.getValue());
+    }
+    if (!identifiers.isEmpty()) {
+      identifierIndex.addAll(identifiers);
+    }
+    if (sourceLineIndex != null) {
+      for (var nodes : nodesByClass.values()) {
+        for (var node : nodes) {
+          sourceLineIndex.add(node);
+        }
+      }
+    }
+  }
+
+  private void prepareQuery() {
+    buildLazyBodies();
+    indexPendingNodes();
   }
 
   /**
@@ -266,17 +488,69 @@ public class Root {
    * @param node The node to unregister
    */
   public void unregisterNode(ASTNode node) {
+    indexPendingNodes();
     nodeIndex.remove(node);
     if (node instanceof Identifier identifier) {
       identifierIndex.remove(identifier);
+    } else if (node instanceof FunctionDefinition definition) {
+      unbuiltBodies.remove(definition);
+    }
+    if (sourceLineIndex != null) {
+      sourceLineIndex.remove(node);
+    }
+  }
+
+  /**
+   * Notifies this root that the source lines of the given node have changed.
+   * 
+   * @param node The node with changed source lines
+   */
+  public void sourceLinesChanged(ASTNode node) {
+    if (sourceLineIndex != null) {
+      sourceLineIndex.update(node);
+    }
+  }
+
+  /**
+   * Notifies this root that the parent of one of its nodes has changed.
+   */
+  public void parentChanged() {
+    if (sourceLineIndex != null) {
+      sourceLineIndex.structureChanged();
+    }
+  }
+
+  /**
+   * Notifies this root that the body of the given function definition has been
+   * built or replaced and doesn't need to be built anymore.
+   * 
+   * @param definition The function definition
+   */
+  public void lazyBodyBuilt(FunctionDefinition definition) {
+    unbuiltBodies.remove(definition);
+  }
+
+  /**
+   * Builds the bodies of all function definitions in this root that were left
+   * unbuilt by the lazy AST builder and registers their nodes. This happens
+   * automatically before the indexes are queried.
+   */
+  public void buildLazyBodies() {
+    while (!unbuiltBodies.isEmpty()) {
+      var iterator = unbuiltBodies.iterator();
+      var definition = iterator.next();
+      iterator.remove();
+      definition.getBody();
     }
   }
 
   public void unregisterIdentifierRename(Identifier identifier) {
+    indexPendingNodes();
     identifierIndex.remove(identifier);
   }
 
   public void registerIdentifierRename(Identifier identifier) {
+    indexPendingNodes();
     identifierIndex.add(identifier);
   }
 
@@ -493,7 +767,10 @@ public class Root {
 
   /**
    * Processes all matches of nodes in the tree that match the given hinted
-   * matcher. The hint is used to identify the nodes to match.
+   * matcher. The hint is used to identify the nodes to match. The hint is
+   * selected from the identifiers of the pattern by how many identifiers with
+   * each name there currently are in the identifier index. Nothing is matched if
+   * an identifier of the pattern is missing from the tree.
    * 
    * @param <T>           The type of the matched nodes
    * @param t             The AST transformer
@@ -505,8 +782,12 @@ public class Root {
       ASTParser t,
       HintedMatcher<T> hintedMatcher,
       Consumer<? super T> replacer) {
+    var hint = hintedMatcher.selectHint(identifierIndex);
+    if (hint == null) {
+      return false;
+    }
     return processMatches(t,
-        identifierIndex.getStream(hintedMatcher.getHint()), hintedMatcher, replacer);
+        identifierIndex.getStream(hint), hintedMatcher, replacer);
   }
 
   /**
@@ -537,6 +818,8 @@ public class Root {
   /**
    * Replaces expressions all matches of expression nodes in the tree that match
    * the given hinted matcher with new expressions created from the given string.
+   * The hint is selected like in
+   * {@link #processMatches(ASTParser, HintedMatcher, Consumer)}.
    * 
    * @param <T>           The type of the matched expression nodes
    * @param t             The AST transformer
@@ -548,7 +831,11 @@ public class Root {
       ASTParser t,
       HintedMatcher<T> hintedMatcher,
       String expression) {
+    var hint = hintedMatcher.selectHint(identifierIndex);
+    if (hint == null) {
+      return false;
+    }
     return replaceExpressionMatches(t,
-        identifierIndex.getStream(hintedMatcher.getHint()), hintedMatcher, expression);
+        identifierIndex.getStream(hint), hintedMatcher, expression);
   }
 }
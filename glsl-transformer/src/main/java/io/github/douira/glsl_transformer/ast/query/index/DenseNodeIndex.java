@@ -0,0 +1,263 @@
+package io.github.douira.glsl_transformer.ast.query.index;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
+
+/**
+ * The dense node index stores the nodes of each class in an array indexed by
+ * the dense class ids of {@link NodeTypeInfo}. Each array element is an
+ * {@link IdentityNodeSet}. Adding, removing and querying nodes doesn't hash
+ * classes or allocate entry objects. The map {@link NodeIndex#index} of the
+ * superclass is not used and stays empty.
+ *
+ * If superclass queries are enabled, querying for a superclass like Expression
+ * returns all nodes of its subclasses like {@link SuperclassNodeIndex}. Instead
+ * of adding each node to a set for each of its superclasses, the nodes are only
+ * stored once and the sets of the subclasses are found with the precomputed
+ * subclass ids of the queried class. Querying for a class that has subclasses
+ * returns a view of the sets of the class and its subclasses. The view is
+ * created once per class and reused by later queries.
+ */
+public class DenseNodeIndex extends NodeIndex<IdentityNodeSet> {
+  private final boolean superclassQueries;
+  private IdentityNodeSet[] sets = new IdentityNodeSet[64];
+  private SubtypeView[] views = new SubtypeView[64];
+
+  /**
+   * Creates a new dense node index.
+   *
+   * @param superclassQueries If querying for a superclass should also return the
+   *                          nodes of its subclasses
+   */
+  public DenseNodeIndex(boolean superclassQueries) {
+    super(IdentityNodeSet::new, IdentityNodeSet::new);
+    this.superclassQueries = superclassQueries;
+  }
+
+  public static DenseNodeIndex withExactClasses() {
+    return new DenseNodeIndex(false);
+  }
+
+  public static DenseNodeIndex withSuperclasses() {
+    return new DenseNodeIndex(true);
+  }
+
+  private IdentityNodeSet getSet(int id) {
+    return id < sets.length ? sets[id] : null;
+  }
+
+  private IdentityNodeSet getOrCreateSet(int id, int expectedSize) {
+    if (id >= sets.length) {
+      sets = Arrays.copyOf(sets, Math.max(sets.length * 2, id + 1));
+    }
+    var set = sets[id];
+    if (set == null) {
+      set = new IdentityNodeSet(expectedSize);
+      sets[id] = set;
+    }
+    return set;
+  }
+
+  /**
+   * Returns the set of nodes of exactly the given class.
+   *
+   * @param type The class
+   * @return The set or {@code null} if no node of this class was ever added
+   */
+  private IdentityNodeSet getExactSet(Class<? extends ASTNode> type) {
+    return getSet(NodeTypeInfo.getId(type));
+  }
+
+  /**
+   * Finds the next non-empty set of a class that matches the queried class.
+   * Without superclass queries, only the set of the queried class itself
+   * matches, whose id is always the first of its subtype ids.
+   *
+   * @param matchingIds The subtype ids of the queried class
+   * @param from        The position in the ids to start searching at
+   * @return The position of the id of the next non-empty set or -1 if there is
+   *         none
+   */
+  private int findMatchingSet(int[] matchingIds, int from) {
+    var end = superclassQueries ? matchingIds.length : 1;
+    for (var i = from; i < end; i++) {
+      var set = getSet(matchingIds[i]);
+      if (set != null && !set.isEmpty()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private SubtypeView getView(NodeTypeInfo info) {
+    if (info.id >= views.length) {
+      views = Arrays.copyOf(views, Math.max(views.length * 2, info.id + 1));
+    }
+    var view = views[info.id];
+    if (view == null) {
+      view = new SubtypeView(info);
+      views[info.id] = view;
+    }
+    return view;
+  }
+
+  /**
+   * Method used internally to add a node to the index. This is only meant to be
+   * called by {@link io.github.douira.glsl_transformer.ast.query.Root}.
+   */
+  @Override
+  public void add(ASTNode node) {
+    getOrCreateSet(NodeTypeInfo.getId(node.getClass()), 0).add(node);
+  }
+
+  @Override
+  public void addAll(Class<? extends ASTNode> nodeClass, Collection<? extends ASTNode> nodes) {
+    var set = getOrCreateSet(NodeTypeInfo.getId(nodeClass), nodes.size());
+    for (var node : nodes) {
+      set.add(node);
+    }
+  }
+
+  /**
+   * Method used internally to remove a node from the index. This is only meant to
+   * be called by {@link io.github.douira.glsl_transformer.ast.query.Root}.
+   */
+  @Override
+  public void remove(ASTNode node) {
+    var set = getExactSet(node.getClass());
+    if (set != null) {
+      set.remove(node);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T extends ASTNode> Set<T> get(Class<T> type) {
+    prepareQuery();
+    var info = NodeTypeInfo.of(type);
+    if (superclassQueries && info.getSubtypeIds().length > 1) {
+      return (Set<T>) getView(info);
+    }
+    var set = getSet(info.id);
+    return set == null ? Collections.emptySet() : (Set<T>) set;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T extends ASTNode> Stream<T> getStream(Class<T> type) {
+    return (Stream<T>) get(type).stream();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T extends ASTNode> T getOne(Class<T> type) {
+    prepareQuery();
+    var matchingIds = NodeTypeInfo.of(type).getSubtypeIds();
+    var position = findMatchingSet(matchingIds, 0);
+    return position < 0 ? null : (T) sets[matchingIds[position]].getAny();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T extends ASTNode> T getUnique(Class<T> type) {
+    prepareQuery();
+    var matchingIds = NodeTypeInfo.of(type).getSubtypeIds();
+    var resultCount = 0;
+    IdentityNodeSet resultSet = null;
+    for (var i = findMatchingSet(matchingIds, 0); i >= 0; i = findMatchingSet(matchingIds, i + 1)) {
+      resultSet = sets[matchingIds[i]];
+      resultCount += resultSet.size();
+    }
+    if (resultCount != 1) {
+      throw new IllegalStateException("Expected exactly one node of type " + type + " but found " + resultCount);
+    }
+    return (T) resultSet.getAny();
+  }
+
+  @Override
+  public boolean has(Class<? extends ASTNode> type) {
+    prepareQuery();
+    return findMatchingSet(NodeTypeInfo.of(type).getSubtypeIds(), 0) >= 0;
+  }
+
+  @Override
+  public boolean hasExact(ASTNode node) {
+    prepareQuery();
+    var set = getExactSet(node.getClass());
+    return set != null && set.contains(node);
+  }
+
+  /**
+   * Removes all nodes from this index.
+   */
+  public void clear() {
+    Arrays.fill(sets, null);
+  }
+
+  /**
+   * A read-only view of the nodes of a class and all its subclasses. It reads
+   * the sets of the index and the subtype ids of the class each time it's used
+   * and therefore always reflects the current content of the index.
+   */
+  private class SubtypeView extends AbstractSet<ASTNode> {
+    private final NodeTypeInfo info;
+
+    SubtypeView(NodeTypeInfo info) {
+      this.info = info;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof ASTNode node) || !NodeTypeInfo.of(node.getClass()).isSubtypeOf(info.id)) {
+        return false;
+      }
+      var set = getExactSet(node.getClass());
+      return set != null && set.contains(node);
+    }
+
+    @Override
+    public int size() {
+      var size = 0;
+      for (var id : info.getSubtypeIds()) {
+        var set = getSet(id);
+        if (set != null) {
+          size += set.size();
+        }
+      }
+      return size;
+    }
+
+    @Override
+    public Iterator<ASTNode> iterator() {
+      return new Iterator<>() {
+        private final int[] matchingIds = info.getSubtypeIds();
+        private int position;
+        private Iterator<ASTNode> current = Collections.emptyIterator();
+
+        @Override
+        public boolean hasNext() {
+          while (!current.hasNext()) {
+            if (position >= matchingIds.length) {
+              return false;
+            }
+            var set = getSet(matchingIds[position++]);
+            if (set != null) {
+              current = set.iterator();
+            }
+          }
+          return true;
+        }
+
+        @Override
+        public ASTNode next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          return current.next();
+        }
+      };
+    }
+  }
+}
@@ -125,6 +125,21 @@ public abstract class DuplicatorTrie<E> extends PatriciaTrie<E> {
     return super.tailMap(prepareKey(fromKey));
   }
 
+  /**
+   * Queries the entries with keys that match the given pattern. Only the keys
+   * that were inserted unchanged or with the marker appended are matched, the
+   * other key variations contain the marker and are skipped.
+   * 
+   * @param pattern    the pattern to match the keys against
+   * @param terminated if the unchanged keys are stored with the marker appended
+   * @return the elements with matching keys
+   */
+  protected Stream<E> rawPatternQuery(KeyPattern pattern, boolean terminated) {
+    return pattern.query(
+        from -> (from.isEmpty() ? entrySet() : super.tailMap(from).entrySet()).iterator(),
+        marker, terminated);
+  }
+
   protected Stream<E> distinctPrefixQuery(String prefix) {
     return super.prefixMap(prefix).values().stream().unordered().distinct();
   }
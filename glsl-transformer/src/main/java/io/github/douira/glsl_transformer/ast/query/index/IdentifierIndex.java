@@ -14,12 +14,30 @@ import io.github.douira.glsl_transformer.ast.node.expression.ReferenceExpression
 public class IdentifierIndex<S extends Set<Identifier>, I extends Map<String, S>> implements Index<Identifier> {
   public final I index;
   public final Supplier<S> setFactory;
+  private Runnable queryPreparation;
 
   public IdentifierIndex(I index, Supplier<S> setFactory) {
     this.index = index;
     this.setFactory = setFactory;
   }
 
+  /**
+   * Sets an action that is run before each query.
+   * 
+   * @param queryPreparation The action to run before each query or
+   *                         {@code null}
+   * @see NodeIndex#setQueryPreparation(Runnable)
+   */
+  public void setQueryPreparation(Runnable queryPreparation) {
+    this.queryPreparation = queryPreparation;
+  }
+
+  protected void prepareQuery() {
+    if (queryPreparation != null) {
+      queryPreparation.run();
+    }
+  }
+
   @Override
   public void add(Identifier node) {
     var name = node.getName();
@@ -31,6 +49,31 @@ public class IdentifierIndex<S extends Set<Identifier>, I extends Map<String, S>
     set.add(node);
   }
 
+  /**
+   * Adds many identifiers at once. The identifiers are grouped by name first so
+   * that the index map is only accessed once per name. This is much cheaper for
+   * tries that insert multiple entries for each new name.
+   *
+   * @param nodes The identifiers to add
+   */
+  public void addAll(Collection<Identifier> nodes) {
+    var groups = new HashMap<String, List<Identifier>>();
+    for (var node : nodes) {
+      groups.computeIfAbsent(node.getName(), name -> new ArrayList<>(2)).add(node);
+    }
+    for (var entry : groups.entrySet()) {
+      var name = entry.getKey();
+      var set = index.get(name);
+      if (set == null) {
+        set = setFactory.get();
+        set.addAll(entry.getValue());
+        index.put(name, set);
+      } else {
+        set.addAll(entry.getValue());
+      }
+    }
+  }
+
   @Override
   public void remove(Identifier node) {
     var name = node.getName();
@@ -45,11 +88,13 @@ public class IdentifierIndex<S extends Set<Identifier>, I extends Map<String, S>
   }
 
   public Set<Identifier> get(String key) {
+    prepareQuery();
     var result = index.get(key);
     return result == null ? Collections.emptySet() : result;
   }
 
   public Stream<Identifier> getStream(String key) {
+    prepareQuery();
     var result = index.get(key);
     return result == null ? Stream.empty() : result.stream();
   }
@@ -71,11 +116,13 @@ public class IdentifierIndex<S extends Set<Identifier>, I extends Map<String, S>
   }
 
   public Identifier getOne(String key) {
+    prepareQuery();
     var iterator = index.get(key).iterator();
     return iterator.hasNext() ? iterator.next() : null;
   }
 
   public Identifier getUnique(String key) {
+    prepareQuery();
     var set = index.get(key);
     var resultSize = set == null ? 0 : set.size();
     if (resultSize != 1) {
@@ -84,7 +131,20 @@ public class IdentifierIndex<S extends Set<Identifier>, I extends Map<String, S>
     return set.iterator().next();
   }
 
+  /**
+   * Returns the number of identifiers with the given name.
+   *
+   * @param key The name of the identifiers
+   * @return The number of identifiers with the name
+   */
+  public int count(String key) {
+    prepareQuery();
+    var result = index.get(key);
+    return result == null ? 0 : result.size();
+  }
+
   public boolean has(String key) {
+    prepareQuery();
     var result = index.get(key);
     return result != null && !result.isEmpty();
   }
@@ -104,6 +164,7 @@ public class IdentifierIndex<S extends Set<Identifier>, I extends Map<String, S>
       return false;
     }
     Identifier.validateContents(newName);
+    prepareQuery();
     var set = index.get(oldName);
     if (set == null) {
       return false;
@@ -0,0 +1,206 @@
+package io.github.douira.glsl_transformer.ast.query.index;
+
+import java.util.*;
+
+import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
+
+/**
+ * A compact set of nodes that compares nodes by identity. The nodes are stored
+ * in a single open addressing table with linear probing so adding a node
+ * doesn't allocate an entry object like a {@link HashSet} does. The iteration
+ * order is unspecified.
+ */
+public class IdentityNodeSet extends AbstractSet<ASTNode> {
+  private static final int minCapacity = 4;
+
+  private ASTNode[] table;
+  private int size;
+  private int modCount;
+
+  public IdentityNodeSet() {
+    table = new ASTNode[minCapacity];
+  }
+
+  /**
+   * Creates a new set with enough capacity for the given number of nodes.
+   *
+   * @param expectedSize The number of nodes the set will hold
+   */
+  public IdentityNodeSet(int expectedSize) {
+    var capacity = minCapacity;
+    while (capacity * 3 < expectedSize * 4) {
+      capacity <<= 1;
+    }
+    table = new ASTNode[capacity];
+  }
+
+  private static int hash(Object node, int mask) {
+    var hash = System.identityHashCode(node) * 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private int find(Object node) {
+    var mask = table.length - 1;
+    var i = hash(node, mask);
+    while (true) {
+      var entry = table[i];
+      if (entry == null) {
+        return -1;
+      }
+      if (entry == node) {
+        return i;
+      }
+      i = (i + 1) & mask;
+    }
+  }
+
+  private void resize(int capacity) {
+    var oldTable = table;
+    table = new ASTNode[capacity];
+    var mask = capacity - 1;
+    for (var entry : oldTable) {
+      if (entry != null) {
+        var i = hash(entry, mask);
+        while (table[i] != null) {
+          i = (i + 1) & mask;
+        }
+        table[i] = entry;
+      }
+    }
+  }
+
+  @Override
+  public boolean add(ASTNode node) {
+    Objects.requireNonNull(node);
+    var mask = table.length - 1;
+    var i = hash(node, mask);
+    while (true) {
+      var entry = table[i];
+      if (entry == null) {
+        break;
+      }
+      if (entry == node) {
+        return false;
+      }
+      i = (i + 1) & mask;
+    }
+    table[i] = node;
+    size++;
+    modCount++;
+
+    // keep the load factor below 3/4
+    if (size * 4 > table.length * 3) {
+      resize(table.length << 1);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean contains(Object node) {
+    return node != null && find(node) >= 0;
+  }
+
+  @Override
+  public boolean remove(Object node) {
+    if (node == null) {
+      return false;
+    }
+    var i = find(node);
+    if (i < 0) {
+      return false;
+    }
+    removeAt(i);
+    return true;
+  }
+
+  private void removeAt(int i) {
+    // shift back the following entries of the probe sequence to close the gap
+    var mask = table.length - 1;
+    var gap = i;
+    var j = i;
+    while (true) {
+      j = (j + 1) & mask;
+      var entry = table[j];
+      if (entry == null) {
+        break;
+      }
+      var home = hash(entry, mask);
+      if (((j - home) & mask) >= ((j - gap) & mask)) {
+        table[gap] = entry;
+        gap = j;
+      }
+    }
+    table[gap] = null;
+    size--;
+    modCount++;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public void clear() {
+    if (size > 0) {
+      Arrays.fill(table, null);
+      size = 0;
+      modCount++;
+    }
+  }
+
+  /**
+   * Returns an arbitrary node from this set without allocating an iterator.
+   *
+   * @return An arbitrary node or {@code null} if the set is empty
+   */
+  public ASTNode getAny() {
+    if (size > 0) {
+      for (var entry : table) {
+        if (entry != null) {
+          return entry;
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Iterator<ASTNode> iterator() {
+    return new Iterator<ASTNode>() {
+      private final int expectedModCount = modCount;
+      private int next = advance(0);
+
+      private int advance(int from) {
+        var currentTable = table;
+        while (from < currentTable.length && currentTable[from] == null) {
+          from++;
+        }
+        return from;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next < table.length;
+      }
+
+      @Override
+      public ASTNode next() {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (next >= table.length) {
+          throw new NoSuchElementException();
+        }
+        var result = table[next];
+        next = advance(next + 1);
+        return result;
+      }
+    };
+  }
+}
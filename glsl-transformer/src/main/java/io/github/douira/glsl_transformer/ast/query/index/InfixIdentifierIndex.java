@@ -0,0 +1,54 @@
+package io.github.douira.glsl_transformer.ast.query.index;
+
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import io.github.douira.glsl_transformer.ast.node.Identifier;
+
+/**
+ * An identifier index that supports prefix, suffix, infix and inverted infix
+ * queries using a {@link TrigramIndex}. It answers the same queries as a
+ * {@link PrefixIdentifierIndex} with a {@link PermutermTrie} but uses much less
+ * memory for long identifiers.
+ */
+public class InfixIdentifierIndex<S extends Set<Identifier>> extends IdentifierIndex<S, TrigramIndex<S, Identifier>>
+    implements PrefixQueryable<S, Identifier>, SuffixQueryable<S, Identifier>, InfixQueryable<S, Identifier>,
+    InvertedInfixQueryable<S, Identifier> {
+
+  public InfixIdentifierIndex(TrigramIndex<S, Identifier> index, Supplier<S> setFactory) {
+    super(index, setFactory);
+  }
+
+  @Override
+  public Stream<S> prefixQuery(String prefix) {
+    prepareQuery();
+    return index.prefixQuery(prefix);
+  }
+
+  @Override
+  public Stream<S> suffixQuery(String suffix) {
+    prepareQuery();
+    return index.suffixQuery(suffix);
+  }
+
+  @Override
+  public Stream<S> infixQuery(String infix) {
+    prepareQuery();
+    return index.infixQuery(infix);
+  }
+
+  @Override
+  public Stream<S> invertedInfixQuery(String prefix, String suffix) {
+    prepareQuery();
+    return index.invertedInfixQuery(prefix, suffix);
+  }
+
+  public static InfixIdentifierIndex<HashSet<Identifier>> withTrigrams() {
+    return new InfixIdentifierIndex<>(new TrigramIndex<>(), HashSet::new);
+  }
+
+  public static <R extends Set<Identifier>> InfixIdentifierIndex<R> withTrigrams(Supplier<R> setFactory) {
+    return new InfixIdentifierIndex<>(new TrigramIndex<>(), setFactory);
+  }
+}
@@ -0,0 +1,670 @@
+package io.github.douira.glsl_transformer.ast.query.index;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * A key pattern is a regular expression or glob pattern compiled into an
+ * automaton that can be intersected with the sorted keys of a trie. Instead of
+ * testing every key, the query walks the keys in order and when a prefix of a
+ * key can't be extended to a match, it seeks directly to the smallest key that
+ * could still match. This skips whole subtrees of the trie and makes the cost
+ * of a query depend on the number of matches rather than on the number of keys.
+ *
+ * The supported regular expression syntax is a subset of
+ * {@link java.util.regex.Pattern}: literals, {@code .}, character classes like
+ * {@code [a-z_]} and {@code [^0-9]}, the escapes {@code \d \w \s \D \W \S},
+ * groups, alternation with {@code |} and the quantifiers {@code * + ?} and
+ * {@code {n} {n,} {n,m}}. The pattern always has to match the whole key. Glob
+ * patterns support {@code *} for any number of characters, {@code ?} for a
+ * single character and character classes that are negated with {@code !} or
+ * {@code ^}.
+ */
+public class KeyPattern {
+  private static final char[] anyChar = { 0, Character.MAX_VALUE };
+
+  private final String pattern;
+  private final char[][] ranges;
+  private final int[] targets;
+  private final BitSet[] closures;
+  private final int acceptState;
+  private final int startState;
+
+  private KeyPattern(String pattern, Node root) {
+    this.pattern = pattern;
+    var builder = new Builder();
+    acceptState = builder.addState(null, -1);
+    startState = root.build(builder, acceptState);
+    var stateCount = builder.ranges.size();
+    ranges = new char[stateCount][];
+    targets = new int[stateCount];
+    for (var i = 0; i < stateCount; i++) {
+      ranges[i] = builder.ranges.get(i);
+      targets[i] = builder.targets.get(i);
+    }
+    closures = new BitSet[stateCount];
+    for (var i = 0; i < stateCount; i++) {
+      var closure = new BitSet(stateCount);
+      addClosure(builder.epsilons, i, closure);
+      closures[i] = closure;
+    }
+  }
+
+  /**
+   * Compiles a regular expression into a key pattern.
+   *
+   * @param regex The regular expression
+   * @return The compiled key pattern
+   * @throws IllegalArgumentException If the regular expression is invalid or
+   *                                  uses unsupported syntax
+   */
+  public static KeyPattern regex(String regex) {
+    return new KeyPattern(regex, new RegexParser(regex).parse());
+  }
+
+  /**
+   * Compiles a glob pattern into a key pattern.
+   *
+   * @param glob The glob pattern
+   * @return The compiled key pattern
+   * @throws IllegalArgumentException If the glob pattern is invalid
+   */
+  public static KeyPattern glob(String glob) {
+    return new KeyPattern(glob, new RegexParser(glob).parseGlob());
+  }
+
+  public String getPattern() {
+    return pattern;
+  }
+
+  private static void addClosure(List<List<Integer>> epsilons, int state, BitSet closure) {
+    if (closure.get(state)) {
+      return;
+    }
+    closure.set(state);
+    for (var next : epsilons.get(state)) {
+      addClosure(epsilons, next, closure);
+    }
+  }
+
+  private BitSet getStartStates() {
+    return closures[startState];
+  }
+
+  private BitSet step(BitSet states, char c) {
+    BitSet result = null;
+    for (var state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1)) {
+      var stateRanges = ranges[state];
+      if (stateRanges != null && inRanges(stateRanges, c)) {
+        if (result == null) {
+          result = new BitSet(ranges.length);
+        }
+        result.or(closures[targets[state]]);
+      }
+    }
+    return result;
+  }
+
+  private static boolean inRanges(char[] ranges, char c) {
+    for (var i = 0; i < ranges.length; i += 2) {
+      if (c < ranges[i]) {
+        return false;
+      }
+      if (c <= ranges[i + 1]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Finds the smallest character larger than the given one that has a
+   * transition from one of the given states.
+   *
+   * @return The character or -1 if there is none
+   */
+  private int getNextChar(BitSet states, char after) {
+    var result = -1;
+    for (var state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1)) {
+      var stateRanges = ranges[state];
+      if (stateRanges == null) {
+        continue;
+      }
+      for (var i = 0; i < stateRanges.length; i += 2) {
+        if (stateRanges[i + 1] > after) {
+          var candidate = Math.max(stateRanges[i], after + 1);
+          if (result < 0 || candidate < result) {
+            result = candidate;
+          }
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Checks if the given key matches this pattern.
+   *
+   * @param key The key to check
+   * @return If the whole key matches
+   */
+  public boolean matches(String key) {
+    var states = getStartStates();
+    for (var i = 0; i < key.length(); i++) {
+      states = step(states, key.charAt(i));
+      if (states == null) {
+        return false;
+      }
+    }
+    return states.get(acceptState);
+  }
+
+  /**
+   * Queries the matching entries from a sorted map of keys. The given seek
+   * function returns an iterator over the entries in key order, starting at the
+   * first key that is equal to or larger than the given key.
+   *
+   * Keys may end with a terminator character. If the keys are terminated, only
+   * keys that end with the terminator can match. The terminator is not matched
+   * against the pattern and a key that contains the terminator anywhere else
+   * doesn't match. This is used for tries that store additional keys that are
+   * marked by containing the terminator.
+   *
+   * @param <V>        The type of the values
+   * @param seek       The function that returns an iterator over the entries
+   *                   starting at a given key
+   * @param terminator The terminator character or -1 if there is none
+   * @param terminated If matching keys have to end with the terminator
+   * @return The values of the matching entries in key order
+   */
+  public <V> Stream<V> query(
+      Function<String, Iterator<? extends Map.Entry<String, V>>> seek,
+      int terminator,
+      boolean terminated) {
+    var results = new ArrayList<V>();
+    var stateStack = new ArrayList<BitSet>();
+    stateStack.add(getStartStates());
+
+    // the number of characters of the previous key with valid states
+    var validLength = 0;
+    String previousKey = "";
+    var iterator = seek.apply("");
+    while (iterator.hasNext()) {
+      var entry = iterator.next();
+      var key = entry.getKey();
+
+      // reuse the states of the common prefix with the previous key
+      var i = 0;
+      var maxShared = Math.min(validLength, key.length());
+      while (i < maxShared && key.charAt(i) == previousKey.charAt(i)) {
+        i++;
+      }
+      var matched = false;
+      var deadAt = -1;
+      for (; i < key.length(); i++) {
+        var c = key.charAt(i);
+        if (c == terminator) {
+          if (terminated && i == key.length() - 1 && stateStack.get(i).get(acceptState)) {
+            matched = true;
+          } else {
+            deadAt = i;
+          }
+          break;
+        }
+        var next = step(stateStack.get(i), c);
+        if (next == null) {
+          deadAt = i;
+          break;
+        }
+        if (stateStack.size() > i + 1) {
+          stateStack.set(i + 1, next);
+        } else {
+          stateStack.add(next);
+        }
+      }
+      validLength = deadAt >= 0 ? deadAt : i;
+      previousKey = key;
+
+      if (deadAt < 0) {
+        if (matched || !terminated && i == key.length() && stateStack.get(i).get(acceptState)) {
+          results.add(entry.getValue());
+        }
+        continue;
+      }
+
+      // no key with this prefix can match, seek to the next one that could
+      var target = getSeekTarget(key, deadAt, stateStack);
+      if (target == null) {
+        break;
+      }
+      iterator = seek.apply(target);
+    }
+    return results.stream();
+  }
+
+  private String getSeekTarget(String key, int deadAt, List<BitSet> stateStack) {
+    for (var j = deadAt; j >= 0; j--) {
+      var nextChar = getNextChar(stateStack.get(j), key.charAt(j));
+      if (nextChar >= 0) {
+        return key.substring(0, j) + (char) nextChar;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Queries the matching values of a sorted map.
+   *
+   * @param <V> The type of the values
+   * @param map The sorted map to query
+   * @return The values of the matching entries in key order
+   */
+  public <V> Stream<V> query(SortedMap<String, V> map) {
+    return query(from -> (from.isEmpty() ? map : map.tailMap(from)).entrySet().iterator(), -1, false);
+  }
+
+  @Override
+  public String toString() {
+    return "KeyPattern [" + pattern + "]";
+  }
+
+  private static class Builder {
+    final List<char[]> ranges = new ArrayList<>();
+    final List<Integer> targets = new ArrayList<>();
+    final List<List<Integer>> epsilons = new ArrayList<>();
+
+    int addState(char[] stateRanges, int target) {
+      ranges.add(stateRanges);
+      targets.add(target);
+      epsilons.add(new ArrayList<>(2));
+      return ranges.size() - 1;
+    }
+
+    int addEpsilonState() {
+      return addState(null, -1);
+    }
+
+    void addEpsilon(int from, int to) {
+      epsilons.get(from).add(to);
+    }
+  }
+
+  /**
+   * A node of the parsed pattern. The automaton is built backwards from the
+   * accepting state so that each node can be built multiple times for bounded
+   * repetitions.
+   */
+  private interface Node {
+    /**
+     * Builds the states for this node.
+     *
+     * @param builder The automaton builder
+     * @param next    The state to continue with after this node
+     * @return The start state of this node
+     */
+    int build(Builder builder, int next);
+  }
+
+  private static class CharNode implements Node {
+    final char[] ranges;
+
+    CharNode(char[] ranges) {
+      this.ranges = ranges;
+    }
+
+    @Override
+    public int build(Builder builder, int next) {
+      return builder.addState(ranges, next);
+    }
+  }
+
+  private static class ConcatNode implements Node {
+    final List<Node> nodes;
+
+    ConcatNode(List<Node> nodes) {
+      this.nodes = nodes;
+    }
+
+    @Override
+    public int build(Builder builder, int next) {
+      for (var i = nodes.size() - 1; i >= 0; i--) {
+        next = nodes.get(i).build(builder, next);
+      }
+      return next;
+    }
+  }
+
+  private static class AlternativeNode implements Node {
+    final List<Node> nodes;
+
+    AlternativeNode(List<Node> nodes) {
+      this.nodes = nodes;
+    }
+
+    @Override
+    public int build(Builder builder, int next) {
+      var start = builder.addEpsilonState();
+      for (var node : nodes) {
+        builder.addEpsilon(start, node.build(builder, next));
+      }
+      return start;
+    }
+  }
+
+  private static class RepeatNode implements Node {
+    final Node node;
+    final int min;
+    final int max;
+
+    /**
+     * @param max The maximum number of repetitions or -1 for no maximum
+     */
+    RepeatNode(Node node, int min, int max) {
+      this.node = node;
+      this.min = min;
+      this.max = max;
+    }
+
+    @Override
+    public int build(Builder builder, int next) {
+      if (max < 0) {
+        var loop = builder.addEpsilonState();
+        builder.addEpsilon(loop, node.build(builder, loop));
+        builder.addEpsilon(loop, next);
+        next = loop;
+      } else {
+        for (var i = min; i < max; i++) {
+          var optional = builder.addEpsilonState();
+          builder.addEpsilon(optional, node.build(builder, next));
+          builder.addEpsilon(optional, next);
+          next = optional;
+        }
+      }
+      for (var i = 0; i < min; i++) {
+        next = node.build(builder, next);
+      }
+      return next;
+    }
+  }
+
+  private static class RegexParser {
+    final String input;
+    int position;
+
+    RegexParser(String input) {
+      this.input = input;
+    }
+
+    IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at index " + position + " in pattern: " + input);
+    }
+
+    boolean hasMore() {
+      return position < input.length();
+    }
+
+    char peek() {
+      return input.charAt(position);
+    }
+
+    Node parse() {
+      var result = parseAlternative();
+      if (hasMore()) {
+        throw error("Unexpected '" + peek() + "'");
+      }
+      return result;
+    }
+
+    Node parseAlternative() {
+      var alternatives = new ArrayList<Node>();
+      alternatives.add(parseConcat());
+      while (hasMore() && peek() == '|') {
+        position++;
+        alternatives.add(parseConcat());
+      }
+      return alternatives.size() == 1 ? alternatives.get(0) : new AlternativeNode(alternatives);
+    }
+
+    Node parseConcat() {
+      var nodes = new ArrayList<Node>();
+      while (hasMore() && peek() != '|' && peek() != ')') {
+        nodes.add(parseRepeat());
+      }
+      return nodes.size() == 1 ? nodes.get(0) : new ConcatNode(nodes);
+    }
+
+    Node parseRepeat() {
+      var node = parseAtom();
+      while (hasMore()) {
+        var c = peek();
+        if (c == '*') {
+          node = new RepeatNode(node, 0, -1);
+        } else if (c == '+') {
+          node = new RepeatNode(node, 1, -1);
+        } else if (c == '?') {
+          node = new RepeatNode(node, 0, 1);
+        } else if (c == '{') {
+          position++;
+          var min = parseNumber();
+          var max = min;
+          if (hasMore() && peek() == ',') {
+            position++;
+            max = hasMore() && peek() == '}' ? -1 : parseNumber();
+          }
+          if (!hasMore() || peek() != '}') {
+            throw error("Expected '}'");
+          }
+          if (max >= 0 && max < min) {
+            throw error("Invalid repetition range");
+          }
+          node = new RepeatNode(node, min, max);
+        } else {
+          break;
+        }
+        position++;
+      }
+      return node;
+    }
+
+    int parseNumber() {
+      var start = position;
+      while (hasMore() && Character.isDigit(peek())) {
+        position++;
+      }
+      if (start == position) {
+        throw error("Expected a number");
+      }
+      return Integer.parseInt(input.substring(start, position));
+    }
+
+    Node parseAtom() {
+      var c = peek();
+      position++;
+      switch (c) {
+        case '(':
+          if (input.startsWith("?:", position)) {
+            position += 2;
+          }
+          var group = parseAlternative();
+          if (!hasMore() || peek() != ')') {
+            throw error("Expected ')'");
+          }
+          position++;
+          return group;
+        case '[':
+          return new CharNode(parseClass(false));
+        case '.':
+          return new CharNode(anyChar);
+        case '\\':
+          return new CharNode(parseEscape());
+        case '*':
+        case '+':
+        case '?':
+        case '{':
+        case ')':
+        case '^':
+        case '$':
+          position--;
+          throw error("Unexpected '" + c + "'");
+        default:
+          return new CharNode(new char[] { c, c });
+      }
+    }
+
+    char[] parseEscape() {
+      if (!hasMore()) {
+        throw error("Incomplete escape");
+      }
+      var c = input.charAt(position++);
+      switch (c) {
+        case 'd':
+          return new char[] { '0', '9' };
+        case 'D':
+          return complement(new char[] { '0', '9' });
+        case 'w':
+          return wordChars();
+        case 'W':
+          return complement(wordChars());
+        case 's':
+          return whitespaceChars();
+        case 'S':
+          return complement(whitespaceChars());
+        default:
+          if (Character.isLetterOrDigit(c)) {
+            position--;
+            throw error("Unsupported escape");
+          }
+          return new char[] { c, c };
+      }
+    }
+
+    static char[] wordChars() {
+      return new char[] { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+    }
+
+    static char[] whitespaceChars() {
+      return new char[] { '\t', '\r', ' ', ' ' };
+    }
+
+    char[] parseClass(boolean glob) {
+      var negated = false;
+      if (hasMore() && (peek() == '^' || glob && peek() == '!')) {
+        negated = true;
+        position++;
+      }
+      var ranges = new ArrayList<char[]>();
+      var first = true;
+      while (true) {
+        if (!hasMore()) {
+          throw error("Unclosed character class");
+        }
+        var c = input.charAt(position++);
+        if (c == ']' && !first) {
+          break;
+        }
+        first = false;
+        if (c == '\\' && !glob) {
+          var escaped = parseEscape();
+          if (escaped.length > 2 || escaped[0] != escaped[1]) {
+            ranges.add(escaped);
+            continue;
+          }
+          c = escaped[0];
+        } else if (c == '\\' && hasMore()) {
+          c = input.charAt(position++);
+        }
+        if (hasMore() && peek() == '-' && position + 1 < input.length() && input.charAt(position + 1) != ']') {
+          position++;
+          var end = input.charAt(position++);
+          if (end == '\\' && hasMore()) {
+            end = input.charAt(position++);
+          }
+          if (end < c) {
+            throw error("Invalid character range");
+          }
+          ranges.add(new char[] { c, end });
+        } else {
+          ranges.add(new char[] { c, c });
+        }
+      }
+      var merged = merge(ranges);
+      return negated ? complement(merged) : merged;
+    }
+
+    static char[] merge(List<char[]> rangeLists) {
+      var pairs = new ArrayList<int[]>();
+      for (var ranges : rangeLists) {
+        for (var i = 0; i < ranges.length; i += 2) {
+          pairs.add(new int[] { ranges[i], ranges[i + 1] });
+        }
+      }
+      pairs.sort(Comparator.comparingInt(pair -> pair[0]));
+      var result = new ArrayList<int[]>();
+      for (var pair : pairs) {
+        var last = result.isEmpty() ? null : result.get(result.size() - 1);
+        if (last != null && pair[0] <= last[1] + 1) {
+          last[1] = Math.max(last[1], pair[1]);
+        } else {
+          result.add(pair);
+        }
+      }
+      var merged = new char[result.size() * 2];
+      for (var i = 0; i < result.size(); i++) {
+        merged[i * 2] = (char) result.get(i)[0];
+        merged[i * 2 + 1] = (char) result.get(i)[1];
+      }
+      return merged;
+    }
+
+    static char[] complement(char[] ranges) {
+      var result = new ArrayList<Character>();
+      var start = 0;
+      for (var i = 0; i < ranges.length; i += 2) {
+        if (ranges[i] > start) {
+          result.add((char) start);
+          result.add((char) (ranges[i] - 1));
+        }
+        start = ranges[i + 1] + 1;
+      }
+      if (start <= Character.MAX_VALUE) {
+        result.add((char) start);
+        result.add(Character.MAX_VALUE);
+      }
+      var complement = new char[result.size()];
+      for (var i = 0; i < complement.length; i++) {
+        complement[i] = result.get(i);
+      }
+      return complement;
+    }
+
+    Node parseGlob() {
+      var nodes = new ArrayList<Node>();
+      while (hasMore()) {
+        var c = input.charAt(position++);
+        switch (c) {
+          case '*':
+            nodes.add(new RepeatNode(new CharNode(anyChar), 0, -1));
+            break;
+          case '?':
+            nodes.add(new CharNode(anyChar));
+            break;
+          case '[':
+            nodes.add(new CharNode(parseClass(true)));
+            break;
+          case '\\':
+            if (!hasMore()) {
+              throw error("Incomplete escape");
+            }
+            c = input.charAt(position++);
+            nodes.add(new CharNode(new char[] { c, c }));
+            break;
+          default:
+            nodes.add(new CharNode(new char[] { c, c }));
+        }
+      }
+      return new ConcatNode(nodes);
+    }
+  }
+}
@@ -1,7 +1,7 @@
 package io.github.douira.glsl_transformer.ast.query.index;
 
 import java.util.*;
-import java.util.function.Supplier;
+import java.util.function.*;
 import java.util.stream.Stream;
 
 import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
@@ -20,17 +20,65 @@ import io.github.douira.glsl_transformer.ast.query.Root;
 public class NodeIndex<S extends Set<ASTNode>> implements Index<ASTNode> {
   public final Map<Class<ASTNode>, Set<ASTNode>> index = new HashMap<>();
   public final Supplier<S> setFactory;
+  private final IntFunction<S> sizedSetFactory;
+  private Runnable queryPreparation;
 
   public NodeIndex(Supplier<S> setFactory) {
+    this(setFactory, null);
+  }
+
+  /**
+   * Creates a new node index with a set factory that can also create sets with
+   * enough capacity for a given number of nodes. The sized factory is used when
+   * many nodes of the same type are added at once.
+   * 
+   * @param setFactory      The factory for empty sets
+   * @param sizedSetFactory The factory for sets that will hold the given number
+   *                        of nodes or {@code null}
+   */
+  public NodeIndex(Supplier<S> setFactory, IntFunction<S> sizedSetFactory) {
     this.setFactory = setFactory;
+    this.sizedSetFactory = sizedSetFactory;
+  }
+
+  /**
+   * Sets an action that is run before each query. The root uses this to build
+   * the parts of the tree that were left unbuilt so that queries see all nodes.
+   * 
+   * @param queryPreparation The action to run before each query or
+   *                         {@code null}
+   */
+  public void setQueryPreparation(Runnable queryPreparation) {
+    this.queryPreparation = queryPreparation;
+  }
+
+  protected void prepareQuery() {
+    if (queryPreparation != null) {
+      queryPreparation.run();
+    }
   }
 
   public static NodeIndex<HashSet<ASTNode>> withUnordered() {
-    return new NodeIndex<HashSet<ASTNode>>(HashSet::new);
+    return new NodeIndex<HashSet<ASTNode>>(HashSet::new, size -> new HashSet<>(getCapacity(size)));
   }
 
   public static NodeIndex<LinkedHashSet<ASTNode>> withOrdered() {
-    return new NodeIndex<LinkedHashSet<ASTNode>>(LinkedHashSet::new);
+    return new NodeIndex<LinkedHashSet<ASTNode>>(LinkedHashSet::new, size -> new LinkedHashSet<>(getCapacity(size)));
+  }
+
+  /**
+   * Returns the initial capacity a hash set needs to hold the given number of
+   * elements without being resized.
+   * 
+   * @param size The number of elements
+   * @return The initial capacity
+   */
+  public static int getCapacity(int size) {
+    return size < 3 ? size + 1 : (int) (size / 0.75f + 1);
+  }
+
+  protected S createSet(int size) {
+    return sizedSetFactory == null ? setFactory.get() : sizedSetFactory.apply(size);
   }
 
   /**
@@ -49,6 +97,25 @@ public class NodeIndex<S extends Set<ASTNode>> implements Index<ASTNode> {
     set.add(node);
   }
 
+  /**
+   * Method used internally to add many nodes of the same class to the index at
+   * once. If there is no set for the class yet, it's created with enough
+   * capacity for all the nodes. This is only meant to be called by
+   * {@link Root}.
+   * 
+   * @param nodeClass The class of all the nodes
+   * @param nodes     The nodes to add
+   */
+  @SuppressWarnings("unchecked")
+  public void addAll(Class<? extends ASTNode> nodeClass, Collection<? extends ASTNode> nodes) {
+    var set = index.get(nodeClass);
+    if (set == null) {
+      set = createSet(nodes.size());
+      index.put((Class<ASTNode>) nodeClass, set);
+    }
+    set.addAll(nodes);
+  }
+
   /**
    * Method used internally to remove a node from the index. This is only meant to
    * be
@@ -72,6 +139,7 @@ public class NodeIndex<S extends Set<ASTNode>> implements Index<ASTNode> {
    */
   @SuppressWarnings("unchecked")
   public <T extends ASTNode> Set<T> get(Class<T> type) {
+    prepareQuery();
     var result = (Set<T>) index.get(type);
     return result == null ? Collections.emptySet() : result;
   }
@@ -85,6 +153,7 @@ public class NodeIndex<S extends Set<ASTNode>> implements Index<ASTNode> {
    */
   @SuppressWarnings("unchecked")
   public <T extends ASTNode> Stream<T> getStream(Class<T> type) {
+    prepareQuery();
     var result = (Set<T>) index.get(type);
     return result == null ? Stream.empty() : result.stream();
   }
@@ -98,6 +167,7 @@ public class NodeIndex<S extends Set<ASTNode>> implements Index<ASTNode> {
    */
   @SuppressWarnings("unchecked")
   public <T extends ASTNode> T getOne(Class<T> type) {
+    prepareQuery();
     var result = (Set<T>) index.get(type);
     if (result == null) {
       return null;
@@ -116,6 +186,7 @@ public class NodeIndex<S extends Set<ASTNode>> implements Index<ASTNode> {
    */
   @SuppressWarnings("unchecked")
   public <T extends ASTNode> T getUnique(Class<T> type) {
+    prepareQuery();
     var result = (Set<T>) index.get(type);
     var resultCount = result == null ? 0 : result.size();
     if (resultCount != 1) {
@@ -131,6 +202,7 @@ public class NodeIndex<S extends Set<ASTNode>> implements Index<ASTNode> {
    * @return true if the index contains any nodes of the given type
    */
   public boolean has(Class<? extends ASTNode> type) {
+    prepareQuery();
     var result = index.get(type);
     return result != null && !result.isEmpty();
   }
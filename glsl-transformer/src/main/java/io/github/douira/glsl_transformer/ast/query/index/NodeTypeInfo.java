@@ -0,0 +1,172 @@
+package io.github.douira.glsl_transformer.ast.query.index;
+
+import java.util.*;
+
+import io.github.douira.glsl_transformer.ast.node.basic.*;
+
+/**
+ * Assigns each node class a dense integer id and precomputes the ids of its
+ * superclasses and its subclasses. The ids are assigned when a class is first looked up and are
+ * the same for all indexes. A superclass is always assigned a smaller id than
+ * its subclasses. The generic node base classes {@link ASTNode},
+ * {@link InnerASTNode} and {@link ListASTNode} are not counted as superclasses
+ * of other classes, the same as in {@link SuperclassNodeIndex}.
+ */
+public final class NodeTypeInfo {
+  private static final ClassValue<NodeTypeInfo> infos = new ClassValue<>() {
+    @Override
+    protected NodeTypeInfo computeValue(Class<?> type) {
+      return register(type);
+    }
+  };
+  private static final Map<Class<?>, NodeTypeInfo> registered = new HashMap<>();
+  private static volatile NodeTypeInfo[] allInfos = new NodeTypeInfo[256];
+  private static int count;
+
+  public final Class<? extends ASTNode> type;
+  public final int id;
+
+  /**
+   * The ids of this class and all its superclasses, starting with this class.
+   */
+  public final int[] ancestorIds;
+
+  /**
+   * A bitmask of the ids in {@link #ancestorIds}.
+   */
+  private final long[] ancestorMask;
+
+  /**
+   * The ids of this class and all its registered subclasses in ascending order.
+   * It's replaced with a longer array when a subclass is registered.
+   */
+  private volatile int[] subtypeIds;
+
+  private NodeTypeInfo(Class<? extends ASTNode> type, int id, int[] ancestorIds) {
+    this.type = type;
+    this.id = id;
+    this.ancestorIds = ancestorIds;
+    subtypeIds = new int[] { id };
+    ancestorMask = new long[(id >>> 6) + 1];
+    for (var ancestorId : ancestorIds) {
+      ancestorMask[ancestorId >>> 6] |= 1L << ancestorId;
+    }
+  }
+
+  private static boolean isGenericBaseClass(Class<?> type) {
+    return type == ASTNode.class || type == InnerASTNode.class || type == ListASTNode.class;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static synchronized NodeTypeInfo register(Class<?> type) {
+    if (!ASTNode.class.isAssignableFrom(type)) {
+      throw new IllegalArgumentException("The class " + type + " is not a node class.");
+    }
+
+    // another thread may have registered it while this one was waiting
+    var info = registered.get(type);
+    if (info != null) {
+      return info;
+    }
+
+    // register the superclasses first so that they get smaller ids
+    var superclass = type.getSuperclass();
+    int[] ancestorIds;
+    if (isGenericBaseClass(type) || isGenericBaseClass(superclass)) {
+      ancestorIds = new int[1];
+    } else {
+      var parentIds = of((Class<? extends ASTNode>) superclass).ancestorIds;
+      ancestorIds = new int[parentIds.length + 1];
+      System.arraycopy(parentIds, 0, ancestorIds, 1, parentIds.length);
+    }
+    var id = count++;
+    ancestorIds[0] = id;
+    info = new NodeTypeInfo((Class<? extends ASTNode>) type, id, ancestorIds);
+    registered.put(type, info);
+
+    // the new id is larger than all others which keeps the subtype ids sorted
+    var infosById = allInfos;
+    for (var i = 1; i < ancestorIds.length; i++) {
+      var ancestor = infosById[ancestorIds[i]];
+      var subtypeIds = Arrays.copyOf(ancestor.subtypeIds, ancestor.subtypeIds.length + 1);
+      subtypeIds[subtypeIds.length - 1] = id;
+      ancestor.subtypeIds = subtypeIds;
+    }
+
+    if (id >= infosById.length) {
+      infosById = Arrays.copyOf(infosById, infosById.length * 2);
+    }
+    infosById[id] = info;
+    allInfos = infosById;
+    return info;
+  }
+
+  /**
+   * Returns the type info of the given node class and assigns it an id if it
+   * doesn't have one yet.
+   *
+   * @param type The node class
+   * @return The type info
+   */
+  public static NodeTypeInfo of(Class<? extends ASTNode> type) {
+    return infos.get(type);
+  }
+
+  /**
+   * Returns the id of the given node class.
+   *
+   * @param type The node class
+   * @return The id
+   */
+  public static int getId(Class<? extends ASTNode> type) {
+    return infos.get(type).id;
+  }
+
+  /**
+   * Returns the type info with the given id.
+   *
+   * @param id The id of a registered type
+   * @return The type info
+   */
+  public static NodeTypeInfo byId(int id) {
+    return allInfos[id];
+  }
+
+  /**
+   * Returns the number of node classes that have been assigned an id. All ids
+   * are smaller than this number.
+   *
+   * @return The number of registered classes
+   */
+  public static synchronized int getCount() {
+    return count;
+  }
+
+  /**
+   * Checks if this class is the class with the given id or one of its
+   * subclasses.
+   *
+   * @param ancestorId The id of the potential superclass
+   * @return If this class is a subclass of the class with the given id
+   */
+  public boolean isSubtypeOf(int ancestorId) {
+    var word = ancestorId >>> 6;
+    return word < ancestorMask.length && (ancestorMask[word] & (1L << ancestorId)) != 0;
+  }
+
+  /**
+   * Returns the ids of this class and all its subclasses that have been
+   * registered so far in ascending order. The first id is the id of this class.
+   * The returned array must not be modified.
+   *
+   * @return The ids of this class and its subclasses
+   */
+  public int[] getSubtypeIds() {
+    return subtypeIds;
+  }
+
+  @Override
+  public String toString() {
+    return "NodeTypeInfo [type=" + type.getSimpleName() + ", id=" + id + "]";
+  }
+}
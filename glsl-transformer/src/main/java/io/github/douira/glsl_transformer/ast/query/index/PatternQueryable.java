@@ -0,0 +1,20 @@
+package io.github.douira.glsl_transformer.ast.query.index;
+
+import java.util.Set;
+import java.util.stream.Stream;
+
+public interface PatternQueryable<S extends Set<E>, E> {
+  Stream<S> patternQuery(KeyPattern pattern);
+
+  default Stream<E> patternQueryFlat(KeyPattern pattern) {
+    return patternQuery(pattern).flatMap(Set::stream);
+  }
+
+  default Stream<E> regexQueryFlat(String regex) {
+    return patternQueryFlat(KeyPattern.regex(regex));
+  }
+
+  default Stream<E> globQueryFlat(String glob) {
+    return patternQueryFlat(KeyPattern.glob(glob));
+  }
+}
@@ -11,7 +11,8 @@ import java.util.stream.Stream;
  * the size of the key.
  */
 public class PermutermTrie<S extends Set<E>, E> extends DuplicatorTrie<S>
-    implements PrefixQueryable<S, E>, SuffixQueryable<S, E>, InfixQueryable<S, E>, InvertedInfixQueryable<S, E> {
+    implements PrefixQueryable<S, E>, SuffixQueryable<S, E>, InfixQueryable<S, E>, InvertedInfixQueryable<S, E>,
+    PatternQueryable<S, E> {
   public PermutermTrie() {
   }
 
@@ -84,4 +85,15 @@ public class PermutermTrie<S extends Set<E>, E> extends DuplicatorTrie<S>
   public Stream<S> invertedInfixQuery(String prefix, String suffix) {
     return distinctPrefixQuery(sanitizeKey(suffix) + marker + sanitizeKey(prefix));
   }
+
+  /**
+   * Returns a stream of all the elements with keys that match a given pattern.
+   * 
+   * @param pattern the pattern to match the keys against
+   * @return the elements with matching keys
+   */
+  @Override
+  public Stream<S> patternQuery(KeyPattern pattern) {
+    return rawPatternQuery(pattern, true);
+  }
 }
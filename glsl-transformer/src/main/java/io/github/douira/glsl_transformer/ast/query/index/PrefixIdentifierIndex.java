@@ -9,18 +9,20 @@ import org.apache.commons.collections4.trie.PatriciaTrie;
 import io.github.douira.glsl_transformer.ast.node.Identifier;
 
 public class PrefixIdentifierIndex<S extends Set<Identifier>, I extends PatriciaTrie<S>> extends IdentifierIndex<S, I>
-    implements PrefixQueryable<S, Identifier> {
+    implements PrefixQueryable<S, Identifier>, PatternQueryable<S, Identifier> {
 
   public PrefixIdentifierIndex(I index, Supplier<S> setFactory) {
     super(index, setFactory);
   }
 
   public SortedMap<String, S> prefixMap(String key) {
+    prepareQuery();
     return index.prefixMap(key);
   }
 
   @Override
   public Stream<S> prefixQuery(String key) {
+    prepareQuery();
     return index.prefixMap(key).values().stream();
   }
 
@@ -29,6 +31,29 @@ public class PrefixIdentifierIndex<S extends Set<Identifier>, I extends Patricia
     return prefixQuery(key).flatMap(Set::stream);
   }
 
+  /**
+   * Queries the identifiers with names that match the given pattern. If the
+   * underlying trie supports pattern queries itself, it's used to skip the
+   * variations of the keys it stores.
+   * 
+   * @param pattern the pattern to match the names against
+   * @return the sets of identifiers with matching names
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public Stream<S> patternQuery(KeyPattern pattern) {
+    prepareQuery();
+    if (index instanceof PatternQueryable<?, ?> queryable) {
+      return ((PatternQueryable<S, Identifier>) queryable).patternQuery(pattern);
+    }
+    return pattern.query(index);
+  }
+
+  @Override
+  public Stream<Identifier> patternQueryFlat(KeyPattern pattern) {
+    return patternQuery(pattern).flatMap(Set::stream);
+  }
+
   public static PrefixIdentifierIndex<HashSet<Identifier>, PrefixTrie<HashSet<Identifier>, Identifier>> withPrefix() {
     return new PrefixIdentifierIndex<>(new PrefixTrie<>(), HashSet::new);
   }
@@ -11,7 +11,8 @@ import java.util.stream.Stream;
  * number of bits used to index an entry is not quadratic in the size of the key
  * but linear.
  */
-public class PrefixSuffixTrie<S extends Set<E>, E> extends DuplicatorTrie<S> implements PrefixQueryable<S, E>, SuffixQueryable<S, E> {
+public class PrefixSuffixTrie<S extends Set<E>, E> extends DuplicatorTrie<S>
+    implements PrefixQueryable<S, E>, SuffixQueryable<S, E>, PatternQueryable<S, E> {
   private static final int removeThreshold = 200;
   private Map<String, String> reverses = new HashMap<>();
 
@@ -65,4 +66,15 @@ public class PrefixSuffixTrie<S extends Set<E>, E> extends DuplicatorTrie<S> imp
   public Stream<S> suffixQuery(String suffix) {
     return distinctPrefixQuery(marker + getReverse(sanitizeKey(suffix)));
   }
+
+  /**
+   * Returns a stream of all the elements with keys that match a given pattern.
+   * 
+   * @param pattern the pattern to match the keys against
+   * @return the elements with matching keys
+   */
+  @Override
+  public Stream<S> patternQuery(KeyPattern pattern) {
+    return rawPatternQuery(pattern, false);
+  }
 }
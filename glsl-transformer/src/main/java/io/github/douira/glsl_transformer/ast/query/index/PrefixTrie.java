@@ -5,7 +5,7 @@ import java.util.stream.Stream;
 
 import org.apache.commons.collections4.trie.PatriciaTrie;
 
-public class PrefixTrie<S extends Set<E>, E> extends PatriciaTrie<S> implements PrefixQueryable<S, E> {
+public class PrefixTrie<S extends Set<E>, E> extends PatriciaTrie<S> implements PrefixQueryable<S, E>, PatternQueryable<S, E> {
   public PrefixTrie() {
   }
 
@@ -23,4 +23,16 @@ public class PrefixTrie<S extends Set<E>, E> extends PatriciaTrie<S> implements
   public Stream<S> prefixQuery(String prefix) {
     return prefixMap(prefix).values().stream();
   }
+
+  /**
+   * Returns a stream of all the elements with keys that match a given pattern.
+   * Subtrees of keys with a prefix that can't match are skipped.
+   * 
+   * @param pattern the pattern to match the keys against
+   * @return the elements with matching keys
+   */
+  @Override
+  public Stream<S> patternQuery(KeyPattern pattern) {
+    return pattern.query(this);
+  }
 }
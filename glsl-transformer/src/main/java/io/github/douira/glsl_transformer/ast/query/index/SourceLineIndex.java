@@ -0,0 +1,386 @@
+package io.github.douira.glsl_transformer.ast.query.index;
+
+import java.util.*;
+
+import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
+import io.github.douira.glsl_transformer.ast.node.external_declaration.ExternalDeclaration;
+
+/**
+ * The source line index finds nodes by the source lines they were parsed from.
+ * This is useful for mapping a line number, like the one in a compile error
+ * reported by a driver, back to the nodes of the tree. Synthetic nodes that
+ * weren't parsed from source code are not indexed.
+ *
+ * The nodes are stored in an interval tree that is a treap ordered by the start
+ * line and augmented with the largest end line in each subtree. Adding and
+ * removing a node takes logarithmic time and finding the nodes that overlap a
+ * range of lines takes logarithmic time plus the number of nodes found. The
+ * external declarations are additionally stored in a separate tree so that they
+ * can be found without visiting all the nodes inside them.
+ *
+ * Each entry caches the nesting depth of its node. Since nodes are indexed
+ * before their ancestors are attached and can be moved without being indexed
+ * again, the cached depths are only valid until the parent of any node
+ * changes. They're then recomputed when needed from the closest ancestor that
+ * still has a valid depth.
+ */
+public class SourceLineIndex implements Index<ASTNode> {
+  private final Map<ASTNode, Entry> entries = new IdentityHashMap<>();
+  private final IntervalTree allNodes = new IntervalTree();
+  private final IntervalTree externalDeclarations = new IntervalTree();
+  private Runnable queryPreparation;
+  private int nextSequence;
+  private int structureVersion;
+
+  private static class Entry {
+    final ASTNode node;
+    final int start;
+    final int end;
+    final int sequence;
+    final int priority;
+    int maxEnd;
+    Entry left;
+    Entry right;
+
+    /**
+     * The nesting depth of the node, valid if the depth version is the current
+     * structure version of the index.
+     */
+    int depth;
+    int depthVersion = -1;
+
+    /**
+     * The entry of the same node in the tree of external declarations.
+     */
+    Entry externalEntry;
+
+    Entry(ASTNode node, int start, int end, int sequence) {
+      this.node = node;
+      this.start = start;
+      this.end = end;
+      this.sequence = sequence;
+      this.maxEnd = end;
+
+      // scramble the sequence number to get a well distributed priority
+      var hash = sequence * 0x9E3779B9;
+      this.priority = hash ^ (hash >>> 16);
+    }
+
+    int compareTo(Entry other) {
+      var result = Integer.compare(start, other.start);
+      return result != 0 ? result : Integer.compare(sequence, other.sequence);
+    }
+
+    void update() {
+      var max = end;
+      if (left != null && left.maxEnd > max) {
+        max = left.maxEnd;
+      }
+      if (right != null && right.maxEnd > max) {
+        max = right.maxEnd;
+      }
+      maxEnd = max;
+    }
+  }
+
+  private static class IntervalTree {
+    Entry root;
+
+    void insert(Entry entry) {
+      root = insert(root, entry);
+    }
+
+    void remove(Entry entry) {
+      root = remove(root, entry);
+    }
+
+    private static Entry insert(Entry tree, Entry entry) {
+      if (tree == null) {
+        return entry;
+      }
+      if (entry.compareTo(tree) < 0) {
+        tree.left = insert(tree.left, entry);
+        if (tree.left.priority > tree.priority) {
+          tree = rotateRight(tree);
+        }
+      } else {
+        tree.right = insert(tree.right, entry);
+        if (tree.right.priority > tree.priority) {
+          tree = rotateLeft(tree);
+        }
+      }
+      tree.update();
+      return tree;
+    }
+
+    private static Entry remove(Entry tree, Entry entry) {
+      if (tree == null) {
+        return null;
+      }
+      if (tree == entry) {
+        return merge(tree.left, tree.right);
+      }
+      if (entry.compareTo(tree) < 0) {
+        tree.left = remove(tree.left, entry);
+      } else {
+        tree.right = remove(tree.right, entry);
+      }
+      tree.update();
+      return tree;
+    }
+
+    private static Entry merge(Entry left, Entry right) {
+      if (left == null) {
+        return right;
+      }
+      if (right == null) {
+        return left;
+      }
+      if (left.priority > right.priority) {
+        left.right = merge(left.right, right);
+        left.update();
+        return left;
+      }
+      right.left = merge(left, right.left);
+      right.update();
+      return right;
+    }
+
+    private static Entry rotateRight(Entry tree) {
+      var newRoot = tree.left;
+      tree.left = newRoot.right;
+      newRoot.right = tree;
+      tree.update();
+      newRoot.update();
+      return newRoot;
+    }
+
+    private static Entry rotateLeft(Entry tree) {
+      var newRoot = tree.right;
+      tree.right = newRoot.left;
+      newRoot.left = tree;
+      tree.update();
+      newRoot.update();
+      return newRoot;
+    }
+
+    /**
+     * Collects the nodes of all entries that overlap the given range of lines in
+     * the order of their start lines.
+     */
+    <T> void collect(Entry tree, int startLine, int endLine, List<T> result, Class<T> type) {
+      if (tree == null || tree.maxEnd < startLine) {
+        return;
+      }
+      collect(tree.left, startLine, endLine, result, type);
+      if (tree.start > endLine) {
+        return;
+      }
+      if (tree.end >= startLine && type.isInstance(tree.node)) {
+        result.add(type.cast(tree.node));
+      }
+      collect(tree.right, startLine, endLine, result, type);
+    }
+  }
+
+  /**
+   * Sets an action that is run before each query.
+   *
+   * @param queryPreparation The action to run before each query or
+   *                         {@code null}
+   * @see NodeIndex#setQueryPreparation(Runnable)
+   */
+  public void setQueryPreparation(Runnable queryPreparation) {
+    this.queryPreparation = queryPreparation;
+  }
+
+  protected void prepareQuery() {
+    if (queryPreparation != null) {
+      queryPreparation.run();
+    }
+  }
+
+  /**
+   * Method used internally to notify the index that the parent of a node has
+   * changed. This invalidates the cached nesting depths. This is only meant to be
+   * called by {@link io.github.douira.glsl_transformer.ast.query.Root}.
+   */
+  public void structureChanged() {
+    structureVersion++;
+  }
+
+  /**
+   * Method used internally to add a node to the index. This is only meant to be
+   * called by {@link io.github.douira.glsl_transformer.ast.query.Root}.
+   */
+  @Override
+  public void add(ASTNode node) {
+    var sourceLines = node.getSourceLines();
+    if (sourceLines == ASTNode.SYNTHETIC_SOURCE || entries.containsKey(node)) {
+      return;
+    }
+    var entry = new Entry(node, sourceLines.a, sourceLines.b, nextSequence++);
+    entries.put(node, entry);
+    allNodes.insert(entry);
+    if (node instanceof ExternalDeclaration) {
+      entry.externalEntry = new Entry(node, entry.start, entry.end, entry.sequence);
+      externalDeclarations.insert(entry.externalEntry);
+    }
+  }
+
+  /**
+   * Method used internally to remove a node from the index. This is only meant to
+   * be called by {@link io.github.douira.glsl_transformer.ast.query.Root}.
+   */
+  @Override
+  public void remove(ASTNode node) {
+    var entry = entries.remove(node);
+    if (entry == null) {
+      return;
+    }
+    allNodes.remove(entry);
+    if (entry.externalEntry != null) {
+      externalDeclarations.remove(entry.externalEntry);
+    }
+  }
+
+  /**
+   * Updates the entry of a node after its source lines have changed.
+   *
+   * @param node The node with changed source lines
+   */
+  public void update(ASTNode node) {
+    if (entries.containsKey(node)) {
+      remove(node);
+      add(node);
+    }
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Removes all nodes from this index.
+   */
+  public void clear() {
+    entries.clear();
+    allNodes.root = null;
+    externalDeclarations.root = null;
+  }
+
+  /**
+   * Returns the nodes whose source lines overlap the given range of lines. The
+   * nodes are ordered by their start line.
+   *
+   * @param startLine The first line of the range
+   * @param endLine   The last line of the range
+   * @return The overlapping nodes
+   */
+  public List<ASTNode> getOverlapping(int startLine, int endLine) {
+    return getOverlapping(startLine, endLine, ASTNode.class);
+  }
+
+  /**
+   * Returns the nodes of the given type whose source lines overlap the given
+   * range of lines. The nodes are ordered by their start line.
+   *
+   * @param <T>       The type of the nodes
+   * @param startLine The first line of the range
+   * @param endLine   The last line of the range
+   * @param type      The type of the nodes
+   * @return The overlapping nodes of the given type
+   */
+  public <T extends ASTNode> List<T> getOverlapping(int startLine, int endLine, Class<T> type) {
+    prepareQuery();
+    var result = new ArrayList<T>();
+    var tree = ExternalDeclaration.class.isAssignableFrom(type) ? externalDeclarations : allNodes;
+    tree.collect(tree.root, startLine, endLine, result, type);
+    return result;
+  }
+
+  /**
+   * Returns the external declarations whose source lines overlap the given range
+   * of lines. The declarations are ordered by their start line.
+   *
+   * @param startLine The first line of the range
+   * @param endLine   The last line of the range
+   * @return The overlapping external declarations
+   */
+  public List<ExternalDeclaration> getExternalDeclarations(int startLine, int endLine) {
+    return getOverlapping(startLine, endLine, ExternalDeclaration.class);
+  }
+
+  /**
+   * Returns the nodes whose source lines include the given line.
+   *
+   * @param line The line
+   * @return The nodes covering the line ordered by their start line
+   */
+  public List<ASTNode> getCovering(int line) {
+    return getOverlapping(line, line);
+  }
+
+  /**
+   * Returns the innermost node whose source lines include the given line. This
+   * is the node covering the fewest lines. If there are multiple such nodes, the
+   * one that is nested the deepest is returned.
+   *
+   * @param line The line
+   * @return The innermost node covering the line or {@code null} if there is
+   *         none
+   */
+  public ASTNode getInnermost(int line) {
+    ASTNode result = null;
+    var resultSpan = 0;
+    var resultDepth = -1;
+    for (var node : getCovering(line)) {
+      var span = node.getEndLine() - node.getStartLine();
+      if (result != null && span > resultSpan) {
+        continue;
+      }
+      var depth = getDepth(node);
+      if (result == null || span < resultSpan || depth > resultDepth) {
+        result = node;
+        resultSpan = span;
+        resultDepth = depth;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the nesting depth of a node using the cached depths. Only the
+   * ancestors up to the closest one with a valid cached depth are visited and
+   * the depths of the indexed nodes on the way are cached.
+   */
+  private int getDepth(ASTNode node) {
+    // find the closest ancestor with a known depth or the topmost ancestor
+    var distance = 0;
+    var depth = -1;
+    ASTNode known = null;
+    for (var current = node; current != null; current = current.getParent()) {
+      var entry = entries.get(current);
+      if (entry != null && entry.depthVersion == structureVersion) {
+        depth = entry.depth + distance;
+        known = current;
+        break;
+      }
+      distance++;
+    }
+    if (known == null) {
+      depth = distance - 1;
+    }
+
+    var currentDepth = depth;
+    for (var current = node; current != known; current = current.getParent()) {
+      var entry = entries.get(current);
+      if (entry != null) {
+        entry.depth = currentDepth;
+        entry.depthVersion = structureVersion;
+      }
+      currentDepth--;
+    }
+    return depth;
+  }
+}
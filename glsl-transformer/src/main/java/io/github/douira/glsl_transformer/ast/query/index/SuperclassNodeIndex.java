@@ -15,12 +15,17 @@ public class SuperclassNodeIndex<S extends Set<ASTNode>> extends NodeIndex<S> {
     super(setFactory);
   }
 
+  public SuperclassNodeIndex(Supplier<S> setFactory, IntFunction<S> sizedSetFactory) {
+    super(setFactory, sizedSetFactory);
+  }
+
   public static SuperclassNodeIndex<HashSet<ASTNode>> withUnordered() {
-    return new SuperclassNodeIndex<HashSet<ASTNode>>(HashSet::new);
+    return new SuperclassNodeIndex<HashSet<ASTNode>>(HashSet::new, size -> new HashSet<>(getCapacity(size)));
   }
 
   public static SuperclassNodeIndex<LinkedHashSet<ASTNode>> withOrdered() {
-    return new SuperclassNodeIndex<LinkedHashSet<ASTNode>>(LinkedHashSet::new);
+    return new SuperclassNodeIndex<LinkedHashSet<ASTNode>>(
+        LinkedHashSet::new, size -> new LinkedHashSet<>(getCapacity(size)));
   }
 
   @SuppressWarnings("unchecked")
@@ -50,6 +55,18 @@ public class SuperclassNodeIndex<S extends Set<ASTNode>> extends NodeIndex<S> {
     });
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public void addAll(Class<? extends ASTNode> nodeClass, Collection<? extends ASTNode> nodes) {
+    while (nodeClass != null
+        && nodeClass != InnerASTNode.class
+        && nodeClass != ASTNode.class
+        && nodeClass != ListASTNode.class) {
+      super.addAll(nodeClass, nodes);
+      nodeClass = (Class<? extends ASTNode>) nodeClass.getSuperclass();
+    }
+  }
+
   @Override
   public void remove(ASTNode node) {
     iterateClasses(node, (nodeClass, toAdd) -> {
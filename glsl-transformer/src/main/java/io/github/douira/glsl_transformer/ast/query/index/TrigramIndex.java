@@ -0,0 +1,316 @@
+package io.github.douira.glsl_transformer.ast.query.index;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * This trigram index supports the same prefix, suffix, infix and inverted infix
+ * queries as the {@link PermutermTrie} but uses much less memory for long keys.
+ * Instead of inserting all rotations of each key, the key is stored once and
+ * its id is added to a posting list for each trigram (sequence of three
+ * characters) of the key. The key is padded with a boundary marker at the start
+ * and end so that prefixes and suffixes have their own trigrams. This makes the
+ * memory used per key linear in its length instead of quadratic.
+ *
+ * A query looks up the posting lists of the trigrams of the query string, takes
+ * the shortest one and checks each of its keys against the query. Queries that
+ * are too short to contain a trigram check all keys. Removing a key takes time
+ * linear in the length of the posting lists of its trigrams. The results of a
+ * query are collected when it's made, so the index can be changed while the
+ * returned stream is consumed.
+ */
+public class TrigramIndex<S extends Set<E>, E> extends AbstractMap<String, S>
+    implements PrefixQueryable<S, E>, SuffixQueryable<S, E>, InfixQueryable<S, E>, InvertedInfixQueryable<S, E> {
+  private static final char marker = '\0';
+
+  private final Map<String, Integer> ids = new HashMap<>();
+  private final Map<Long, Postings> postings = new HashMap<>();
+  private String[] keys = new String[16];
+  private Object[] values = new Object[16];
+  private int[] freeIds = new int[8];
+  private int freeIdCount;
+  private int nextId;
+
+  /**
+   * A list of key ids in no particular order.
+   */
+  private static class Postings {
+    int[] ids = new int[2];
+    int size;
+
+    void add(int id) {
+      // the trigrams of a key are added together so if a key has a repeated
+      // trigram, its id is still the last one in the list
+      if (size > 0 && ids[size - 1] == id) {
+        return;
+      }
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      ids[size++] = id;
+    }
+
+    void remove(int id) {
+      for (var i = 0; i < size; i++) {
+        if (ids[i] == id) {
+          ids[i] = ids[--size];
+          return;
+        }
+      }
+    }
+  }
+
+  private static long getTrigram(char a, char b, char c) {
+    return (long) a << 32 | (long) b << 16 | c;
+  }
+
+  private static String pad(String key) {
+    return marker + key + marker;
+  }
+
+  private static String sanitizeKey(String key) {
+    if (key.indexOf(marker) >= 0) {
+      throw new IllegalArgumentException("Key cannot contain marker");
+    }
+    return key;
+  }
+
+  private static void forEachTrigram(String string, LongConsumer consumer) {
+    for (var i = 0; i + 2 < string.length(); i++) {
+      consumer.accept(getTrigram(string.charAt(i), string.charAt(i + 1), string.charAt(i + 2)));
+    }
+  }
+
+  private int allocateId() {
+    if (freeIdCount > 0) {
+      return freeIds[--freeIdCount];
+    }
+    var id = nextId++;
+    if (id == keys.length) {
+      keys = Arrays.copyOf(keys, id * 2);
+      values = Arrays.copyOf(values, id * 2);
+    }
+    return id;
+  }
+
+  private void releaseId(int id) {
+    keys[id] = null;
+    values[id] = null;
+    if (freeIdCount == freeIds.length) {
+      freeIds = Arrays.copyOf(freeIds, freeIdCount * 2);
+    }
+    freeIds[freeIdCount++] = id;
+  }
+
+  @SuppressWarnings("unchecked")
+  private S getValue(int id) {
+    return (S) values[id];
+  }
+
+  /**
+   * Returns the total number of entries in all posting lists. Each key has at
+   * most one entry per trigram of its padded form, so this is at most the total
+   * length of all keys.
+   *
+   * @return The number of posting list entries
+   */
+  public int getPostingCount() {
+    var count = 0;
+    for (var list : postings.values()) {
+      count += list.size;
+    }
+    return count;
+  }
+
+  @Override
+  public int size() {
+    return ids.size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return ids.containsKey(key);
+  }
+
+  @Override
+  public S get(Object key) {
+    var id = ids.get(key);
+    return id == null ? null : getValue(id);
+  }
+
+  @Override
+  public S put(String key, S value) {
+    var id = ids.get(key);
+    if (id != null) {
+      var previous = getValue(id);
+      values[id] = value;
+      return previous;
+    }
+
+    var newId = allocateId();
+    keys[newId] = sanitizeKey(key);
+    values[newId] = value;
+    ids.put(key, newId);
+    forEachTrigram(pad(key), trigram -> postings.computeIfAbsent(trigram, t -> new Postings()).add(newId));
+    return null;
+  }
+
+  @Override
+  public S remove(Object key) {
+    var id = ids.remove(key);
+    if (id == null) {
+      return null;
+    }
+    var previous = getValue(id);
+    forEachTrigram(pad((String) key), trigram -> {
+      // repeated trigrams are already removed
+      var list = postings.get(trigram);
+      if (list == null) {
+        return;
+      }
+      list.remove(id);
+      if (list.size == 0) {
+        postings.remove(trigram);
+      }
+    });
+    releaseId(id);
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    ids.clear();
+    postings.clear();
+    Arrays.fill(keys, null);
+    Arrays.fill(values, null);
+    freeIdCount = 0;
+    nextId = 0;
+  }
+
+  @Override
+  public Set<Entry<String, S>> entrySet() {
+    return new AbstractSet<Entry<String, S>>() {
+      @Override
+      public Iterator<Entry<String, S>> iterator() {
+        var idIterator = ids.values().iterator();
+        return new Iterator<Entry<String, S>>() {
+          @Override
+          public boolean hasNext() {
+            return idIterator.hasNext();
+          }
+
+          @Override
+          public Entry<String, S> next() {
+            int id = idIterator.next();
+            return new SimpleImmutableEntry<>(keys[id], getValue(id));
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return ids.size();
+      }
+    };
+  }
+
+  /**
+   * Finds the shortest posting list of the trigrams of the given strings.
+   *
+   * @return The shortest posting list, {@code null} if none of the strings
+   *         contain a trigram or an empty posting list if one of the trigrams
+   *         isn't contained in any key
+   */
+  private Postings getShortestPostings(String... strings) {
+    Postings shortest = null;
+    for (var string : strings) {
+      var length = string.length();
+      for (var i = 0; i + 2 < length; i++) {
+        var list = postings.get(getTrigram(string.charAt(i), string.charAt(i + 1), string.charAt(i + 2)));
+        if (list == null) {
+          return new Postings();
+        }
+        if (shortest == null || list.size < shortest.size) {
+          shortest = list;
+        }
+      }
+    }
+    return shortest;
+  }
+
+  private Stream<S> query(Predicate<String> filter, String... strings) {
+    // the matches are collected before the stream is returned since the posting
+    // lists change if keys are added or removed while the stream is consumed
+    var matches = new ArrayList<S>();
+    var shortest = getShortestPostings(strings);
+    if (shortest == null) {
+      for (var id : ids.values()) {
+        if (filter.test(keys[id])) {
+          matches.add(getValue(id));
+        }
+      }
+    } else {
+      for (var i = 0; i < shortest.size; i++) {
+        var id = shortest.ids[i];
+        if (filter.test(keys[id])) {
+          matches.add(getValue(id));
+        }
+      }
+    }
+    return matches.stream();
+  }
+
+  /**
+   * Returns a stream of all the elements that have a given prefix.
+   *
+   * @param prefix the prefix to search for
+   * @return the elements that have the prefix
+   */
+  @Override
+  public Stream<S> prefixQuery(String prefix) {
+    sanitizeKey(prefix);
+    return query(key -> key.startsWith(prefix), marker + prefix);
+  }
+
+  /**
+   * Returns a stream of all the elements that have a given suffix.
+   *
+   * @param suffix the suffix to search for
+   * @return the elements that have the suffix
+   */
+  @Override
+  public Stream<S> suffixQuery(String suffix) {
+    sanitizeKey(suffix);
+    return query(key -> key.endsWith(suffix), suffix + marker);
+  }
+
+  /**
+   * Returns a stream of all the elements that have a given infix (substring).
+   *
+   * @param infix the infix to search for
+   * @return the elements that have the infix
+   */
+  @Override
+  public Stream<S> infixQuery(String infix) {
+    sanitizeKey(infix);
+    return query(key -> key.contains(infix), infix);
+  }
+
+  /**
+   * Returns a stream of all the elements that have a given prefix and suffix
+   * that don't overlap.
+   *
+   * @param prefix the prefix to search require
+   * @param suffix the suffix to search require
+   * @return the elements that have the prefix and suffix
+   */
+  @Override
+  public Stream<S> invertedInfixQuery(String prefix, String suffix) {
+    sanitizeKey(prefix);
+    sanitizeKey(suffix);
+    var minLength = prefix.length() + suffix.length();
+    return query(key -> key.length() >= minLength && key.startsWith(prefix) && key.endsWith(suffix),
+        marker + prefix, suffix + marker);
+  }
+}
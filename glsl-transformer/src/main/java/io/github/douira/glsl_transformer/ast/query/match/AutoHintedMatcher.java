@@ -10,9 +10,10 @@ import io.github.douira.glsl_transformer.tree.ExtendedContext;
 
 /**
  * The auto-hinted matcher is a matcher that automatically determines the hint
- * by finding the longest identifier in the pattern. If that hint is not the
- * best (most distinguishing) hint, then the manually hinted
- * {@link HintedMatcher} should be used instead.
+ * by finding the longest identifier in the pattern. When matches are processed
+ * with a {@link io.github.douira.glsl_transformer.ast.query.Root}, the
+ * identifier of the pattern that is the rarest in the tree is used instead
+ * (see {@link #selectHint(io.github.douira.glsl_transformer.ast.query.index.IdentifierIndex)}).
  */
 public class AutoHintedMatcher<T extends ASTNode> extends HintedMatcher<T> {
   public <RuleType extends ExtendedContext> AutoHintedMatcher(String input, Function<GLSLParser, RuleType> parseMethod,
@@ -41,7 +42,7 @@ public class AutoHintedMatcher<T extends ASTNode> extends HintedMatcher<T> {
     super(input, patternParser, null);
   }
 
-  private void determineHint() {
+  private synchronized void determineHint() {
     preparePatternItems();
     String longestHint = null;
     var hintLength = 0;
@@ -1,9 +1,12 @@
 package io.github.douira.glsl_transformer.ast.query.match;
 
+import java.util.*;
 import java.util.function.*;
 
 import io.github.douira.glsl_transformer.GLSLParser;
+import io.github.douira.glsl_transformer.ast.node.Identifier;
 import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
+import io.github.douira.glsl_transformer.ast.query.index.IdentifierIndex;
 import io.github.douira.glsl_transformer.ast.transform.ASTBuilder;
 import io.github.douira.glsl_transformer.tree.ExtendedContext;
 
@@ -11,10 +14,22 @@ import io.github.douira.glsl_transformer.tree.ExtendedContext;
  * A hinted matcher contains an additional string that can be used to find
  * identifiers whose matching ancestor might match the pattern. This makes
  * working with matchers much less verbose.
+ *
+ * Instead of always using the given hint, the hint can be selected when the
+ * tree is queried with {@link #selectHint(IdentifierIndex)}. Each identifier of
+ * the pattern that every match has to contain is a possible hint. The one with
+ * the fewest identifiers in the index yields the fewest candidates.
  */
 public class HintedMatcher<T extends ASTNode> extends Matcher<T> {
   protected String hint;
 
+  /**
+   * The pattern items the identifier lists were determined from.
+   */
+  private List<Object> hintPatternItems;
+  private List<String> requiredIdentifiers;
+  private List<String> hintCandidates;
+
   public <RuleType extends ExtendedContext> HintedMatcher(String input, Function<GLSLParser, RuleType> parseMethod,
       BiFunction<ASTBuilder, RuleType, T> visitMethod, String wildcardPrefix, String hint) {
     super(input, parseMethod, visitMethod, wildcardPrefix);
@@ -50,4 +65,91 @@ public class HintedMatcher<T extends ASTNode> extends Matcher<T> {
   public String getHint() {
     return hint;
   }
+
+  private synchronized void prepareHintCandidates() {
+    preparePatternItems();
+    if (hintPatternItems == patternItems) {
+      return;
+    }
+    var required = new LinkedHashSet<String>();
+    var candidates = new LinkedHashSet<String>();
+    var patternClass = getPatternClass();
+    for (var item : patternItems) {
+      if (item instanceof Identifier id) {
+        var name = id.getName();
+        if (wildcardPrefix == null || !name.startsWith(wildcardPrefix)) {
+          required.add(name);
+
+          // the ancestor of an identifier inside a nested node of the pattern
+          // class is not the root of the match
+          if (id.getAncestor(patternClass) == pattern) {
+            candidates.add(name);
+          }
+        }
+      }
+    }
+
+    // a given hint that is not part of the pattern restricts the matches
+    if (hint != null && !required.contains(hint)) {
+      candidates.clear();
+      candidates.add(hint);
+    }
+    requiredIdentifiers = new ArrayList<>(required);
+    hintCandidates = new ArrayList<>(candidates);
+    hintPatternItems = patternItems;
+  }
+
+  /**
+   * Returns the names of the identifiers of the pattern that are not wildcards.
+   * Every match contains identifiers with all of these names.
+   *
+   * @return The names of the required identifiers
+   */
+  public List<String> getRequiredIdentifiers() {
+    prepareHintCandidates();
+    return requiredIdentifiers;
+  }
+
+  /**
+   * Returns the names that can be used as the hint. The nearest ancestor of the
+   * pattern class of an identifier with one of these names is the root of the
+   * match.
+   *
+   * @return The names that can be used as the hint
+   */
+  public List<String> getHintCandidates() {
+    prepareHintCandidates();
+    return hintCandidates;
+  }
+
+  /**
+   * Selects the hint with the fewest identifiers in the given index. If an
+   * identifier that every match has to contain is missing from the index, there
+   * can't be any matches and no hint is returned.
+   *
+   * @param index The index to count the identifiers in
+   * @return The hint that yields the fewest candidates or {@code null} if
+   *         there can't be any matches
+   */
+  public String selectHint(IdentifierIndex<?, ?> index) {
+    prepareHintCandidates();
+    for (var name : requiredIdentifiers) {
+      if (!index.has(name)) {
+        return null;
+      }
+    }
+    if (hintCandidates.isEmpty()) {
+      return getHint();
+    }
+    String selected = null;
+    var selectedCount = Integer.MAX_VALUE;
+    for (var name : hintCandidates) {
+      var count = index.count(name);
+      if (count < selectedCount) {
+        selected = name;
+        selectedCount = count;
+      }
+    }
+    return selectedCount == 0 ? null : selected;
+  }
 }
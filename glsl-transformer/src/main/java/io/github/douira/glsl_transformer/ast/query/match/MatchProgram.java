@@ -0,0 +1,295 @@
+package io.github.douira.glsl_transformer.ast.query.match;
+
+import java.util.*;
+
+import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
+import io.github.douira.glsl_transformer.ast.query.match.Matcher.NodeWildcard;
+import io.github.douira.glsl_transformer.ast.traversal.ASTVoidVisitor;
+
+/**
+ * The match program is the compiled form of the pattern of a {@link Matcher}.
+ * Each item of the flattened pattern becomes an instruction that either
+ * expects a node of an exact class, expects a data item to be equal to a value
+ * or captures a node or data item with a wildcard. Which data items are
+ * wildcards, which node wildcards match lists and where captures are stored is
+ * decided once when the program is compiled instead of each time a node is
+ * matched.
+ *
+ * The candidate tree is traversed with one visit per node since the order of
+ * the children of each node is only defined by
+ * {@link io.github.douira.glsl_transformer.ast.traversal.ASTVisitor}. The
+ * traversal is aborted on the first mismatch instead of visiting the rest of
+ * the tree. Captures are written to an array of slots and only copied to the
+ * match maps if the whole tree matches.
+ *
+ * The program itself is immutable and can be shared between threads. The state
+ * of a match is kept in a {@link Runner} that is cheap to create for each match.
+ */
+class MatchProgram {
+  static final byte NODE = 0;
+  static final byte DATA = 1;
+  static final byte DATA_WILDCARD = 2;
+  static final byte NODE_WILDCARD = 3;
+  static final byte LIST_WILDCARD = 4;
+
+  private final int size;
+  private final byte[] kinds;
+
+  /**
+   * The expected class for node instructions, the expected value for data
+   * instructions and the wildcard for node and list wildcard instructions.
+   */
+  private final Object[] operands;
+
+  /**
+   * The capture slot of each wildcard instruction.
+   */
+  private final int[] slots;
+  private final String[] slotNames;
+  private final boolean[] slotIsNode;
+
+  private MatchProgram(
+      byte[] kinds,
+      Object[] operands,
+      int[] slots,
+      String[] slotNames,
+      boolean[] slotIsNode) {
+    this.size = kinds.length;
+    this.kinds = kinds;
+    this.operands = operands;
+    this.slots = slots;
+    this.slotNames = slotNames;
+    this.slotIsNode = slotIsNode;
+  }
+
+  /**
+   * Compiles the flattened items of a pattern into a match program.
+   *
+   * @param patternItems   The nodes, data items and node wildcards of the
+   *                       pattern in visiting order
+   * @param wildcardPrefix The prefix of data wildcards or {@code null}
+   * @return The compiled program
+   */
+  static MatchProgram compile(List<Object> patternItems, String wildcardPrefix) {
+    var size = patternItems.size();
+    var kinds = new byte[size];
+    var operands = new Object[size];
+    var slots = new int[size];
+    var slotNames = new ArrayList<String>();
+    var slotIsNode = new ArrayList<Boolean>();
+    var dataSlots = new HashMap<String, Integer>();
+    var nodeSlots = new HashMap<String, Integer>();
+
+    for (var i = 0; i < size; i++) {
+      var item = patternItems.get(i);
+      slots[i] = -1;
+      if (item instanceof NodeWildcard wildcard) {
+        kinds[i] = wildcard.name.endsWith("*") ? LIST_WILDCARD : NODE_WILDCARD;
+        operands[i] = wildcard;
+        slots[i] = nodeSlots.computeIfAbsent(wildcard.name, name -> {
+          slotNames.add(name);
+          slotIsNode.add(true);
+          return slotNames.size() - 1;
+        });
+      } else if (item instanceof ASTNode node) {
+        kinds[i] = NODE;
+        operands[i] = node.getClass();
+      } else if (wildcardPrefix != null && item instanceof String str && str.startsWith(wildcardPrefix)) {
+        kinds[i] = DATA_WILDCARD;
+        slots[i] = dataSlots.computeIfAbsent(str.substring(wildcardPrefix.length()), name -> {
+          slotNames.add(name);
+          slotIsNode.add(false);
+          return slotNames.size() - 1;
+        });
+      } else {
+        kinds[i] = DATA;
+        operands[i] = item;
+      }
+    }
+
+    var slotIsNodeArray = new boolean[slotIsNode.size()];
+    for (var i = 0; i < slotIsNodeArray.length; i++) {
+      slotIsNodeArray[i] = slotIsNode.get(i);
+    }
+    return new MatchProgram(kinds, operands, slots, slotNames.toArray(new String[0]), slotIsNodeArray);
+  }
+
+  /**
+   * Returns the number of instructions at the start of the program that check
+   * for an exact node class or data value. Each candidate that matches the
+   * program has to produce exactly these keys as its first items.
+   *
+   * @return The length of the prefix of exact instructions
+   */
+  int getExactPrefixLength() {
+    for (var i = 0; i < size; i++) {
+      if (kinds[i] != NODE && kinds[i] != DATA) {
+        return i;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the key of an exact instruction. This is the class of the expected
+   * node or the expected data value.
+   *
+   * @param index The index of the instruction
+   * @return The key of the instruction
+   */
+  Object getKey(int index) {
+    return operands[index];
+  }
+
+  /**
+   * Creates a runner that executes this program. A runner is not thread-safe
+   * but can be reused for many matches. The arrays for captures are only
+   * allocated if the runner is used to collect them.
+   *
+   * @return A new runner
+   */
+  Runner createRunner() {
+    return new Runner();
+  }
+
+  /**
+   * Thrown to abort the traversal of the candidate tree on the first mismatch.
+   * There is only one instance of it and it has no stack trace since it's
+   * always caught by the runner.
+   */
+  private static class Mismatch extends RuntimeException {
+    static final Mismatch instance = new Mismatch();
+
+    private Mismatch() {
+      super(null, null, false, false);
+    }
+  }
+
+  class Runner extends ASTVoidVisitor {
+    private Object[] captures;
+    private boolean[] captured;
+    private boolean collect;
+    private int pc;
+
+    /**
+     * The index of the list wildcard instruction that is currently matching
+     * repeated nodes or -1 if there is none.
+     */
+    private int activeList;
+
+    /**
+     * Runs the program on the given tree.
+     *
+     * @param tree    The tree to match
+     * @param collect If the matched wildcards should be captured
+     * @return If the tree matches
+     */
+    boolean run(ASTNode tree, boolean collect) {
+      // most candidates already fail on the class of the root node
+      if (size == 0 || kinds[0] == NODE && operands[0] != tree.getClass()) {
+        return false;
+      }
+      this.collect = collect;
+      if (collect) {
+        if (captures == null) {
+          captures = new Object[slotNames.length];
+          captured = new boolean[slotNames.length];
+        } else {
+          Arrays.fill(captures, null);
+          Arrays.fill(captured, false);
+        }
+      }
+      pc = 0;
+      activeList = -1;
+      try {
+        startVisit(tree);
+        return true;
+      } catch (Mismatch e) {
+        return false;
+      }
+    }
+
+    /**
+     * Copies the captures of the last successful run into the given maps.
+     *
+     * @param dataMatches The map to put the data captures into
+     * @param nodeMatches The map to put the node captures into
+     */
+    void copyCaptures(Map<String, Object> dataMatches, Map<String, ASTNode> nodeMatches) {
+      for (var slot = 0; slot < captures.length; slot++) {
+        if (captured[slot]) {
+          if (slotIsNode[slot]) {
+            nodeMatches.put(slotNames[slot], (ASTNode) captures[slot]);
+          } else {
+            dataMatches.put(slotNames[slot], captures[slot]);
+          }
+        }
+      }
+    }
+
+    private void capture(int index, Object value) {
+      if (collect) {
+        var slot = slots[index];
+        captures[slot] = value;
+        captured[slot] = true;
+      }
+    }
+
+    @Override
+    public Void visit(ASTNode node) {
+      var index = -1;
+      if (pc < size) {
+        index = pc++;
+        var kind = kinds[index];
+        if (kind == NODE_WILDCARD || kind == LIST_WILDCARD) {
+          if (((NodeWildcard) operands[index]).test(node)) {
+            capture(index, node);
+            activeList = kind == LIST_WILDCARD ? index : -1;
+            return null;
+          }
+        }
+      } else if (activeList < 0) {
+        throw Mismatch.instance;
+      }
+
+      // the active list wildcard takes nodes until one doesn't match it
+      if (activeList >= 0) {
+        if (((NodeWildcard) operands[activeList]).test(node)) {
+          capture(activeList, node);
+          if (index >= 0) {
+            pc--;
+          }
+          return null;
+        }
+        activeList = -1;
+      }
+
+      if (index < 0 || kinds[index] != NODE || operands[index] != node.getClass()) {
+        throw Mismatch.instance;
+      }
+      node.accept(this);
+      return null;
+    }
+
+    @Override
+    public void visitVoidData(Object data) {
+      if (pc >= size || data instanceof ASTNode) {
+        throw Mismatch.instance;
+      }
+      var index = pc++;
+      switch (kinds[index]) {
+        case DATA_WILDCARD:
+          capture(index, data);
+          activeList = -1;
+          break;
+        case DATA:
+          if (!Objects.equals(data, operands[index])) {
+            throw Mismatch.instance;
+          }
+          break;
+        default:
+          throw Mismatch.instance;
+      }
+    }
+  }
+}
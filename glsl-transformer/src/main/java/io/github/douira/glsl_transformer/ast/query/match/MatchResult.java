@@ -0,0 +1,93 @@
+package io.github.douira.glsl_transformer.ast.query.match;
+
+import java.util.*;
+
+import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
+
+/**
+ * A match result holds the data and node wildcards captured by a single
+ * successful match of a {@link Matcher}. Since each match creates its own
+ * result, the matcher can be shared by many threads.
+ */
+public class MatchResult<T extends ASTNode> {
+  private final T node;
+  private final Map<String, Object> dataMatches;
+  private final Map<String, ASTNode> nodeMatches;
+
+  MatchResult(T node, Map<String, Object> dataMatches, Map<String, ASTNode> nodeMatches) {
+    this.node = node;
+    this.dataMatches = Collections.unmodifiableMap(dataMatches);
+    this.nodeMatches = Collections.unmodifiableMap(nodeMatches);
+  }
+
+  /**
+   * Returns the node that was matched.
+   *
+   * @return The matched node
+   */
+  public T getNode() {
+    return node;
+  }
+
+  /**
+   * Returns the data match map.
+   *
+   * @return The data match map
+   */
+  public Map<String, Object> getDataMatches() {
+    return dataMatches;
+  }
+
+  /**
+   * Returns the node match map.
+   *
+   * @return The node match map
+   */
+  public Map<String, ASTNode> getNodeMatches() {
+    return nodeMatches;
+  }
+
+  /**
+   * Gets a data match with the given name.
+   *
+   * @param name The name of the data match
+   * @return The data match or null if not found
+   */
+  public Object getDataMatch(String name) {
+    return dataMatches.get(name);
+  }
+
+  /**
+   * Gets a data match with the given name as a string.
+   *
+   * @param name The name of the data match
+   * @return The data match or null if either not found or not a string
+   */
+  public String getStringDataMatch(String name) {
+    var result = dataMatches.get(name);
+    return result instanceof String str ? str : null;
+  }
+
+  /**
+   * Gets a node match with the given name.
+   *
+   * @param name The name of the node match
+   * @return The node match or null if not found
+   */
+  public ASTNode getNodeMatch(String name) {
+    return nodeMatches.get(name);
+  }
+
+  /**
+   * Gets a node match with the given name if it is available as the given class.
+   *
+   * @param <R>  The type of the node match
+   * @param name The name of the node match
+   * @param type The class of the node match
+   * @return The node match or null if not found or not of the given class
+   */
+  public <R extends ASTNode> R getNodeMatch(String name, Class<R> type) {
+    var result = nodeMatches.get(name);
+    return type.isInstance(result) ? type.cast(result) : null;
+  }
+}
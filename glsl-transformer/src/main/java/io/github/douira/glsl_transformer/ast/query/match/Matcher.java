@@ -18,6 +18,14 @@ import io.github.douira.glsl_transformer.tree.ExtendedContext;
 /**
  * Instances of the matcher can match a node against a stored pattern. This
  * avoids a separate equality implementation for each node type.
+ *
+ * The pattern is compiled into an immutable match program once all wildcards
+ * have been marked. Matching with {@link #matches(ASTNode)} and
+ * {@link #match(ASTNode)} keeps its state in a context that only lives for the
+ * call, so a compiled matcher can be stored in a static field and shared by
+ * many threads. Marking wildcards and extracting matches with
+ * {@link #matchesExtract(ASTNode)}, which stores them in the matcher, are not
+ * thread-safe.
  */
 public class Matcher<T extends ASTNode> {
   /**
@@ -29,12 +37,9 @@ public class Matcher<T extends ASTNode> {
   private Map<String, Object> dataMatches;
   private Map<String, ASTNode> nodeMatches;
   private Map<ASTNode, NodeWildcard> nodeWildcards;
-  private boolean collectMatches = false;
   protected List<Object> patternItems;
   protected int patternItemsSize;
-  private int matchIndex;
-  private boolean matches;
-  private NodeWildcard activeListWildcard;
+  private volatile MatchProgram program;
 
   /**
    * Creates a new matcher for the given pattern and wildcard prefix.
@@ -122,95 +127,12 @@ public class Matcher<T extends ASTNode> {
       StatementContext.class,
       GLSLParser::statement, ASTBuilder::visitStatement);
 
-  private ASTVisitor<?> matchVisitor = new ASTVoidVisitor() {
-    @Override
-    public Void visit(ASTNode node) {
-      if (!matches || matchIndex >= patternItemsSize && activeListWildcard == null) {
-        matches = false;
-        return null;
-      }
-      var patternItem = matchIndex >= patternItemsSize ? null : patternItems.get(matchIndex++);
-
-      // match either a wildcard node
-      if (nodeWildcards != null) {
-        // regular wildcard match
-        if (patternItem instanceof NodeWildcard wildcard && wildcard.test(node)) {
-          if (collectMatches) {
-            nodeMatches.put(wildcard.name, node);
-          }
-
-          // signal list matching
-          if (wildcard.name.endsWith("*")) {
-            activeListWildcard = wildcard;
-          } else {
-            activeListWildcard = null;
-          }
-          return null;
-        }
-        // list wildcard match
-        else if (activeListWildcard != null) {
-          if (activeListWildcard.test(node)) {
-            if (collectMatches) {
-              nodeMatches.put(activeListWildcard.name, node);
-            }
-            matchIndex--;
-            return null;
-          } else {
-            activeListWildcard = null;
-          }
-        }
-      }
-
-      // if the pattern item is null here, it failed to match a list at the end
-      if (patternItem == null) {
-        matches = false;
-        return null;
-      }
-
-      // or the class exactly
-      if (node.getClass() != patternItem.getClass()) {
-        matches = false;
-        return null;
-      }
-      return node.accept(this);
-    }
-
-    @Override
-    public void visitVoidData(Object data) {
-      // Data has to only match by equality since these might also be strings.
-      if (!matches
-          || matchIndex >= patternItemsSize
-          || data instanceof ASTNode) {
-        matches = false;
-        return;
-      }
-      var patternItem = patternItems.get(matchIndex++);
-
-      // match either a wildcard or a data item exactly
-      if (wildcardPrefix != null
-          && patternItem instanceof String str
-          && str.startsWith(wildcardPrefix)) {
-        // the wildcard was matched, but the string is only collected if enabled
-        if (collectMatches) {
-          dataMatches.put(str.substring(wildcardPrefix.length()), data);
-        }
-        activeListWildcard = null;
-        return;
-      }
-
-      if (!Objects.equals(data, patternItem)) {
-        matches = false;
-        return;
-      }
-    }
-  };
-
   /**
    * Prepares the matcher for matching. It parses the pattern and stores the
    * resulting items. This can be used to pre-compute this list of items.
    * Otherwise, this will be calculated on demand
    */
-  public void preparePatternItems() {
+  public synchronized void preparePatternItems() {
     if (patternItems != null) {
       return;
     }
@@ -241,6 +163,46 @@ public class Matcher<T extends ASTNode> {
     patternItemsSize = patternItems.size();
   }
 
+  /**
+   * Compiles the pattern into a match program. The program contains one
+   * instruction for each pattern item and already knows which items are
+   * wildcards. This can be used to pre-compute the program. Otherwise, it will
+   * be compiled on demand. Marking another wildcard discards the program.
+   * Compiling the matcher before sharing it with other threads avoids compiling
+   * it multiple times.
+   */
+  public synchronized void compile() {
+    if (program != null) {
+      return;
+    }
+    preparePatternItems();
+    program = MatchProgram.compile(patternItems, wildcardPrefix);
+  }
+
+  MatchProgram getProgram() {
+    var compiled = program;
+    if (compiled == null) {
+      compile();
+      compiled = program;
+    }
+    return compiled;
+  }
+
+  /**
+   * Runs the match program on the given tree with a new match context.
+   *
+   * @param tree    The tree to match
+   * @param collect If the matched wildcards should be captured
+   * @return The context with the captures if the tree matches or {@code null}
+   */
+  private MatchProgram.Runner run(T tree, boolean collect) {
+    if (tree == null) {
+      return null;
+    }
+    var runner = getProgram().createRunner();
+    return runner.run(tree, collect) ? runner : null;
+  }
+
   /**
    * Traverse the given tree and the pattern at the same time and make sure they
    * are the same at each visit step.
@@ -249,15 +211,26 @@ public class Matcher<T extends ASTNode> {
    * @return True if the tree matches the pattern, false otherwise
    */
   public boolean matches(T tree) {
-    if (tree == null) {
-      return false;
+    return run(tree, false) != null;
+  }
+
+  /**
+   * Matches the given tree and returns the matched data and node wildcards in a
+   * new result object. Unlike {@link #matchesExtract(ASTNode)}, this doesn't
+   * store anything in the matcher and can be used by many threads at once.
+   *
+   * @param tree The tree to match
+   * @return The match result or {@code null} if the tree doesn't match
+   */
+  public MatchResult<T> match(T tree) {
+    var runner = run(tree, true);
+    if (runner == null) {
+      return null;
     }
-    preparePatternItems();
-    matchIndex = 0;
-    matches = true;
-    activeListWildcard = null;
-    matchVisitor.startVisit(tree);
-    return matches;
+    var treeDataMatches = new HashMap<String, Object>();
+    var treeNodeMatches = new HashMap<String, ASTNode>();
+    runner.copyCaptures(treeDataMatches, treeNodeMatches);
+    return new MatchResult<>(tree, treeDataMatches, treeNodeMatches);
   }
 
   private void ensureMatchMaps() {
@@ -280,14 +253,12 @@ public class Matcher<T extends ASTNode> {
     ensureMatchMaps();
     dataMatches.clear();
     nodeMatches.clear();
-    collectMatches = true;
-    var succeeded = matches(tree);
-    collectMatches = false;
-    if (!succeeded) {
-      dataMatches.clear();
-      nodeMatches.clear();
+    var runner = run(tree, true);
+    if (runner == null) {
+      return false;
     }
-    return succeeded;
+    runner.copyCaptures(dataMatches, nodeMatches);
+    return true;
   }
 
   /**
@@ -384,7 +355,7 @@ public class Matcher<T extends ASTNode> {
     }
   }
 
-  private static abstract class NodeWildcard implements Predicate<ASTNode> {
+  static abstract class NodeWildcard implements Predicate<ASTNode> {
     final String name;
 
     NodeWildcard(String name) {
@@ -395,6 +366,12 @@ public class Matcher<T extends ASTNode> {
   private void markWildcard(ASTNode node, NodeWildcard wildcard) {
     ensureWildcardMap();
     nodeWildcards.put(node, wildcard);
+    discardCompiled();
+  }
+
+  private void discardCompiled() {
+    patternItems = null;
+    program = null;
   }
 
   private static class AnyWildcard extends NodeWildcard {
@@ -491,8 +468,7 @@ public class Matcher<T extends ASTNode> {
   public void markClassWildcard(
       String name,
       ASTNode patternNode) {
-    ensureWildcardMap();
-    nodeWildcards.put(patternNode, new ClassWildcard(name, patternNode.getClass()));
+    markWildcard(patternNode, new ClassWildcard(name, patternNode.getClass()));
   }
 
   private static class ClassedPredicateWildcard<T extends ASTNode> extends NodeWildcard {
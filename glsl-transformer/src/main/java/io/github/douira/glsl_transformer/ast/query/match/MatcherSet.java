@@ -0,0 +1,292 @@
+package io.github.douira.glsl_transformer.ast.query.match;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
+import io.github.douira.glsl_transformer.ast.query.Root;
+import io.github.douira.glsl_transformer.ast.traversal.ASTVoidVisitor;
+
+/**
+ * A matcher set matches many patterns at once. Instead of matching each
+ * candidate node against each pattern separately, the patterns are merged into
+ * a discrimination tree. Each edge of the tree is keyed on the class of a node
+ * or the value of a data item at a position of the flattened pattern. The
+ * prefix of each pattern up to its first wildcard is inserted into the tree.
+ *
+ * A candidate node is matched by walking its items in visiting order along the
+ * tree. The walk stops as soon as there is no edge for the next item. Only the
+ * patterns found on the walked path can match and they're checked in full
+ * afterwards. Patterns that share a prefix are therefore discriminated
+ * together and most patterns are rejected without being looked at.
+ *
+ * The matches are collected before any callbacks are run so that the
+ * callbacks can modify the tree. Unlike the matchers it contains, a matcher set
+ * is not thread-safe.
+ */
+public class MatcherSet {
+  private final List<Entry> entries = new ArrayList<>();
+  private final TrieNode trieRoot = new TrieNode();
+  private final PrefixWalker walker = new PrefixWalker();
+
+  private static class Entry {
+    final Matcher<ASTNode> matcher;
+    final Consumer<ASTNode> callback;
+    final int order;
+
+    Entry(Matcher<ASTNode> matcher, Consumer<ASTNode> callback, int order) {
+      this.matcher = matcher;
+      this.callback = callback;
+      this.order = order;
+    }
+  }
+
+  private static class TrieNode {
+    Map<Object, TrieNode> children;
+    List<Entry> entries;
+  }
+
+  private static class Match {
+    final ASTNode node;
+    final Entry entry;
+
+    Match(ASTNode node, Entry entry) {
+      this.node = node;
+      this.entry = entry;
+    }
+  }
+
+  /**
+   * Adds a matcher with a callback to this set. The callback is called with
+   * each node that the matcher matches.
+   *
+   * @param <T>      The type of the matched nodes
+   * @param matcher  The matcher
+   * @param callback The callback for matched nodes
+   * @return This matcher set
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends ASTNode> MatcherSet add(Matcher<T> matcher, Consumer<? super T> callback) {
+    var entry = new Entry((Matcher<ASTNode>) matcher, (Consumer<ASTNode>) callback, entries.size());
+    entries.add(entry);
+
+    var program = matcher.getProgram();
+    var trieNode = trieRoot;
+    for (int i = 0, length = program.getExactPrefixLength(); i < length; i++) {
+      if (trieNode.children == null) {
+        trieNode.children = new HashMap<>();
+      }
+      trieNode = trieNode.children.computeIfAbsent(program.getKey(i), key -> new TrieNode());
+    }
+    if (trieNode.entries == null) {
+      trieNode.entries = new ArrayList<>(1);
+    }
+    trieNode.entries.add(entry);
+    return this;
+  }
+
+  /**
+   * Adds a matcher to this set that has no callback. Its matches can only be
+   * found with {@link #getMatches(ASTNode)}.
+   *
+   * @param matcher The matcher
+   * @return This matcher set
+   */
+  public MatcherSet add(Matcher<?> matcher) {
+    return add(matcher, node -> {
+    });
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Thrown to stop walking the items of a candidate when there is no further
+   * edge in the discrimination tree.
+   */
+  private static class StopWalk extends RuntimeException {
+    static final StopWalk instance = new StopWalk();
+
+    private StopWalk() {
+      super(null, null, false, false);
+    }
+  }
+
+  private class PrefixWalker extends ASTVoidVisitor {
+    private TrieNode current;
+    private List<Entry> found;
+
+    void walk(ASTNode candidate, List<Entry> found) {
+      this.found = found;
+      current = trieRoot;
+      if (current.entries != null) {
+        found.addAll(current.entries);
+      }
+      try {
+        if (current.children != null) {
+          startVisit(candidate);
+        }
+      } catch (StopWalk e) {
+        // the walk ends when no pattern can be discriminated further
+      }
+    }
+
+    private void advance(Object key) {
+      var next = current.children.get(key);
+      if (next == null) {
+        throw StopWalk.instance;
+      }
+      current = next;
+      if (next.entries != null) {
+        found.addAll(next.entries);
+      }
+      if (next.children == null) {
+        throw StopWalk.instance;
+      }
+    }
+
+    @Override
+    public Void visit(ASTNode node) {
+      advance(node.getClass());
+      node.accept(this);
+      return null;
+    }
+
+    @Override
+    public void visitVoidData(Object data) {
+      advance(data);
+    }
+  }
+
+  private void collectMatches(ASTNode node, List<Entry> found, List<Match> matches) {
+    // quickly skip nodes that no pattern can match
+    if (trieRoot.entries == null
+        && (trieRoot.children == null || !trieRoot.children.containsKey(node.getClass()))) {
+      return;
+    }
+    found.clear();
+    walker.walk(node, found);
+    if (found.size() > 1) {
+      found.sort(Comparator.comparingInt(entry -> entry.order));
+    }
+    for (var entry : found) {
+      if (entry.matcher.getPatternClass().isInstance(node) && entry.matcher.matches(node)) {
+        matches.add(new Match(node, entry));
+      }
+    }
+  }
+
+  /**
+   * Returns the matchers in this set that match the given node in the order
+   * they were added.
+   *
+   * @param node The node to match
+   * @return The matchers that match the node
+   */
+  public List<Matcher<?>> getMatches(ASTNode node) {
+    var matches = new ArrayList<Match>();
+    collectMatches(node, new ArrayList<>(), matches);
+    var result = new ArrayList<Matcher<?>>(matches.size());
+    for (var match : matches) {
+      result.add(match.entry.matcher);
+    }
+    return result;
+  }
+
+  private static boolean runCallbacks(List<Match> matches) {
+    for (var match : matches) {
+      match.entry.callback.accept(match.node);
+    }
+    return !matches.isEmpty();
+  }
+
+  /**
+   * Matches the given candidate nodes against all patterns and calls the
+   * callbacks of the matching patterns. The callbacks are called after all
+   * candidates have been matched.
+   *
+   * @param candidates The nodes to match
+   * @return Whether any pattern matched
+   */
+  public boolean processCandidates(Stream<? extends ASTNode> candidates) {
+    var found = new ArrayList<Entry>();
+    var matches = new ArrayList<Match>();
+    candidates.forEach(node -> {
+      if (node != null) {
+        collectMatches(node, found, matches);
+      }
+    });
+    return runCallbacks(matches);
+  }
+
+  /**
+   * Matches all nodes of the given tree against all patterns in a single
+   * traversal and calls the callbacks of the matching patterns.
+   *
+   * @param tree The tree to match
+   * @return Whether any pattern matched
+   */
+  public boolean processTree(ASTNode tree) {
+    var found = new ArrayList<Entry>();
+    var matches = new ArrayList<Match>();
+    new ASTVoidVisitor() {
+      @Override
+      public void visitVoid(ASTNode node) {
+        collectMatches(node, found, matches);
+      }
+    }.startVisit(tree);
+    return runCallbacks(matches);
+  }
+
+  /**
+   * Matches the candidates found with the indexes of the given root against all
+   * patterns and calls the callbacks of the matching patterns. For hinted
+   * matchers, the candidates are the ancestors of the identifiers with their
+   * hints selected like in
+   * {@link Root#processMatches(io.github.douira.glsl_transformer.ast.transform.ASTParser, HintedMatcher, Consumer)}.
+   * Hinted matchers that can't match are skipped and each hint is only looked
+   * up once. For other matchers, the candidates are
+   * all nodes of the class of their pattern. Each candidate is only matched
+   * once even if it's found for multiple patterns.
+   *
+   * @param root The root to get the candidates from
+   * @return Whether any pattern matched
+   */
+  public boolean process(Root root) {
+    var hintClasses = new LinkedHashMap<String, Set<Class<? extends ASTNode>>>();
+    var unhintedClasses = new LinkedHashSet<Class<? extends ASTNode>>();
+    for (var entry : entries) {
+      var patternClass = entry.matcher.getPatternClass();
+      if (entry.matcher instanceof HintedMatcher<?> hinted
+          && (!hinted.getHintCandidates().isEmpty() || hinted.getHint() != null)) {
+        var selectedHint = hinted.selectHint(root.identifierIndex);
+        if (selectedHint != null) {
+          hintClasses.computeIfAbsent(selectedHint, hint -> new LinkedHashSet<>()).add(patternClass);
+        }
+      } else {
+        unhintedClasses.add(patternClass);
+      }
+    }
+
+    var seen = Collections.newSetFromMap(new IdentityHashMap<ASTNode, Boolean>());
+    var candidates = new ArrayList<ASTNode>();
+    hintClasses.forEach((hint, classes) -> root.identifierIndex.getStream(hint).forEach(identifier -> {
+      for (var patternClass : classes) {
+        var candidate = identifier.getAncestor(patternClass);
+        if (candidate != null && seen.add(candidate)) {
+          candidates.add(candidate);
+        }
+      }
+    }));
+    for (var patternClass : unhintedClasses) {
+      root.nodeIndex.getStream(patternClass).forEach(node -> {
+        if (seen.add(node)) {
+          candidates.add(node);
+        }
+      });
+    }
+    return processCandidates(candidates.stream());
+  }
+}
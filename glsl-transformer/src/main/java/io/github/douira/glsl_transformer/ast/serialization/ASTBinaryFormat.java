@@ -0,0 +1,312 @@
+package io.github.douira.glsl_transformer.ast.serialization;
+
+import java.util.*;
+
+import io.github.douira.glsl_transformer.ast.node.*;
+import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
+import io.github.douira.glsl_transformer.ast.node.declaration.*;
+import io.github.douira.glsl_transformer.ast.node.expression.*;
+import io.github.douira.glsl_transformer.ast.node.expression.binary.*;
+import io.github.douira.glsl_transformer.ast.node.expression.unary.*;
+import io.github.douira.glsl_transformer.ast.node.external_declaration.*;
+import io.github.douira.glsl_transformer.ast.node.statement.*;
+import io.github.douira.glsl_transformer.ast.node.statement.loop.*;
+import io.github.douira.glsl_transformer.ast.node.statement.selection.*;
+import io.github.douira.glsl_transformer.ast.node.statement.terminal.*;
+import io.github.douira.glsl_transformer.ast.node.type.FullySpecifiedType;
+import io.github.douira.glsl_transformer.ast.node.type.initializer.*;
+import io.github.douira.glsl_transformer.ast.node.type.qualifier.*;
+import io.github.douira.glsl_transformer.ast.node.type.specifier.*;
+import io.github.douira.glsl_transformer.ast.node.type.struct.*;
+import io.github.douira.glsl_transformer.util.Type;
+
+/**
+ * Contains the constants of the binary AST format that is written by
+ * {@link ASTBinaryWriter} and read by {@link ASTBinaryReader}.
+ * 
+ * The format starts with a magic number, the format version and the enum
+ * fingerprint. Then the nodes
+ * are written depth-first in the order of their constructor parameters. Each
+ * node starts with its type tag followed by its data and its children. The tag
+ * 0 stands for a missing node. Lists are written as their length plus one
+ * followed by their elements, where 0 stands for a missing list. Strings are
+ * collected in a string table that is built up while writing: a string is
+ * written in full when it first appears and then referred to by its index in
+ * the table. Enums are written as their ordinal plus one and numbers are
+ * written as primitives. All integers that aren't literal values are written as
+ * variable length integers.
+ * 
+ * The format version has to be incremented whenever the tags, the node classes
+ * or the order of their data change. Changes to the constants of the written
+ * enums change the enum fingerprint instead, which makes data written before
+ * the change unreadable since the ordinals may now stand for other constants.
+ */
+public class ASTBinaryFormat {
+  public static final int MAGIC = 0x474c5341;
+  public static final int FORMAT_VERSION = 2;
+
+  /**
+   * A hash of the names and the order of the constants of all enums that are
+   * written by their ordinal.
+   */
+  public static final int ENUM_FINGERPRINT = fingerprintEnums(
+      BuiltinFixedTypeSpecifier.BuiltinType.values(),
+      ExtensionStatement.ExtensionBehavior.values(),
+      FunctionCallExpression.FunctionReferenceType.values(),
+      LiteralExpression.IntegerFormat.values(),
+      InterpolationQualifier.InterpolationType.values(),
+      LayoutDefaults.LayoutMode.values(),
+      PragmaStatement.PragmaState.values(),
+      PragmaStatement.PragmaType.values(),
+      PrecisionQualifier.PrecisionLevel.values(),
+      Profile.values(),
+      StorageQualifier.StorageType.values(),
+      Type.values(),
+      Version.values());
+
+  public static final int NULL = 0;
+
+  // string table references
+  public static final int NEW_STRING = 1;
+  public static final int STRING_REFERENCE_OFFSET = 2;
+
+  // node type tags
+  public static final int ADDITION_ASSIGNMENT_EXPRESSION = 1;
+  public static final int ADDITION_EXPRESSION = 2;
+  public static final int ARRAY_ACCESS_EXPRESSION = 3;
+  public static final int ARRAY_SPECIFIER = 4;
+  public static final int ASSIGNMENT_EXPRESSION = 5;
+  public static final int BITWISE_AND_ASSIGNMENT_EXPRESSION = 6;
+  public static final int BITWISE_AND_EXPRESSION = 7;
+  public static final int BITWISE_NOT_EXPRESSION = 8;
+  public static final int BITWISE_OR_ASSIGNMENT_EXPRESSION = 9;
+  public static final int BITWISE_OR_EXPRESSION = 10;
+  public static final int BITWISE_XOR_ASSIGNMENT_EXPRESSION = 11;
+  public static final int BITWISE_XOR_EXPRESSION = 12;
+  public static final int BOOLEAN_AND_EXPRESSION = 13;
+  public static final int BOOLEAN_NOT_EXPRESSION = 14;
+  public static final int BOOLEAN_OR_EXPRESSION = 15;
+  public static final int BOOLEAN_XOR_EXPRESSION = 16;
+  public static final int BREAK_STATEMENT = 17;
+  public static final int BUILTIN_FIXED_TYPE_SPECIFIER = 18;
+  public static final int BUILTIN_NUMERIC_TYPE_SPECIFIER = 19;
+  public static final int CASE_STATEMENT = 20;
+  public static final int COMPOUND_STATEMENT = 21;
+  public static final int CONDITION_EXPRESSION = 22;
+  public static final int CONTINUE_STATEMENT = 23;
+  public static final int CUSTOM_DIRECTIVE_STATEMENT = 24;
+  public static final int DECLARATION_EXTERNAL_DECLARATION = 25;
+  public static final int DECLARATION_MEMBER = 26;
+  public static final int DECLARATION_STATEMENT = 27;
+  public static final int DECREMENT_POSTFIX_EXPRESSION = 28;
+  public static final int DECREMENT_PREFIX_EXPRESSION = 29;
+  public static final int DEFAULT_STATEMENT = 30;
+  public static final int DEMOTE_STATEMENT = 31;
+  public static final int DISCARD_STATEMENT = 32;
+  public static final int DIVISION_ASSIGNMENT_EXPRESSION = 33;
+  public static final int DIVISION_EXPRESSION = 34;
+  public static final int DO_WHILE_LOOP_STATEMENT = 35;
+  public static final int EMPTY_DECLARATION = 36;
+  public static final int EMPTY_STATEMENT = 37;
+  public static final int EQUALITY_EXPRESSION = 38;
+  public static final int EXPRESSION_INITIALIZER = 39;
+  public static final int EXPRESSION_STATEMENT = 40;
+  public static final int EXTENSION_STATEMENT = 41;
+  public static final int FOR_LOOP_STATEMENT = 42;
+  public static final int FULLY_SPECIFIED_TYPE = 43;
+  public static final int FUNCTION_CALL_EXPRESSION = 44;
+  public static final int FUNCTION_DECLARATION = 45;
+  public static final int FUNCTION_DEFINITION = 46;
+  public static final int FUNCTION_PARAMETER = 47;
+  public static final int FUNCTION_PROTOTYPE = 48;
+  public static final int GREATER_THAN_EQUAL_EXPRESSION = 49;
+  public static final int GREATER_THAN_EXPRESSION = 50;
+  public static final int GROUPING_EXPRESSION = 51;
+  public static final int IDENTIFIER = 52;
+  public static final int IDENTITY_EXPRESSION = 53;
+  public static final int INCLUDE_STATEMENT = 54;
+  public static final int INCREMENT_POSTFIX_EXPRESSION = 55;
+  public static final int INCREMENT_PREFIX_EXPRESSION = 56;
+  public static final int INEQUALITY_EXPRESSION = 57;
+  public static final int INTERFACE_BLOCK_DECLARATION = 58;
+  public static final int INTERPOLATION_QUALIFIER = 59;
+  public static final int INVARIANT_QUALIFIER = 60;
+  public static final int ITERATION_CONDITION_INITIALIZER = 61;
+  public static final int LAYOUT_DEFAULTS = 62;
+  public static final int LAYOUT_QUALIFIER = 63;
+  public static final int LEFT_SHIFT_ASSIGNMENT_EXPRESSION = 64;
+  public static final int LEFT_SHIFT_EXPRESSION = 65;
+  public static final int LENGTH_ACCESS_EXPRESSION = 66;
+  public static final int LESS_THAN_EQUAL_EXPRESSION = 67;
+  public static final int LESS_THAN_EXPRESSION = 68;
+  public static final int LITERAL_EXPRESSION = 69;
+  public static final int MEMBER_ACCESS_EXPRESSION = 70;
+  public static final int MODULO_ASSIGNMENT_EXPRESSION = 71;
+  public static final int MODULO_EXPRESSION = 72;
+  public static final int MULTIPLICATION_ASSIGNMENT_EXPRESSION = 73;
+  public static final int MULTIPLICATION_EXPRESSION = 74;
+  public static final int NAMED_LAYOUT_QUALIFIER_PART = 75;
+  public static final int NEGATION_EXPRESSION = 76;
+  public static final int NESTED_INITIALIZER = 77;
+  public static final int PRAGMA_STATEMENT = 78;
+  public static final int PRECISE_QUALIFIER = 79;
+  public static final int PRECISION_DECLARATION = 80;
+  public static final int PRECISION_QUALIFIER = 81;
+  public static final int REFERENCE_EXPRESSION = 82;
+  public static final int RETURN_STATEMENT = 83;
+  public static final int RIGHT_SHIFT_ASSIGNMENT_EXPRESSION = 84;
+  public static final int RIGHT_SHIFT_EXPRESSION = 85;
+  public static final int SELECTION_STATEMENT = 86;
+  public static final int SEQUENCE_EXPRESSION = 87;
+  public static final int SHARED_LAYOUT_QUALIFIER_PART = 88;
+  public static final int STORAGE_QUALIFIER = 89;
+  public static final int STRUCT_BODY = 90;
+  public static final int STRUCT_DECLARATOR = 91;
+  public static final int STRUCT_MEMBER = 92;
+  public static final int STRUCT_SPECIFIER = 93;
+  public static final int SUBTRACTION_ASSIGNMENT_EXPRESSION = 94;
+  public static final int SUBTRACTION_EXPRESSION = 95;
+  public static final int SWITCH_STATEMENT = 96;
+  public static final int TRANSLATION_UNIT = 97;
+  public static final int TYPE_AND_INIT_DECLARATION = 98;
+  public static final int TYPE_QUALIFIER = 99;
+  public static final int TYPE_REFERENCE = 100;
+  public static final int VARIABLE_DECLARATION = 101;
+  public static final int VERSION_STATEMENT = 102;
+  public static final int WHILE_LOOP_STATEMENT = 103;
+
+  private static final Map<Class<? extends ASTNode>, Integer> tags = new HashMap<>();
+
+  private static int fingerprintEnums(Enum<?>[]... enums) {
+    var hash = 1;
+    for (var values : enums) {
+      hash = 31 * hash + values.length;
+      for (var value : values) {
+        hash = 31 * hash + value.name().hashCode();
+      }
+    }
+    return hash;
+  }
+
+  static {
+    tags.put(AdditionAssignmentExpression.class, ADDITION_ASSIGNMENT_EXPRESSION);
+    tags.put(AdditionExpression.class, ADDITION_EXPRESSION);
+    tags.put(ArrayAccessExpression.class, ARRAY_ACCESS_EXPRESSION);
+    tags.put(ArraySpecifier.class, ARRAY_SPECIFIER);
+    tags.put(AssignmentExpression.class, ASSIGNMENT_EXPRESSION);
+    tags.put(BitwiseAndAssignmentExpression.class, BITWISE_AND_ASSIGNMENT_EXPRESSION);
+    tags.put(BitwiseAndExpression.class, BITWISE_AND_EXPRESSION);
+    tags.put(BitwiseNotExpression.class, BITWISE_NOT_EXPRESSION);
+    tags.put(BitwiseOrAssignmentExpression.class, BITWISE_OR_ASSIGNMENT_EXPRESSION);
+    tags.put(BitwiseOrExpression.class, BITWISE_OR_EXPRESSION);
+    tags.put(BitwiseXorAssignmentExpression.class, BITWISE_XOR_ASSIGNMENT_EXPRESSION);
+    tags.put(BitwiseXorExpression.class, BITWISE_XOR_EXPRESSION);
+    tags.put(BooleanAndExpression.class, BOOLEAN_AND_EXPRESSION);
+    tags.put(BooleanNotExpression.class, BOOLEAN_NOT_EXPRESSION);
+    tags.put(BooleanOrExpression.class, BOOLEAN_OR_EXPRESSION);
+    tags.put(BooleanXorExpression.class, BOOLEAN_XOR_EXPRESSION);
+    tags.put(BreakStatement.class, BREAK_STATEMENT);
+    tags.put(BuiltinFixedTypeSpecifier.class, BUILTIN_FIXED_TYPE_SPECIFIER);
+    tags.put(BuiltinNumericTypeSpecifier.class, BUILTIN_NUMERIC_TYPE_SPECIFIER);
+    tags.put(CaseStatement.class, CASE_STATEMENT);
+    tags.put(CompoundStatement.class, COMPOUND_STATEMENT);
+    tags.put(ConditionExpression.class, CONDITION_EXPRESSION);
+    tags.put(ContinueStatement.class, CONTINUE_STATEMENT);
+    tags.put(CustomDirectiveStatement.class, CUSTOM_DIRECTIVE_STATEMENT);
+    tags.put(DeclarationExternalDeclaration.class, DECLARATION_EXTERNAL_DECLARATION);
+    tags.put(DeclarationMember.class, DECLARATION_MEMBER);
+    tags.put(DeclarationStatement.class, DECLARATION_STATEMENT);
+    tags.put(DecrementPostfixExpression.class, DECREMENT_POSTFIX_EXPRESSION);
+    tags.put(DecrementPrefixExpression.class, DECREMENT_PREFIX_EXPRESSION);
+    tags.put(DefaultStatement.class, DEFAULT_STATEMENT);
+    tags.put(DemoteStatement.class, DEMOTE_STATEMENT);
+    tags.put(DiscardStatement.class, DISCARD_STATEMENT);
+    tags.put(DivisionAssignmentExpression.class, DIVISION_ASSIGNMENT_EXPRESSION);
+    tags.put(DivisionExpression.class, DIVISION_EXPRESSION);
+    tags.put(DoWhileLoopStatement.class, DO_WHILE_LOOP_STATEMENT);
+    tags.put(EmptyDeclaration.class, EMPTY_DECLARATION);
+    tags.put(EmptyStatement.class, EMPTY_STATEMENT);
+    tags.put(EqualityExpression.class, EQUALITY_EXPRESSION);
+    tags.put(ExpressionInitializer.class, EXPRESSION_INITIALIZER);
+    tags.put(ExpressionStatement.class, EXPRESSION_STATEMENT);
+    tags.put(ExtensionStatement.class, EXTENSION_STATEMENT);
+    tags.put(ForLoopStatement.class, FOR_LOOP_STATEMENT);
+    tags.put(FullySpecifiedType.class, FULLY_SPECIFIED_TYPE);
+    tags.put(FunctionCallExpression.class, FUNCTION_CALL_EXPRESSION);
+    tags.put(FunctionDeclaration.class, FUNCTION_DECLARATION);
+    tags.put(FunctionDefinition.class, FUNCTION_DEFINITION);
+    tags.put(FunctionParameter.class, FUNCTION_PARAMETER);
+    tags.put(FunctionPrototype.class, FUNCTION_PROTOTYPE);
+    tags.put(GreaterThanEqualExpression.class, GREATER_THAN_EQUAL_EXPRESSION);
+    tags.put(GreaterThanExpression.class, GREATER_THAN_EXPRESSION);
+    tags.put(GroupingExpression.class, GROUPING_EXPRESSION);
+    tags.put(Identifier.class, IDENTIFIER);
+    tags.put(IdentityExpression.class, IDENTITY_EXPRESSION);
+    tags.put(IncludeStatement.class, INCLUDE_STATEMENT);
+    tags.put(IncrementPostfixExpression.class, INCREMENT_POSTFIX_EXPRESSION);
+    tags.put(IncrementPrefixExpression.class, INCREMENT_PREFIX_EXPRESSION);
+    tags.put(InequalityExpression.class, INEQUALITY_EXPRESSION);
+    tags.put(InterfaceBlockDeclaration.class, INTERFACE_BLOCK_DECLARATION);
+    tags.put(InterpolationQualifier.class, INTERPOLATION_QUALIFIER);
+    tags.put(InvariantQualifier.class, INVARIANT_QUALIFIER);
+    tags.put(IterationConditionInitializer.class, ITERATION_CONDITION_INITIALIZER);
+    tags.put(LayoutDefaults.class, LAYOUT_DEFAULTS);
+    tags.put(LayoutQualifier.class, LAYOUT_QUALIFIER);
+    tags.put(LeftShiftAssignmentExpression.class, LEFT_SHIFT_ASSIGNMENT_EXPRESSION);
+    tags.put(LeftShiftExpression.class, LEFT_SHIFT_EXPRESSION);
+    tags.put(LengthAccessExpression.class, LENGTH_ACCESS_EXPRESSION);
+    tags.put(LessThanEqualExpression.class, LESS_THAN_EQUAL_EXPRESSION);
+    tags.put(LessThanExpression.class, LESS_THAN_EXPRESSION);
+    tags.put(LiteralExpression.class, LITERAL_EXPRESSION);
+    tags.put(MemberAccessExpression.class, MEMBER_ACCESS_EXPRESSION);
+    tags.put(ModuloAssignmentExpression.class, MODULO_ASSIGNMENT_EXPRESSION);
+    tags.put(ModuloExpression.class, MODULO_EXPRESSION);
+    tags.put(MultiplicationAssignmentExpression.class, MULTIPLICATION_ASSIGNMENT_EXPRESSION);
+    tags.put(MultiplicationExpression.class, MULTIPLICATION_EXPRESSION);
+    tags.put(NamedLayoutQualifierPart.class, NAMED_LAYOUT_QUALIFIER_PART);
+    tags.put(NegationExpression.class, NEGATION_EXPRESSION);
+    tags.put(NestedInitializer.class, NESTED_INITIALIZER);
+    tags.put(PragmaStatement.class, PRAGMA_STATEMENT);
+    tags.put(PreciseQualifier.class, PRECISE_QUALIFIER);
+    tags.put(PrecisionDeclaration.class, PRECISION_DECLARATION);
+    tags.put(PrecisionQualifier.class, PRECISION_QUALIFIER);
+    tags.put(ReferenceExpression.class, REFERENCE_EXPRESSION);
+    tags.put(ReturnStatement.class, RETURN_STATEMENT);
+    tags.put(RightShiftAssignmentExpression.class, RIGHT_SHIFT_ASSIGNMENT_EXPRESSION);
+    tags.put(RightShiftExpression.class, RIGHT_SHIFT_EXPRESSION);
+    tags.put(SelectionStatement.class, SELECTION_STATEMENT);
+    tags.put(SequenceExpression.class, SEQUENCE_EXPRESSION);
+    tags.put(SharedLayoutQualifierPart.class, SHARED_LAYOUT_QUALIFIER_PART);
+    tags.put(StorageQualifier.class, STORAGE_QUALIFIER);
+    tags.put(StructBody.class, STRUCT_BODY);
+    tags.put(StructDeclarator.class, STRUCT_DECLARATOR);
+    tags.put(StructMember.class, STRUCT_MEMBER);
+    tags.put(StructSpecifier.class, STRUCT_SPECIFIER);
+    tags.put(SubtractionAssignmentExpression.class, SUBTRACTION_ASSIGNMENT_EXPRESSION);
+    tags.put(SubtractionExpression.class, SUBTRACTION_EXPRESSION);
+    tags.put(SwitchStatement.class, SWITCH_STATEMENT);
+    tags.put(TranslationUnit.class, TRANSLATION_UNIT);
+    tags.put(TypeAndInitDeclaration.class, TYPE_AND_INIT_DECLARATION);
+    tags.put(TypeQualifier.class, TYPE_QUALIFIER);
+    tags.put(TypeReference.class, TYPE_REFERENCE);
+    tags.put(VariableDeclaration.class, VARIABLE_DECLARATION);
+    tags.put(VersionStatement.class, VERSION_STATEMENT);
+    tags.put(WhileLoopStatement.class, WHILE_LOOP_STATEMENT);
+  }
+
+  /**
+   * Returns the type tag of the given node.
+   * 
+   * @param node The node to get the tag of
+   * @return The type tag of the node
+   * @throws IllegalArgumentException If the node's class has no tag
+   */
+  public static int getTag(ASTNode node) {
+    var tag = tags.get(node.getClass());
+    if (tag == null) {
+      throw new IllegalArgumentException(
+          "The node type " + node.getClass().getName() + " can't be serialized.");
+    }
+    return tag;
+  }
+}
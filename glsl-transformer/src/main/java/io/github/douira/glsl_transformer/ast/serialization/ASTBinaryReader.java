@@ -0,0 +1,513 @@
+package io.github.douira.glsl_transformer.ast.serialization;
+
+import static io.github.douira.glsl_transformer.ast.serialization.ASTBinaryFormat.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Stream;
+
+import io.github.douira.glsl_transformer.ast.print.OutputOptions;
+import io.github.douira.glsl_transformer.ast.query.Root;
+import io.github.douira.glsl_transformer.ast.node.*;
+import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
+import io.github.douira.glsl_transformer.ast.node.declaration.*;
+import io.github.douira.glsl_transformer.ast.node.expression.*;
+import io.github.douira.glsl_transformer.ast.node.expression.binary.*;
+import io.github.douira.glsl_transformer.ast.node.expression.unary.*;
+import io.github.douira.glsl_transformer.ast.node.external_declaration.*;
+import io.github.douira.glsl_transformer.ast.node.statement.*;
+import io.github.douira.glsl_transformer.ast.node.statement.loop.*;
+import io.github.douira.glsl_transformer.ast.node.statement.selection.*;
+import io.github.douira.glsl_transformer.ast.node.statement.terminal.*;
+import io.github.douira.glsl_transformer.ast.node.type.FullySpecifiedType;
+import io.github.douira.glsl_transformer.ast.node.type.initializer.*;
+import io.github.douira.glsl_transformer.ast.node.type.qualifier.*;
+import io.github.douira.glsl_transformer.ast.node.type.specifier.*;
+import io.github.douira.glsl_transformer.ast.node.type.struct.*;
+import io.github.douira.glsl_transformer.util.Type;
+
+/**
+ * Reads AST nodes in the binary format described in {@link ASTBinaryFormat}
+ * that was written by {@link ASTBinaryWriter}. The nodes are constructed with
+ * their regular constructors in an index build session, which means the read
+ * tree is fully registered with its root just like a parsed tree. Reading a
+ * tree is much faster than parsing and building it from source.
+ */
+public class ASTBinaryReader {
+  private static final BuiltinFixedTypeSpecifier.BuiltinType[] builtinTypes =
+      BuiltinFixedTypeSpecifier.BuiltinType.values();
+  private static final ExtensionStatement.ExtensionBehavior[] extensionBehaviors =
+      ExtensionStatement.ExtensionBehavior.values();
+  private static final FunctionCallExpression.FunctionReferenceType[] functionReferenceTypes =
+      FunctionCallExpression.FunctionReferenceType.values();
+  private static final LiteralExpression.IntegerFormat[] integerFormats =
+      LiteralExpression.IntegerFormat.values();
+  private static final InterpolationQualifier.InterpolationType[] interpolationTypes =
+      InterpolationQualifier.InterpolationType.values();
+  private static final LayoutDefaults.LayoutMode[] layoutModes = LayoutDefaults.LayoutMode.values();
+  private static final PragmaStatement.PragmaState[] pragmaStates = PragmaStatement.PragmaState.values();
+  private static final PragmaStatement.PragmaType[] pragmaTypes = PragmaStatement.PragmaType.values();
+  private static final PrecisionQualifier.PrecisionLevel[] precisionLevels =
+      PrecisionQualifier.PrecisionLevel.values();
+  private static final Profile[] profiles = Profile.values();
+  private static final StorageQualifier.StorageType[] storageTypes = StorageQualifier.StorageType.values();
+  private static final Type[] types = Type.values();
+  private static final Version[] versions = Version.values();
+
+  private final DataInputStream in;
+  private final List<String> stringTable = new ArrayList<>();
+
+  private ASTBinaryReader(InputStream in) {
+    this.in = new DataInputStream(in);
+  }
+
+  /**
+   * Reads a node of the given type from the given input stream and registers it
+   * with the given root.
+   * 
+   * @param <T>  The type of the node
+   * @param in   The input stream to read from
+   * @param type The class of the node type
+   * @param root The root to register the read nodes with
+   * @return The read node, may be null if a null node was written
+   * @throws IOException If reading from the stream fails or the data is not
+   *                     valid
+   */
+  public static <T extends ASTNode> T read(InputStream in, Class<T> type, Root root) throws IOException {
+    var reader = new ASTBinaryReader(in);
+    if (reader.in.readInt() != MAGIC) {
+      throw new IOException("The data is not in the binary AST format.");
+    }
+    var version = reader.readVarInt();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported binary AST format version " + version
+          + ", expected version " + FORMAT_VERSION + ".");
+    }
+    if (reader.in.readInt() != ENUM_FINGERPRINT) {
+      throw new IOException("The data was written with different enum constants.");
+    }
+    try {
+      return Root.indexNodes(root, () -> {
+        try {
+          return reader.readNode(type);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Reads a node of the given type from the given input stream and registers it
+   * with a new root.
+   * 
+   * @param <T>  The type of the node
+   * @param in   The input stream to read from
+   * @param type The class of the node type
+   * @return The read node, may be null if a null node was written
+   * @throws IOException If reading from the stream fails or the data is not
+   *                     valid
+   */
+  public static <T extends ASTNode> T read(InputStream in, Class<T> type) throws IOException {
+    return read(in, type, new Root());
+  }
+
+  /**
+   * Reads a node of the given type from the given bytes and registers it with a
+   * new root.
+   * 
+   * @param <T>   The type of the node
+   * @param bytes The bytes to read from
+   * @param type  The class of the node type
+   * @return The read node, may be null if a null node was written
+   * @throws UncheckedIOException If the data is not valid
+   */
+  public static <T extends ASTNode> T read(byte[] bytes, Class<T> type) {
+    try {
+      return read(new ByteArrayInputStream(bytes), type);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Reads a translation unit from the given bytes and registers it with a new
+   * root.
+   * 
+   * @param bytes The bytes to read from
+   * @return The read translation unit
+   * @throws UncheckedIOException If the data is not valid
+   */
+  public static TranslationUnit readTranslationUnit(byte[] bytes) {
+    return read(bytes, TranslationUnit.class);
+  }
+
+  private int readVarInt() throws IOException {
+    var value = 0;
+    for (var shift = 0; shift < 32; shift += 7) {
+      var b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable length integer.");
+  }
+
+  private long readVarLong() throws IOException {
+    var value = 0L;
+    for (var shift = 0; shift < 64; shift += 7) {
+      var b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable length integer.");
+  }
+
+  private String readString() throws IOException {
+    var reference = readVarInt();
+    if (reference == NULL) {
+      return null;
+    }
+    if (reference == NEW_STRING) {
+      var bytes = new byte[readVarInt()];
+      in.readFully(bytes);
+      var str = new String(bytes, StandardCharsets.UTF_8);
+      stringTable.add(str);
+      return str;
+    }
+    var index = reference - STRING_REFERENCE_OFFSET;
+    if (index >= stringTable.size()) {
+      throw new IOException("Invalid string table reference " + index + ".");
+    }
+    return stringTable.get(index);
+  }
+
+  private <E extends Enum<E>> E readEnum(E[] values) throws IOException {
+    var value = readVarInt();
+    if (value == NULL) {
+      return null;
+    }
+    if (value > values.length) {
+      throw new IOException("Invalid enum ordinal " + (value - 1) + ".");
+    }
+    return values[value - 1];
+  }
+
+  private <T extends ASTNode> Stream<T> readList(Class<T> type) throws IOException {
+    var length = readVarInt();
+    if (length == NULL) {
+      return null;
+    }
+    var nodes = new ArrayList<T>(length - 1);
+    for (var i = 1; i < length; i++) {
+      nodes.add(readNode(type));
+    }
+    return nodes.stream();
+  }
+
+  private LiteralExpression readLiteral() throws IOException {
+    var literalType = readEnum(types);
+    if (literalType == null) {
+      throw new IOException("Missing literal type.");
+    }
+    return switch (literalType.getNumberType()) {
+      case BOOLEAN -> new LiteralExpression(in.readBoolean());
+      case SIGNED_INTEGER, UNSIGNED_INTEGER -> {
+        var encoded = readVarLong();
+        var value = (encoded >>> 1) ^ -(encoded & 1);
+        yield new LiteralExpression(literalType, value, readEnum(integerFormats));
+      }
+      case FLOATING_POINT -> new LiteralExpression(literalType, in.readDouble());
+      default -> throw new IOException("Unsupported literal type " + literalType + ".");
+    };
+  }
+
+  private TranslationUnit readTranslationUnit() throws IOException {
+    var versionStatement = readNode(VersionStatement.class);
+    var children = readList(ExternalDeclaration.class);
+    var printInfo = in.readBoolean();
+    var headerSuffix = readString();
+    var printCustomDirectives = in.readBoolean();
+    return new TranslationUnit(versionStatement, children,
+        new OutputOptions(printInfo, headerSuffix, printCustomDirectives));
+  }
+
+  private FunctionCallExpression readFunctionCall() throws IOException {
+    var functionName = readNode(Identifier.class);
+    var functionSpecifier = readNode(TypeSpecifier.class);
+    var referenceType = readEnum(functionReferenceTypes);
+    var parameters = readList(Expression.class);
+    return referenceType == FunctionCallExpression.FunctionReferenceType.TYPE_SPECIFIER
+        ? new FunctionCallExpression(functionSpecifier, parameters)
+        : new FunctionCallExpression(functionName, parameters);
+  }
+
+  private PragmaStatement readPragma() throws IOException {
+    var stdGL = in.readBoolean();
+    var type = readEnum(pragmaTypes);
+    var customName = readString();
+    var state = readEnum(pragmaStates);
+    return type == PragmaStatement.PragmaType.CUSTOM
+        ? new PragmaStatement(stdGL, customName)
+        : new PragmaStatement(stdGL, type, state);
+  }
+
+  private WhileLoopStatement readWhileLoop() throws IOException {
+    var statement = readNode(Statement.class);
+    var condition = readNode(Expression.class);
+    var iterationConditionInitializer = readNode(IterationConditionInitializer.class);
+    return condition == null
+        ? new WhileLoopStatement(iterationConditionInitializer, statement)
+        : new WhileLoopStatement(condition, statement);
+  }
+
+  private StorageQualifier readStorageQualifier() throws IOException {
+    var typeNames = readList(Identifier.class);
+    var storageType = readEnum(storageTypes);
+    return typeNames == null
+        ? new StorageQualifier(storageType)
+        : new StorageQualifier(typeNames);
+  }
+
+  private <T extends ASTNode> T readNode(Class<T> type) throws IOException {
+    var tag = readVarInt();
+    if (tag == NULL) {
+      return null;
+    }
+    ASTNode node = switch (tag) {
+      case TRANSLATION_UNIT -> readTranslationUnit();
+      case LITERAL_EXPRESSION -> readLiteral();
+      case FUNCTION_CALL_EXPRESSION -> readFunctionCall();
+      case PRAGMA_STATEMENT -> readPragma();
+      case WHILE_LOOP_STATEMENT -> readWhileLoop();
+      case STORAGE_QUALIFIER -> readStorageQualifier();
+      case ADDITION_ASSIGNMENT_EXPRESSION -> new AdditionAssignmentExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case ADDITION_EXPRESSION -> new AdditionExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case ARRAY_ACCESS_EXPRESSION -> new ArrayAccessExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case ARRAY_SPECIFIER -> new ArraySpecifier(readList(Expression.class));
+      case ASSIGNMENT_EXPRESSION -> new AssignmentExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case BITWISE_AND_ASSIGNMENT_EXPRESSION -> new BitwiseAndAssignmentExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case BITWISE_AND_EXPRESSION -> new BitwiseAndExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case BITWISE_NOT_EXPRESSION -> new BitwiseNotExpression(readNode(Expression.class));
+      case BITWISE_OR_ASSIGNMENT_EXPRESSION -> new BitwiseOrAssignmentExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case BITWISE_OR_EXPRESSION -> new BitwiseOrExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case BITWISE_XOR_ASSIGNMENT_EXPRESSION -> new BitwiseXorAssignmentExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case BITWISE_XOR_EXPRESSION -> new BitwiseXorExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case BOOLEAN_AND_EXPRESSION -> new BooleanAndExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case BOOLEAN_NOT_EXPRESSION -> new BooleanNotExpression(readNode(Expression.class));
+      case BOOLEAN_OR_EXPRESSION -> new BooleanOrExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case BOOLEAN_XOR_EXPRESSION -> new BooleanXorExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case BREAK_STATEMENT -> new BreakStatement();
+      case BUILTIN_FIXED_TYPE_SPECIFIER -> new BuiltinFixedTypeSpecifier(
+          readEnum(builtinTypes),
+          readNode(ArraySpecifier.class));
+      case BUILTIN_NUMERIC_TYPE_SPECIFIER -> new BuiltinNumericTypeSpecifier(
+          readEnum(types),
+          readNode(ArraySpecifier.class));
+      case CASE_STATEMENT -> new CaseStatement(readNode(Expression.class));
+      case COMPOUND_STATEMENT -> new CompoundStatement(readList(Statement.class));
+      case CONDITION_EXPRESSION -> new ConditionExpression(
+          readNode(Expression.class),
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case CONTINUE_STATEMENT -> new ContinueStatement();
+      case CUSTOM_DIRECTIVE_STATEMENT -> new CustomDirectiveStatement(readString());
+      case DECLARATION_EXTERNAL_DECLARATION -> new DeclarationExternalDeclaration(
+          readNode(Declaration.class));
+      case DECLARATION_MEMBER -> new DeclarationMember(
+          readNode(Identifier.class),
+          readNode(ArraySpecifier.class),
+          readNode(Initializer.class));
+      case DECLARATION_STATEMENT -> new DeclarationStatement(readNode(Declaration.class));
+      case DECREMENT_POSTFIX_EXPRESSION -> new DecrementPostfixExpression(readNode(Expression.class));
+      case DECREMENT_PREFIX_EXPRESSION -> new DecrementPrefixExpression(readNode(Expression.class));
+      case DEFAULT_STATEMENT -> new DefaultStatement();
+      case DEMOTE_STATEMENT -> new DemoteStatement();
+      case DISCARD_STATEMENT -> new DiscardStatement();
+      case DIVISION_ASSIGNMENT_EXPRESSION -> new DivisionAssignmentExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case DIVISION_EXPRESSION -> new DivisionExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case DO_WHILE_LOOP_STATEMENT -> new DoWhileLoopStatement(
+          readNode(Statement.class),
+          readNode(Expression.class));
+      case EMPTY_DECLARATION -> new EmptyDeclaration();
+      case EMPTY_STATEMENT -> new EmptyStatement();
+      case EQUALITY_EXPRESSION -> new EqualityExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case EXPRESSION_INITIALIZER -> new ExpressionInitializer(readNode(Expression.class));
+      case EXPRESSION_STATEMENT -> new ExpressionStatement(readNode(Expression.class));
+      case EXTENSION_STATEMENT -> new ExtensionStatement(readString(), readEnum(extensionBehaviors));
+      case FOR_LOOP_STATEMENT -> new ForLoopStatement(
+          readNode(Expression.class),
+          readNode(Declaration.class),
+          readNode(Expression.class),
+          readNode(IterationConditionInitializer.class),
+          readNode(Expression.class),
+          readNode(Statement.class));
+      case FULLY_SPECIFIED_TYPE -> new FullySpecifiedType(
+          readNode(TypeQualifier.class),
+          readNode(TypeSpecifier.class));
+      case FUNCTION_DECLARATION -> new FunctionDeclaration(readNode(FunctionPrototype.class));
+      case FUNCTION_DEFINITION -> new FunctionDefinition(
+          readNode(FunctionPrototype.class),
+          readNode(CompoundStatement.class));
+      case FUNCTION_PARAMETER -> new FunctionParameter(
+          readNode(FullySpecifiedType.class),
+          readNode(Identifier.class),
+          readNode(ArraySpecifier.class));
+      case FUNCTION_PROTOTYPE -> new FunctionPrototype(
+          readNode(FullySpecifiedType.class),
+          readNode(Identifier.class),
+          readList(FunctionParameter.class));
+      case GREATER_THAN_EQUAL_EXPRESSION -> new GreaterThanEqualExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case GREATER_THAN_EXPRESSION -> new GreaterThanExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case GROUPING_EXPRESSION -> new GroupingExpression(readNode(Expression.class));
+      case IDENTIFIER -> new Identifier(readString());
+      case IDENTITY_EXPRESSION -> new IdentityExpression(readNode(Expression.class));
+      case INCLUDE_STATEMENT -> new IncludeStatement(readString(), in.readBoolean());
+      case INCREMENT_POSTFIX_EXPRESSION -> new IncrementPostfixExpression(readNode(Expression.class));
+      case INCREMENT_PREFIX_EXPRESSION -> new IncrementPrefixExpression(readNode(Expression.class));
+      case INEQUALITY_EXPRESSION -> new InequalityExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case INTERFACE_BLOCK_DECLARATION -> new InterfaceBlockDeclaration(
+          readNode(TypeQualifier.class),
+          readNode(Identifier.class),
+          readNode(StructBody.class),
+          readNode(Identifier.class),
+          readNode(ArraySpecifier.class));
+      case INTERPOLATION_QUALIFIER -> new InterpolationQualifier(readEnum(interpolationTypes));
+      case INVARIANT_QUALIFIER -> new InvariantQualifier();
+      case ITERATION_CONDITION_INITIALIZER -> new IterationConditionInitializer(
+          readNode(FullySpecifiedType.class),
+          readNode(Identifier.class),
+          readNode(Initializer.class));
+      case LAYOUT_DEFAULTS -> new LayoutDefaults(readNode(LayoutQualifier.class), readEnum(layoutModes));
+      case LAYOUT_QUALIFIER -> new LayoutQualifier(readList(LayoutQualifierPart.class));
+      case LEFT_SHIFT_ASSIGNMENT_EXPRESSION -> new LeftShiftAssignmentExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case LEFT_SHIFT_EXPRESSION -> new LeftShiftExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case LENGTH_ACCESS_EXPRESSION -> new LengthAccessExpression(readNode(Expression.class));
+      case LESS_THAN_EQUAL_EXPRESSION -> new LessThanEqualExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case LESS_THAN_EXPRESSION -> new LessThanExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case MEMBER_ACCESS_EXPRESSION -> new MemberAccessExpression(
+          readNode(Expression.class),
+          readNode(Identifier.class));
+      case MODULO_ASSIGNMENT_EXPRESSION -> new ModuloAssignmentExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case MODULO_EXPRESSION -> new ModuloExpression(readNode(Expression.class), readNode(Expression.class));
+      case MULTIPLICATION_ASSIGNMENT_EXPRESSION -> new MultiplicationAssignmentExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case MULTIPLICATION_EXPRESSION -> new MultiplicationExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case NAMED_LAYOUT_QUALIFIER_PART -> new NamedLayoutQualifierPart(
+          readNode(Identifier.class),
+          readNode(Expression.class));
+      case NEGATION_EXPRESSION -> new NegationExpression(readNode(Expression.class));
+      case NESTED_INITIALIZER -> new NestedInitializer(readList(Initializer.class));
+      case PRECISE_QUALIFIER -> new PreciseQualifier();
+      case PRECISION_DECLARATION -> new PrecisionDeclaration(
+          readNode(PrecisionQualifier.class),
+          readNode(TypeSpecifier.class));
+      case PRECISION_QUALIFIER -> new PrecisionQualifier(readEnum(precisionLevels));
+      case REFERENCE_EXPRESSION -> new ReferenceExpression(readNode(Identifier.class));
+      case RETURN_STATEMENT -> new ReturnStatement(readNode(Expression.class));
+      case RIGHT_SHIFT_ASSIGNMENT_EXPRESSION -> new RightShiftAssignmentExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case RIGHT_SHIFT_EXPRESSION -> new RightShiftExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case SELECTION_STATEMENT -> new SelectionStatement(
+          readList(Expression.class),
+          readList(Statement.class));
+      case SEQUENCE_EXPRESSION -> new SequenceExpression(readList(Expression.class));
+      case SHARED_LAYOUT_QUALIFIER_PART -> new SharedLayoutQualifierPart();
+      case STRUCT_BODY -> new StructBody(readList(StructMember.class));
+      case STRUCT_DECLARATOR -> new StructDeclarator(
+          readNode(Identifier.class),
+          readNode(ArraySpecifier.class));
+      case STRUCT_MEMBER -> new StructMember(
+          readNode(FullySpecifiedType.class),
+          readList(StructDeclarator.class));
+      case STRUCT_SPECIFIER -> new StructSpecifier(
+          readNode(Identifier.class),
+          readNode(StructBody.class),
+          readNode(ArraySpecifier.class));
+      case SUBTRACTION_ASSIGNMENT_EXPRESSION -> new SubtractionAssignmentExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case SUBTRACTION_EXPRESSION -> new SubtractionExpression(
+          readNode(Expression.class),
+          readNode(Expression.class));
+      case SWITCH_STATEMENT -> new SwitchStatement(
+          readNode(Expression.class),
+          readNode(CompoundStatement.class));
+      case TYPE_AND_INIT_DECLARATION -> new TypeAndInitDeclaration(
+          readNode(FullySpecifiedType.class),
+          readList(DeclarationMember.class));
+      case TYPE_QUALIFIER -> new TypeQualifier(readList(TypeQualifierPart.class));
+      case TYPE_REFERENCE -> new TypeReference(readNode(Identifier.class), readNode(ArraySpecifier.class));
+      case VARIABLE_DECLARATION -> new VariableDeclaration(
+          readNode(TypeQualifier.class),
+          readList(Identifier.class));
+      case VERSION_STATEMENT -> new VersionStatement(readEnum(versions), readEnum(profiles));
+      default -> throw new IOException("Unknown node type tag " + tag + ".");
+    };
+    if (!type.isInstance(node)) {
+      throw new IOException("Expected a node of type " + type.getSimpleName()
+          + " but read a node of type " + node.getClass().getSimpleName() + ".");
+    }
+    return type.cast(node);
+  }
+}
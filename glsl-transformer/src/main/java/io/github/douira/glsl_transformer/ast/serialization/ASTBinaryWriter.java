@@ -0,0 +1,612 @@
+package io.github.douira.glsl_transformer.ast.serialization;
+
+import static io.github.douira.glsl_transformer.ast.serialization.ASTBinaryFormat.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import io.github.douira.glsl_transformer.ast.node.*;
+import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
+import io.github.douira.glsl_transformer.ast.node.declaration.*;
+import io.github.douira.glsl_transformer.ast.node.expression.*;
+import io.github.douira.glsl_transformer.ast.node.expression.binary.*;
+import io.github.douira.glsl_transformer.ast.node.expression.unary.*;
+import io.github.douira.glsl_transformer.ast.node.external_declaration.*;
+import io.github.douira.glsl_transformer.ast.node.statement.*;
+import io.github.douira.glsl_transformer.ast.node.statement.loop.*;
+import io.github.douira.glsl_transformer.ast.node.statement.selection.*;
+import io.github.douira.glsl_transformer.ast.node.statement.terminal.*;
+import io.github.douira.glsl_transformer.ast.node.type.FullySpecifiedType;
+import io.github.douira.glsl_transformer.ast.node.type.initializer.*;
+import io.github.douira.glsl_transformer.ast.node.type.qualifier.*;
+import io.github.douira.glsl_transformer.ast.node.type.specifier.*;
+import io.github.douira.glsl_transformer.ast.node.type.struct.*;
+
+/**
+ * Writes AST nodes in the binary format described in {@link ASTBinaryFormat}.
+ * Reading the written data with {@link ASTBinaryReader} results in a tree that
+ * prints the same as the original tree. The source line information of the
+ * nodes and template markers are not written.
+ */
+public class ASTBinaryWriter {
+  private final DataOutputStream out;
+  private final Map<String, Integer> stringTable = new HashMap<>();
+
+  private ASTBinaryWriter(OutputStream out) {
+    this.out = new DataOutputStream(out);
+  }
+
+  /**
+   * Writes the given node and its subtree to the given output stream.
+   * 
+   * @param node The node to write, may be null
+   * @param out  The output stream to write to
+   * @throws IOException If writing to the stream fails
+   */
+  public static void write(ASTNode node, OutputStream out) throws IOException {
+    var writer = new ASTBinaryWriter(out);
+    writer.out.writeInt(MAGIC);
+    writer.writeVarInt(FORMAT_VERSION);
+    writer.out.writeInt(ENUM_FINGERPRINT);
+    writer.writeNode(node);
+    writer.out.flush();
+  }
+
+  /**
+   * Writes the given node and its subtree to a byte array.
+   * 
+   * @param node The node to write, may be null
+   * @return The written bytes
+   */
+  public static byte[] write(ASTNode node) {
+    var bytes = new ByteArrayOutputStream();
+    try {
+      write(node, bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private void writeVarInt(int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private void writeVarLong(long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private void writeString(String str) throws IOException {
+    if (str == null) {
+      writeVarInt(NULL);
+      return;
+    }
+    var index = stringTable.get(str);
+    if (index != null) {
+      writeVarInt(index + STRING_REFERENCE_OFFSET);
+      return;
+    }
+    stringTable.put(str, stringTable.size());
+    var bytes = str.getBytes(StandardCharsets.UTF_8);
+    writeVarInt(NEW_STRING);
+    writeVarInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private void writeEnum(Enum<?> value) throws IOException {
+    writeVarInt(value == null ? NULL : value.ordinal() + 1);
+  }
+
+  private void writeList(List<? extends ASTNode> nodes) throws IOException {
+    if (nodes == null) {
+      writeVarInt(NULL);
+      return;
+    }
+    writeVarInt(nodes.size() + 1);
+    for (var child : nodes) {
+      writeNode(child);
+    }
+  }
+
+  private void writeLiteral(LiteralExpression node) throws IOException {
+    writeEnum(node.getType());
+    switch (node.getNumberType()) {
+      case BOOLEAN -> out.writeBoolean(node.getBoolean());
+      case SIGNED_INTEGER, UNSIGNED_INTEGER -> {
+        // zigzag encoding keeps small negative numbers short
+        var value = node.getInteger();
+        writeVarLong((value << 1) ^ (value >> 63));
+        writeEnum(node.getIntegerFormat());
+      }
+      case FLOATING_POINT -> out.writeDouble(node.getFloating());
+      default -> throw new IllegalArgumentException("Unsupported number type: " + node.getNumberType());
+    }
+  }
+
+  private void writeNode(ASTNode node) throws IOException {
+    if (node == null) {
+      writeVarInt(NULL);
+      return;
+    }
+    var tag = getTag(node);
+    writeVarInt(tag);
+    switch (tag) {
+      case TRANSLATION_UNIT -> {
+        var typed = (TranslationUnit) node;
+        writeNode(typed.getVersionStatement());
+        writeList(typed.getChildren());
+        var outputOptions = typed.outputOptions;
+        out.writeBoolean(outputOptions.getPrintInfo());
+        writeString(outputOptions.getHeaderSuffix());
+        out.writeBoolean(outputOptions.printCustomDirectives);
+      }
+      case LITERAL_EXPRESSION -> writeLiteral((LiteralExpression) node);
+      case FUNCTION_CALL_EXPRESSION -> {
+        var typed = (FunctionCallExpression) node;
+        writeNode(typed.getFunctionName());
+        writeNode(typed.getFunctionSpecifier());
+        writeEnum(typed.getReferenceType());
+        writeList(typed.getParameters());
+      }
+      case PRAGMA_STATEMENT -> {
+        var typed = (PragmaStatement) node;
+        out.writeBoolean(typed.isStdGL());
+        writeEnum(typed.getType());
+        writeString(typed.getCustomName());
+        writeEnum(typed.getState());
+      }
+      case WHILE_LOOP_STATEMENT -> {
+        var typed = (WhileLoopStatement) node;
+        writeNode(typed.getStatement());
+        writeNode(typed.getCondition());
+        writeNode(typed.getIterationConditionInitializer());
+      }
+      case STORAGE_QUALIFIER -> {
+        var typed = (StorageQualifier) node;
+        writeList(typed.getTypeNames());
+        writeEnum(typed.getStorageType());
+      }
+      case ADDITION_ASSIGNMENT_EXPRESSION -> {
+        var typed = (AdditionAssignmentExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case ADDITION_EXPRESSION -> {
+        var typed = (AdditionExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case ARRAY_ACCESS_EXPRESSION -> {
+        var typed = (ArrayAccessExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case ARRAY_SPECIFIER -> {
+        var typed = (ArraySpecifier) node;
+        writeList(typed.getChildren());
+      }
+      case ASSIGNMENT_EXPRESSION -> {
+        var typed = (AssignmentExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case BITWISE_AND_ASSIGNMENT_EXPRESSION -> {
+        var typed = (BitwiseAndAssignmentExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case BITWISE_AND_EXPRESSION -> {
+        var typed = (BitwiseAndExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case BITWISE_NOT_EXPRESSION -> {
+        var typed = (BitwiseNotExpression) node;
+        writeNode(typed.getOperand());
+      }
+      case BITWISE_OR_ASSIGNMENT_EXPRESSION -> {
+        var typed = (BitwiseOrAssignmentExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case BITWISE_OR_EXPRESSION -> {
+        var typed = (BitwiseOrExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case BITWISE_XOR_ASSIGNMENT_EXPRESSION -> {
+        var typed = (BitwiseXorAssignmentExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case BITWISE_XOR_EXPRESSION -> {
+        var typed = (BitwiseXorExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case BOOLEAN_AND_EXPRESSION -> {
+        var typed = (BooleanAndExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case BOOLEAN_NOT_EXPRESSION -> {
+        var typed = (BooleanNotExpression) node;
+        writeNode(typed.getOperand());
+      }
+      case BOOLEAN_OR_EXPRESSION -> {
+        var typed = (BooleanOrExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case BOOLEAN_XOR_EXPRESSION -> {
+        var typed = (BooleanXorExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case BUILTIN_FIXED_TYPE_SPECIFIER -> {
+        var typed = (BuiltinFixedTypeSpecifier) node;
+        writeEnum(typed.getType());
+        writeNode(typed.getArraySpecifier());
+      }
+      case BUILTIN_NUMERIC_TYPE_SPECIFIER -> {
+        var typed = (BuiltinNumericTypeSpecifier) node;
+        writeEnum(typed.getType());
+        writeNode(typed.getArraySpecifier());
+      }
+      case CASE_STATEMENT -> {
+        var typed = (CaseStatement) node;
+        writeNode(typed.getExpression());
+      }
+      case COMPOUND_STATEMENT -> {
+        var typed = (CompoundStatement) node;
+        writeList(typed.getStatements());
+      }
+      case CONDITION_EXPRESSION -> {
+        var typed = (ConditionExpression) node;
+        writeNode(typed.getFirst());
+        writeNode(typed.getSecond());
+        writeNode(typed.getThird());
+      }
+      case CUSTOM_DIRECTIVE_STATEMENT -> {
+        var typed = (CustomDirectiveStatement) node;
+        writeString(typed.getContent());
+      }
+      case DECLARATION_EXTERNAL_DECLARATION -> {
+        var typed = (DeclarationExternalDeclaration) node;
+        writeNode(typed.getDeclaration());
+      }
+      case DECLARATION_MEMBER -> {
+        var typed = (DeclarationMember) node;
+        writeNode(typed.getName());
+        writeNode(typed.getArraySpecifier());
+        writeNode(typed.getInitializer());
+      }
+      case DECLARATION_STATEMENT -> {
+        var typed = (DeclarationStatement) node;
+        writeNode(typed.getDeclaration());
+      }
+      case DECREMENT_POSTFIX_EXPRESSION -> {
+        var typed = (DecrementPostfixExpression) node;
+        writeNode(typed.getOperand());
+      }
+      case DECREMENT_PREFIX_EXPRESSION -> {
+        var typed = (DecrementPrefixExpression) node;
+        writeNode(typed.getOperand());
+      }
+      case DIVISION_ASSIGNMENT_EXPRESSION -> {
+        var typed = (DivisionAssignmentExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case DIVISION_EXPRESSION -> {
+        var typed = (DivisionExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case DO_WHILE_LOOP_STATEMENT -> {
+        var typed = (DoWhileLoopStatement) node;
+        writeNode(typed.getStatement());
+        writeNode(typed.getCondition());
+      }
+      case EQUALITY_EXPRESSION -> {
+        var typed = (EqualityExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case EXPRESSION_INITIALIZER -> {
+        var typed = (ExpressionInitializer) node;
+        writeNode(typed.getExpression());
+      }
+      case EXPRESSION_STATEMENT -> {
+        var typed = (ExpressionStatement) node;
+        writeNode(typed.getExpression());
+      }
+      case EXTENSION_STATEMENT -> {
+        var typed = (ExtensionStatement) node;
+        writeString(typed.getName());
+        writeEnum(typed.getBehavior());
+      }
+      case FOR_LOOP_STATEMENT -> {
+        var typed = (ForLoopStatement) node;
+        writeNode(typed.getInitExpression());
+        writeNode(typed.getInitDeclaration());
+        writeNode(typed.getCondition());
+        writeNode(typed.getIterationConditionInitializer());
+        writeNode(typed.getIncrementer());
+        writeNode(typed.getStatement());
+      }
+      case FULLY_SPECIFIED_TYPE -> {
+        var typed = (FullySpecifiedType) node;
+        writeNode(typed.getTypeQualifier());
+        writeNode(typed.getTypeSpecifier());
+      }
+      case FUNCTION_DECLARATION -> {
+        var typed = (FunctionDeclaration) node;
+        writeNode(typed.getFunctionPrototype());
+      }
+      case FUNCTION_DEFINITION -> {
+        var typed = (FunctionDefinition) node;
+        writeNode(typed.getFunctionPrototype());
+        writeNode(typed.getBody());
+      }
+      case FUNCTION_PARAMETER -> {
+        var typed = (FunctionParameter) node;
+        writeNode(typed.getType());
+        writeNode(typed.getName());
+        writeNode(typed.getArraySpecifier());
+      }
+      case FUNCTION_PROTOTYPE -> {
+        var typed = (FunctionPrototype) node;
+        writeNode(typed.getReturnType());
+        writeNode(typed.getName());
+        writeList(typed.getChildren());
+      }
+      case GREATER_THAN_EQUAL_EXPRESSION -> {
+        var typed = (GreaterThanEqualExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case GREATER_THAN_EXPRESSION -> {
+        var typed = (GreaterThanExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case GROUPING_EXPRESSION -> {
+        var typed = (GroupingExpression) node;
+        writeNode(typed.getOperand());
+      }
+      case IDENTIFIER -> {
+        var typed = (Identifier) node;
+        writeString(typed.getName());
+      }
+      case IDENTITY_EXPRESSION -> {
+        var typed = (IdentityExpression) node;
+        writeNode(typed.getOperand());
+      }
+      case INCLUDE_STATEMENT -> {
+        var typed = (IncludeStatement) node;
+        writeString(typed.getContent());
+        out.writeBoolean(typed.isAngleBrackets());
+      }
+      case INCREMENT_POSTFIX_EXPRESSION -> {
+        var typed = (IncrementPostfixExpression) node;
+        writeNode(typed.getOperand());
+      }
+      case INCREMENT_PREFIX_EXPRESSION -> {
+        var typed = (IncrementPrefixExpression) node;
+        writeNode(typed.getOperand());
+      }
+      case INEQUALITY_EXPRESSION -> {
+        var typed = (InequalityExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case INTERFACE_BLOCK_DECLARATION -> {
+        var typed = (InterfaceBlockDeclaration) node;
+        writeNode(typed.getTypeQualifier());
+        writeNode(typed.getBlockName());
+        writeNode(typed.getStructBody());
+        writeNode(typed.getVariableName());
+        writeNode(typed.getArraySpecifier());
+      }
+      case INTERPOLATION_QUALIFIER -> {
+        var typed = (InterpolationQualifier) node;
+        writeEnum(typed.getInterpolationType());
+      }
+      case ITERATION_CONDITION_INITIALIZER -> {
+        var typed = (IterationConditionInitializer) node;
+        writeNode(typed.getType());
+        writeNode(typed.getName());
+        writeNode(typed.getInitializer());
+      }
+      case LAYOUT_DEFAULTS -> {
+        var typed = (LayoutDefaults) node;
+        writeNode(typed.getQualifier());
+        writeEnum(typed.getMode());
+      }
+      case LAYOUT_QUALIFIER -> {
+        var typed = (LayoutQualifier) node;
+        writeList(typed.getParts());
+      }
+      case LEFT_SHIFT_ASSIGNMENT_EXPRESSION -> {
+        var typed = (LeftShiftAssignmentExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case LEFT_SHIFT_EXPRESSION -> {
+        var typed = (LeftShiftExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case LENGTH_ACCESS_EXPRESSION -> {
+        var typed = (LengthAccessExpression) node;
+        writeNode(typed.getOperand());
+      }
+      case LESS_THAN_EQUAL_EXPRESSION -> {
+        var typed = (LessThanEqualExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case LESS_THAN_EXPRESSION -> {
+        var typed = (LessThanExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case MEMBER_ACCESS_EXPRESSION -> {
+        var typed = (MemberAccessExpression) node;
+        writeNode(typed.getOperand());
+        writeNode(typed.getMember());
+      }
+      case MODULO_ASSIGNMENT_EXPRESSION -> {
+        var typed = (ModuloAssignmentExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case MODULO_EXPRESSION -> {
+        var typed = (ModuloExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case MULTIPLICATION_ASSIGNMENT_EXPRESSION -> {
+        var typed = (MultiplicationAssignmentExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case MULTIPLICATION_EXPRESSION -> {
+        var typed = (MultiplicationExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case NAMED_LAYOUT_QUALIFIER_PART -> {
+        var typed = (NamedLayoutQualifierPart) node;
+        writeNode(typed.getName());
+        writeNode(typed.getExpression());
+      }
+      case NEGATION_EXPRESSION -> {
+        var typed = (NegationExpression) node;
+        writeNode(typed.getOperand());
+      }
+      case NESTED_INITIALIZER -> {
+        var typed = (NestedInitializer) node;
+        writeList(typed.getInitializers());
+      }
+      case PRECISION_DECLARATION -> {
+        var typed = (PrecisionDeclaration) node;
+        writeNode(typed.getPrecisionQualifier());
+        writeNode(typed.getTypeSpecifier());
+      }
+      case PRECISION_QUALIFIER -> {
+        var typed = (PrecisionQualifier) node;
+        writeEnum(typed.getPrecisionLevel());
+      }
+      case REFERENCE_EXPRESSION -> {
+        var typed = (ReferenceExpression) node;
+        writeNode(typed.getIdentifier());
+      }
+      case RETURN_STATEMENT -> {
+        var typed = (ReturnStatement) node;
+        writeNode(typed.getExpression());
+      }
+      case RIGHT_SHIFT_ASSIGNMENT_EXPRESSION -> {
+        var typed = (RightShiftAssignmentExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case RIGHT_SHIFT_EXPRESSION -> {
+        var typed = (RightShiftExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case SELECTION_STATEMENT -> {
+        var typed = (SelectionStatement) node;
+        writeList(typed.getConditions());
+        writeList(typed.getStatements());
+      }
+      case SEQUENCE_EXPRESSION -> {
+        var typed = (SequenceExpression) node;
+        writeList(typed.getExpressions());
+      }
+      case STRUCT_BODY -> {
+        var typed = (StructBody) node;
+        writeList(typed.getChildren());
+      }
+      case STRUCT_DECLARATOR -> {
+        var typed = (StructDeclarator) node;
+        writeNode(typed.getName());
+        writeNode(typed.getArraySpecifier());
+      }
+      case STRUCT_MEMBER -> {
+        var typed = (StructMember) node;
+        writeNode(typed.getType());
+        writeList(typed.getDeclarators());
+      }
+      case STRUCT_SPECIFIER -> {
+        var typed = (StructSpecifier) node;
+        writeNode(typed.getName());
+        writeNode(typed.getStructBody());
+        writeNode(typed.getArraySpecifier());
+      }
+      case SUBTRACTION_ASSIGNMENT_EXPRESSION -> {
+        var typed = (SubtractionAssignmentExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case SUBTRACTION_EXPRESSION -> {
+        var typed = (SubtractionExpression) node;
+        writeNode(typed.getLeft());
+        writeNode(typed.getRight());
+      }
+      case SWITCH_STATEMENT -> {
+        var typed = (SwitchStatement) node;
+        writeNode(typed.getExpression());
+        writeNode(typed.getStatement());
+      }
+      case TYPE_AND_INIT_DECLARATION -> {
+        var typed = (TypeAndInitDeclaration) node;
+        writeNode(typed.getType());
+        writeList(typed.getMembers());
+      }
+      case TYPE_QUALIFIER -> {
+        var typed = (TypeQualifier) node;
+        writeList(typed.getChildren());
+      }
+      case TYPE_REFERENCE -> {
+        var typed = (TypeReference) node;
+        writeNode(typed.getReference());
+        writeNode(typed.getArraySpecifier());
+      }
+      case VARIABLE_DECLARATION -> {
+        var typed = (VariableDeclaration) node;
+        writeNode(typed.getTypeQualifier());
+        writeList(typed.getNames());
+      }
+      case VERSION_STATEMENT -> {
+        var typed = (VersionStatement) node;
+        writeEnum(typed.getVersion());
+        writeEnum(typed.getProfile());
+      }
+      case BREAK_STATEMENT,
+          CONTINUE_STATEMENT,
+          DEFAULT_STATEMENT,
+          DEMOTE_STATEMENT,
+          DISCARD_STATEMENT,
+          EMPTY_DECLARATION,
+          EMPTY_STATEMENT,
+          INVARIANT_QUALIFIER,
+          PRECISE_QUALIFIER,
+          SHARED_LAYOUT_QUALIFIER_PART -> {
+        // these nodes have no data
+      }
+      default -> throw new IllegalArgumentException("Unknown node type tag: " + tag);
+    }
+  }
+}
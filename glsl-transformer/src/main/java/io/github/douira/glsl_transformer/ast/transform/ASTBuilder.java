@@ -46,7 +46,31 @@ import io.github.douira.glsl_transformer.util.Type;
  * relationship between a parse tree and an AST is encoded in this visitor.
  */
 public class ASTBuilder extends GLSLParserBaseVisitor<ASTNode> {
-  private static final Deque<Interval> sourceLineStack = new ArrayDeque<>();
+  private static final ThreadLocal<Deque<Interval>> sourceLineStack = ThreadLocal.withInitial(ArrayDeque::new);
+  private static final ThreadLocal<Boolean> lazyBuilds = ThreadLocal.withInitial(() -> false);
+
+  private final boolean lazyFunctionBodies = lazyBuilds.get();
+
+  /**
+   * Runs the given build with lazy function bodies on the current thread. The
+   * bodies of function definitions built by it are not built right away but
+   * only when they're first accessed or when an index of their root is queried.
+   * Until then they keep their parse tree, from which a separate copy is built
+   * when they are printed.
+   * 
+   * @param <R>   The return type of the build
+   * @param build The build to run
+   * @return The result of the build
+   */
+  public static <R> R withLazyFunctionBodies(Supplier<R> build) {
+    var previous = lazyBuilds.get();
+    lazyBuilds.set(true);
+    try {
+      return build.get();
+    } finally {
+      lazyBuilds.set(previous);
+    }
+  }
 
   /**
    * Builds an AST from the given parse tree with a new root.
@@ -55,7 +79,7 @@ public class ASTBuilder extends GLSLParserBaseVisitor<ASTNode> {
    * @return The built AST
    */
   public static ASTNode build(ParseTree ctx) {
-    return Root.indexNodes(() -> buildInternal(ctx));
+    return Root.indexNodesBulk(() -> buildInternal(ctx));
   }
 
   /**
@@ -66,7 +90,7 @@ public class ASTBuilder extends GLSLParserBaseVisitor<ASTNode> {
    * @return The built AST
    */
   public static ASTNode build(Root rootInstance, ParseTree ctx) {
-    return Root.indexNodes(rootInstance, () -> buildInternal(ctx));
+    return Root.indexNodesBulk(rootInstance, () -> buildInternal(ctx));
   }
 
   /**
@@ -81,14 +105,14 @@ public class ASTBuilder extends GLSLParserBaseVisitor<ASTNode> {
   public static <TreeType extends ParseTree, ReturnType extends ASTNode> ReturnType build(
       TreeType ctx,
       BiFunction<ASTBuilder, TreeType, ReturnType> visitMethod) {
-    return Root.indexNodes(() -> buildInternal(ctx, visitMethod));
+    return Root.indexNodesBulk(() -> buildInternal(ctx, visitMethod));
   }
 
   public static <TreeType extends ParseTree, ReturnType extends ASTNode> ReturnType build(
       Root rootInstance,
       TreeType ctx,
       BiFunction<ASTBuilder, TreeType, ReturnType> visitMethod) {
-    return Root.indexNodes(rootInstance, () -> buildInternal(ctx, visitMethod));
+    return Root.indexNodesBulk(rootInstance, () -> buildInternal(ctx, visitMethod));
   }
 
   /**
@@ -99,7 +123,7 @@ public class ASTBuilder extends GLSLParserBaseVisitor<ASTNode> {
    * @return The built AST
    */
   public static ASTNode buildSubtree(ASTNode parentTreeMember, ParseTree ctx) {
-    return Root.indexNodes(parentTreeMember, () -> buildInternal(ctx));
+    return Root.indexNodesBulk(parentTreeMember, () -> buildInternal(ctx));
   }
 
   /**
@@ -117,7 +141,7 @@ public class ASTBuilder extends GLSLParserBaseVisitor<ASTNode> {
       ASTNode parentTreeMember,
       TreeType ctx,
       BiFunction<ASTBuilder, TreeType, ReturnType> visitMethod) {
-    return Root.indexNodes(parentTreeMember, () -> buildInternal(ctx, visitMethod));
+    return Root.indexNodesBulk(parentTreeMember, () -> buildInternal(ctx, visitMethod));
   }
 
   private static ASTNode buildInternal(ParseTree ctx) {
@@ -136,12 +160,12 @@ public class ASTBuilder extends GLSLParserBaseVisitor<ASTNode> {
 
   private static void startConstruction(Token token) {
     var line = token.getLine();
-    sourceLineStack.push(Interval.of(line, line));
+    sourceLineStack.get().push(Interval.of(line, line));
   }
 
   private static void startConstruction(ParseTree tree) {
     if (tree instanceof ParserRuleContext ctx) {
-      sourceLineStack.push(Interval.of(ctx.start.getLine(), ctx.stop.getLine()));
+      sourceLineStack.get().push(Interval.of(ctx.start.getLine(), ctx.stop.getLine()));
     } else if (tree instanceof TerminalNodeImpl ctx) {
       startConstruction(ctx.getSymbol());
     } else {
@@ -150,7 +174,7 @@ public class ASTBuilder extends GLSLParserBaseVisitor<ASTNode> {
   }
 
   private static void endConstruction() {
-    sourceLineStack.pop();
+    sourceLineStack.get().pop();
   }
 
   private static <R extends ASTNode> R constructSimple(
@@ -162,7 +186,7 @@ public class ASTBuilder extends GLSLParserBaseVisitor<ASTNode> {
   }
 
   public static Interval getActiveSourceLines() {
-    var sourceLines = sourceLineStack.peekFirst();
+    var sourceLines = sourceLineStack.get().peekFirst();
     return sourceLines == null ? ASTNode.SYNTHETIC_SOURCE : sourceLines;
   }
 
@@ -902,9 +926,10 @@ public class ASTBuilder extends GLSLParserBaseVisitor<ASTNode> {
   public FunctionDefinition visitFunctionDefinition(FunctionDefinitionContext ctx) {
     startConstruction(ctx);
     try {
-      return new FunctionDefinition(
-          visitFunctionPrototype(ctx.functionPrototype()),
-          visitCompoundStatement(ctx.compoundStatement()));
+      var functionPrototype = visitFunctionPrototype(ctx.functionPrototype());
+      return lazyFunctionBodies
+          ? FunctionDefinition.withLazyBody(functionPrototype, ctx.compoundStatement())
+          : new FunctionDefinition(functionPrototype, visitCompoundStatement(ctx.compoundStatement()));
     } finally {
       endConstruction();
     }
@@ -2,6 +2,7 @@ package io.github.douira.glsl_transformer.ast.transform;
 
 import java.util.*;
 import java.util.function.*;
+import java.util.stream.*;
 
 import org.antlr.v4.runtime.RecognitionException;
 
@@ -14,24 +15,34 @@ import io.github.douira.glsl_transformer.ast.node.expression.Expression;
 import io.github.douira.glsl_transformer.ast.node.external_declaration.ExternalDeclaration;
 import io.github.douira.glsl_transformer.ast.node.statement.Statement;
 import io.github.douira.glsl_transformer.ast.query.EmptyRoot;
+import io.github.douira.glsl_transformer.ast.query.Root;
+import io.github.douira.glsl_transformer.ast.transform.ExternalDeclarationSplitter.*;
 import io.github.douira.glsl_transformer.basic.*;
 import io.github.douira.glsl_transformer.basic.EnhancedParser.ParsingStrategy;
 import io.github.douira.glsl_transformer.cst.token_filter.TokenFilter;
 import io.github.douira.glsl_transformer.tree.ExtendedContext;
 
 public class ASTParser implements ParserInterface {
-  private static ASTParser INSTANCE;
+  private static final ThreadLocal<ASTParser> INSTANCE = ThreadLocal.withInitial(ASTParser::new);
 
+  /**
+   * Gets the internal instance of the parser for the current thread. Each thread
+   * gets its own instance so that concurrent parsing never shares lexer or
+   * parser state. The parser's DFA cache is shared between all instances. This
+   * should generally not be used by external library users.
+   * 
+   * @return The internal parser instance of the current thread
+   */
   public static ASTParser getInternalInstance() {
-    if (INSTANCE == null) {
-      INSTANCE = new ASTParser();
-    }
-    return INSTANCE;
+    return INSTANCE.get();
   }
 
   private final CachingParser parser = new CachingParser();
   private TypedTreeCache<ASTNode> buildCache = new TypedTreeCache<>();
   private CacheStrategy cacheStrategy = CacheStrategy.ALL_EXCLUDING_TRANSLATION_UNIT;
+  private boolean lazyFunctionBodies = false;
+  private boolean deferredIndexing = false;
+  private int configurationVersion;
 
   public enum CacheStrategy {
     ALL,
@@ -41,14 +52,143 @@ public class ASTParser implements ParserInterface {
 
   public void setBuildCacheSizeAndClear(int size) {
     buildCache = new TypedTreeCache<>(size);
+    configurationChanged();
+  }
+
+  public void setBuildCacheSizeAndClear(int size, long maxWeight) {
+    buildCache = new TypedTreeCache<>(size, maxWeight);
+    configurationChanged();
+  }
+
+  /**
+   * Sets the cache used for built ASTs. The cache is thread-safe and can be
+   * shared between multiple parsers.
+   * 
+   * @param buildCache The new build cache
+   */
+  public void setBuildCache(TypedTreeCache<ASTNode> buildCache) {
+    this.buildCache = buildCache;
+    configurationChanged();
+  }
+
+  public TypedTreeCache<ASTNode> getBuildCache() {
+    return buildCache;
   }
 
   public void setParseCacheSizeAndClear(int size) {
     parser.setParseCacheSizeAndClear(size);
+    configurationChanged();
+  }
+
+  public void setParseCacheSizeAndClear(int size, long maxWeight) {
+    parser.setParseCacheSizeAndClear(size, maxWeight);
+    configurationChanged();
+  }
+
+  public void setParseCache(TypedTreeCache<ExtendedContext> parseCache) {
+    parser.setParseCache(parseCache);
+    configurationChanged();
+  }
+
+  public TypedTreeCache<ExtendedContext> getParseCache() {
+    return parser.getParseCache();
   }
 
   public void setCacheStrategy(CacheStrategy cacheStrategy) {
     this.cacheStrategy = cacheStrategy;
+    configurationChanged();
+  }
+
+  public CacheStrategy getCacheStrategy() {
+    return cacheStrategy;
+  }
+
+  /**
+   * Sets if the bodies of function definitions should only be built when
+   * they're first accessed or when an index of their root is queried. This
+   * makes building faster for transformations that only work with the global
+   * declarations. Unbuilt bodies keep their parse tree and are printed as they
+   * were written in the source.
+   * 
+   * @param lazyFunctionBodies If function bodies should be built lazily
+   * @see ASTBuilder#withLazyFunctionBodies(Supplier)
+   */
+  public void setLazyFunctionBodies(boolean lazyFunctionBodies) {
+    this.lazyFunctionBodies = lazyFunctionBodies;
+    configurationChanged();
+  }
+
+  public boolean getLazyFunctionBodies() {
+    return lazyFunctionBodies;
+  }
+
+  /**
+   * Returns the variant of the build cache keys. Trees with lazily built
+   * function bodies are cached separately from fully built trees.
+   */
+  private int getBuildCacheVariant() {
+    return lazyFunctionBodies ? 1 : 0;
+  }
+
+  /**
+   * Sets if the nodes of built trees should only be added to the indexes of
+   * their root when the indexes are first queried. The nodes are then indexed
+   * all at once. This makes building faster for trees that are only printed.
+   * 
+   * @param deferredIndexing If indexing should be deferred
+   * @see Root#withDeferredIndexing(Supplier)
+   */
+  public void setDeferredIndexing(boolean deferredIndexing) {
+    this.deferredIndexing = deferredIndexing;
+    configurationChanged();
+  }
+
+  public boolean getDeferredIndexing() {
+    return deferredIndexing;
+  }
+
+  private <R> R build(Supplier<R> builder) {
+    return index(() -> lazyFunctionBodies ? ASTBuilder.withLazyFunctionBodies(builder) : builder.get());
+  }
+
+  private <R> R index(Supplier<R> builder) {
+    return deferredIndexing ? Root.withDeferredIndexing(builder) : builder.get();
+  }
+
+  private void configurationChanged() {
+    configurationVersion++;
+  }
+
+  /**
+   * Returns a number that changes whenever the configuration of this parser is
+   * changed through its setters. Parsers that were configured with
+   * {@link #copyConfigurationTo(ASTParser)} only need to be configured again if
+   * it has changed since then.
+   * 
+   * @return The version of the configuration
+   */
+  int getConfigurationVersion() {
+    return configurationVersion;
+  }
+
+  /**
+   * Configures the given parser to parse in the same way as this parser. The
+   * caches and the parsing statistics are shared with the other parser since
+   * they are thread-safe. The parse token filter is not copied since token
+   * filters are stateful and can't be shared.
+   * 
+   * @param other The parser to configure
+   */
+  public void copyConfigurationTo(ASTParser other) {
+    other.setThrowParseErrors(getThrowParseErrors());
+    other.setParsingStrategy(getParsingStrategy());
+    other.setParsingStatistics(getParsingStatistics());
+    other.setFastLexer(getFastLexer());
+    other.setCacheStrategy(cacheStrategy);
+    other.setLazyFunctionBodies(lazyFunctionBodies);
+    other.setDeferredIndexing(deferredIndexing);
+    other.setBuildCache(buildCache);
+    other.setParseCache(getParseCache());
   }
 
   @Override
@@ -64,26 +204,57 @@ public class ASTParser implements ParserInterface {
   @Override
   public void setThrowParseErrors(boolean throwParseErrors) {
     parser.setThrowParseErrors(throwParseErrors);
+    configurationChanged();
+  }
+
+  public boolean getThrowParseErrors() {
+    return parser.getThrowParseErrors();
   }
 
   @Override
   public void setParsingStrategy(ParsingStrategy parsingStrategy) {
     parser.setParsingStrategy(parsingStrategy);
+    configurationChanged();
+  }
+
+  public ParsingStrategy getParsingStrategy() {
+    return parser.getParsingStrategy();
+  }
+
+  public void setParsingStatistics(ParsingStatistics parsingStatistics) {
+    parser.setParsingStatistics(parsingStatistics);
+    configurationChanged();
+  }
+
+  public ParsingStatistics getParsingStatistics() {
+    return parser.getParsingStatistics();
+  }
+
+  public void setFastLexer(boolean fastLexer) {
+    parser.setFastLexer(fastLexer);
+    configurationChanged();
+  }
+
+  public boolean getFastLexer() {
+    return parser.getFastLexer();
   }
 
   @Override
   public void setSLLOnly() {
     parser.setSLLOnly();
+    configurationChanged();
   }
 
   @Override
   public void setLLOnly() {
     parser.setLLOnly();
+    configurationChanged();
   }
 
   @Override
   public void setParseTokenFilter(TokenFilter<?> parseTokenFilter) {
     parser.setParseTokenFilter(parseTokenFilter);
+    configurationChanged();
   }
 
   @Override
@@ -103,12 +274,13 @@ public class ASTParser implements ParserInterface {
     }
 
     if (cacheStrategy == CacheStrategy.NONE) {
-      return ASTBuilder.buildSubtree(parentTreeMember, parser.parse(input, ruleType, parseMethod), visitMethod);
+      return build(() -> ASTBuilder.buildSubtree(
+          parentTreeMember, parser.parse(input, ruleType, parseMethod), visitMethod));
     } else {
       // cache and possibly build, always clone to return new trees
-      return (ReturnType) buildCache.cachedGet(input, ruleType,
-          () -> ASTBuilder.build(new EmptyRoot(), parser.parse(input, ruleType, parseMethod), visitMethod))
-          .cloneInto(parentTreeMember);
+      var cached = buildCache.cachedGet(input, ruleType, getBuildCacheVariant(),
+          () -> build(() -> ASTBuilder.build(new EmptyRoot(), parser.parse(input, ruleType, parseMethod), visitMethod)));
+      return (ReturnType) index(() -> cached.cloneInto(parentTreeMember));
     }
   }
 
@@ -121,11 +293,43 @@ public class ASTParser implements ParserInterface {
     if (cacheStrategy == CacheStrategy.NONE
         || cacheStrategy == CacheStrategy.ALL_EXCLUDING_TRANSLATION_UNIT
             && ruleType == TranslationUnitContext.class) {
-      return ASTBuilder.build(parser.parse(input, ruleType, parseMethod), visitMethod);
+      return build(() -> ASTBuilder.build(parser.parse(input, ruleType, parseMethod), visitMethod));
+    } else {
+      var cached = buildCache.cachedGet(input, ruleType, getBuildCacheVariant(),
+          () -> build(() -> ASTBuilder.build(new EmptyRoot(), parser.parse(input, ruleType, parseMethod), visitMethod)));
+      return (ReturnType) index(cached::cloneSeparate);
+    }
+  }
+
+  /**
+   * Parses a parse input into a separate AST. This works like
+   * {@link #parseNodeSeparate(String, Class, Function, BiFunction)} but reads
+   * the input directly and looks it up in the caches by its precomputed hash.
+   * 
+   * @param <RuleType>   The type of the parse tree
+   * @param <ReturnType> The type of the AST node
+   * @param input        The input to parse
+   * @param ruleType     The class of the parse tree
+   * @param parseMethod  The parser method reference to use for parsing
+   * @param visitMethod  The build method reference to use for building
+   * @return The built AST
+   * @throws RecognitionException If the input can't be parsed
+   */
+  @SuppressWarnings("unchecked") // consistent use of the cache results in the same type
+  public <RuleType extends ExtendedContext, ReturnType extends ASTNode> ReturnType parseNodeSeparate(
+      ParseInput input,
+      Class<RuleType> ruleType,
+      Function<GLSLParser, RuleType> parseMethod,
+      BiFunction<ASTBuilder, RuleType, ReturnType> visitMethod) throws RecognitionException {
+    if (cacheStrategy == CacheStrategy.NONE
+        || cacheStrategy == CacheStrategy.ALL_EXCLUDING_TRANSLATION_UNIT
+            && ruleType == TranslationUnitContext.class) {
+      return build(() -> ASTBuilder.build(parser.parse(input, ruleType, parseMethod), visitMethod));
     } else {
-      return (ReturnType) buildCache.cachedGet(input, ruleType,
-          () -> ASTBuilder.build(new EmptyRoot(), parser.parse(input, ruleType, parseMethod), visitMethod))
-          .cloneSeparate();
+      var cached = buildCache.cachedGet(input, ruleType, getBuildCacheVariant(),
+          snapshot -> build(
+              () -> ASTBuilder.build(new EmptyRoot(), parser.parse(snapshot, ruleType, parseMethod), visitMethod)));
+      return (ReturnType) index(cached::cloneSeparate);
     }
   }
 
@@ -136,6 +340,186 @@ public class ASTParser implements ParserInterface {
         ASTBuilder::visitTranslationUnit);
   }
 
+  /**
+   * Parses a translation unit from a parse input that can be backed by a char
+   * buffer, UTF-8 bytes or a memory mapped file.
+   * 
+   * @param input The input to parse
+   * @return The parsed translation unit
+   * @throws RecognitionException If the input can't be parsed
+   */
+  public TranslationUnit parseTranslationUnit(ParseInput input) throws RecognitionException {
+    return parseNodeSeparate(input,
+        TranslationUnitContext.class,
+        GLSLParser::translationUnit,
+        ASTBuilder::visitTranslationUnit);
+  }
+
+  /**
+   * Parses a translation unit by reusing the external declarations of a
+   * previously parsed translation unit that haven't changed in the source code.
+   * Both sources are split at the boundaries of their external declarations and
+   * only the changed region between the unchanged declarations at the start and
+   * the end is parsed again. The previous translation unit is updated in place,
+   * which keeps the unchanged declarations and their index entries in its root,
+   * and then returned. The source lines of the reused declarations are shifted
+   * to their new positions.
+   * 
+   * The previous translation unit must not have been modified since it was
+   * parsed from the previous source. The caller is responsible for this since
+   * it's only checked that the previous translation unit has the same number
+   * and kinds of external declarations as the previous source. If the sources
+   * can't be split, the version directive changed or the previous translation
+   * unit doesn't match the previous source this way, the new source is parsed
+   * as a whole. The previous translation unit is left unchanged if parsing
+   * fails. The changed declarations are parsed without the parse cache and
+   * their function bodies are always built right away.
+   * 
+   * @param previous      The translation unit parsed from the previous source
+   * @param previousInput The source the previous translation unit was parsed
+   *                      from
+   * @param input         The new source
+   * @return The translation unit of the new source
+   * @throws RecognitionException If the changed parts of the new source can't be
+   *                              parsed
+   */
+  public TranslationUnit reparseTranslationUnit(
+      TranslationUnit previous,
+      String previousInput,
+      String input) throws RecognitionException {
+    if (previous == null || previousInput == null) {
+      return parseTranslationUnit(input);
+    }
+    var previousSplit = ExternalDeclarationSplitter.split(previousInput);
+    var split = ExternalDeclarationSplitter.split(input);
+    var children = previous.getChildren();
+    if (previousSplit == null || split == null
+        || !previousSplit.versionEquals(split)
+        || !chunksMatch(previousSplit, children)) {
+      return parseTranslationUnit(input);
+    }
+
+    // find the unchanged chunks at the start and the end
+    var previousCount = previousSplit.getChunkCount();
+    var count = split.getChunkCount();
+    var prefix = 0;
+    var maxUnchanged = Math.min(previousCount, count);
+    while (prefix < maxUnchanged && previousSplit.chunkEquals(prefix, split, prefix)) {
+      prefix++;
+    }
+    var suffix = 0;
+    while (suffix < maxUnchanged - prefix
+        && previousSplit.chunkEquals(previousCount - 1 - suffix, split, count - 1 - suffix)) {
+      suffix++;
+    }
+
+    // parse the changed chunks before changing the previous tree
+    var changed = new ArrayList<ExternalDeclaration>(count - suffix - prefix);
+    try {
+      for (var i = prefix; i < count - suffix; i++) {
+        // the chunks are unique and not worth caching, the parsed nodes are moved
+        // from the first line to the line the chunk starts at
+        var chunkInput = split.getChunk(i);
+        var node = index(() -> ASTBuilder.buildSubtree(previous,
+            parser.parse(chunkInput, GLSLParser::externalDeclaration),
+            ASTBuilder::visitExternalDeclaration));
+        changed.add(node);
+        node.shiftSourceLines(split.getChunkLine(i) - 1);
+      }
+    } catch (RuntimeException e) {
+      // remove the already built declarations from the index again
+      for (var node : changed) {
+        node.unregisterSubtree();
+      }
+      throw e;
+    }
+
+    if (suffix > 0) {
+      var lineOffset = split.getChunkLine(count - suffix) - previousSplit.getChunkLine(previousCount - suffix);
+      for (var i = previousCount - suffix; i < previousCount; i++) {
+        var child = children.get(i);
+        if (child != null) {
+          child.shiftSourceLines(lineOffset);
+        }
+      }
+    }
+
+    var removedRange = children.subList(prefix, previousCount - suffix);
+    var removed = new ArrayList<>(removedRange);
+    removedRange.clear();
+    for (var child : removed) {
+      if (child != null) {
+        child.unregisterSubtree();
+      }
+    }
+    children.addAll(prefix, changed);
+    return previous;
+  }
+
+  /**
+   * Checks if the chunks of a split have the same kinds as the given external
+   * declarations.
+   */
+  private static boolean chunksMatch(Split split, List<ExternalDeclaration> children) {
+    if (split.getChunkCount() != children.size()) {
+      return false;
+    }
+    for (var i = 0; i < children.size(); i++) {
+      var child = children.get(i);
+      if (child == null) {
+        return false;
+      }
+      var kind = switch (child.getExternalDeclarationType()) {
+        case FUNCTION_DEFINITION -> ChunkKind.FUNCTION_DEFINITION;
+        case DECLARATION, LAYOUT_DEFAULTS, EMPTY_DECLARATION -> ChunkKind.DECLARATION;
+        case PRAGMA_STATEMENT, EXTENSION_STATEMENT, CUSTOM_DIRECTIVE_STATEMENT, INCLUDE_STATEMENT ->
+          ChunkKind.DIRECTIVE;
+      };
+      if (kind != split.getChunkKind(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Parses the external declarations of a translation unit one at a time as
+   * they are consumed from the returned stream. Each external declaration is
+   * built separately with its own root right after it's been parsed and its
+   * parse tree is discarded afterwards. Callers that only scan or filter the
+   * external declarations of a large translation unit don't need to hold the
+   * whole parse tree or AST in memory this way. The version statement is
+   * skipped and the caches are not used.
+   * 
+   * This parser may not be used for anything else until the stream has been
+   * consumed.
+   * 
+   * @param input The source of the translation unit
+   * @return The stream of the parsed external declarations
+   * @see EnhancedParser#iterateExternalDeclarations(String)
+   */
+  public Stream<ExternalDeclaration> streamExternalDeclarations(String input) {
+    return streamExternalDeclarations(parser.iterateExternalDeclarations(input));
+  }
+
+  /**
+   * Parses the external declarations of a parse input one at a time.
+   * 
+   * @param input The input to parse
+   * @return The stream of the parsed external declarations
+   * @see #streamExternalDeclarations(String)
+   */
+  public Stream<ExternalDeclaration> streamExternalDeclarations(ParseInput input) {
+    return streamExternalDeclarations(parser.iterateExternalDeclarations(input));
+  }
+
+  private static Stream<ExternalDeclaration> streamExternalDeclarations(
+      EnhancedParser.ExternalDeclarationIterator iterator) {
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .map(ctx -> ASTBuilder.build(ctx, ASTBuilder::visitExternalDeclaration));
+  }
+
   public ExternalDeclaration parseExternalDeclaration(ASTNode treeMember, String input)
       throws RecognitionException {
     return parseNode(input, treeMember,
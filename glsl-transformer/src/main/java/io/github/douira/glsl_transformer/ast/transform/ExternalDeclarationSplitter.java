@@ -0,0 +1,287 @@
+package io.github.douira.glsl_transformer.ast.transform;
+
+import java.util.*;
+
+/**
+ * Splits GLSL source code at the boundaries of its top-level external
+ * declarations without lexing or parsing it. Each chunk of the split contains
+ * exactly one external declaration together with the whitespace, comments and
+ * hidden preprocessor directives in front of it. The version directive and
+ * everything before it is kept separately since it isn't an external
+ * declaration.
+ *
+ * The splitter only looks at braces, semicolons, comments and directives. It
+ * doesn't validate the code and gives up if it finds something it doesn't
+ * understand, in which case the source should simply be parsed as a whole.
+ */
+public class ExternalDeclarationSplitter {
+  private static final Set<String> hiddenDirectives = new HashSet<>(Arrays.asList(
+      "define", "undef", "if", "ifdef", "ifndef", "else", "elif", "endif", "error", "line"));
+
+  /**
+   * The kind of external declaration a chunk contains as far as the splitter can
+   * tell without parsing it.
+   */
+  public enum ChunkKind {
+    /**
+     * A directive like a pragma, extension or include statement.
+     */
+    DIRECTIVE,
+
+    /**
+     * A function definition that ends with the closing brace of its body.
+     */
+    FUNCTION_DEFINITION,
+
+    /**
+     * A declaration, layout default or empty declaration that ends with a
+     * semicolon.
+     */
+    DECLARATION
+  }
+
+  /**
+   * The result of splitting a source string.
+   */
+  public static class Split {
+    public final String source;
+
+    /**
+     * The end of the part of the source that contains the version directive or 0
+     * if there is no version directive.
+     */
+    public final int versionEnd;
+
+    /**
+     * The start offsets of the chunks. Each chunk ends where the next one
+     * starts and the last one ends at {@link #end}.
+     */
+    private final int[] chunkStarts;
+    private final ChunkKind[] chunkKinds;
+    private final int[] chunkLines;
+    public final int end;
+
+    private Split(String source, int versionEnd, int[] chunkStarts, ChunkKind[] chunkKinds, int end) {
+      this.source = source;
+      this.versionEnd = versionEnd;
+      this.chunkStarts = chunkStarts;
+      this.chunkKinds = chunkKinds;
+      this.end = end;
+
+      // find the line number each chunk starts at
+      chunkLines = new int[chunkStarts.length];
+      var line = 1;
+      var position = 0;
+      for (var i = 0; i < chunkStarts.length; i++) {
+        for (; position < chunkStarts[i]; position++) {
+          if (source.charAt(position) == '\n') {
+            line++;
+          }
+        }
+        chunkLines[i] = line;
+      }
+    }
+
+    public int getChunkCount() {
+      return chunkStarts.length;
+    }
+
+    public int getChunkStart(int index) {
+      return chunkStarts[index];
+    }
+
+    public int getChunkEnd(int index) {
+      return index + 1 < chunkStarts.length ? chunkStarts[index + 1] : end;
+    }
+
+    /**
+     * Returns the line number at which the given chunk starts. The first line
+     * has the number 1.
+     *
+     * @param index The index of the chunk
+     * @return The line number of the start of the chunk
+     */
+    public int getChunkLine(int index) {
+      return chunkLines[index];
+    }
+
+    public ChunkKind getChunkKind(int index) {
+      return chunkKinds[index];
+    }
+
+    public String getChunk(int index) {
+      return source.substring(getChunkStart(index), getChunkEnd(index));
+    }
+
+    /**
+     * Checks if the given chunk of this split has the same content as the given
+     * chunk of another split.
+     *
+     * @param index      The index of the chunk in this split
+     * @param other      The other split
+     * @param otherIndex The index of the chunk in the other split
+     * @return {@code true} if the chunks are equal
+     */
+    public boolean chunkEquals(int index, Split other, int otherIndex) {
+      var start = getChunkStart(index);
+      var length = getChunkEnd(index) - start;
+      var otherStart = other.getChunkStart(otherIndex);
+      return length == other.getChunkEnd(otherIndex) - otherStart
+          && source.regionMatches(start, other.source, otherStart, length);
+    }
+
+    /**
+     * Checks if the version directive part of this split is the same as that of
+     * the other split.
+     *
+     * @param other The other split
+     * @return {@code true} if the version parts are equal
+     */
+    public boolean versionEquals(Split other) {
+      return versionEnd == other.versionEnd
+          && source.regionMatches(0, other.source, 0, versionEnd);
+    }
+  }
+
+  /**
+   * Splits the given source into chunks of one external declaration each.
+   *
+   * @param source The source to split
+   * @return The split or {@code null} if the source can't be split reliably
+   */
+  public static Split split(String source) {
+    var length = source.length();
+    var chunkStarts = new ArrayList<Integer>();
+    var chunkKinds = new ArrayList<ChunkKind>();
+    var versionEnd = 0;
+    var chunkStart = 0;
+    var pending = false;
+    var functionBody = false;
+    var depth = 0;
+    var lastCodeChar = ' ';
+    var i = 0;
+    while (i < length) {
+      var c = source.charAt(i);
+      if (Character.isWhitespace(c) || c == '\\') {
+        i++;
+        continue;
+      }
+
+      if (c == '/' && i + 1 < length) {
+        var next = source.charAt(i + 1);
+        if (next == '/') {
+          i = findLineEnd(source, i, false);
+          continue;
+        }
+        if (next == '*') {
+          var commentEnd = source.indexOf("*/", i + 2);
+          if (commentEnd < 0) {
+            return null;
+          }
+          i = commentEnd + 2;
+          continue;
+        }
+      }
+
+      if (c == '#') {
+        var directive = readDirectiveName(source, i + 1);
+        var lineEnd = findLineEnd(source, i, true);
+        if (hiddenDirectives.contains(directive)
+            || directive.isEmpty() && source.substring(i + 1, lineEnd).trim().isEmpty()) {
+          // hidden directives don't produce nodes and can be anywhere
+          i = lineEnd;
+          continue;
+        }
+        if (pending || depth > 0) {
+          return null;
+        }
+        if (directive.equals("version")) {
+          if (versionEnd > 0 || !chunkStarts.isEmpty()) {
+            return null;
+          }
+          versionEnd = lineEnd;
+        } else {
+          chunkStarts.add(chunkStart);
+          chunkKinds.add(ChunkKind.DIRECTIVE);
+        }
+        chunkStart = lineEnd;
+        i = lineEnd;
+        continue;
+      }
+
+      pending = true;
+      ChunkKind chunkEnd = null;
+      if (c == '{') {
+        if (depth == 0 && lastCodeChar == ')') {
+          functionBody = true;
+        }
+        depth++;
+      } else if (c == '}') {
+        depth--;
+        if (depth < 0) {
+          return null;
+        }
+        if (depth == 0 && functionBody) {
+          functionBody = false;
+          chunkEnd = ChunkKind.FUNCTION_DEFINITION;
+        }
+      } else if (c == ';' && depth == 0) {
+        chunkEnd = ChunkKind.DECLARATION;
+      }
+      lastCodeChar = c;
+      i++;
+
+      if (chunkEnd != null) {
+        chunkStarts.add(chunkStart);
+        chunkKinds.add(chunkEnd);
+        chunkStart = i;
+        pending = false;
+      }
+    }
+    if (pending || depth > 0) {
+      return null;
+    }
+
+    var starts = new int[chunkStarts.size()];
+    for (var j = 0; j < starts.length; j++) {
+      starts[j] = chunkStarts.get(j);
+    }
+    return new Split(source, versionEnd, starts, chunkKinds.toArray(new ChunkKind[0]), chunkStart);
+  }
+
+  private static String readDirectiveName(String source, int start) {
+    var length = source.length();
+    var i = start;
+    while (i < length && (source.charAt(i) == ' ' || source.charAt(i) == '\t')) {
+      i++;
+    }
+    var nameStart = i;
+    while (i < length && Character.isLetter(source.charAt(i))) {
+      i++;
+    }
+    return source.substring(nameStart, i);
+  }
+
+  /**
+   * Finds the end of the line that contains the given position. If line
+   * continuations are respected, a backslash right before a newline continues
+   * the line. If the line includes its newline, the returned end is after the
+   * newline.
+   */
+  private static int findLineEnd(String source, int start, boolean includeNewline) {
+    var length = source.length();
+    var i = start;
+    while (i < length) {
+      var c = source.charAt(i);
+      if (c == '\n') {
+        var continued = i > start && source.charAt(i - 1) == '\\'
+            || i > start + 1 && source.charAt(i - 1) == '\r' && source.charAt(i - 2) == '\\';
+        if (!includeNewline || !continued) {
+          return includeNewline ? i + 1 : i;
+        }
+      }
+      i++;
+    }
+    return length;
+  }
+}
@@ -1,6 +1,7 @@
 package io.github.douira.glsl_transformer.ast.transform;
 
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.*;
 
 import org.antlr.v4.runtime.RecognitionException;
@@ -8,15 +9,38 @@ import org.antlr.v4.runtime.RecognitionException;
 import io.github.douira.glsl_transformer.ast.node.TranslationUnit;
 import io.github.douira.glsl_transformer.ast.print.ASTPrinter;
 import io.github.douira.glsl_transformer.job_parameter.JobParameters;
+import io.github.douira.glsl_transformer.util.ConcurrencyUtil;
 
 /**
  * The grouped AST transformer parses multiple strings stored in an arbitrarily
+ * keyed map, transforms them all at once and then prints them into a map with
+ * the same keys.
+ * 
+ * If an executor is set, the items are parsed and printed in parallel using the
+ * executor. Only the transformation itself sees all of the parsed items at
+ * once and is run on the calling thread. The items are parsed with parsers
+ * from a pool owned by this transformer. The pooled parsers are configured like
+ * this transformer when they're created and again when the configuration of
+ * this transformer changes, and they share its caches. At most as many parsers
+ * as there are processors are kept in the pool.
+ * 
+ * Since token filters are stateful and can't be shared between parsers, the
+ * items are parsed serially on the calling thread if a parse token filter is
+ * set even if an executor is set. Printing still happens in parallel.
  */
 public class GroupedASTTransformer<T extends JobParameters, K, M extends Map<K, String>, N extends Map<K, TranslationUnit>>
     extends ASTTransformer<T, Map<K, String>> {
   private Consumer<N> transformation;
   private Supplier<N> tuMapSupplier;
   private Supplier<M> resultMapSupplier;
+  private Executor executor;
+  private final Queue<PooledParser> parserPool = new ArrayBlockingQueue<>(
+      Runtime.getRuntime().availableProcessors());
+
+  private static class PooledParser {
+    final ASTParser parser = new ASTParser();
+    int configurationVersion = -1;
+  }
 
   public GroupedASTTransformer(
       Supplier<N> tuMapSupplier,
@@ -66,13 +90,76 @@ public class GroupedASTTransformer<T extends JobParameters, K, M extends Map<K,
     this.resultMapSupplier = resultMapSupplier;
   }
 
+  /**
+   * Sets the executor that is used to parse and print the items in parallel. If
+   * the executor is {@code null}, the items are parsed and printed serially on
+   * the calling thread. If a parse token filter is set, only printing is done in
+   * parallel.
+   * 
+   * @param executor The executor to use or {@code null}
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  private boolean isParallelParsing() {
+    return executor != null && getParseTokenFilter() == null;
+  }
+
+  private PooledParser takeParser() {
+    var pooled = parserPool.poll();
+    if (pooled == null) {
+      pooled = new PooledParser();
+    }
+    var configurationVersion = getConfigurationVersion();
+    if (pooled.configurationVersion != configurationVersion) {
+      copyConfigurationTo(pooled.parser);
+      pooled.configurationVersion = configurationVersion;
+    }
+    return pooled;
+  }
+
+  private TranslationUnit parseInWorker(String input) {
+    var pooled = takeParser();
+    try {
+      return pooled.parser.parseTranslationUnit(input);
+    } finally {
+      // the parser is dropped if the pool is full
+      parserPool.offer(pooled);
+    }
+  }
+
+  private <V, R> void runParallel(
+      Map<K, V> items,
+      Map<K, R> results,
+      Function<V, R> task) {
+    var futures = new ArrayList<CompletableFuture<R>>(items.size());
+    for (var value : items.values()) {
+      futures.add(value == null
+          ? CompletableFuture.completedFuture(null)
+          : CompletableFuture.supplyAsync(() -> task.apply(value), executor));
+    }
+    var futureIterator = futures.iterator();
+    for (var key : items.keySet()) {
+      results.put(key, ConcurrencyUtil.join(futureIterator.next()));
+    }
+  }
+
   @Override
   public M transform(Map<K, String> items) throws RecognitionException {
     // parse all items
     var translationUnits = tuMapSupplier.get();
-    for (var entry : items.entrySet()) {
-      var value = entry.getValue();
-      translationUnits.put(entry.getKey(), value == null ? null : parseTranslationUnit(value));
+    if (isParallelParsing()) {
+      runParallel(items, translationUnits, this::parseInWorker);
+    } else {
+      for (var entry : items.entrySet()) {
+        var value = entry.getValue();
+        translationUnits.put(entry.getKey(), value == null ? null : parseTranslationUnit(value));
+      }
     }
 
     // transform them all at once
@@ -80,9 +167,14 @@ public class GroupedASTTransformer<T extends JobParameters, K, M extends Map<K,
 
     // print all items
     var printedItems = resultMapSupplier.get();
-    for (var entry : translationUnits.entrySet()) {
-      var value = entry.getValue();
-      printedItems.put(entry.getKey(), value == null ? null : ASTPrinter.print(getPrintType(), value));
+    var printType = getPrintType();
+    if (executor != null) {
+      runParallel(translationUnits, printedItems, value -> ASTPrinter.print(printType, value));
+    } else {
+      for (var entry : translationUnits.entrySet()) {
+        var value = entry.getValue();
+        printedItems.put(entry.getKey(), value == null ? null : ASTPrinter.print(printType, value));
+      }
     }
     return printedItems;
   }
@@ -30,7 +30,7 @@ public interface ASTVisitor<R> extends GeneralASTVisitor<R> {
   }
 
   default R visitVersionStatement(VersionStatement node) {
-    return visitData(node.profile);
+    return visitData(node.getProfile());
   }
 
   default R visitExternalDeclaration(ExternalDeclaration node) {
@@ -46,23 +46,23 @@ public interface ASTVisitor<R> extends GeneralASTVisitor<R> {
   }
 
   default R visitPragmaStatement(PragmaStatement node) {
-    var result = visitData(node.stdGL);
-    result = visitData(result, node.type);
-    result = visitData(result, node.customName);
-    return visitData(result, node.state);
+    var result = visitData(node.isStdGL());
+    result = visitData(result, node.getType());
+    result = visitData(result, node.getCustomName());
+    return visitData(result, node.getState());
   }
 
   default R visitExtensionStatement(ExtensionStatement node) {
-    var result = visitData(superNodeTypeResult(), node.name);
-    return visitData(result, node.behavior);
+    var result = visitData(superNodeTypeResult(), node.getName());
+    return visitData(result, node.getBehavior());
   }
 
   default R visitCustomDirectiveStatement(CustomDirectiveStatement node) {
-    return visitData(node.content);
+    return visitData(node.getContent());
   }
 
   default R visitIncludeStatement(IncludeStatement node) {
-    return visitData(node.content);
+    return visitData(node.getContent());
   }
 
   default R visitDeclarationExternalDeclaration(DeclarationExternalDeclaration node) {
@@ -71,7 +71,7 @@ public interface ASTVisitor<R> extends GeneralASTVisitor<R> {
 
   default R visitLayoutDefaults(LayoutDefaults node) {
     var result = visit(node.getQualifier());
-    result = aggregateResult(result, visitData(node.mode));
+    result = aggregateResult(result, visitData(node.getMode()));
     return result;
   }
 
@@ -443,7 +443,7 @@ public interface ASTVisitor<R> extends GeneralASTVisitor<R> {
   }
 
   default R visitInterpolationQualifier(InterpolationQualifier node) {
-    return visitData(node.interpolationType);
+    return visitData(node.getInterpolationType());
   }
 
   default R visitInvariantQualifier(InvariantQualifier node) {
@@ -467,7 +467,7 @@ public interface ASTVisitor<R> extends GeneralASTVisitor<R> {
   }
 
   default R visitPrecisionQualifier(PrecisionQualifier node) {
-    return visitData(node.precisionLevel);
+    return visitData(node.getPrecisionLevel());
   }
 
   default R visitSharedLayoutQualifierPart(SharedLayoutQualifierPart node) {
@@ -476,7 +476,7 @@ public interface ASTVisitor<R> extends GeneralASTVisitor<R> {
 
   default R visitStorageQualifier(StorageQualifier node) {
     var result = visitChildren(node.getTypeNames());
-    return visitData(result, node.storageType);
+    return visitData(result, node.getStorageType());
   }
 
   default R visitTypeQualifier(TypeQualifier node) {
@@ -492,11 +492,11 @@ public interface ASTVisitor<R> extends GeneralASTVisitor<R> {
   }
 
   default R visitBuiltinFixedTypeSpecifier(BuiltinFixedTypeSpecifier node) {
-    return visitData(node.type);
+    return visitData(node.getType());
   }
 
   default R visitBuiltinNumericTypeSpecifier(BuiltinNumericTypeSpecifier node) {
-    return visitData(node.type);
+    return visitData(node.getType());
   }
 
   default R visitTypeReference(TypeReference node) {
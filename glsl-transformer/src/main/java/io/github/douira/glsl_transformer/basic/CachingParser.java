@@ -15,6 +15,9 @@ import io.github.douira.glsl_transformer.tree.ExtendedContext;
  * modified after parsing since then the contents of the cache would be modified
  * too. The {@link ASTBuilder} does not modify the parse tree, and therefore it
  * is safe to use this.
+ * 
+ * The parse cache is thread-safe and may be shared between multiple caching
+ * parsers as long as they use the same parse token filter.
  */
 public class CachingParser extends EnhancedParser {
   private TypedTreeCache<ExtendedContext> parseCache;
@@ -41,6 +44,25 @@ public class CachingParser extends EnhancedParser {
     parseCache = new TypedTreeCache<>(size);
   }
 
+  public void setParseCacheSizeAndClear(int size, long maxWeight) {
+    parseCache = new TypedTreeCache<>(size, maxWeight);
+  }
+
+  /**
+   * Sets the cache used for parse trees. Since the cached parse trees depend on
+   * the parse token filter, a shared cache should only be used by parsers with
+   * the same token filter.
+   * 
+   * @param parseCache The new parse cache
+   */
+  public void setParseCache(TypedTreeCache<ExtendedContext> parseCache) {
+    this.parseCache = parseCache;
+  }
+
+  public TypedTreeCache<ExtendedContext> getParseCache() {
+    return parseCache;
+  }
+
   @Override
   public TranslationUnitContext parse(String str) {
     return parse(str, TranslationUnitContext.class, GLSLParser::translationUnit);
@@ -63,6 +85,42 @@ public class CachingParser extends EnhancedParser {
         () -> parse(str, parent, parseMethod));
   }
 
+  @Override
+  public TranslationUnitContext parse(ParseInput input) {
+    return parse(input, TranslationUnitContext.class, GLSLParser::translationUnit);
+  }
+
+  public <RuleType extends ExtendedContext> RuleType parse(
+      ParseInput input,
+      Class<RuleType> ruleType,
+      Function<GLSLParser, RuleType> parseMethod) {
+    return parse(input, null, ruleType, parseMethod);
+  }
+
+  /**
+   * Parses a parse input and caches the result. The cache is looked up with
+   * the precomputed hash of the input and without turning it into a string. A
+   * tree parsed from a string with the same content is also returned. If the
+   * input is missing from the cache, a string snapshot of it is parsed so that
+   * the cached tree doesn't read from the buffer of the input.
+   * 
+   * @param <RuleType>  The type of the resulting parsed node
+   * @param input       The input to parse
+   * @param parent      The parent to attach to the parsed node
+   * @param ruleType    The class of the resulting parsed node
+   * @param parseMethod The parser method reference to use for parsing
+   * @return The parsed input as a parse tree that has the given type
+   */
+  @SuppressWarnings("unchecked")
+  public <RuleType extends ExtendedContext> RuleType parse(
+      ParseInput input,
+      ExtendedContext parent,
+      Class<RuleType> ruleType,
+      Function<GLSLParser, RuleType> parseMethod) {
+    return (RuleType) parseCache.cachedGet(input, ruleType,
+        snapshot -> parse(snapshot, parent, parseMethod));
+  }
+
   @Override
   public void setParseTokenFilter(TokenFilter<?> parseTokenFilter) {
     super.setParseTokenFilter(parseTokenFilter);
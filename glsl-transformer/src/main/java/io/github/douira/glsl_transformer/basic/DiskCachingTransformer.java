@@ -0,0 +1,239 @@
+package io.github.douira.glsl_transformer.basic;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.util.*;
+import java.util.function.*;
+
+import org.antlr.v4.runtime.RecognitionException;
+
+import io.github.douira.glsl_transformer.job_parameter.ParameterizedTransformer;
+import io.github.douira.glsl_transformer.util.DiskCache;
+
+/**
+ * The disk caching transformer wraps another transformer and stores its results
+ * in a {@link DiskCache} so that they survive restarts. A result is looked up
+ * by the SHA-256 hash of the input, a version tag and a key derived from the
+ * job parameters. If the result is found, the wrapped transformer isn't called
+ * at all and no parsing happens.
+ *
+ * The version tag identifies the transformer and has to be changed whenever the
+ * transformation or the configuration of the wrapped transformer changes in a
+ * way that changes the output. Otherwise stale results are returned. The job
+ * parameter key has to be given explicitly and must be the same for equal job
+ * parameters across restarts and in other processes. Hash codes of job
+ * parameters are usually not suitable since they often depend on identity hash
+ * codes, like those of enum constants.
+ *
+ * If the result can't be stored because the disk cache is full or can't be
+ * written, it's returned anyway and the input is transformed again the next
+ * time like on a cache miss.
+ *
+ * This transformer is as thread-safe as the wrapped transformer. The disk cache
+ * can be shared between multiple caching transformers if their version tags are
+ * different.
+ *
+ * @param <T> The job parameters type
+ * @param <V> The type of the inputs and outputs
+ */
+public class DiskCachingTransformer<T, V> implements ParameterizedTransformer<T, V> {
+  /**
+   * A codec converts inputs and results to bytes and back. The encoding of an
+   * input is hashed to look up the result and has to be the same for equal
+   * inputs.
+   */
+  public interface Codec<V> {
+    byte[] encode(V value);
+
+    V decode(byte[] bytes);
+  }
+
+  /**
+   * A codec for strings that encodes them as UTF-8.
+   */
+  public static final Codec<String> STRING_CODEC = new Codec<String>() {
+    @Override
+    public byte[] encode(String value) {
+      return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String decode(byte[] bytes) {
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  };
+
+  private final ParameterizedTransformer<T, V> transformer;
+  private final DiskCache cache;
+  private final Codec<V> codec;
+  private final byte[] versionTag;
+  private final Function<T, String> parameterKey;
+
+  /**
+   * Creates a new disk caching transformer.
+   *
+   * @param transformer  The transformer to cache the results of
+   * @param cache        The disk cache to store the results in
+   * @param codec        The codec for the inputs and results
+   * @param versionTag   The tag that identifies the transformer and its version
+   * @param parameterKey The function that derives a key from the job parameters
+   *                     that is stable across restarts. Job parameters that
+   *                     change the output must result in different keys.
+   */
+  public DiskCachingTransformer(
+      ParameterizedTransformer<T, V> transformer,
+      DiskCache cache,
+      Codec<V> codec,
+      String versionTag,
+      Function<T, String> parameterKey) {
+    this.transformer = Objects.requireNonNull(transformer);
+    this.cache = Objects.requireNonNull(cache);
+    this.codec = Objects.requireNonNull(codec);
+    this.versionTag = Objects.requireNonNull(versionTag).getBytes(StandardCharsets.UTF_8);
+    this.parameterKey = Objects.requireNonNull(parameterKey);
+  }
+
+  /**
+   * Creates a codec for maps of strings like the ones used by the grouped
+   * transformers. Null values are supported. The entries are written in the
+   * order of their encoded keys so that equal maps are always encoded the same
+   * way regardless of their iteration order.
+   *
+   * @param <K>         The key type
+   * @param keyEncoder  The function that turns a key into a string
+   * @param keyDecoder  The function that turns the string back into a key
+   * @param mapSupplier The supplier of the maps that decoded values are put in
+   * @return The map codec
+   */
+  public static <K> Codec<Map<K, String>> mapCodec(
+      Function<K, String> keyEncoder,
+      Function<String, K> keyDecoder,
+      Supplier<? extends Map<K, String>> mapSupplier) {
+    return new Codec<Map<K, String>>() {
+      @Override
+      public byte[] encode(Map<K, String> value) {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+          var entries = new TreeMap<String, String>();
+          for (var entry : value.entrySet()) {
+            entries.put(keyEncoder.apply(entry.getKey()), entry.getValue());
+          }
+          out.writeInt(entries.size());
+          for (var entry : entries.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+      }
+
+      @Override
+      public Map<K, String> decode(byte[] bytes) {
+        var map = mapSupplier.get();
+        try (var in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+          var size = in.readInt();
+          for (var i = 0; i < size; i++) {
+            map.put(keyDecoder.apply(readString(in)), readString(in));
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return map;
+      }
+    };
+  }
+
+  /**
+   * Creates a codec for enum maps of strings like the ones used by the enum
+   * transformers.
+   *
+   * @param <E>       The enum type
+   * @param enumClass The class of the enum
+   * @return The enum map codec
+   */
+  public static <E extends Enum<E>> Codec<Map<E, String>> enumMapCodec(Class<E> enumClass) {
+    return mapCodec(Enum::name, name -> Enum.valueOf(enumClass, name), () -> new EnumMap<>(enumClass));
+  }
+
+  private static void writeString(DataOutputStream out, String str) throws IOException {
+    if (str == null) {
+      out.writeInt(-1);
+      return;
+    }
+    var bytes = str.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    var length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    var bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private byte[] computeKey(byte[] input, T parameters) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+
+    // the lengths separate the parts so that they can't be shifted into each other
+    var parameterBytes = parameterKey.apply(parameters).getBytes(StandardCharsets.UTF_8);
+    updateWithLength(digest, versionTag);
+    updateWithLength(digest, parameterBytes);
+    digest.update(input);
+    return digest.digest();
+  }
+
+  private static void updateWithLength(MessageDigest digest, byte[] bytes) {
+    var length = bytes.length;
+    digest.update((byte) (length >>> 24));
+    digest.update((byte) (length >>> 16));
+    digest.update((byte) (length >>> 8));
+    digest.update((byte) length);
+    digest.update(bytes);
+  }
+
+  @Override
+  public T getJobParameters() {
+    return transformer.getJobParameters();
+  }
+
+  @Override
+  public void setJobParameters(T parameters) {
+    transformer.setJobParameters(parameters);
+  }
+
+  public ParameterizedTransformer<T, V> getTransformer() {
+    return transformer;
+  }
+
+  public DiskCache getCache() {
+    return cache;
+  }
+
+  @Override
+  public V transform(V input) throws RecognitionException {
+    var key = computeKey(codec.encode(input), getJobParameters());
+    var cached = cache.get(key);
+    if (cached != null) {
+      return codec.decode(cached);
+    }
+    var result = transformer.transform(input);
+    try {
+      cache.put(key, codec.encode(result));
+    } catch (UncheckedIOException | IllegalStateException e) {
+      // failing to store the result only means it has to be computed again
+    }
+    return result;
+  }
+}
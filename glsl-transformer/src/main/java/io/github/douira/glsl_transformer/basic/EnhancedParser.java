@@ -1,5 +1,6 @@
 package io.github.douira.glsl_transformer.basic;
 
+import java.util.*;
 import java.util.function.*;
 
 import org.antlr.v4.runtime.*;
@@ -7,8 +8,10 @@ import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 
 import io.github.douira.glsl_transformer.*;
-import io.github.douira.glsl_transformer.GLSLParser.TranslationUnitContext;
-import io.github.douira.glsl_transformer.cst.token_filter.TokenFilter;
+import io.github.douira.glsl_transformer.GLSLParser.*;
+import io.github.douira.glsl_transformer.basic.ErrorCollector.ErrorLimitException;
+import io.github.douira.glsl_transformer.basic.StacklessErrorStrategy.*;
+import io.github.douira.glsl_transformer.cst.token_filter.*;
 import io.github.douira.glsl_transformer.tree.ExtendedContext;
 
 /**
@@ -28,10 +31,10 @@ public class EnhancedParser implements ParserInterface {
     }
   }
 
-  private static EnhancedParser INSTANCE;
+  private static final ThreadLocal<EnhancedParser> INSTANCE = ThreadLocal.withInitial(() -> new CachingParser(true));
 
   // initialized with null since they need an argument
-  private final GLSLLexer lexer = new GLSLLexer(null);
+  private GLSLLexer lexer = new GLSLLexer(null);
   private final GLSLParser parser = new GLSLParser(null);
   private boolean throwParseErrors = true;
 
@@ -58,7 +61,17 @@ public class EnhancedParser implements ParserInterface {
      * The slow strategy that uses LL only. This is useful if it's known that there
      * will be errors and parsing with SLL can be omitted in the first place.
      */
-    LL_ONLY
+    LL_ONLY,
+
+    /**
+     * The strategy that works like {@link #SLL_AND_LL_ON_ERROR} but skips the SLL
+     * attempt if the parsing statistics show that it's going to fail. This is the
+     * case for inputs that failed in SLL mode before and for parse methods that
+     * fail in SLL mode most of the time.
+     * 
+     * @see ParsingStatistics
+     */
+    ADAPTIVE
   }
 
   private ParsingStrategy parsingStrategy = ParsingStrategy.SLL_AND_LL_ON_ERROR;
@@ -69,6 +82,21 @@ public class EnhancedParser implements ParserInterface {
    */
   public BiConsumer<ParseCancellationException, ParseCancellationException> internalErrorConsumer;
 
+  /**
+   * The statistics that SLL and LL outcomes are recorded in. Nothing is recorded
+   * if this is {@code null}. The {@link ParsingStrategy#ADAPTIVE} strategy
+   * creates statistics if none are set.
+   */
+  private ParsingStatistics parsingStatistics;
+
+  private int maxCollectedErrors = 100;
+
+  /**
+   * The error collector of the current parse if errors are being collected
+   * instead of thrown.
+   */
+  private ErrorCollector errorCollector;
+
   /**
    * The last parsed input stream. This property can be used together with the
    * parse methods since they don't give direct access to the internally created
@@ -121,15 +149,21 @@ public class EnhancedParser implements ParserInterface {
     this.throwParseErrors = throwParseErrors;
   }
 
+  public boolean getThrowParseErrors() {
+    return throwParseErrors;
+  }
+
   /**
-   * Gets the internal singleton instance of the parser. This should generally not
-   * be used by external library users.
+   * Gets the internal instance of the parser for the current thread. Each thread
+   * gets its own instance since the lexer, parser and the last input and token
+   * stream can't be shared. ANTLR's DFA cache is shared between all parser
+   * instances and stays warm. This should generally not be used by external
+   * library users.
+   * 
+   * @return The internal parser instance of the current thread
    */
   public static EnhancedParser getInternalInstance() {
-    if (INSTANCE == null) {
-      INSTANCE = new CachingParser(true);
-    }
-    return INSTANCE;
+    return INSTANCE.get();
   }
 
   /**
@@ -144,6 +178,55 @@ public class EnhancedParser implements ParserInterface {
     this.parsingStrategy = parsingStrategy;
   }
 
+  public ParsingStrategy getParsingStrategy() {
+    return parsingStrategy;
+  }
+
+  /**
+   * Sets the statistics that the outcomes of SLL and LL parsing are recorded in.
+   * The same statistics can be shared between multiple parsers.
+   * 
+   * @param parsingStatistics The statistics or {@code null} to stop recording
+   */
+  public void setParsingStatistics(ParsingStatistics parsingStatistics) {
+    this.parsingStatistics = parsingStatistics;
+  }
+
+  public ParsingStatistics getParsingStatistics() {
+    return parsingStatistics;
+  }
+
+  /**
+   * Sets the maximum number of errors collected by parsing with error
+   * collection. Parsing is aborted when another error occurs after this many
+   * errors have been collected.
+   * 
+   * @param maxCollectedErrors The maximum number of collected errors
+   * @see #parseCollectingErrors(String)
+   */
+  public void setMaxCollectedErrors(int maxCollectedErrors) {
+    if (maxCollectedErrors < 1) {
+      throw new IllegalArgumentException("The maximum number of errors has to be at least 1.");
+    }
+    this.maxCollectedErrors = maxCollectedErrors;
+  }
+
+  public int getMaxCollectedErrors() {
+    return maxCollectedErrors;
+  }
+
+  private boolean usesSLLFirst() {
+    return parsingStrategy == ParsingStrategy.SLL_AND_LL_ON_ERROR
+        || parsingStrategy == ParsingStrategy.ADAPTIVE;
+  }
+
+  private ParsingStatistics getStatisticsForParse() {
+    if (parsingStatistics == null && parsingStrategy == ParsingStrategy.ADAPTIVE) {
+      parsingStatistics = new ParsingStatistics();
+    }
+    return parsingStatistics;
+  }
+
   /**
    * Sets the parsing strategy to {@link ParsingStrategy#SLL_ONLY}. This is the
    * faster strategy.
@@ -176,6 +259,32 @@ public class EnhancedParser implements ParserInterface {
     return lexer;
   }
 
+  /**
+   * Sets if the hand-written {@link FastGLSLLexer} should be used instead of the
+   * lexer generated by ANTLR. Both lexers produce the same tokens. This replaces
+   * the lexer instance returned by {@link #getLexer()}. The version and
+   * directive settings are copied to the new lexer but error listeners that
+   * were added to the previous lexer manually are not.
+   * 
+   * @param fastLexer If {@code true}, the fast lexer is used
+   */
+  public void setFastLexer(boolean fastLexer) {
+    if (fastLexer == getFastLexer()) {
+      return;
+    }
+    var newLexer = fastLexer ? new FastGLSLLexer(null) : new GLSLLexer(null);
+    newLexer.removeErrorListeners();
+    newLexer.version = lexer.version;
+    newLexer.enableCustomDirective = lexer.enableCustomDirective;
+    newLexer.enableIncludeDirective = lexer.enableIncludeDirective;
+    lexer = newLexer;
+    tokenSource.setTokenSource(lexer);
+  }
+
+  public boolean getFastLexer() {
+    return lexer instanceof FastGLSLLexer;
+  }
+
   public BufferedTokenStream getTokenStream() {
     return tokenStream;
   }
@@ -232,7 +341,133 @@ public class EnhancedParser implements ParserInterface {
       String str,
       ExtendedContext parent,
       Function<GLSLParser, RuleType> parseMethod) {
-    return parse(CharStreams.fromString(str), parent, parseMethod);
+    return parse(CharStreams.fromString(str), () -> ParsingStatistics.fingerprint(str), parent, parseMethod);
+  }
+
+  /**
+   * Parses a parse input as a translation unit. The input is lexed directly
+   * without being turned into a string.
+   * 
+   * @param input The input to parse
+   * @return The parsed input as a translation unit parse tree
+   */
+  public TranslationUnitContext parse(ParseInput input) {
+    return parse(input, GLSLParser::translationUnit);
+  }
+
+  /**
+   * Parses a parse input using a parser method reference into a parse tree.
+   * 
+   * @param <RuleType>  The type of the resulting parsed node
+   * @param input       The input to parse
+   * @param parseMethod The parser method reference to use for parsing
+   * @return The parsed input as a parse tree that has the given type
+   */
+  public <RuleType extends ExtendedContext> RuleType parse(
+      ParseInput input,
+      Function<GLSLParser, RuleType> parseMethod) {
+    return parse(input, null, parseMethod);
+  }
+
+  /**
+   * Parses a parse input using a parser method reference into a parse tree.
+   * 
+   * @param <RuleType>  The type of the resulting parsed node
+   * @param input       The input to parse
+   * @param parent      The parent to attach to the parsed node
+   * @param parseMethod The parser method reference to use for parsing
+   * @return The parsed input as a parse tree that has the given type
+   */
+  public <RuleType extends ExtendedContext> RuleType parse(
+      ParseInput input,
+      ExtendedContext parent,
+      Function<GLSLParser, RuleType> parseMethod) {
+    return parse(input.toCharStream(), () -> ParsingStatistics.fingerprint(input), parent, parseMethod);
+  }
+
+  /**
+   * Parses a string as a translation unit and collects the syntax errors
+   * instead of throwing them. The errors are collected as simple records without
+   * exceptions and the exceptions used internally for error recovery don't fill
+   * in stack traces, which makes this much faster than catching thrown errors
+   * when many inputs are invalid. Parsing is aborted if more than the maximum
+   * number of collected errors occur. The parse caches are not used.
+   * 
+   * @param str The string to parse
+   * @return The parse result with the translation unit parse tree and the errors
+   * @see #setMaxCollectedErrors(int)
+   */
+  public ParseResult<TranslationUnitContext> parseCollectingErrors(String str) {
+    return parseCollectingErrors(str, GLSLParser::translationUnit);
+  }
+
+  /**
+   * Parses a string using a parser method reference into a parse tree and
+   * collects the syntax errors instead of throwing them.
+   * 
+   * @param <RuleType>  The type of the resulting parsed node
+   * @param str         The string to parse
+   * @param parseMethod The parser method reference to use for parsing
+   * @return The parse result with the parse tree and the errors
+   * @see #parseCollectingErrors(String)
+   */
+  public <RuleType extends ExtendedContext> ParseResult<RuleType> parseCollectingErrors(
+      String str,
+      Function<GLSLParser, RuleType> parseMethod) {
+    return parseCollectingErrors(CharStreams.fromString(str), () -> ParsingStatistics.fingerprint(str), parseMethod);
+  }
+
+  /**
+   * Parses a parse input as a translation unit and collects the syntax errors
+   * instead of throwing them.
+   * 
+   * @param input The input to parse
+   * @return The parse result with the translation unit parse tree and the errors
+   * @see #parseCollectingErrors(String)
+   */
+  public ParseResult<TranslationUnitContext> parseCollectingErrors(ParseInput input) {
+    return parseCollectingErrors(input, GLSLParser::translationUnit);
+  }
+
+  /**
+   * Parses a parse input using a parser method reference into a parse tree and
+   * collects the syntax errors instead of throwing them.
+   * 
+   * @param <RuleType>  The type of the resulting parsed node
+   * @param input       The input to parse
+   * @param parseMethod The parser method reference to use for parsing
+   * @return The parse result with the parse tree and the errors
+   * @see #parseCollectingErrors(String)
+   */
+  public <RuleType extends ExtendedContext> ParseResult<RuleType> parseCollectingErrors(
+      ParseInput input,
+      Function<GLSLParser, RuleType> parseMethod) {
+    return parseCollectingErrors(input.toCharStream(), () -> ParsingStatistics.fingerprint(input), parseMethod);
+  }
+
+  private <RuleType extends ExtendedContext> ParseResult<RuleType> parseCollectingErrors(
+      IntStream stream,
+      LongSupplier fingerprint,
+      Function<GLSLParser, RuleType> parseMethod) {
+    var collector = new ErrorCollector(maxCollectedErrors);
+    var simulator = parser.getInterpreter();
+    var lexerSimulator = lexer.getInterpreter();
+    errorCollector = collector;
+    lexer.addErrorListener(collector);
+    parser.addErrorListener(collector);
+    parser.setInterpreter(new StacklessATNSimulator(parser, simulator));
+    lexer.setInterpreter(new StacklessLexerATNSimulator(lexer, lexerSimulator));
+    try {
+      return new ParseResult<>(parse(stream, fingerprint, null, parseMethod), collector.getErrors(), false);
+    } catch (ErrorLimitException e) {
+      return new ParseResult<>(null, collector.getErrors(), true);
+    } finally {
+      errorCollector = null;
+      lexer.removeErrorListener(collector);
+      parser.removeErrorListener(collector);
+      parser.setInterpreter(simulator);
+      lexer.setInterpreter(lexerSimulator);
+    }
   }
 
   /**
@@ -242,14 +477,48 @@ public class EnhancedParser implements ParserInterface {
    * 
    * @param <RuleType>  The type of the resulting parsed node
    * @param stream      The int stream to parse
+   * @param fingerprint Computes the fingerprint of the stream's content for the
+   *                    parsing statistics from the content it was created from
    * @param parent      The parent to attach to the parsed node
    * @param parseMethod The parser method reference to use for parsing
    * @return The parsed string as a parse tree that has the given type
    */
   private <RuleType extends ExtendedContext> RuleType parse(
       IntStream stream,
+      LongSupplier fingerprint,
       ExtendedContext parent,
       Function<GLSLParser, RuleType> parseMethod) {
+    setupInput(stream);
+
+    // lex everything up front so that lexer errors are only collected once even if
+    // the input is parsed twice
+    if (errorCollector != null) {
+      tokenStream.fill();
+    }
+
+    RuleType node;
+    if (usesSLLFirst()) {
+      node = parseSLLFirst(parseMethod, fingerprint, () -> {
+        lexer.reset();
+        parser.reset();
+      });
+    } else {
+      setupSingleMode();
+      node = parseMethod.apply(parser);
+    }
+
+    node.setParent(parent);
+    return node;
+  }
+
+  private void setupInput(IntStream stream) {
+    setupLexer(stream);
+    tokenStream = new CommonTokenStream(tokenSource);
+    parser.setTokenStream(tokenStream);
+    parser.reset();
+  }
+
+  private void setupLexer(IntStream stream) {
     if (parseTokenFilter != null) {
       parseTokenFilter.resetState();
     }
@@ -259,69 +528,272 @@ public class EnhancedParser implements ParserInterface {
     lexer.setInputStream(input);
 
     // throw on lexer if enabled
-    if (throwParseErrors) {
-      lexer.addErrorListener(ThrowingErrorListener.INSTANCE);
+    updateThrowingErrorListener(lexer);
+    lexer.reset();
+  }
+
+  private void updateThrowingErrorListener(Recognizer<?, ?> recognizer) {
+    if (throwParseErrors && errorCollector == null) {
+      recognizer.addErrorListener(ThrowingErrorListener.INSTANCE);
     } else {
-      lexer.removeErrorListener(ThrowingErrorListener.INSTANCE);
+      recognizer.removeErrorListener(ThrowingErrorListener.INSTANCE);
     }
-    lexer.reset();
-    tokenStream = new CommonTokenStream(tokenSource);
-    parser.setTokenStream(tokenStream);
-    parser.reset();
+  }
 
-    RuleType node;
-    if (parsingStrategy == ParsingStrategy.SLL_AND_LL_ON_ERROR) {
-      // never throw SLL errors
-      parser.removeErrorListener(ThrowingErrorListener.INSTANCE);
-      parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
-      parser.setErrorHandler(new BailErrorStrategy());
+  /**
+   * Sets up the parser for the strategies that only use one prediction mode.
+   */
+  private void setupSingleMode() {
+    parser.getInterpreter().setPredictionMode(
+        parsingStrategy == ParsingStrategy.SLL_ONLY ? PredictionMode.SLL : PredictionMode.LL);
+    updateThrowingErrorListener(parser);
+    parser.setErrorHandler(createRecoveringErrorStrategy());
+  }
 
-      // try to parse with SLL mode
-      try {
-        node = parseMethod.apply(parser);
-      } catch (ParseCancellationException SLLException) {
-        // if there was an error in the SLL strategy either there is an error in the
-        // string which should (possibly) be reported or the grammar is too difficult
-        // for the SLL strategy to handle and the LL strategy has to be used instead
-        // NOTE: it seems like the GLSL grammar never requires the LL strategy
-        lexer.reset();
-        parser.reset();
+  private ANTLRErrorStrategy createRecoveringErrorStrategy() {
+    return errorCollector == null ? new DefaultErrorStrategy() : new StacklessErrorStrategy(false);
+  }
+
+  /**
+   * Parses with SLL first and falls back to LL if SLL fails. With the adaptive
+   * strategy the SLL attempt is skipped if the statistics predict that it's
+   * going to fail.
+   * 
+   * @param fingerprint Computes the fingerprint of the input for the statistics
+   *                    or {@code null} if the input shouldn't be remembered.
+   *                    It's only called when there are known failing inputs or
+   *                    the SLL attempt bails out.
+   * @param rewind      Resets the input to where parsing started before the LL
+   *                    attempt
+   */
+  private <RuleType extends ExtendedContext> RuleType parseSLLFirst(
+      Function<GLSLParser, RuleType> parseMethod,
+      LongSupplier fingerprint,
+      Runnable rewind) {
+    var statistics = getStatisticsForParse();
+    if (parsingStrategy == ParsingStrategy.ADAPTIVE
+        && statistics.shouldSkipSLL(parseMethod, fingerprint != null && statistics.hasFailingInputs()
+            ? fingerprint.getAsLong()
+            : ParsingStatistics.NO_FINGERPRINT)) {
+      return parseLL(parseMethod, null);
+    }
+
+    // never throw or collect SLL errors, the LL attempt reports them if they're
+    // actually errors
+    parser.removeErrorListener(ThrowingErrorListener.INSTANCE);
+    if (errorCollector != null) {
+      parser.removeErrorListener(errorCollector);
+    }
+    parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+    parser.setErrorHandler(errorCollector == null ? new BailErrorStrategy() : new StacklessErrorStrategy(true));
+
+    // try to parse with SLL mode
+    var startTime = statistics == null ? 0 : System.nanoTime();
+    try {
+      var node = parseMethod.apply(parser);
+      if (statistics != null) {
+        statistics.recordSLLSuccess(parseMethod, node);
+      }
+      return node;
+    } catch (ErrorLimitException e) {
+      throw e;
+    } catch (ParseCancellationException SLLException) {
+      // if there was an error in the SLL strategy either there is an error in the
+      // string which should (possibly) be reported or the grammar is too difficult
+      // for the SLL strategy to handle and the LL strategy has to be used instead
+      // NOTE: it seems like the GLSL grammar never requires the LL strategy
+      if (statistics != null) {
+        var time = System.nanoTime() - startTime;
+        statistics.recordSLLBailout(parseMethod, SLLException,
+            fingerprint == null ? ParsingStatistics.NO_FINGERPRINT : fingerprint.getAsLong(), time);
+      }
+      rewind.run();
+      return parseLL(parseMethod, SLLException);
+    }
+  }
+
+  private <RuleType extends ExtendedContext> RuleType parseLL(
+      Function<GLSLParser, RuleType> parseMethod,
+      ParseCancellationException SLLException) {
+    // throw or collect LL errors if enabled
+    updateThrowingErrorListener(parser);
+    if (errorCollector != null) {
+      parser.removeErrorListener(errorCollector);
+      parser.addErrorListener(errorCollector);
+    }
+    parser.setErrorHandler(createRecoveringErrorStrategy());
+    parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+
+    var statistics = parsingStatistics;
+    var errorsBefore = parser.getNumberOfSyntaxErrors();
+    ParseCancellationException possibleLLException = null;
+    RuleType node = null;
+    try {
+      node = parseMethod.apply(parser);
+      return node;
+    } catch (ParseCancellationException LLException) {
+      possibleLLException = LLException;
+      throw LLException;
+    } finally {
+      if (statistics != null) {
+        statistics.recordLL(parseMethod, node, possibleLLException,
+            parser.getNumberOfSyntaxErrors() > errorsBefore);
+      }
+
+      // notify the parse error consumer of both errors if they exist, a skipped SLL
+      // attempt has no error to report
+      if (internalErrorConsumer != null && SLLException != null) {
+        internalErrorConsumer.accept(SLLException, possibleLLException);
+      }
+    }
+  }
 
-        // throw LL errors if enabled
-        if (throwParseErrors) {
-          parser.addErrorListener(ThrowingErrorListener.INSTANCE);
+  /**
+   * Parses a string as a translation unit but only parses the external
+   * declarations when they are requested from the returned iterator. Only the
+   * parse tree of the external declaration that is currently being parsed is
+   * held by the parser and the returned parse trees aren't connected to each
+   * other. The tokens are read from the lexer as they're needed and only the
+   * tokens of the external declaration that is currently being parsed are
+   * buffered. This makes it possible to process very large translation units
+   * without holding the parse tree or the tokens of the whole translation unit in
+   * memory. The tokens of the hidden channels are dropped and the returned parse
+   * trees can't be printed with their whitespace and comments.
+   * 
+   * The version statement is parsed right away if there is one. The caches of
+   * the caching parser are not used. This parser may not be used for anything
+   * else until the iterator has been consumed since the iterator uses the
+   * parser's lexer. The token stream returned by {@link #getTokenStream()} is
+   * not the one used by the iterator.
+   * 
+   * @param str The string to parse
+   * @return The iterator that parses the external declarations one at a time
+   */
+  public ExternalDeclarationIterator iterateExternalDeclarations(String str) {
+    return new ExternalDeclarationIterator(CharStreams.fromString(str));
+  }
+
+  /**
+   * Parses a parse input as a translation unit one external declaration at a
+   * time.
+   * 
+   * @param input The input to parse
+   * @return The iterator that parses the external declarations one at a time
+   * @see #iterateExternalDeclarations(String)
+   */
+  public ExternalDeclarationIterator iterateExternalDeclarations(ParseInput input) {
+    return new ExternalDeclarationIterator(input.toCharStream());
+  }
+
+  /**
+   * The external declaration iterator parses the external declarations of a
+   * translation unit one at a time.
+   * 
+   * @see EnhancedParser#iterateExternalDeclarations(String)
+   */
+  public class ExternalDeclarationIterator implements Iterator<ExternalDeclarationContext> {
+    private final SlidingTokenStream iteratorTokenStream;
+    private final VersionStatementContext versionStatement;
+
+    private ExternalDeclarationIterator(IntStream stream) {
+      setupLexer(stream);
+
+      // the parser only gets the tokens of the default channel since the unbuffered
+      // stream doesn't skip the other ones like a common token stream does
+      var channelSource = new FilterTokenSource(tokenSource);
+      channelSource.setTokenFilter(new ChannelFilter<>(EnumSet.complementOf(EnumSet.of(TokenChannel.DEFAULT))));
+      iteratorTokenStream = new SlidingTokenStream(channelSource);
+      parser.setTokenStream(iteratorTokenStream);
+      if (!usesSLLFirst()) {
+        setupSingleMode();
+      }
+      versionStatement = iteratorTokenStream.LA(1) == GLSLLexer.NR
+          && iteratorTokenStream.LA(2) == GLSLLexer.NR_VERSION
+              ? parseNextRule(GLSLParser::versionStatement)
+              : null;
+    }
+
+    /**
+     * Returns the version statement at the start of the translation unit.
+     * 
+     * @return The version statement or {@code null} if there is none
+     */
+    public VersionStatementContext getVersionStatement() {
+      return versionStatement;
+    }
+
+    /**
+     * Returns the number of tokens that are currently buffered by the iterator.
+     * Between external declarations this is only the lookahead token.
+     * 
+     * @return The number of buffered tokens
+     */
+    public int getBufferedTokenCount() {
+      return iteratorTokenStream.getBufferedTokenCount();
+    }
+
+    private void checkParserState() {
+      if (parser.getTokenStream() != iteratorTokenStream) {
+        throw new ConcurrentModificationException(
+            "The parser was used for something else while iterating the external declarations.");
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      checkParserState();
+      return iteratorTokenStream.LA(1) != Token.EOF;
+    }
+
+    @Override
+    public ExternalDeclarationContext next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return parseNextRule(GLSLParser::externalDeclaration);
+    }
+
+    /**
+     * Parses the next rule from the token stream without resetting it. The
+     * tokens of the rule stay buffered while it's parsed so that the LL fallback
+     * can start again at the first token of the rule instead of restarting from
+     * the beginning. They're released once the rule has been parsed.
+     */
+    private <RuleType extends ExtendedContext> RuleType parseNextRule(
+        Function<GLSLParser, RuleType> parseMethod) {
+      var marker = iteratorTokenStream.mark();
+      try {
+        var start = iteratorTokenStream.index();
+        RuleType node;
+        if (usesSLLFirst()) {
+          // the declarations are not fingerprinted since they're parsed from the token
+          // stream, only the statistics of the rule are used
+          node = parseSLLFirst(parseMethod, null, () -> iteratorTokenStream.seek(start));
         } else {
-          parser.removeErrorListener(ThrowingErrorListener.INSTANCE);
+          node = parseMethod.apply(parser);
         }
-        parser.setErrorHandler(new DefaultErrorStrategy());
-        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
 
-        ParseCancellationException possibleLLException = null;
-        try {
-          node = parseMethod.apply(parser);
-        } catch (ParseCancellationException LLException) {
-          possibleLLException = LLException;
-          throw LLException;
-        } finally {
-          // notify the parse error consumer of both errors if they exist
-          if (internalErrorConsumer != null) {
-            internalErrorConsumer.accept(SLLException, possibleLLException);
-          }
+        // skip the offending token if error recovery didn't consume anything
+        if (iteratorTokenStream.index() == start && iteratorTokenStream.LA(1) != Token.EOF) {
+          iteratorTokenStream.consume();
         }
+        return node;
+      } finally {
+        iteratorTokenStream.release(marker);
       }
-    } else {
-      parser.getInterpreter().setPredictionMode(
-          parsingStrategy == ParsingStrategy.SLL_ONLY ? PredictionMode.SLL : PredictionMode.LL);
-      if (throwParseErrors) {
-        parser.addErrorListener(ThrowingErrorListener.INSTANCE);
-      } else {
-        parser.removeErrorListener(ThrowingErrorListener.INSTANCE);
-      }
-      parser.setErrorHandler(new DefaultErrorStrategy());
-      node = parseMethod.apply(parser);
     }
+  }
 
-    node.setParent(parent);
-    return node;
+  /**
+   * An unbuffered token stream that exposes how many tokens it's buffering.
+   */
+  private static class SlidingTokenStream extends UnbufferedTokenStream<Token> {
+    SlidingTokenStream(TokenSource tokenSource) {
+      super(tokenSource);
+    }
+
+    int getBufferedTokenCount() {
+      return n;
+    }
   }
 }
@@ -0,0 +1,65 @@
+package io.github.douira.glsl_transformer.basic;
+
+import java.util.*;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * The error collector is an error listener that stores the syntax errors
+ * reported by the lexer and the parser instead of throwing them. It stores at
+ * most the maximum number of errors and aborts parsing by throwing an
+ * {@link ErrorLimitException} when another error is reported after that. An
+ * input with exactly the maximum number of errors is parsed completely.
+ */
+public class ErrorCollector extends BaseErrorListener {
+  private final int maxErrors;
+  private final List<SyntaxError> errors = new ArrayList<>();
+
+  /**
+   * Thrown by the error collector when an error is reported after the maximum
+   * number of errors has been collected. It has no stack trace since it's only used to stop parsing.
+   */
+  public static class ErrorLimitException extends ParseCancellationException {
+    public ErrorLimitException(String message) {
+      super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+  }
+
+  /**
+   * Creates a new error collector.
+   *
+   * @param maxErrors The maximum number of errors to collect before parsing is
+   *                  aborted at the next error
+   */
+  public ErrorCollector(int maxErrors) {
+    if (maxErrors < 1) {
+      throw new IllegalArgumentException("The maximum number of errors has to be at least 1.");
+    }
+    this.maxErrors = maxErrors;
+  }
+
+  @Override
+  public void syntaxError(
+      Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine,
+      String msg, RecognitionException e) {
+    if (errors.size() >= maxErrors) {
+      throw new ErrorLimitException("Exceeded the maximum of " + maxErrors + " errors");
+    }
+    errors.add(new SyntaxError(
+        line, charPositionInLine, offendingSymbol instanceof Token token ? token : null, msg));
+  }
+
+  public List<SyntaxError> getErrors() {
+    return errors;
+  }
+
+  public int getMaxErrors() {
+    return maxErrors;
+  }
+}
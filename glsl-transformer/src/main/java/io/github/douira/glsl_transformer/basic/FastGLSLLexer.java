@@ -0,0 +1,1061 @@
+package io.github.douira.glsl_transformer.basic;
+
+import java.util.*;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.Interval;
+
+import io.github.douira.glsl_transformer.GLSLLexer;
+
+/**
+ * The fast GLSL lexer is a hand-written replacement for the lexer generated
+ * from {@code GLSLLexer.g4}. It produces exactly the same tokens with the same
+ * types, channels, positions and modes as the generated lexer but doesn't
+ * simulate the lexer ATN. Identifiers and keywords are recognized by scanning
+ * the identifier and looking it up in a perfect hash table of the keywords
+ * that also stores the version each keyword requires.
+ *
+ * Like the generated lexer, it matches the longest token at each position and
+ * prefers the rule that comes first in the grammar if multiple rules match the
+ * same length. Characters that can't be matched are reported to the error
+ * listeners as token recognition errors and skipped in the same way.
+ *
+ * Since it extends the generated lexer, it can be used anywhere the generated
+ * lexer is used and respects the same version and directive settings. This
+ * lexer has to be updated whenever the lexer grammar changes.
+ * {@link EnhancedParser#setFastLexer(boolean)} enables it for parsing.
+ */
+public class FastGLSLLexer extends GLSLLexer {
+  private static final KeywordTable keywords = new KeywordTable();
+  private static final KeywordTable directiveKeywords = new KeywordTable();
+  private static final String[] preprocessorDirectives = {
+      "define", "undef", "if", "ifdef", "ifndef", "else", "elif", "endif", "error", "line" };
+
+  static {
+    keywords.add("uniform", GLSLLexer.UNIFORM);
+    keywords.add("buffer", GLSLLexer.BUFFER);
+    keywords.add("in", GLSLLexer.IN);
+    keywords.add("out", GLSLLexer.OUT);
+    keywords.add("inout", GLSLLexer.INOUT);
+    keywords.add("highp", GLSLLexer.HIGHP);
+    keywords.add("mediump", GLSLLexer.MEDIUMP);
+    keywords.add("lowp", GLSLLexer.LOWP);
+    keywords.add("precision", GLSLLexer.PRECISION);
+    keywords.add("const", GLSLLexer.CONST);
+    keywords.add("precise", GLSLLexer.PRECISE);
+    keywords.add("invariant", GLSLLexer.INVARIANT);
+    keywords.add("smooth", GLSLLexer.SMOOTH);
+    keywords.add("flat", GLSLLexer.FLAT);
+    keywords.add("centroid", GLSLLexer.CENTROID);
+    keywords.add("attribute", GLSLLexer.ATTRIBUTE);
+    keywords.add("volatile", GLSLLexer.VOLATILE);
+    keywords.add("varying", GLSLLexer.VARYING);
+    keywords.add("shared", GLSLLexer.SHARED);
+    keywords.add("layout", GLSLLexer.LAYOUT);
+    keywords.add("noperspective", GLSLLexer.NOPERSPECTIVE, 130);
+    keywords.add("sample", GLSLLexer.SAMPLE, 400);
+    keywords.add("patch", GLSLLexer.PATCH, 400);
+    keywords.add("coherent", GLSLLexer.COHERENT, 130);
+    keywords.add("restrict", GLSLLexer.RESTRICT, 130);
+    keywords.add("readonly", GLSLLexer.READONLY, 130);
+    keywords.add("writeonly", GLSLLexer.WRITEONLY, 130);
+    keywords.add("subroutine", GLSLLexer.SUBROUTINE, 400);
+    keywords.add("devicecoherent", GLSLLexer.DEVICECOHERENT, 130);
+    keywords.add("queuefamilycoherent", GLSLLexer.QUEUEFAMILYCOHERENT, 130);
+    keywords.add("workgroupcoherent", GLSLLexer.WORKGROUPCOHERENT, 130);
+    keywords.add("subgroupcoherent", GLSLLexer.SUBGROUPCOHERENT, 130);
+    keywords.add("nonprivate", GLSLLexer.NONPRIVATE, 130);
+    keywords.add("atomic_uint", GLSLLexer.ATOMIC_UINT, 420);
+    keywords.add("struct", GLSLLexer.STRUCT);
+    keywords.add("if", GLSLLexer.IF);
+    keywords.add("else", GLSLLexer.ELSE);
+    keywords.add("switch", GLSLLexer.SWITCH);
+    keywords.add("case", GLSLLexer.CASE);
+    keywords.add("default", GLSLLexer.DEFAULT);
+    keywords.add("while", GLSLLexer.WHILE);
+    keywords.add("do", GLSLLexer.DO);
+    keywords.add("for", GLSLLexer.FOR);
+    keywords.add("continue", GLSLLexer.CONTINUE);
+    keywords.add("break", GLSLLexer.BREAK);
+    keywords.add("return", GLSLLexer.RETURN);
+    keywords.add("discard", GLSLLexer.DISCARD);
+    keywords.add("demote", GLSLLexer.DEMOTE);
+    keywords.add("true", GLSLLexer.BOOLCONSTANT);
+    keywords.add("false", GLSLLexer.BOOLCONSTANT);
+    keywords.add("bool", GLSLLexer.BOOL);
+    keywords.add("bvec2", GLSLLexer.BVEC2);
+    keywords.add("bvec3", GLSLLexer.BVEC3);
+    keywords.add("bvec4", GLSLLexer.BVEC4);
+    keywords.add("int8_t", GLSLLexer.INT8);
+    keywords.add("i8vec2", GLSLLexer.I8VEC2);
+    keywords.add("i8vec3", GLSLLexer.I8VEC3);
+    keywords.add("i8vec4", GLSLLexer.I8VEC4);
+    keywords.add("uint8_t", GLSLLexer.UINT8);
+    keywords.add("ui8vec2", GLSLLexer.UI8VEC2);
+    keywords.add("ui8vec3", GLSLLexer.UI8VEC3);
+    keywords.add("ui8vec4", GLSLLexer.UI8VEC4);
+    keywords.add("int16_t", GLSLLexer.INT16);
+    keywords.add("i16vec2", GLSLLexer.I16VEC2);
+    keywords.add("i16vec3", GLSLLexer.I16VEC3);
+    keywords.add("i16vec4", GLSLLexer.I16VEC4);
+    keywords.add("uint16_t", GLSLLexer.UINT16);
+    keywords.add("ui16vec2", GLSLLexer.UI16VEC2);
+    keywords.add("ui16vec3", GLSLLexer.UI16VEC3);
+    keywords.add("ui16vec4", GLSLLexer.UI16VEC4);
+    keywords.add("int32_t", GLSLLexer.INT32);
+    keywords.add("int", GLSLLexer.INT32);
+    keywords.add("i32vec2", GLSLLexer.I32VEC2);
+    keywords.add("ivec2", GLSLLexer.I32VEC2);
+    keywords.add("i32vec3", GLSLLexer.I32VEC3);
+    keywords.add("ivec3", GLSLLexer.I32VEC3);
+    keywords.add("i32vec4", GLSLLexer.I32VEC4);
+    keywords.add("ivec4", GLSLLexer.I32VEC4);
+    keywords.add("uint32_t", GLSLLexer.UINT32);
+    keywords.add("uint", GLSLLexer.UINT32);
+    keywords.add("ui32vec2", GLSLLexer.UI32VEC2);
+    keywords.add("uvec2", GLSLLexer.UI32VEC2);
+    keywords.add("ui32vec3", GLSLLexer.UI32VEC3);
+    keywords.add("uvec3", GLSLLexer.UI32VEC3);
+    keywords.add("ui32vec4", GLSLLexer.UI32VEC4);
+    keywords.add("uvec4", GLSLLexer.UI32VEC4);
+    keywords.add("int64_t", GLSLLexer.INT64);
+    keywords.add("i64vec2", GLSLLexer.I64VEC2);
+    keywords.add("i64vec3", GLSLLexer.I64VEC3);
+    keywords.add("i64vec4", GLSLLexer.I64VEC4);
+    keywords.add("uint64_t", GLSLLexer.UINT64);
+    keywords.add("ui64vec2", GLSLLexer.UI64VEC2);
+    keywords.add("ui64vec3", GLSLLexer.UI64VEC3);
+    keywords.add("ui64vec4", GLSLLexer.UI64VEC4);
+    keywords.add("float16_t", GLSLLexer.FLOAT16);
+    keywords.add("f16vec2", GLSLLexer.F16VEC2);
+    keywords.add("f16vec3", GLSLLexer.F16VEC3);
+    keywords.add("f16vec4", GLSLLexer.F16VEC4);
+    keywords.add("f16mat2x2", GLSLLexer.F16MAT2X2);
+    keywords.add("f16mat2", GLSLLexer.F16MAT2X2);
+    keywords.add("f16mat2x3", GLSLLexer.F16MAT2X3);
+    keywords.add("f16mat2x4", GLSLLexer.F16MAT2X4);
+    keywords.add("f16mat3x2", GLSLLexer.F16MAT3X2);
+    keywords.add("f16mat3x3", GLSLLexer.F16MAT3X3);
+    keywords.add("f16mat3", GLSLLexer.F16MAT3X3);
+    keywords.add("f16mat3x4", GLSLLexer.F16MAT3X4);
+    keywords.add("f16mat4x2", GLSLLexer.F16MAT4X2);
+    keywords.add("f16mat4x3", GLSLLexer.F16MAT4X3);
+    keywords.add("f16mat4x4", GLSLLexer.F16MAT4X4);
+    keywords.add("f16mat4", GLSLLexer.F16MAT4X4);
+    keywords.add("float32_t", GLSLLexer.FLOAT32);
+    keywords.add("float", GLSLLexer.FLOAT32);
+    keywords.add("f32vec2", GLSLLexer.F32VEC2);
+    keywords.add("vec2", GLSLLexer.F32VEC2);
+    keywords.add("f32vec3", GLSLLexer.F32VEC3);
+    keywords.add("vec3", GLSLLexer.F32VEC3);
+    keywords.add("f32vec4", GLSLLexer.F32VEC4);
+    keywords.add("vec4", GLSLLexer.F32VEC4);
+    keywords.add("f32mat2x2", GLSLLexer.F32MAT2X2);
+    keywords.add("f32mat2", GLSLLexer.F32MAT2X2);
+    keywords.add("mat2", GLSLLexer.F32MAT2X2);
+    keywords.add("mat2x2", GLSLLexer.F32MAT2X2);
+    keywords.add("f32mat2x3", GLSLLexer.F32MAT2X3);
+    keywords.add("mat2x3", GLSLLexer.F32MAT2X3);
+    keywords.add("f32mat2x4", GLSLLexer.F32MAT2X4);
+    keywords.add("mat2x4", GLSLLexer.F32MAT2X4);
+    keywords.add("f32mat3x2", GLSLLexer.F32MAT3X2);
+    keywords.add("mat3x2", GLSLLexer.F32MAT3X2);
+    keywords.add("f32mat3x3", GLSLLexer.F32MAT3X3);
+    keywords.add("f32mat3", GLSLLexer.F32MAT3X3);
+    keywords.add("mat3", GLSLLexer.F32MAT3X3);
+    keywords.add("mat3x3", GLSLLexer.F32MAT3X3);
+    keywords.add("f32mat3x4", GLSLLexer.F32MAT3X4);
+    keywords.add("mat3x4", GLSLLexer.F32MAT3X4);
+    keywords.add("f32mat4x2", GLSLLexer.F32MAT4X2);
+    keywords.add("mat4x2", GLSLLexer.F32MAT4X2);
+    keywords.add("f32mat4x3", GLSLLexer.F32MAT4X3);
+    keywords.add("mat4x3", GLSLLexer.F32MAT4X3);
+    keywords.add("f32mat4x4", GLSLLexer.F32MAT4X4);
+    keywords.add("f32mat4", GLSLLexer.F32MAT4X4);
+    keywords.add("mat4", GLSLLexer.F32MAT4X4);
+    keywords.add("mat4x4", GLSLLexer.F32MAT4X4);
+    keywords.add("float64_t", GLSLLexer.FLOAT64);
+    keywords.add("double", GLSLLexer.FLOAT64);
+    keywords.add("f64vec2", GLSLLexer.F64VEC2);
+    keywords.add("dvec2", GLSLLexer.F64VEC2);
+    keywords.add("f64vec3", GLSLLexer.F64VEC3);
+    keywords.add("dvec3", GLSLLexer.F64VEC3);
+    keywords.add("f64vec4", GLSLLexer.F64VEC4);
+    keywords.add("dvec4", GLSLLexer.F64VEC4);
+    keywords.add("f64mat2x2", GLSLLexer.F64MAT2X2);
+    keywords.add("f64mat2", GLSLLexer.F64MAT2X2);
+    keywords.add("dmat2", GLSLLexer.F64MAT2X2);
+    keywords.add("dmat2x2", GLSLLexer.F64MAT2X2);
+    keywords.add("f64mat2x3", GLSLLexer.F64MAT2X3);
+    keywords.add("dmat2x3", GLSLLexer.F64MAT2X3);
+    keywords.add("f64mat2x4", GLSLLexer.F64MAT2X4);
+    keywords.add("dmat2x4", GLSLLexer.F64MAT2X4);
+    keywords.add("f64mat3x2", GLSLLexer.F64MAT3X2);
+    keywords.add("dmat3x2", GLSLLexer.F64MAT3X2);
+    keywords.add("f64mat3x3", GLSLLexer.F64MAT3X3);
+    keywords.add("f64mat3", GLSLLexer.F64MAT3X3);
+    keywords.add("dmat3", GLSLLexer.F64MAT3X3);
+    keywords.add("dmat3x3", GLSLLexer.F64MAT3X3);
+    keywords.add("f64mat3x4", GLSLLexer.F64MAT3X4);
+    keywords.add("dmat3x4", GLSLLexer.F64MAT3X4);
+    keywords.add("f64mat4x2", GLSLLexer.F64MAT4X2);
+    keywords.add("dmat4x2", GLSLLexer.F64MAT4X2);
+    keywords.add("f64mat4x3", GLSLLexer.F64MAT4X3);
+    keywords.add("dmat4x3", GLSLLexer.F64MAT4X3);
+    keywords.add("f64mat4x4", GLSLLexer.F64MAT4X4);
+    keywords.add("f64mat4", GLSLLexer.F64MAT4X4);
+    keywords.add("dmat4", GLSLLexer.F64MAT4X4);
+    keywords.add("dmat4x4", GLSLLexer.F64MAT4X4);
+    keywords.add("image1D", GLSLLexer.IMAGE1D);
+    keywords.add("image2D", GLSLLexer.IMAGE2D);
+    keywords.add("image3D", GLSLLexer.IMAGE3D);
+    keywords.add("uimage1D", GLSLLexer.UIMAGE1D);
+    keywords.add("uimage2D", GLSLLexer.UIMAGE2D);
+    keywords.add("uimage3D", GLSLLexer.UIMAGE3D);
+    keywords.add("iimage1D", GLSLLexer.IIMAGE1D);
+    keywords.add("iimage2D", GLSLLexer.IIMAGE2D);
+    keywords.add("iimage3D", GLSLLexer.IIMAGE3D);
+    keywords.add("sampler1D", GLSLLexer.SAMPLER1D);
+    keywords.add("sampler2D", GLSLLexer.SAMPLER2D);
+    keywords.add("sampler3D", GLSLLexer.SAMPLER3D);
+    keywords.add("sampler2DRect", GLSLLexer.SAMPLER2DRECT);
+    keywords.add("sampler1DShadow", GLSLLexer.SAMPLER1DSHADOW);
+    keywords.add("sampler2DShadow", GLSLLexer.SAMPLER2DSHADOW);
+    keywords.add("sampler2DRectShadow", GLSLLexer.SAMPLER2DRECTSHADOW);
+    keywords.add("sampler1DArray", GLSLLexer.SAMPLER1DARRAY);
+    keywords.add("sampler2DArray", GLSLLexer.SAMPLER2DARRAY);
+    keywords.add("sampler1DArrayShadow", GLSLLexer.SAMPLER1DARRAYSHADOW, 130);
+    keywords.add("sampler2DArrayShadow", GLSLLexer.SAMPLER2DARRAYSHADOW);
+    keywords.add("isampler1D", GLSLLexer.ISAMPLER1D, 130);
+    keywords.add("isampler2D", GLSLLexer.ISAMPLER2D);
+    keywords.add("isampler2DRect", GLSLLexer.ISAMPLER2DRECT, 140);
+    keywords.add("isampler3D", GLSLLexer.ISAMPLER3D);
+    keywords.add("isampler1DArray", GLSLLexer.ISAMPLER1DARRAY, 130);
+    keywords.add("isampler2DArray", GLSLLexer.ISAMPLER2DARRAY);
+    keywords.add("usampler1D", GLSLLexer.USAMPLER1D, 130);
+    keywords.add("usampler2D", GLSLLexer.USAMPLER2D);
+    keywords.add("usampler2DRect", GLSLLexer.USAMPLER2DRECT, 140);
+    keywords.add("usampler3D", GLSLLexer.USAMPLER3D);
+    keywords.add("usampler1DArray", GLSLLexer.USAMPLER1DARRAY, 130);
+    keywords.add("usampler2DArray", GLSLLexer.USAMPLER2DARRAY);
+    keywords.add("sampler2DMS", GLSLLexer.SAMPLER2DMS, 150);
+    keywords.add("isampler2DMS", GLSLLexer.ISAMPLER2DMS, 150);
+    keywords.add("usampler2DMS", GLSLLexer.USAMPLER2DMS, 150);
+    keywords.add("sampler2DMSArray", GLSLLexer.SAMPLER2DMSARRAY, 150);
+    keywords.add("isampler2DMSArray", GLSLLexer.ISAMPLER2DMSARRAY, 150);
+    keywords.add("usampler2DMSArray", GLSLLexer.USAMPLER2DMSARRAY, 150);
+    keywords.add("image2DRect", GLSLLexer.IMAGE2DRECT);
+    keywords.add("image1DArray", GLSLLexer.IMAGE1DARRAY);
+    keywords.add("image2DArray", GLSLLexer.IMAGE2DARRAY);
+    keywords.add("image2DMS", GLSLLexer.IMAGE2DMS);
+    keywords.add("image2DMSArray", GLSLLexer.IMAGE2DMSARRAY);
+    keywords.add("iimage2DRect", GLSLLexer.IIMAGE2DRECT);
+    keywords.add("iimage1DArray", GLSLLexer.IIMAGE1DARRAY);
+    keywords.add("iimage2DArray", GLSLLexer.IIMAGE2DARRAY);
+    keywords.add("iimage2DMS", GLSLLexer.IIMAGE2DMS);
+    keywords.add("iimage2DMSArray", GLSLLexer.IIMAGE2DMSARRAY);
+    keywords.add("uimage2DRect", GLSLLexer.UIMAGE2DRECT);
+    keywords.add("uimage1DArray", GLSLLexer.UIMAGE1DARRAY);
+    keywords.add("uimage2DArray", GLSLLexer.UIMAGE2DARRAY);
+    keywords.add("uimage2DMS", GLSLLexer.UIMAGE2DMS);
+    keywords.add("uimage2DMSArray", GLSLLexer.UIMAGE2DMSARRAY);
+    keywords.add("samplerCubeShadow", GLSLLexer.SAMPLERCUBESHADOW);
+    keywords.add("samplerCubeArrayShadow", GLSLLexer.SAMPLERCUBEARRAYSHADOW);
+    keywords.add("samplerCube", GLSLLexer.SAMPLERCUBE);
+    keywords.add("isamplerCube", GLSLLexer.ISAMPLERCUBE);
+    keywords.add("usamplerCube", GLSLLexer.USAMPLERCUBE);
+    keywords.add("samplerBuffer", GLSLLexer.SAMPLERBUFFER, 130);
+    keywords.add("isamplerBuffer", GLSLLexer.ISAMPLERBUFFER, 140);
+    keywords.add("usamplerBuffer", GLSLLexer.USAMPLERBUFFER, 140);
+    keywords.add("samplerCubeArray", GLSLLexer.SAMPLERCUBEARRAY);
+    keywords.add("isamplerCubeArray", GLSLLexer.ISAMPLERCUBEARRAY);
+    keywords.add("usamplerCubeArray", GLSLLexer.USAMPLERCUBEARRAY);
+    keywords.add("imageCube", GLSLLexer.IMAGECUBE);
+    keywords.add("uimageCube", GLSLLexer.UIMAGECUBE);
+    keywords.add("iimageCube", GLSLLexer.IIMAGECUBE);
+    keywords.add("imageBuffer", GLSLLexer.IMAGEBUFFER);
+    keywords.add("iimageBuffer", GLSLLexer.IIMAGEBUFFER);
+    keywords.add("uimageBuffer", GLSLLexer.UIMAGEBUFFER);
+    keywords.add("imageCubeArray", GLSLLexer.IMAGECUBEARRAY);
+    keywords.add("iimageCubeArray", GLSLLexer.IIMAGECUBEARRAY);
+    keywords.add("uimageCubeArray", GLSLLexer.UIMAGECUBEARRAY);
+    keywords.add("void", GLSLLexer.VOID);
+
+    directiveKeywords.add("extension", GLSLLexer.NR_EXTENSION);
+    directiveKeywords.add("version", GLSLLexer.NR_VERSION);
+    directiveKeywords.add("custom", GLSLLexer.NR_CUSTOM);
+    directiveKeywords.add("include", GLSLLexer.NR_INCLUDE);
+    directiveKeywords.add("pragma", GLSLLexer.NR_PRAGMA);
+    directiveKeywords.add("debug", GLSLLexer.NR_PRAGMA_DEBUG);
+    directiveKeywords.add("optimize", GLSLLexer.NR_PRAGMA_OPTIMIZE);
+    directiveKeywords.add("invariant", GLSLLexer.NR_PRAGMA_INVARIANT);
+    directiveKeywords.add("on", GLSLLexer.NR_ON);
+    directiveKeywords.add("off", GLSLLexer.NR_OFF);
+    directiveKeywords.add("all", GLSLLexer.NR_ALL);
+    directiveKeywords.add("require", GLSLLexer.NR_REQUIRE);
+    directiveKeywords.add("enable", GLSLLexer.NR_ENABLE);
+    directiveKeywords.add("warn", GLSLLexer.NR_WARN);
+    directiveKeywords.add("disable", GLSLLexer.NR_DISABLE);
+    directiveKeywords.add("STDGL", GLSLLexer.NR_STDGL);
+    directiveKeywords.add("core", GLSLLexer.NR_CORE);
+    directiveKeywords.add("compatibility", GLSLLexer.NR_COMPATIBILITY);
+    directiveKeywords.add("es", GLSLLexer.NR_ES);
+    directiveKeywords.add("110", GLSLLexer.NR_GLSL_110);
+    directiveKeywords.add("120", GLSLLexer.NR_GLSL_120);
+    directiveKeywords.add("100", GLSLLexer.NR_GLSLES_100);
+    directiveKeywords.add("130", GLSLLexer.NR_GLSL_130);
+    directiveKeywords.add("140", GLSLLexer.NR_GLSL_140);
+    directiveKeywords.add("150", GLSLLexer.NR_GLSL_150);
+    directiveKeywords.add("330", GLSLLexer.NR_GLSL_330);
+    directiveKeywords.add("300", GLSLLexer.NR_GLSLES_300);
+    directiveKeywords.add("310", GLSLLexer.NR_GLSLES_310);
+    directiveKeywords.add("320", GLSLLexer.NR_GLSLES_320);
+    directiveKeywords.add("400", GLSLLexer.NR_GLSL_400);
+    directiveKeywords.add("410", GLSLLexer.NR_GLSL_410);
+    directiveKeywords.add("420", GLSLLexer.NR_GLSL_420);
+    directiveKeywords.add("430", GLSLLexer.NR_GLSL_430);
+    directiveKeywords.add("440", GLSLLexer.NR_GLSL_440);
+    directiveKeywords.add("450", GLSLLexer.NR_GLSL_450);
+    directiveKeywords.add("460", GLSLLexer.NR_GLSL_460);
+
+    keywords.build();
+    directiveKeywords.build();
+  }
+
+  // the longest match found for the current token
+  private int matchLength;
+  private int matchType;
+
+  // the length of the longest prefix that could have become a token if nothing
+  // matched, this is where the generated lexer would report the error
+  private int viableLength;
+
+  // the ends of the alternatives of an integer constant
+  private int decimalEnd;
+  private int octalEnd;
+  private int hexEnd;
+
+  public FastGLSLLexer(CharStream input) {
+    super(input);
+  }
+
+  /**
+   * A perfect hash table of keywords built with the hash and displace method.
+   * The keywords are first hashed into buckets and each bucket gets a
+   * displacement that places all of its keywords in distinct slots. Looking up
+   * a word then takes one hash of the word and one comparison. The hash is
+   * computed by the lexer while it scans the word.
+   */
+  private static class KeywordTable {
+    static final int initialHash = 0x811c9dc5;
+    private static final int maxDisplacement = 1 << 16;
+
+    private final Map<String, int[]> entries = new LinkedHashMap<>();
+    private String[] words;
+    private int[] types;
+    private int[] minVersions;
+    private int[] displacements;
+    private int bucketMask;
+    private int slotMask;
+    private int maxLength;
+
+    static int hash(int hash, int c) {
+      return (hash ^ c) * 0x01000193;
+    }
+
+    static int hash(String word) {
+      var hash = initialHash;
+      for (var i = 0; i < word.length(); i++) {
+        hash = hash(hash, word.charAt(i));
+      }
+      return hash;
+    }
+
+    private int bucket(int hash) {
+      return (hash ^ hash >>> 15) & bucketMask;
+    }
+
+    private int slot(int hash, int displacement) {
+      var h = hash ^ displacement * 0x9e3779b9;
+      h ^= h >>> 16;
+      h *= 0x85ebca6b;
+      h ^= h >>> 13;
+      h *= 0xc2b2ae35;
+      h ^= h >>> 16;
+      return h & slotMask;
+    }
+
+    void add(String word, int type) {
+      add(word, type, 0);
+    }
+
+    void add(String word, int type, int minVersion) {
+      // the rule that comes first in the grammar wins
+      entries.putIfAbsent(word, new int[] { type, minVersion });
+    }
+
+    void build() {
+      var bucketCount = Integer.highestOneBit(Math.max(1, entries.size() - 1)) << 1;
+      var slotCount = bucketCount << 1;
+      bucketMask = bucketCount - 1;
+      slotMask = slotCount - 1;
+      words = new String[slotCount];
+      types = new int[slotCount];
+      minVersions = new int[slotCount];
+      displacements = new int[bucketCount];
+
+      var buckets = new ArrayList<List<String>>(bucketCount);
+      for (var i = 0; i < bucketCount; i++) {
+        buckets.add(new ArrayList<>());
+      }
+      for (var word : entries.keySet()) {
+        buckets.get(bucket(hash(word))).add(word);
+        maxLength = Math.max(maxLength, word.length());
+      }
+
+      // the largest buckets are the hardest to place and are placed first
+      var order = new ArrayList<List<String>>(buckets);
+      order.sort((a, b) -> b.size() - a.size());
+      var slots = new int[order.isEmpty() ? 0 : order.get(0).size()];
+      for (var bucket : order) {
+        if (bucket.isEmpty()) {
+          break;
+        }
+        var displacement = findDisplacement(bucket, slots);
+        displacements[bucket(hash(bucket.get(0)))] = displacement;
+        for (var i = 0; i < bucket.size(); i++) {
+          var word = bucket.get(i);
+          var entry = entries.get(word);
+          words[slots[i]] = word;
+          types[slots[i]] = entry[0];
+          minVersions[slots[i]] = entry[1];
+        }
+      }
+    }
+
+    private int findDisplacement(List<String> bucket, int[] slots) {
+      search: for (var displacement = 0; displacement < maxDisplacement; displacement++) {
+        for (var i = 0; i < bucket.size(); i++) {
+          var slot = slot(hash(bucket.get(i)), displacement);
+          if (words[slot] != null) {
+            continue search;
+          }
+          for (var j = 0; j < i; j++) {
+            if (slots[j] == slot) {
+              continue search;
+            }
+          }
+          slots[i] = slot;
+        }
+        return displacement;
+      }
+      throw new IllegalStateException("Failed to build the keyword table.");
+    }
+
+    /**
+     * Finds the slot of the keyword at the current position of the lexer.
+     *
+     * @return The slot of the keyword or -1 if the word is not a keyword
+     */
+    int find(FastGLSLLexer lexer, int hash, int length) {
+      if (length > maxLength) {
+        return -1;
+      }
+      var slot = slot(hash, displacements[bucket(hash)]);
+      var word = words[slot];
+      if (word == null || word.length() != length) {
+        return -1;
+      }
+      for (var i = 0; i < length; i++) {
+        if (lexer.la(i) != word.charAt(i)) {
+          return -1;
+        }
+      }
+      return slot;
+    }
+  }
+
+  private int la(int offset) {
+    return _input.LA(offset + 1);
+  }
+
+  private void consume(int length) {
+    // the interpreter keeps track of the line and the position in the line
+    var interpreter = getInterpreter();
+    for (var i = 0; i < length; i++) {
+      interpreter.consume(_input);
+    }
+  }
+
+  @Override
+  public Token nextToken() {
+    if (_input == null) {
+      throw new IllegalStateException("nextToken requires a non-null input stream.");
+    }
+
+    // prevent the input from being truncated while the token is being built
+    var tokenStartMarker = _input.mark();
+    try {
+      while (true) {
+        if (_hitEOF) {
+          emitEOF();
+          return _token;
+        }
+
+        _token = null;
+        _channel = Token.DEFAULT_CHANNEL;
+        _tokenStartCharIndex = _input.index();
+        _tokenStartCharPositionInLine = getCharPositionInLine();
+        _tokenStartLine = getLine();
+        _text = null;
+        if (la(0) == IntStream.EOF) {
+          _hitEOF = true;
+          continue;
+        }
+
+        matchLength = 0;
+        matchType = Token.INVALID_TYPE;
+        viableLength = 0;
+        matchToken();
+
+        if (matchType == Token.INVALID_TYPE) {
+          // report and skip the unmatched characters like the generated lexer
+          consume(viableLength);
+          notifyListeners(new StacklessErrorStrategy.StacklessLexerNoViableAltException(
+              this, _input, _tokenStartCharIndex, null));
+          if (la(0) != IntStream.EOF) {
+            consume(1);
+          }
+          if (la(0) == IntStream.EOF) {
+            _hitEOF = true;
+          }
+          continue;
+        }
+
+        consume(matchLength);
+        if (la(0) == IntStream.EOF) {
+          _hitEOF = true;
+        }
+        _type = matchType;
+        _channel = channelOf(matchType);
+        updateMode(matchType);
+        return emit();
+      }
+    } finally {
+      _input.release(tokenStartMarker);
+    }
+  }
+
+  @Override
+  public String getText() {
+    if (_text != null) {
+      return _text;
+    }
+    return _input.getText(Interval.of(_tokenStartCharIndex, _input.index() - 1));
+  }
+
+  private static int channelOf(int type) {
+    return switch (type) {
+      case LINE_CONTINUE, WS, EOL, NR_LINE_CONTINUE, NR_WS, C_WS, PP_LINE_CONTINUE -> WHITESPACE;
+      case LINE_COMMENT, BLOCK_COMMENT, NR_LINE_COMMENT, NR_BLOCK_COMMENT, C_LINE_COMMENT, C_BLOCK_COMMENT,
+          PP_LINE_COMMENT, PP_BLOCK_COMMENT ->
+        COMMENTS;
+      case PP_ENTER_MODE, PP_EMPTY, PP_EOL, PP_CONTENT -> PREPROCESSOR;
+      default -> Token.DEFAULT_CHANNEL;
+    };
+  }
+
+  private void updateMode(int type) {
+    switch (type) {
+      case PP_ENTER_MODE -> pushMode(Preprocessor);
+      case NR -> pushMode(NR_Mode);
+      case NR_CUSTOM -> pushMode(CustomDirective);
+      case NR_STRING_START -> pushMode(GLSLLexer.String);
+      case NR_STRING_START_ANGLE -> pushMode(StringAngle);
+      case NR_EOL, S_STRING_END, S_STRING_END_ANGLE, PP_EOL -> popMode();
+      case C_EOL -> {
+        popMode();
+        popMode();
+      }
+      default -> {
+      }
+    }
+  }
+
+  /**
+   * Registers a rule that matches the given number of characters. The longest
+   * match wins and if two rules match the same number of characters, the rule
+   * that comes first in the grammar and has the lower token type wins.
+   */
+  private void match(int length, int type) {
+    if (length > matchLength || length == matchLength && type < matchType) {
+      matchLength = length;
+      matchType = type;
+    }
+  }
+
+  private void matchToken() {
+    switch (_mode) {
+      case DEFAULT_MODE -> matchDefault();
+      case NR_Mode -> matchDirective();
+      case GLSLLexer.String -> matchString('"', S_CONTENT, S_STRING_END);
+      case StringAngle -> matchString('>', S_CONTENT_ANGLE, S_STRING_END_ANGLE);
+      case CustomDirective -> matchCustomDirective();
+      case Preprocessor -> matchPreprocessor();
+      default -> throw new IllegalStateException("Unknown lexer mode " + _mode);
+    }
+  }
+
+  private void matchDefault() {
+    var c = la(0);
+    if (isIdentifierStart(c)) {
+      matchWord(keywords, IDENTIFIER);
+      return;
+    }
+    if (isDigit(c)) {
+      matchNumber();
+      return;
+    }
+    switch (c) {
+      case '.' -> {
+        match(1, DOT);
+        if (matchesAt(0, ".length()")) {
+          match(9, DOT_LENGTH_METHOD_CALL);
+        }
+        if (isDigit(la(1))) {
+          matchNumber();
+        }
+      }
+      case ':' -> match(1, COLON);
+      case '(' -> match(1, LPAREN);
+      case ')' -> match(1, RPAREN);
+      case '{' -> match(1, LBRACE);
+      case '}' -> match(1, RBRACE);
+      case ';' -> match(1, SEMICOLON);
+      case '[' -> match(1, LBRACKET);
+      case ']' -> match(1, RBRACKET);
+      case ',' -> match(1, COMMA);
+      case '~' -> match(1, BITWISE_NEG_OP);
+      case '?' -> match(1, QUERY_OP);
+      case '+' -> matchOperator(PLUS_OP, INC_OP, ADD_ASSIGN);
+      case '-' -> matchOperator(MINUS_OP, DEC_OP, SUB_ASSIGN);
+      case '*' -> matchOperator(TIMES_OP, Token.INVALID_TYPE, MUL_ASSIGN);
+      case '%' -> matchOperator(MOD_OP, Token.INVALID_TYPE, MOD_ASSIGN);
+      case '!' -> matchOperator(LOGICAL_NOT_OP, Token.INVALID_TYPE, NE_OP);
+      case '=' -> matchOperator(ASSIGN_OP, EQ_OP, Token.INVALID_TYPE);
+      case '&' -> matchOperator(BITWISE_AND_OP, LOGICAL_AND_OP, AND_ASSIGN);
+      case '|' -> matchOperator(BITWISE_OR_OP, LOGICAL_OR_OP, OR_ASSIGN);
+      case '^' -> matchOperator(BITWISE_XOR_OP, LOGICAL_XOR_OP, XOR_ASSIGN);
+      case '<' -> {
+        matchOperator(LT_OP, LEFT_OP, LE_OP);
+        if (la(1) == '<' && la(2) == '=') {
+          match(3, LEFT_ASSIGN);
+        }
+      }
+      case '>' -> {
+        matchOperator(GT_OP, RIGHT_OP, GE_OP);
+        if (la(1) == '>' && la(2) == '=') {
+          match(3, RIGHT_ASSIGN);
+        }
+      }
+      case '/' -> {
+        matchOperator(DIV_OP, Token.INVALID_TYPE, DIV_ASSIGN);
+        if (la(1) == '/') {
+          // line comments outside of directives have to end with a newline
+          var lineEnd = findLineEnd(2);
+          var newline = newlineLength(lineEnd);
+          if (newline > 0) {
+            match(lineEnd + newline, LINE_COMMENT);
+          }
+        } else if (la(1) == '*') {
+          matchBlockComment(BLOCK_COMMENT);
+        }
+      }
+      case '#' -> matchHash();
+      case '\\' -> matchLineContinuation(LINE_CONTINUE);
+      case '\t', '\r', '\f', ' ', '\n' -> matchWhitespace(WS, EOL);
+      default -> {
+      }
+    }
+  }
+
+  private void matchOperator(int singleType, int doubledType, int assignType) {
+    match(1, singleType);
+    var next = la(1);
+    if (doubledType != Token.INVALID_TYPE && next == la(0)) {
+      match(2, doubledType);
+    }
+    if (assignType != Token.INVALID_TYPE && next == '=') {
+      match(2, assignType);
+    }
+  }
+
+  private void matchWord(KeywordTable table, int identifierType) {
+    var hash = KeywordTable.initialHash;
+    var length = 0;
+    int c;
+    while (isIdentifierPart(c = la(length))) {
+      hash = KeywordTable.hash(hash, c);
+      length++;
+    }
+    match(length, getWordType(table, hash, length, identifierType));
+  }
+
+  private int getWordType(KeywordTable table, int hash, int length, int identifierType) {
+    var slot = table.find(this, hash, length);
+    if (slot < 0 || !isAfter(table.minVersions[slot])) {
+      return identifierType;
+    }
+    var type = table.types[slot];
+    if (type == NR_CUSTOM && !enableCustomDirective || type == NR_INCLUDE && !enableIncludeDirective) {
+      return identifierType;
+    }
+    return type;
+  }
+
+  private void scanIntegerConstant() {
+    octalEnd = -1;
+    hexEnd = -1;
+    if (la(0) == '0') {
+      decimalEnd = 1;
+      var i = 1;
+      while (isOctalDigit(la(i))) {
+        i++;
+      }
+      if (i > 1) {
+        octalEnd = i;
+      }
+      if (la(1) == 'x') {
+        i = 2;
+        while (isHexDigit(la(i))) {
+          i++;
+        }
+        if (i > 2) {
+          hexEnd = i;
+        }
+      }
+    } else {
+      var i = 1;
+      while (isDigit(la(i))) {
+        i++;
+      }
+      decimalEnd = i;
+    }
+  }
+
+  private void matchNumber() {
+    var c = la(0);
+    if (isDigit(c)) {
+      scanIntegerConstant();
+      matchIntegerSuffixes(decimalEnd);
+      if (octalEnd > 0) {
+        matchIntegerSuffixes(octalEnd);
+      }
+      if (hexEnd > 0) {
+        matchIntegerSuffixes(hexEnd);
+      }
+    }
+
+    // the digits of a float may start with a dot but need at least one digit
+    var mantissaEnd = isDigit(c) ? 1 : 2;
+    while (isDigit(la(mantissaEnd))) {
+      mantissaEnd++;
+    }
+    if (isDigit(c) && la(mantissaEnd) == '.') {
+      mantissaEnd++;
+      while (isDigit(la(mantissaEnd))) {
+        mantissaEnd++;
+      }
+    }
+    matchFloatSuffixes(mantissaEnd);
+
+    // the exponent may be empty
+    var e = la(mantissaEnd);
+    if (e == 'e' || e == 'E') {
+      var exponentEnd = mantissaEnd + 1;
+      matchFloatSuffixes(exponentEnd);
+      var sign = la(exponentEnd);
+      if (sign == '+' || sign == '-') {
+        exponentEnd++;
+        matchFloatSuffixes(exponentEnd);
+      }
+      if (isDigit(la(exponentEnd))) {
+        while (isDigit(la(exponentEnd))) {
+          exponentEnd++;
+        }
+        matchFloatSuffixes(exponentEnd);
+      }
+    }
+  }
+
+  private void matchIntegerSuffixes(int end) {
+    match(end, INT32CONSTANT);
+    var first = la(end);
+    if (first == 'u' || first == 'U') {
+      match(end + 1, UINT32CONSTANT);
+      var second = la(end + 1);
+      if (second == 's' || second == 'S') {
+        match(end + 2, UINT16CONSTANT);
+      } else if (second == 'l' || second == 'L') {
+        match(end + 2, UINT64CONSTANT);
+      }
+    } else if (first == 's' || first == 'S') {
+      match(end + 1, INT16CONSTANT);
+    } else if (first == 'l' || first == 'L') {
+      match(end + 1, INT64CONSTANT);
+    }
+  }
+
+  private void matchFloatSuffixes(int end) {
+    match(end, FLOAT32CONSTANT);
+    var first = la(end);
+    var second = la(end + 1);
+    if (first == 'f' || first == 'F') {
+      match(end + 1, FLOAT32CONSTANT);
+    } else if ((first == 'h' || first == 'H') && (second == 'f' || second == 'F')) {
+      match(end + 2, FLOAT16CONSTANT);
+    } else if ((first == 'l' || first == 'L') && (second == 'f' || second == 'F')) {
+      match(end + 2, FLOAT64CONSTANT);
+    }
+  }
+
+  private void matchHash() {
+    match(1, NR);
+
+    var prefixEnd = 1;
+    while (la(prefixEnd) == ' ' || la(prefixEnd) == '\t') {
+      prefixEnd++;
+    }
+    for (var directive : preprocessorDirectives) {
+      if (matchesAt(prefixEnd, directive)) {
+        match(prefixEnd + directive.length(), PP_ENTER_MODE);
+      }
+    }
+
+    // an empty directive may contain whitespace and line continuations
+    var i = 1;
+    while (true) {
+      var c = la(i);
+      if (isWhitespace(c)) {
+        i++;
+      } else if (c == '\n') {
+        match(i + 1, PP_EMPTY);
+        return;
+      } else if (c == '\\') {
+        var newline = newlineLength(i + 1);
+        if (newline == 0) {
+          return;
+        }
+        i += 1 + newline;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private void matchDirective() {
+    var c = la(0);
+    if (isIdentifierStart(c)) {
+      matchWord(directiveKeywords, NR_IDENTIFIER);
+      return;
+    }
+    if (isDigit(c)) {
+      // versions are keywords in directives
+      scanIntegerConstant();
+      var length = Math.max(decimalEnd, Math.max(octalEnd, hexEnd));
+      var hash = KeywordTable.initialHash;
+      for (var i = 0; i < length; i++) {
+        hash = KeywordTable.hash(hash, la(i));
+      }
+      match(length, getWordType(directiveKeywords, hash, length, NR_INTCONSTANT));
+      return;
+    }
+    switch (c) {
+      case ':' -> match(1, NR_COLON);
+      case '(' -> match(1, NR_LPAREN);
+      case ')' -> match(1, NR_RPAREN);
+      case '"' -> {
+        if (enableIncludeDirective) {
+          match(1, NR_STRING_START);
+        }
+      }
+      case '<' -> {
+        if (enableIncludeDirective) {
+          match(1, NR_STRING_START_ANGLE);
+        }
+      }
+      case '/' -> {
+        if (la(1) == '/') {
+          match(findLineEnd(2), NR_LINE_COMMENT);
+        } else if (la(1) == '*') {
+          matchBlockComment(NR_BLOCK_COMMENT);
+        } else {
+          viableLength = 1;
+        }
+      }
+      case '\\' -> matchLineContinuation(NR_LINE_CONTINUE);
+      case '\t', '\r', '\f', ' ', '\n' -> matchWhitespace(NR_WS, NR_EOL);
+      default -> {
+      }
+    }
+  }
+
+  private void matchString(int endChar, int contentType, int endType) {
+    var c = la(0);
+    if (c == endChar) {
+      match(1, endType);
+    } else if (c != '\r' && c != '\n') {
+      var length = 1;
+      while (true) {
+        var next = la(length);
+        if (next == endChar || next == '\r' || next == '\n' || next == IntStream.EOF) {
+          break;
+        }
+        length++;
+      }
+      match(length, contentType);
+    }
+  }
+
+  private void matchCustomDirective() {
+    var c = la(0);
+    if (c == '\n' || isWhitespace(c)) {
+      matchWhitespace(C_WS, C_EOL);
+      return;
+    }
+    match(findLineEnd(1), C_CONTENT);
+    if (c == '/') {
+      if (la(1) == '/') {
+        match(findLineEnd(2), C_LINE_COMMENT);
+      } else if (la(1) == '*') {
+        matchBlockComment(C_BLOCK_COMMENT);
+      }
+    }
+  }
+
+  private void matchPreprocessor() {
+    var c = la(0);
+    if (c == '\r' || c == '\n') {
+      var newline = newlineLength(0);
+      if (newline > 0) {
+        match(newline, PP_EOL);
+      } else {
+        viableLength = 1;
+      }
+      return;
+    }
+
+    // the content may not end with a backslash
+    var lineEnd = findLineEnd(1);
+    var contentEnd = lineEnd;
+    while (contentEnd > 0 && la(contentEnd - 1) == '\\') {
+      contentEnd--;
+    }
+    if (contentEnd > 0) {
+      match(contentEnd, PP_CONTENT);
+    }
+
+    if (c == '\\') {
+      matchLineContinuation(PP_LINE_CONTINUE);
+      viableLength = Math.max(viableLength, lineEnd);
+    } else if (c == '/') {
+      if (la(1) == '/') {
+        match(lineEnd, PP_LINE_COMMENT);
+      } else if (la(1) == '*') {
+        matchBlockComment(PP_BLOCK_COMMENT);
+      }
+    }
+  }
+
+  private void matchLineContinuation(int type) {
+    var newline = newlineLength(1);
+    if (newline > 0) {
+      match(1 + newline, type);
+    } else {
+      viableLength = la(1) == '\r' ? 2 : 1;
+    }
+  }
+
+  private void matchBlockComment(int type) {
+    var i = 2;
+    while (true) {
+      var c = la(i);
+      if (c == IntStream.EOF) {
+        // an unterminated comment can be completed until the end of the input
+        viableLength = i;
+        return;
+      }
+      if (c == '*' && la(i + 1) == '/') {
+        match(i + 2, type);
+        return;
+      }
+      i++;
+    }
+  }
+
+  private void matchWhitespace(int whitespaceType, int newlineType) {
+    var length = 0;
+    while (isWhitespace(la(length))) {
+      length++;
+    }
+    if (length > 0) {
+      match(length, whitespaceType);
+    }
+    var newline = newlineLength(0);
+    if (newline > 0) {
+      match(newline, newlineType);
+    }
+  }
+
+  private boolean matchesAt(int offset, String str) {
+    for (var i = 0; i < str.length(); i++) {
+      if (la(offset + i) != str.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int newlineLength(int offset) {
+    var c = la(offset);
+    if (c == '\n') {
+      return 1;
+    }
+    return c == '\r' && la(offset + 1) == '\n' ? 2 : 0;
+  }
+
+  private int findLineEnd(int offset) {
+    var i = offset;
+    while (true) {
+      var c = la(i);
+      if (c == '\r' || c == '\n' || c == IntStream.EOF) {
+        return i;
+      }
+      i++;
+    }
+  }
+
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\t' || c == '\r' || c == '\f';
+  }
+
+  private static boolean isDigit(int c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isOctalDigit(int c) {
+    return c >= '0' && c <= '7';
+  }
+
+  private static boolean isHexDigit(int c) {
+    return isDigit(c) || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+  }
+
+  private static boolean isIdentifierStart(int c) {
+    return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_';
+  }
+
+  private static boolean isIdentifierPart(int c) {
+    return isIdentifierStart(c) || isDigit(c);
+  }
+}
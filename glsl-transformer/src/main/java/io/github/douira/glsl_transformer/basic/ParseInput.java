@@ -0,0 +1,379 @@
+package io.github.douira.glsl_transformer.basic;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * A parse input is the content of a shader that can be parsed without first
+ * copying it into a string. It can be created from a string, a char buffer,
+ * UTF-8 encoded bytes or a file. Inputs that only contain ASCII characters are
+ * read directly from the underlying byte buffer, which for files is memory
+ * mapped. Other UTF-8 inputs are decoded into a char buffer once.
+ *
+ * The hash code of the content is computed when the input is created and is
+ * the same as the hash code of a string with the same content. Parse inputs
+ * are equal to each other if they have the same content. The parse and build
+ * caches use this to look up inputs without turning them into strings and
+ * treat a parse input and a string with the same content as the same input.
+ *
+ * The content of the underlying buffer or file may not change while the parse
+ * input or anything parsed from it is in use since tokens read their text from
+ * the input lazily. The parse and build caches outlive the parse, so they only
+ * store trees parsed from a string snapshot of the input (see
+ * {@link #snapshot()}).
+ */
+public class ParseInput implements CharSequence {
+  private final String string;
+  private final CharSequence chars;
+  private final ByteBuffer asciiBytes;
+  private final int length;
+  private final int hash;
+  private final boolean hasSurrogates;
+  private final String sourceName;
+
+  private ParseInput(
+      String string,
+      CharSequence chars,
+      ByteBuffer asciiBytes,
+      int length,
+      int hash,
+      boolean hasSurrogates,
+      String sourceName) {
+    this.string = string;
+    this.chars = chars;
+    this.asciiBytes = asciiBytes;
+    this.length = length;
+    this.hash = hash;
+    this.hasSurrogates = hasSurrogates;
+    this.sourceName = sourceName;
+  }
+
+  /**
+   * Creates a parse input from a string.
+   *
+   * @param string The string to parse
+   * @return The parse input
+   */
+  public static ParseInput of(String string) {
+    return new ParseInput(string, string, null, string.length(), string.hashCode(), false,
+        IntStream.UNKNOWN_SOURCE_NAME);
+  }
+
+  /**
+   * Creates a parse input from the remaining chars of a char buffer. The chars
+   * are not copied and the position of the given buffer is not changed.
+   *
+   * @param buffer The buffer to parse
+   * @return The parse input
+   */
+  public static ParseInput of(CharBuffer buffer) {
+    return of(buffer, IntStream.UNKNOWN_SOURCE_NAME);
+  }
+
+  private static ParseInput of(CharBuffer buffer, String sourceName) {
+    var chars = buffer.slice();
+    var length = chars.remaining();
+    var hash = 0;
+    var hasSurrogates = false;
+    for (var i = 0; i < length; i++) {
+      var c = chars.get(i);
+      hash = 31 * hash + c;
+      hasSurrogates |= Character.isSurrogate(c);
+    }
+    return new ParseInput(null, chars, null, length, hash, hasSurrogates, sourceName);
+  }
+
+  /**
+   * Creates a parse input from UTF-8 encoded bytes. The bytes are not copied if
+   * they only contain ASCII characters.
+   *
+   * @param bytes The bytes to parse
+   * @return The parse input
+   * @throws UncheckedIOException If the bytes are not valid UTF-8
+   */
+  public static ParseInput fromUTF8(byte[] bytes) {
+    return fromUTF8(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Creates a parse input from the remaining UTF-8 encoded bytes of a byte
+   * buffer. The bytes are not copied if they only contain ASCII characters and
+   * the position of the given buffer is not changed.
+   *
+   * @param buffer The buffer to parse
+   * @return The parse input
+   * @throws UncheckedIOException If the bytes are not valid UTF-8
+   */
+  public static ParseInput fromUTF8(ByteBuffer buffer) {
+    return fromUTF8(buffer, IntStream.UNKNOWN_SOURCE_NAME);
+  }
+
+  private static ParseInput fromUTF8(ByteBuffer buffer, String sourceName) {
+    var bytes = buffer.slice();
+    var length = bytes.remaining();
+
+    // compute the hash while checking if the bytes can be used directly
+    var hash = 0;
+    for (var i = 0; i < length; i++) {
+      var b = bytes.get(i);
+      if (b < 0) {
+        return of(decodeUTF8(bytes, sourceName), sourceName);
+      }
+      hash = 31 * hash + b;
+    }
+    return new ParseInput(null, null, bytes.asReadOnlyBuffer(), length, hash, false, sourceName);
+  }
+
+  private static CharBuffer decodeUTF8(ByteBuffer bytes, String sourceName) {
+    try {
+      return StandardCharsets.UTF_8.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPORT)
+          .onUnmappableCharacter(CodingErrorAction.REPORT)
+          .decode(bytes.duplicate());
+    } catch (CharacterCodingException e) {
+      throw new UncheckedIOException("The input " + sourceName + " is not valid UTF-8", e);
+    }
+  }
+
+  /**
+   * Creates a parse input from a UTF-8 encoded file. The file is memory mapped
+   * and not read into memory if it only contains ASCII characters.
+   *
+   * @param path The path of the file to parse
+   * @return The parse input
+   * @throws UncheckedIOException If the file can't be read or is not valid UTF-8
+   */
+  public static ParseInput fromPath(Path path) {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("The file " + path + " is too large to be parsed.");
+      }
+
+      // the mapping stays valid after the channel is closed
+      return fromUTF8(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), path.toString());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read " + path, e);
+    }
+  }
+
+  /**
+   * Creates a char stream that reads from this input. The content is not copied
+   * unless it contains characters outside of the basic multilingual plane.
+   *
+   * @return The char stream for the lexer
+   */
+  public CharStream toCharStream() {
+    if (string != null) {
+      return CharStreams.fromString(string, sourceName);
+    }
+    if (hasSurrogates) {
+      // surrogate pairs have to be combined into code points
+      return CharStreams.fromString(toString(), sourceName);
+    }
+    return new InputCharStream();
+  }
+
+  public String getSourceName() {
+    return sourceName;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for length " + length);
+    }
+    return asciiBytes == null ? chars.charAt(index) : (char) asciiBytes.get(index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return substring(start, end);
+  }
+
+  private String substring(int start, int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException(
+          "Range " + start + " to " + end + " is out of bounds for length " + length);
+    }
+    if (asciiBytes == null) {
+      return chars.subSequence(start, end).toString();
+    }
+    var result = new char[end - start];
+    for (var i = 0; i < result.length; i++) {
+      result[i] = (char) asciiBytes.get(start + i);
+    }
+    return new String(result);
+  }
+
+  /**
+   * Checks if two char sequences have the same content. This is used to compare
+   * strings and parse inputs with each other.
+   *
+   * @param a The first char sequence
+   * @param b The second char sequence
+   * @return {@code true} if the contents are equal
+   */
+  public static boolean contentEquals(CharSequence a, CharSequence b) {
+    if (a == b) {
+      return true;
+    }
+    if (a instanceof String aString) {
+      return aString.contentEquals(b);
+    }
+    if (b instanceof String bString) {
+      return bString.contentEquals(a);
+    }
+    var length = a.length();
+    if (length != b.length()) {
+      return false;
+    }
+    for (var i = 0; i < length; i++) {
+      if (a.charAt(i) != b.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the precomputed hash code of the content. It's the same as the hash
+   * code of a string with the same content.
+   */
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (obj == null)
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    ParseInput other = (ParseInput) obj;
+    return hash == other.hash && contentEquals(unwrap(), other.unwrap());
+  }
+
+  /**
+   * Returns the string this input was created from if there is one so that
+   * string comparisons can be used. Otherwise this input itself is returned.
+   *
+   * @return The string or this input
+   */
+  public CharSequence unwrap() {
+    return string == null ? this : string;
+  }
+
+  /**
+   * Returns a parse input with the same content that is backed by a string. It
+   * doesn't depend on the underlying buffer or file of this input, which can be
+   * reused or unmapped afterwards. This copies the content unless the input was
+   * created from a string.
+   *
+   * @return An input backed by a string
+   */
+  public ParseInput snapshot() {
+    if (string != null) {
+      return this;
+    }
+    var content = toString();
+    return new ParseInput(content, content, null, length, hash, false, sourceName);
+  }
+
+  /**
+   * Returns the content as a string. This copies the content unless the input
+   * was created from a string.
+   */
+  @Override
+  public String toString() {
+    return string == null ? substring(0, length) : string;
+  }
+
+  /**
+   * A char stream that reads the chars of the input directly. It's only used if
+   * there are no surrogate pairs and every char is a code point.
+   */
+  class InputCharStream implements CharStream {
+    private int position;
+
+    ParseInput getInput() {
+      return ParseInput.this;
+    }
+
+    @Override
+    public void consume() {
+      if (position >= length) {
+        throw new IllegalStateException("cannot consume EOF");
+      }
+      position++;
+    }
+
+    @Override
+    public int LA(int i) {
+      int offset;
+      if (i > 0) {
+        offset = position + i - 1;
+      } else if (i < 0) {
+        offset = position + i;
+      } else {
+        return 0;
+      }
+      return offset < 0 || offset >= length ? IntStream.EOF : charAt(offset);
+    }
+
+    @Override
+    public int mark() {
+      return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+      return position;
+    }
+
+    @Override
+    public void seek(int index) {
+      position = index;
+    }
+
+    @Override
+    public int size() {
+      return length;
+    }
+
+    @Override
+    public String getSourceName() {
+      return sourceName;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+      var start = Math.min(interval.a, length);
+      var end = Math.min(interval.b + 1, length);
+      return start >= end ? "" : substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return getText(Interval.of(0, length - 1));
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package io.github.douira.glsl_transformer.basic;
+
+import java.util.List;
+
+import io.github.douira.glsl_transformer.tree.ExtendedContext;
+
+/**
+ * The result of parsing with error collection. It contains the parse tree
+ * together with the syntax errors that were found while parsing it.
+ *
+ * @see EnhancedParser#parseCollectingErrors(String)
+ */
+public class ParseResult<RuleType extends ExtendedContext> {
+  /**
+   * The parse tree or {@code null} if parsing was aborted. If there are errors,
+   * the tree was built with error recovery and may contain error nodes.
+   */
+  public final RuleType tree;
+
+  public final List<SyntaxError> errors;
+
+  /**
+   * If parsing was aborted because more than the maximum number of errors
+   * occurred. The errors then contain only the first maximum number of errors.
+   */
+  public final boolean aborted;
+
+  public ParseResult(RuleType tree, List<SyntaxError> errors, boolean aborted) {
+    this.tree = tree;
+    this.errors = errors;
+    this.aborted = aborted;
+  }
+
+  public boolean hasErrors() {
+    return !errors.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return "ParseResult [errors=" + errors + ", aborted=" + aborted + "]";
+  }
+}
@@ -0,0 +1,168 @@
+package io.github.douira.glsl_transformer.basic;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+import org.antlr.v4.runtime.dfa.DFA;
+
+import io.github.douira.glsl_transformer.*;
+
+/**
+ * The parser warmup fills the prediction caches of the lexer and the parser
+ * before the first real input is parsed. ANTLR builds its DFAs lazily while
+ * parsing and the first inputs after startup are parsed much more slowly than
+ * later ones because most of the predictions have to be computed from the ATN.
+ * The DFAs are shared between all instances of the lexer and the parser in the
+ * same class loader, which means that parsing a representative corpus once with
+ * any parser warms up all of them.
+ *
+ * The warmup can be run synchronously or on a background daemon thread right at
+ * startup so that it's finished or at least partially done by the time the
+ * first shader is parsed. Parsing while the warmup is running is safe since the
+ * DFAs are thread-safe. A bundled shader that covers the commonly used parts of
+ * the grammar is used if no corpus is given. Warming up with the shaders that
+ * will actually be parsed later gives the best results.
+ */
+public class ParserWarmup {
+  private static final String bundledShaderName = "warmup.glsl";
+
+  private ParserWarmup() {
+  }
+
+  /**
+   * Parses the given sources to fill the prediction caches. Parse errors are
+   * ignored since inputs with errors also contribute to the caches.
+   *
+   * @param sources The sources to parse
+   * @return The number of sources that were parsed
+   */
+  public static int warmup(Stream<String> sources) {
+    return warmup(new EnhancedParser(false), sources);
+  }
+
+  static int warmup(EnhancedParser parser, Stream<String> sources) {
+    var count = new int[1];
+    sources.forEach(source -> {
+      try {
+        parser.parse(source);
+      } catch (RuntimeException e) {
+        // errors are not relevant for the warmup
+      }
+      count[0]++;
+    });
+    return count[0];
+  }
+
+  /**
+   * Parses the bundled warmup shader.
+   *
+   * @return The number of sources that were parsed
+   * @throws UncheckedIOException If the bundled shader can't be read
+   */
+  public static int warmup() {
+    return warmup(Stream.of(getBundledShader()));
+  }
+
+  /**
+   * Parses all files in the given directory and its subdirectories. The glslang
+   * test corpus or a directory of the application's own shaders can be used.
+   *
+   * @param directory The directory to read the files from
+   * @return The number of sources that were parsed
+   * @throws UncheckedIOException If the directory or one of the files can't be
+   *                              read
+   */
+  public static int warmup(Path directory) {
+    try (var paths = Files.walk(directory)) {
+      return warmup(paths
+          .filter(Files::isRegularFile)
+          .sorted()
+          .map(ParserWarmup::readFile));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read the warmup directory " + directory, e);
+    }
+  }
+
+  private static String readFile(Path path) {
+    try {
+      return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read the warmup file " + path, e);
+    }
+  }
+
+  /**
+   * Returns the content of the bundled warmup shader.
+   *
+   * @return The bundled warmup shader
+   * @throws UncheckedIOException If the bundled shader can't be read
+   */
+  public static String getBundledShader() {
+    try (var stream = ParserWarmup.class.getResourceAsStream(bundledShaderName)) {
+      if (stream == null) {
+        throw new FileNotFoundException("The bundled warmup shader " + bundledShaderName + " is missing");
+      }
+      var bytes = new ByteArrayOutputStream();
+      var buffer = new byte[4096];
+      int read;
+      while ((read = stream.read(buffer)) != -1) {
+        bytes.write(buffer, 0, read);
+      }
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read the bundled warmup shader", e);
+    }
+  }
+
+  /**
+   * Runs the given warmup on a new daemon thread. The thread doesn't prevent the
+   * JVM from exiting. Exceptions thrown by the warmup complete the returned
+   * future exceptionally.
+   *
+   * @param warmup The warmup to run, for example {@code ParserWarmup::warmup}
+   * @return The future that completes when the warmup is done
+   */
+  public static CompletableFuture<Void> warmupInBackground(Runnable warmup) {
+    return CompletableFuture.runAsync(warmup, task -> {
+      var thread = new Thread(task, "glsl-transformer-warmup");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      thread.start();
+    });
+  }
+
+  /**
+   * Parses the bundled warmup shader on a new daemon thread.
+   *
+   * @return The future that completes when the warmup is done
+   */
+  public static CompletableFuture<Void> warmupInBackground() {
+    return warmupInBackground(ParserWarmup::warmup);
+  }
+
+  /**
+   * Returns the number of DFA states the lexer and the parser have cached so far.
+   * This can be used to check how much a warmup contributed.
+   *
+   * @return The total number of cached DFA states
+   */
+  public static int getDFAStateCount() {
+    return getDFAStateCount(new GLSLLexer(null), new GLSLParser(null));
+  }
+
+  static int getDFAStateCount(GLSLLexer lexer, GLSLParser parser) {
+    return countStates(lexer.getInterpreter().decisionToDFA)
+        + countStates(parser.getInterpreter().decisionToDFA);
+  }
+
+  private static int countStates(DFA[] decisionToDFA) {
+    var count = 0;
+    for (var dfa : decisionToDFA) {
+      count += dfa.states.size();
+    }
+    return count;
+  }
+}
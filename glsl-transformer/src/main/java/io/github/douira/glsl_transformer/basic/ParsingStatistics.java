@@ -0,0 +1,419 @@
+package io.github.douira.glsl_transformer.basic;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.*;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.*;
+
+import io.github.douira.glsl_transformer.GLSLParser;
+import io.github.douira.glsl_transformer.util.ConcurrentLRUCache;
+
+/**
+ * Parsing statistics record how often parsing in SLL mode fails and has to be
+ * repeated in LL mode. The outcomes are counted per entry rule, which is the
+ * rule that the parse method parses, and the rules in which the SLL attempts
+ * bailed out are counted separately. The inputs whose SLL attempt failed are
+ * remembered by a fingerprint of their content.
+ *
+ * The {@link EnhancedParser.ParsingStrategy#ADAPTIVE} strategy uses these
+ * statistics to skip the SLL attempt for inputs that are known to fail in SLL
+ * mode and for entry rules that fail in SLL mode most of the time. Since
+ * skipping the SLL attempt means that nothing is learned about it, the SLL
+ * attempt is still made every once in a while for rules that are skipped.
+ *
+ * The statistics are thread-safe and can be shared between multiple parsers.
+ * Parse methods are identified by their class, which is the same for all
+ * method references and lambdas created at the same place in the code.
+ */
+public class ParsingStatistics {
+  public static final int DEFAULT_INPUT_CACHE_SIZE = 1000;
+  public static final int DEFAULT_MIN_ATTEMPTS = 20;
+  public static final double DEFAULT_BAILOUT_RATE_THRESHOLD = 0.5;
+  public static final int DEFAULT_PROBE_INTERVAL = 16;
+
+  /**
+   * The fingerprint value that stands for an unknown input. Inputs with this
+   * fingerprint are not remembered.
+   */
+  public static final long NO_FINGERPRINT = 0;
+
+  private static final int unknownRule = -1;
+
+  private final ConcurrentLRUCache<Long, Boolean> failingInputs;
+  private final int minAttempts;
+  private final double bailoutRateThreshold;
+  private final int probeInterval;
+
+  private final Map<Integer, RuleCounters> rules = new ConcurrentHashMap<>();
+  private final Map<Integer, LongAdder> bailoutLocations = new ConcurrentHashMap<>();
+  private final Map<Class<?>, Integer> entryRules = new ConcurrentHashMap<>();
+  private volatile boolean hasFailingInputs;
+
+  private static class RuleCounters {
+    final LongAdder sllAttempts = new LongAdder();
+    final LongAdder sllBailouts = new LongAdder();
+    final LongAdder llAttempts = new LongAdder();
+    final LongAdder llFailures = new LongAdder();
+    final LongAdder skippedSLLAttempts = new LongAdder();
+    final LongAdder wastedSLLTime = new LongAdder();
+    final AtomicLong skipDecisions = new AtomicLong();
+  }
+
+  /**
+   * An immutable snapshot of the statistics of one entry rule.
+   */
+  public static class RuleStats {
+    public final long sllAttempts;
+    public final long sllBailouts;
+    public final long llAttempts;
+    public final long llFailures;
+    public final long skippedSLLAttempts;
+    public final long wastedSLLTime;
+
+    public RuleStats(
+        long sllAttempts,
+        long sllBailouts,
+        long llAttempts,
+        long llFailures,
+        long skippedSLLAttempts,
+        long wastedSLLTime) {
+      this.sllAttempts = sllAttempts;
+      this.sllBailouts = sllBailouts;
+      this.llAttempts = llAttempts;
+      this.llFailures = llFailures;
+      this.skippedSLLAttempts = skippedSLLAttempts;
+      this.wastedSLLTime = wastedSLLTime;
+    }
+
+    /**
+     * Returns the ratio of SLL attempts that bailed out. If there were no
+     * attempts, this returns 0.
+     *
+     * @return The bailout rate between 0 and 1
+     */
+    public double getBailoutRate() {
+      return sllAttempts == 0 ? 0.0 : (double) sllBailouts / sllAttempts;
+    }
+
+    @Override
+    public String toString() {
+      return "RuleStats [sllAttempts=" + sllAttempts
+          + ", sllBailouts=" + sllBailouts
+          + ", llAttempts=" + llAttempts
+          + ", llFailures=" + llFailures
+          + ", skippedSLLAttempts=" + skippedSLLAttempts
+          + ", wastedSLLTime=" + wastedSLLTime + "]";
+    }
+  }
+
+  /**
+   * Creates new parsing statistics.
+   *
+   * @param inputCacheSize       The maximum number of failing inputs that are
+   *                             remembered
+   * @param minAttempts          The number of SLL attempts an entry rule needs
+   *                             before SLL is skipped for it
+   * @param bailoutRateThreshold The bailout rate from which on SLL is skipped for
+   *                             an entry rule
+   * @param probeInterval        Every this many times SLL would be skipped for an
+   *                             entry rule, it's attempted anyway
+   */
+  public ParsingStatistics(
+      int inputCacheSize,
+      int minAttempts,
+      double bailoutRateThreshold,
+      int probeInterval) {
+    if (probeInterval < 1) {
+      throw new IllegalArgumentException("The probe interval has to be at least 1.");
+    }
+    failingInputs = new ConcurrentLRUCache<>(inputCacheSize);
+    this.minAttempts = minAttempts;
+    this.bailoutRateThreshold = bailoutRateThreshold;
+    this.probeInterval = probeInterval;
+  }
+
+  /**
+   * Creates new parsing statistics with the default settings.
+   */
+  public ParsingStatistics() {
+    this(
+        DEFAULT_INPUT_CACHE_SIZE,
+        DEFAULT_MIN_ATTEMPTS,
+        DEFAULT_BAILOUT_RATE_THRESHOLD,
+        DEFAULT_PROBE_INTERVAL);
+  }
+
+  /**
+   * Computes the fingerprint of the given string. The cached hash code of the
+   * string is used, which makes this cheap for strings that have been hashed
+   * before.
+   *
+   * @param str The string to fingerprint
+   * @return The fingerprint
+   */
+  public static long fingerprint(String str) {
+    return fingerprint(str.hashCode(), str.length());
+  }
+
+  /**
+   * Computes the fingerprint of the given parse input from its precomputed hash
+   * code. It's the same as the fingerprint of a string with the same content.
+   *
+   * @param input The parse input to fingerprint
+   * @return The fingerprint
+   */
+  public static long fingerprint(ParseInput input) {
+    return fingerprint(input.hashCode(), input.length());
+  }
+
+  /**
+   * Computes the fingerprint of the content of the given stream. The position of
+   * the stream is not changed. The precomputed hash of a {@link ParseInput} is
+   * reused and the content of other streams is hashed in place without copying
+   * it, which takes time proportional to the length of the content. Streams with
+   * the same content have the same fingerprint regardless of their type and as a
+   * string with the same content.
+   *
+   * @param stream The stream to fingerprint
+   * @return The fingerprint or {@link #NO_FINGERPRINT} if the stream's content
+   *         can't be read
+   */
+  public static long fingerprint(IntStream stream) {
+    if (stream instanceof ParseInput.InputCharStream inputStream) {
+      return fingerprint(inputStream.getInput());
+    }
+    if (!(stream instanceof CharStream charStream)) {
+      return NO_FINGERPRINT;
+    }
+    var size = charStream.size();
+    var index = charStream.index();
+    charStream.seek(0);
+
+    // hash and count the UTF-16 code units like String.hashCode does
+    var hash = 0;
+    var length = size;
+    for (var i = 1; i <= size; i++) {
+      var codePoint = charStream.LA(i);
+      if (Character.isBmpCodePoint(codePoint)) {
+        hash = 31 * hash + codePoint;
+      } else {
+        hash = 31 * hash + Character.highSurrogate(codePoint);
+        hash = 31 * hash + Character.lowSurrogate(codePoint);
+        length++;
+      }
+    }
+    charStream.seek(index);
+    return fingerprint(hash, length);
+  }
+
+  private static long fingerprint(int hash, int length) {
+    var fingerprint = (long) hash << 32 | length & 0xFFFFFFFFL;
+    return fingerprint == NO_FINGERPRINT ? 1 : fingerprint;
+  }
+
+  /**
+   * Returns whether any input has been remembered as failing. If not, the
+   * fingerprint of an input doesn't need to be computed before it's parsed.
+   *
+   * @return {@code true} if there are inputs that are known to fail
+   */
+  public boolean hasFailingInputs() {
+    return hasFailingInputs;
+  }
+
+  private RuleCounters getCounters(int ruleIndex) {
+    return rules.computeIfAbsent(ruleIndex, key -> new RuleCounters());
+  }
+
+  private int getEntryRule(Object parseMethod, RuleContext node, RuntimeException exception) {
+    if (node == null) {
+      var ruleIndex = entryRules.get(parseMethod.getClass());
+      if (ruleIndex != null) {
+        return ruleIndex;
+      }
+
+      // the outermost context of the exception is the entry rule
+      node = getContext(exception);
+      if (node == null) {
+        return unknownRule;
+      }
+      while (node.parent != null) {
+        node = node.parent;
+      }
+    }
+    var ruleIndex = node.getRuleIndex();
+    entryRules.putIfAbsent(parseMethod.getClass(), ruleIndex);
+    return ruleIndex;
+  }
+
+  private static RuleContext getContext(RuntimeException exception) {
+    if (exception == null) {
+      return null;
+    }
+    var cause = exception instanceof RecognitionException ? exception : exception.getCause();
+    return cause instanceof RecognitionException recognitionException ? recognitionException.getCtx() : null;
+  }
+
+  private static String getRuleName(int ruleIndex) {
+    return ruleIndex >= 0 && ruleIndex < GLSLParser.ruleNames.length
+        ? GLSLParser.ruleNames[ruleIndex]
+        : "<unknown>";
+  }
+
+  /**
+   * Decides if the SLL attempt should be skipped for the given parse method and
+   * input.
+   *
+   * @param parseMethod The parse method that is going to be used
+   * @param fingerprint The fingerprint of the input
+   * @return {@code true} if parsing should start in LL mode
+   */
+  public boolean shouldSkipSLL(Object parseMethod, long fingerprint) {
+    var ruleIndex = entryRules.get(parseMethod.getClass());
+    if (fingerprint != NO_FINGERPRINT && failingInputs.get(fingerprint) != null) {
+      if (ruleIndex != null) {
+        getCounters(ruleIndex).skippedSLLAttempts.increment();
+      }
+      return true;
+    }
+    if (ruleIndex == null) {
+      return false;
+    }
+
+    var counters = getCounters(ruleIndex);
+    var attempts = counters.sllAttempts.sum();
+    if (attempts < minAttempts || counters.sllBailouts.sum() < attempts * bailoutRateThreshold) {
+      return false;
+    }
+
+    // try SLL every once in a while to notice if it starts working
+    if (counters.skipDecisions.incrementAndGet() % probeInterval == 0) {
+      return false;
+    }
+    counters.skippedSLLAttempts.increment();
+    return true;
+  }
+
+  /**
+   * Records a successful SLL attempt.
+   *
+   * @param parseMethod The parse method that was used
+   * @param node        The parsed node
+   */
+  public void recordSLLSuccess(Object parseMethod, RuleContext node) {
+    getCounters(getEntryRule(parseMethod, node, null)).sllAttempts.increment();
+  }
+
+  /**
+   * Records an SLL attempt that bailed out and remembers the input as failing.
+   *
+   * @param parseMethod The parse method that was used
+   * @param exception   The exception that ended the SLL attempt
+   * @param fingerprint The fingerprint of the input
+   * @param time        The time in nanoseconds the failed attempt took
+   */
+  public void recordSLLBailout(
+      Object parseMethod,
+      ParseCancellationException exception,
+      long fingerprint,
+      long time) {
+    var counters = getCounters(getEntryRule(parseMethod, null, exception));
+    counters.sllAttempts.increment();
+    counters.sllBailouts.increment();
+    counters.wastedSLLTime.add(time);
+
+    var context = getContext(exception);
+    bailoutLocations
+        .computeIfAbsent(context == null ? unknownRule : context.getRuleIndex(), key -> new LongAdder())
+        .increment();
+
+    if (fingerprint != NO_FINGERPRINT) {
+      failingInputs.put(fingerprint, Boolean.TRUE);
+      hasFailingInputs = true;
+    }
+  }
+
+  /**
+   * Records an LL attempt. It failed if it threw an exception or if the parser
+   * reported syntax errors.
+   *
+   * @param parseMethod The parse method that was used
+   * @param node        The parsed node or {@code null} if parsing threw
+   * @param exception   The exception thrown by parsing or {@code null}
+   * @param hadErrors   If the parser reported syntax errors
+   */
+  public void recordLL(
+      Object parseMethod,
+      RuleContext node,
+      RuntimeException exception,
+      boolean hadErrors) {
+    var counters = getCounters(getEntryRule(parseMethod, node, exception));
+    counters.llAttempts.increment();
+    if (exception != null || hadErrors) {
+      counters.llFailures.increment();
+    }
+  }
+
+  /**
+   * Checks if the input with the given fingerprint is known to fail in SLL mode.
+   *
+   * @param fingerprint The fingerprint of the input
+   * @return {@code true} if the SLL attempt for the input failed before
+   */
+  public boolean isKnownToFail(long fingerprint) {
+    return fingerprint != NO_FINGERPRINT && failingInputs.get(fingerprint) != null;
+  }
+
+  public int getFailingInputCount() {
+    return failingInputs.size();
+  }
+
+  /**
+   * Returns a snapshot of the statistics of each entry rule by rule name.
+   *
+   * @return The statistics of the entry rules
+   */
+  public Map<String, RuleStats> getRuleStats() {
+    var result = new TreeMap<String, RuleStats>();
+    rules.forEach((ruleIndex, counters) -> result.put(getRuleName(ruleIndex), new RuleStats(
+        counters.sllAttempts.sum(),
+        counters.sllBailouts.sum(),
+        counters.llAttempts.sum(),
+        counters.llFailures.sum(),
+        counters.skippedSLLAttempts.sum(),
+        counters.wastedSLLTime.sum())));
+    return result;
+  }
+
+  /**
+   * Returns how many SLL attempts bailed out in each rule by rule name. These are
+   * the rules in which SLL prediction failed and not the entry rules.
+   *
+   * @return The number of bailouts in each rule
+   */
+  public Map<String, Long> getBailoutLocations() {
+    var result = new TreeMap<String, Long>();
+    bailoutLocations.forEach((ruleIndex, count) -> result.put(getRuleName(ruleIndex), count.sum()));
+    return result;
+  }
+
+  /**
+   * Removes all recorded statistics and forgets the failing inputs.
+   */
+  public void clear() {
+    rules.clear();
+    bailoutLocations.clear();
+    entryRules.clear();
+    failingInputs.clear();
+    hasFailingInputs = false;
+  }
+
+  @Override
+  public String toString() {
+    return "ParsingStatistics [rules=" + getRuleStats()
+        + ", bailoutLocations=" + getBailoutLocations()
+        + ", failingInputs=" + getFailingInputCount() + "]";
+  }
+}
@@ -0,0 +1,189 @@
+package io.github.douira.glsl_transformer.basic;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.*;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * An error strategy that creates its exceptions without stack traces. Filling
+ * in the stack trace is the most expensive part of creating an exception and
+ * the exceptions of the error strategy are only used to report and recover
+ * from errors. In bail mode it behaves like {@link BailErrorStrategy} and
+ * otherwise like {@link DefaultErrorStrategy}.
+ */
+class StacklessErrorStrategy extends DefaultErrorStrategy {
+  private final boolean bail;
+  private boolean syncing;
+
+  static class StacklessInputMismatchException extends InputMismatchException {
+    StacklessInputMismatchException(Parser recognizer) {
+      super(recognizer);
+    }
+
+    StacklessInputMismatchException(Parser recognizer, int state, ParserRuleContext context) {
+      super(recognizer, state, context);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+  }
+
+  static class StacklessLexerNoViableAltException extends LexerNoViableAltException {
+    StacklessLexerNoViableAltException(
+        Lexer lexer, CharStream input, int startIndex, ATNConfigSet deadEndConfigs) {
+      super(lexer, input, startIndex, deadEndConfigs);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+  }
+
+  static class StacklessParseCancellationException extends ParseCancellationException {
+    StacklessParseCancellationException(Throwable cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+  }
+
+  /**
+   * Creates a new stackless error strategy.
+   *
+   * @param bail If {@code true}, parsing is cancelled at the first error instead
+   *             of recovering from it
+   */
+  StacklessErrorStrategy(boolean bail) {
+    this.bail = bail;
+  }
+
+  private static ParseCancellationException cancel(Parser recognizer, RecognitionException e) {
+    for (var context = recognizer.getContext(); context != null; context = context.getParent()) {
+      context.exception = e;
+    }
+    return new StacklessParseCancellationException(e);
+  }
+
+  @Override
+  public void recover(Parser recognizer, RecognitionException e) {
+    if (bail) {
+      throw cancel(recognizer, e);
+    }
+    super.recover(recognizer, e);
+  }
+
+  @Override
+  public Token recoverInline(Parser recognizer) throws RecognitionException {
+    if (bail) {
+      throw cancel(recognizer, new StacklessInputMismatchException(recognizer));
+    }
+
+    // the same as the default implementation but with stackless exceptions
+    var matchedSymbol = singleTokenDeletion(recognizer);
+    if (matchedSymbol != null) {
+      recognizer.consume();
+      return matchedSymbol;
+    }
+    if (singleTokenInsertion(recognizer)) {
+      return getMissingSymbol(recognizer);
+    }
+    if (nextTokensContext == null) {
+      throw new StacklessInputMismatchException(recognizer);
+    }
+    throw new StacklessInputMismatchException(recognizer, nextTokensState, nextTokensContext);
+  }
+
+  @Override
+  public void sync(Parser recognizer) throws RecognitionException {
+    if (bail) {
+      return;
+    }
+    syncing = true;
+    try {
+      super.sync(recognizer);
+    } finally {
+      syncing = false;
+    }
+  }
+
+  /**
+   * The default sync only attempts a single token deletion at the start of a
+   * block and throws a new input mismatch exception right after it fails. Since
+   * there is no way to change the exception it creates, the stackless exception
+   * is thrown here instead.
+   */
+  @Override
+  protected Token singleTokenDeletion(Parser recognizer) {
+    var matchedSymbol = super.singleTokenDeletion(recognizer);
+    if (matchedSymbol == null && syncing) {
+      throw new StacklessInputMismatchException(recognizer);
+    }
+    return matchedSymbol;
+  }
+
+  /**
+   * A prediction simulator that reports prediction failures with stackless
+   * exceptions. It shares the DFA cache of the simulator it's created from.
+   */
+  static class StacklessATNSimulator extends ParserATNSimulator {
+    StacklessATNSimulator(Parser parser, ParserATNSimulator base) {
+      super(parser, base.atn, base.decisionToDFA, base.getSharedContextCache());
+    }
+
+    @Override
+    protected NoViableAltException noViableAlt(
+        TokenStream input,
+        ParserRuleContext outerContext,
+        ATNConfigSet configs,
+        int startIndex) {
+      return new NoViableAltException(
+          parser, input, input.get(startIndex), input.LT(1), configs, outerContext) {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+          return this;
+        }
+      };
+    }
+  }
+
+  /**
+   * A lexer simulator that reports token recognition errors with stackless
+   * exceptions. It shares the DFA cache of the simulator it's created from.
+   * Whether a token was accepted before the match failed is tracked here since
+   * the simulator's own record of it isn't accessible.
+   */
+  static class StacklessLexerATNSimulator extends LexerATNSimulator {
+    private boolean accepted;
+
+    StacklessLexerATNSimulator(Lexer lexer, LexerATNSimulator base) {
+      super(lexer, base.atn, base.decisionToDFA, base.getSharedContextCache());
+    }
+
+    @Override
+    public int match(CharStream input, int mode) {
+      accepted = false;
+      return super.match(input, mode);
+    }
+
+    @Override
+    protected void captureSimState(SimState settings, CharStream input, DFAState dfaState) {
+      accepted = true;
+      super.captureSimState(settings, input, dfaState);
+    }
+
+    @Override
+    protected int failOrAccept(SimState prevAccept, CharStream input, ATNConfigSet reach, int t) {
+      if (!accepted && (t != IntStream.EOF || input.index() != startIndex)) {
+        throw new StacklessLexerNoViableAltException(recog, input, startIndex, reach);
+      }
+      return super.failOrAccept(prevAccept, input, reach, t);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package io.github.douira.glsl_transformer.basic;
+
+import org.antlr.v4.runtime.Token;
+
+/**
+ * A syntax error that was collected while parsing instead of being thrown. It
+ * only holds the location, the offending token and the message and no
+ * exception.
+ */
+public class SyntaxError {
+  /**
+   * The line of the error. The first line has the number 1.
+   */
+  public final int line;
+
+  /**
+   * The position of the error in the line. The first character has the
+   * position 0.
+   */
+  public final int column;
+
+  /**
+   * The token at which the parser found the error or {@code null} if the error
+   * was found by the lexer.
+   */
+  public final Token offendingToken;
+
+  public final String message;
+
+  public SyntaxError(int line, int column, Token offendingToken, String message) {
+    this.line = line;
+    this.column = column;
+    this.offendingToken = offendingToken;
+    this.message = message;
+  }
+
+  /**
+   * Checks if the error was found by the lexer.
+   *
+   * @return {@code true} if there is no offending token
+   */
+  public boolean isLexerError() {
+    return offendingToken == null;
+  }
+
+  /**
+   * Returns the text of the offending token.
+   *
+   * @return The text of the offending token or {@code null} if the error was
+   *         found by the lexer
+   */
+  public String getOffendingText() {
+    return offendingToken == null ? null : offendingToken.getText();
+  }
+
+  @Override
+  public String toString() {
+    return "line " + line + ":" + column + " " + message;
+  }
+}
@@ -97,6 +97,10 @@ public class CSTTransformer<T extends JobParameters> extends ExecutionPlanner<T>
     parser.setLLOnly();
   }
 
+  public void setFastLexer(boolean fastLexer) {
+    parser.setFastLexer(fastLexer);
+  }
+
   /**
    * Sets the token filter to use before printing.
    * 
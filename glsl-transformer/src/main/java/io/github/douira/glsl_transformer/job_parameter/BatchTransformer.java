@@ -0,0 +1,131 @@
+package io.github.douira.glsl_transformer.job_parameter;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import org.antlr.v4.runtime.RecognitionException;
+
+import io.github.douira.glsl_transformer.util.ConcurrencyUtil;
+
+/**
+ * The batch transformer transforms many jobs at once. Jobs with equal inputs
+ * and equal job parameters are only transformed once and all of them receive
+ * the same result. This is useful when many of the inputs are identical, like
+ * the stages of the programs of a shader pack.
+ * 
+ * Since transformers aren't thread-safe, each job is run by a transformer that
+ * no other job is using at the same time. The transformers are created with the
+ * given factory and reused by later jobs of the same batch. They're dropped when
+ * the batch is done, so no transformer stays attached to the threads of the
+ * executor. The unique jobs are run on the configured executor or serially on
+ * the calling thread if no executor is set. The results are always returned in
+ * the order of the jobs.
+ */
+public class BatchTransformer<T, V> {
+  private final Supplier<? extends ParameterizedTransformer<T, V>> transformerFactory;
+  private Executor executor;
+
+  /**
+   * Creates a new batch transformer that runs the jobs serially on the calling
+   * thread.
+   * 
+   * @param transformerFactory The factory that creates the transformers that
+   *                           run the jobs
+   */
+  public BatchTransformer(Supplier<? extends ParameterizedTransformer<T, V>> transformerFactory) {
+    this.transformerFactory = Objects.requireNonNull(transformerFactory);
+  }
+
+  /**
+   * Creates a new batch transformer that runs the jobs on the given executor.
+   * 
+   * @param transformerFactory The factory that creates the transformers that
+   *                           run the jobs
+   * @param executor           The executor to run the jobs on or {@code null} to
+   *                           run them on the calling thread
+   */
+  public BatchTransformer(
+      Supplier<? extends ParameterizedTransformer<T, V>> transformerFactory,
+      Executor executor) {
+    this(transformerFactory);
+    this.executor = executor;
+  }
+
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  private V runJob(TransformationJob<T, V> job, Queue<ParameterizedTransformer<T, V>> transformers) {
+    ParameterizedTransformer<T, V> transformer = transformers.poll();
+    if (transformer == null) {
+      transformer = transformerFactory.get();
+    }
+    try {
+      return transformer.transform(job.getInput(), job.getParameters());
+    } finally {
+      transformers.offer(transformer);
+    }
+  }
+
+  private CompletableFuture<V> runJobSerially(
+      TransformationJob<T, V> job,
+      Queue<ParameterizedTransformer<T, V>> transformers) {
+    // keep the failure in the future so that the remaining jobs still run
+    try {
+      return CompletableFuture.completedFuture(runJob(job, transformers));
+    } catch (RuntimeException e) {
+      var failed = new CompletableFuture<V>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+  }
+
+  /**
+   * Transforms the given jobs and returns the results in the same order. Each
+   * unique job is only transformed once. If any job fails, the exception that
+   * the first failing job in the given order threw is rethrown after all jobs
+   * have been run or started.
+   * 
+   * @param jobs The jobs to transform
+   * @return The results of the jobs in the same order as the jobs
+   * @throws RecognitionException If an input can't be parsed
+   */
+  public List<V> transform(Collection<TransformationJob<T, V>> jobs) throws RecognitionException {
+    // the idle transformers of this batch
+    Queue<ParameterizedTransformer<T, V>> transformers = new ConcurrentLinkedQueue<>();
+    Map<TransformationJob<T, V>, CompletableFuture<V>> uniqueJobs = new HashMap<>();
+    for (var job : jobs) {
+      uniqueJobs.computeIfAbsent(job, executor == null
+          ? key -> runJobSerially(key, transformers)
+          : key -> CompletableFuture.supplyAsync(() -> runJob(key, transformers), executor));
+    }
+
+    var results = new ArrayList<V>(jobs.size());
+    for (var job : jobs) {
+      results.add(ConcurrencyUtil.join(uniqueJobs.get(job)));
+    }
+    return results;
+  }
+
+  /**
+   * Transforms the given inputs with the same job parameters and returns the
+   * results in the same order. Each unique input is only transformed once.
+   * 
+   * @param inputs     The inputs to transform
+   * @param parameters The job parameters to transform all inputs with
+   * @return The results in the same order as the inputs
+   * @throws RecognitionException If an input can't be parsed
+   */
+  public List<V> transform(Collection<V> inputs, T parameters) throws RecognitionException {
+    var jobs = new ArrayList<TransformationJob<T, V>>(inputs.size());
+    for (var input : inputs) {
+      jobs.add(new TransformationJob<>(input, parameters));
+    }
+    return transform(jobs);
+  }
+}
@@ -0,0 +1,52 @@
+package io.github.douira.glsl_transformer.job_parameter;
+
+import java.util.Objects;
+
+/**
+ * A transformation job is an input together with the job parameters it should
+ * be transformed with. Jobs are equal if both their inputs and their job
+ * parameters are equal. The hash code is computed once when the job is created
+ * so that deduplicating many jobs with large inputs is cheap.
+ */
+public class TransformationJob<T, V> {
+  private final V input;
+  private final T parameters;
+  private final int hash;
+
+  /**
+   * Creates a new transformation job.
+   * 
+   * @param input      The input to transform, may not be null
+   * @param parameters The job parameters to transform the input with, may be
+   *                   null
+   */
+  public TransformationJob(V input, T parameters) {
+    this.input = Objects.requireNonNull(input);
+    this.parameters = parameters;
+    hash = 31 * input.hashCode() + Objects.hashCode(parameters);
+  }
+
+  public V getInput() {
+    return input;
+  }
+
+  public T getParameters() {
+    return parameters;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (!(obj instanceof TransformationJob<?, ?> other))
+      return false;
+    return hash == other.hash
+        && input.equals(other.input)
+        && Objects.equals(parameters, other.parameters);
+  }
+}
@@ -0,0 +1,68 @@
+package io.github.douira.glsl_transformer.util;
+
+/**
+ * An immutable snapshot of the statistics of a {@link ConcurrentLRUCache}. The
+ * statistics can be used to size the cache or to find out if it helps at all.
+ */
+public class CacheStats {
+  public final long hitCount;
+  public final long missCount;
+  public final long loadCount;
+  public final long evictionCount;
+  public final long totalLoadTime;
+  public final int size;
+  public final long weight;
+
+  public CacheStats(
+      long hitCount,
+      long missCount,
+      long loadCount,
+      long evictionCount,
+      long totalLoadTime,
+      int size,
+      long weight) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.loadCount = loadCount;
+    this.evictionCount = evictionCount;
+    this.totalLoadTime = totalLoadTime;
+    this.size = size;
+    this.weight = weight;
+  }
+
+  public long getRequestCount() {
+    return hitCount + missCount;
+  }
+
+  /**
+   * Returns the ratio of requests that were answered from the cache. If there
+   * were no requests, this returns 1.
+   *
+   * @return The hit rate between 0 and 1
+   */
+  public double getHitRate() {
+    var requestCount = getRequestCount();
+    return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+  }
+
+  /**
+   * Returns the average time in nanoseconds that it took to load a value that
+   * wasn't in the cache.
+   *
+   * @return The average load time in nanoseconds
+   */
+  public double getAverageLoadTime() {
+    return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+  }
+
+  @Override
+  public String toString() {
+    return "CacheStats [hitCount=" + hitCount
+        + ", missCount=" + missCount
+        + ", loadCount=" + loadCount
+        + ", evictionCount=" + evictionCount
+        + ", totalLoadTime=" + totalLoadTime
+        + ", size=" + size
+        + ", weight=" + weight + "]";
+  }
+}
@@ -0,0 +1,34 @@
+package io.github.douira.glsl_transformer.util;
+
+import java.util.concurrent.*;
+
+/**
+ * This class contains utility methods for running work on executors.
+ */
+public class ConcurrencyUtil {
+  /**
+   * Waits for the given future to complete and returns its value. If the future
+   * completed exceptionally with a runtime exception or an error, it is rethrown
+   * directly instead of being wrapped in a {@link CompletionException}. This
+   * makes parse errors thrown on other threads look the same as if they had
+   * been thrown on the calling thread.
+   * 
+   * @param <V>    The type of the value
+   * @param future The future to wait for
+   * @return The value of the future
+   */
+  public static <V> V join(CompletableFuture<V> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      var cause = e.getCause();
+      if (cause instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (cause instanceof Error error) {
+        throw error;
+      }
+      throw e;
+    }
+  }
+}
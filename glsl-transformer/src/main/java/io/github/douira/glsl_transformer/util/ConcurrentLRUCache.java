@@ -0,0 +1,363 @@
+package io.github.douira.glsl_transformer.util;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * The concurrent LRU cache is a thread-safe, bounded cache. It is split into
+ * segments that are locked separately so that threads accessing different keys
+ * rarely block each other. The cache is bounded both by the number of entries
+ * and by the total estimated weight of the entries. The weight of an entry is
+ * determined by a weigher function and usually estimates the retained size of
+ * the value in bytes.
+ *
+ * Each segment gets an equal share of the size limit and keeps its entries in
+ * access order. The weight limit applies to the whole cache so that a single
+ * heavy value can use up more than a segment's share of it. When a segment is
+ * over its size limit or the cache is over its weight limit, the least recently
+ * used entries of the segment that was written to are evicted while its lock is
+ * held. If that isn't enough to get under the weight limit, the other segments
+ * are locked one after another to evict their least recently used entries. The
+ * eviction order is therefore only approximately least recently used for the
+ * whole cache. Values that are heavier than the whole cache are not stored.
+ * Loading a value that is missing is done outside of any lock, which means
+ * concurrent requests for the same missing key may each load the value. The
+ * statistics of the cache can be read with {@link #getStats()}.
+ */
+public class ConcurrentLRUCache<K, V> {
+  public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+  private static final int minSegmentSize = 16;
+  private static final int maxInitialSegmentCapacity = 256;
+
+  private final Segment<K, V>[] segments;
+  private final int segmentMask;
+  private final int maxSize;
+  private final long maxWeight;
+  private final ToLongBiFunction<? super K, ? super V> weigher;
+  private final AtomicLong weight = new AtomicLong();
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder loadCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+  private final LongAdder totalLoadTime = new LongAdder();
+
+  private static class WeightedValue<V> {
+    final V value;
+    final long weight;
+
+    WeightedValue(V value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+
+  /**
+   * A segment is a hash map in access order with its own size limit. The map is
+   * only accessed while holding the lock of the segment.
+   */
+  private static class Segment<K, V> extends LinkedHashMap<K, WeightedValue<V>> {
+    final int maxSize;
+
+    Segment(int initialCapacity, float loadFactor, int maxSize) {
+      super(initialCapacity, loadFactor, true);
+      this.maxSize = maxSize;
+    }
+  }
+
+  /**
+   * Creates a new concurrent LRU cache.
+   *
+   * @param maxSize          The maximum number of entries
+   * @param maxWeight        The maximum total weight of all entries
+   * @param weigher          The function that determines the weight of an entry
+   * @param concurrencyLevel The estimated number of threads that access the
+   *                         cache at the same time
+   * @param loadFactor       The load factor of the internal hash maps
+   */
+  @SuppressWarnings("unchecked")
+  public ConcurrentLRUCache(
+      int maxSize,
+      long maxWeight,
+      ToLongBiFunction<? super K, ? super V> weigher,
+      int concurrencyLevel,
+      float loadFactor) {
+    if (maxSize < 0 || maxWeight < 0) {
+      throw new IllegalArgumentException("The cache limits may not be negative.");
+    }
+    Objects.requireNonNull(weigher);
+    this.maxSize = maxSize;
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+
+    // use a power of two number of segments but don't make them too small
+    var segmentCount = 1;
+    while (segmentCount < concurrencyLevel && (long) segmentCount * 2 * minSegmentSize <= maxSize) {
+      segmentCount <<= 1;
+    }
+    segmentMask = segmentCount - 1;
+    segments = new Segment[segmentCount];
+    var segmentCapacity = (int) Math.min(
+        maxInitialSegmentCapacity,
+        Math.ceil((double) maxSize / segmentCount / loadFactor) + 1);
+
+    // split the size limit so that the limits of the segments add up to the total
+    for (var i = 0; i < segmentCount; i++) {
+      var segmentMaxSize = maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0);
+      segments[i] = new Segment<>(segmentCapacity, loadFactor, segmentMaxSize);
+    }
+  }
+
+  /**
+   * Creates a new concurrent LRU cache with the default concurrency level and
+   * load factor.
+   *
+   * @param maxSize   The maximum number of entries
+   * @param maxWeight The maximum total weight of all entries
+   * @param weigher   The function that determines the weight of an entry
+   */
+  public ConcurrentLRUCache(
+      int maxSize,
+      long maxWeight,
+      ToLongBiFunction<? super K, ? super V> weigher) {
+    this(maxSize, maxWeight, weigher, DEFAULT_CONCURRENCY_LEVEL, 0.75f);
+  }
+
+  /**
+   * Creates a new concurrent LRU cache that is only bounded by the number of
+   * entries.
+   *
+   * @param maxSize The maximum number of entries
+   */
+  public ConcurrentLRUCache(int maxSize) {
+    this(maxSize, Long.MAX_VALUE, (key, value) -> 1);
+  }
+
+  private int segmentIndexFor(Object key) {
+    var hash = key.hashCode();
+    return (hash ^ (hash >>> 16)) & segmentMask;
+  }
+
+  private Segment<K, V> segmentFor(Object key) {
+    return segments[segmentIndexFor(key)];
+  }
+
+  /**
+   * Evicts the least recently used entries of a segment until it's within its
+   * size limit and the cache is within its weight limit. Must be called while
+   * holding the lock of the segment.
+   *
+   * @param segment The segment to evict entries from
+   * @param keep    The entry that may not be evicted or {@code null}
+   * @return The number of evicted entries
+   */
+  private int evictExcess(Segment<K, V> segment, WeightedValue<V> keep) {
+    var evicted = 0;
+    var iterator = segment.values().iterator();
+    while ((segment.size() > segment.maxSize || weight.get() > maxWeight) && iterator.hasNext()) {
+      var entry = iterator.next();
+      if (entry == keep) {
+        break;
+      }
+      weight.addAndGet(-entry.weight);
+      iterator.remove();
+      evicted++;
+    }
+    return evicted;
+  }
+
+  /**
+   * Returns the value cached for the given key and marks it as recently used.
+   *
+   * @param key The key to look up
+   * @return The cached value or {@code null} if there is none
+   */
+  public V get(K key) {
+    var segment = segmentFor(key);
+    WeightedValue<V> entry;
+    synchronized (segment) {
+      entry = segment.get(key);
+    }
+    if (entry == null) {
+      missCount.increment();
+      return null;
+    }
+    hitCount.increment();
+    return entry.value;
+  }
+
+  /**
+   * Stores a value in the cache and evicts least recently used entries if the
+   * segment or the cache is over one of its limits afterwards. The entries of the
+   * value's own segment are evicted first. Values that are heavier than the
+   * maximum weight of the cache are not stored.
+   *
+   * @param key   The key to store the value with
+   * @param value The value to store
+   */
+  public void put(K key, V value) {
+    Objects.requireNonNull(value);
+    var entryWeight = weigher.applyAsLong(key, value);
+    var segmentIndex = segmentIndexFor(key);
+    var segment = segments[segmentIndex];
+    if (entryWeight > maxWeight || segment.maxSize == 0) {
+      remove(key);
+      return;
+    }
+    var entry = new WeightedValue<>(value, entryWeight);
+    int evicted;
+    synchronized (segment) {
+      var previous = segment.put(key, entry);
+      weight.addAndGet(previous == null ? entryWeight : entryWeight - previous.weight);
+
+      // the new entry is the most recently used one and fits into the cache
+      evicted = evictExcess(segment, entry);
+    }
+
+    // evict from the other segments if this segment didn't have enough weight,
+    // only one lock is held at a time
+    for (var i = 1; i < segments.length && weight.get() > maxWeight; i++) {
+      var other = segments[(segmentIndex + i) & segmentMask];
+      synchronized (other) {
+        evicted += evictExcess(other, null);
+      }
+    }
+    if (evicted > 0) {
+      evictionCount.add(evicted);
+    }
+  }
+
+  /**
+   * Removes the value cached for the given key.
+   *
+   * @param key The key to remove
+   * @return The removed value or {@code null} if there was none
+   */
+  public V remove(K key) {
+    var segment = segmentFor(key);
+    synchronized (segment) {
+      var removed = segment.remove(key);
+      if (removed == null) {
+        return null;
+      }
+      weight.addAndGet(-removed.weight);
+      return removed.value;
+    }
+  }
+
+  /**
+   * Removes all entries from the cache. The statistics are not reset.
+   */
+  public void clear() {
+    for (var segment : segments) {
+      synchronized (segment) {
+        var removedWeight = 0L;
+        for (var entry : segment.values()) {
+          removedWeight += entry.weight;
+        }
+        segment.clear();
+        weight.addAndGet(-removedWeight);
+      }
+    }
+  }
+
+  /**
+   * Loads a missing value with the given supplier and caches it.
+   *
+   * @param key      The key to store the value with
+   * @param supplier The supplier that loads the value
+   * @return The loaded value
+   */
+  protected V load(K key, Supplier<V> supplier) {
+    var start = System.nanoTime();
+    var value = supplier.get();
+    totalLoadTime.add(System.nanoTime() - start);
+    loadCount.increment();
+    if (value != null) {
+      put(key, value);
+    }
+    return value;
+  }
+
+  /**
+   * Returns the value cached for the given key or loads it with the given
+   * supplier and caches it if it's missing.
+   *
+   * @param key      The key to look up
+   * @param supplier The supplier that loads missing values
+   * @return The cached or newly loaded value
+   */
+  public V cachedGet(K key, Supplier<V> supplier) {
+    var value = get(key);
+    return value == null ? load(key, supplier) : value;
+  }
+
+  /**
+   * Returns the value cached for the given key passed through the hydrator or
+   * loads it with the given supplier and caches it if it's missing. Newly loaded
+   * values are not passed through the hydrator.
+   *
+   * @param key      The key to look up
+   * @param supplier The supplier that loads missing values
+   * @param hydrator The function that is applied to values found in the cache
+   * @return The hydrated cached value or the newly loaded value
+   */
+  public V cachedGetHydrateHit(K key, Supplier<V> supplier, Function<V, V> hydrator) {
+    var value = get(key);
+    return value == null ? load(key, supplier) : hydrator.apply(value);
+  }
+
+  /**
+   * Returns the number of entries in the cache. The segments are counted one
+   * after another, so the result may be inconsistent while the cache is in use.
+   *
+   * @return The number of entries
+   */
+  public int size() {
+    var size = 0;
+    for (var segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the total weight of the entries in the cache. While values are being
+   * stored, this may briefly be over the maximum weight until the excess entries
+   * have been evicted.
+   *
+   * @return The total weight of the entries
+   */
+  public long getWeight() {
+    return weight.get();
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  /**
+   * Returns a snapshot of the statistics of this cache. The counters are updated
+   * without locking and may be slightly inconsistent with each other while the
+   * cache is in use.
+   *
+   * @return The current cache statistics
+   */
+  public CacheStats getStats() {
+    return new CacheStats(
+        hitCount.sum(),
+        missCount.sum(),
+        loadCount.sum(),
+        evictionCount.sum(),
+        totalLoadTime.sum(),
+        size(),
+        getWeight());
+  }
+}
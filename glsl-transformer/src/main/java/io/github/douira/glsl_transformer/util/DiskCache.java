@@ -0,0 +1,493 @@
+package io.github.douira.glsl_transformer.util;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * The disk cache is a persistent map from fixed-size digests to byte arrays. It
+ * is made up of three files in a directory: an append-only data file that
+ * stores the values, an index file that is a memory-mapped open addressing hash
+ * table and a lock file. Looking up a digest only touches the mapped index and
+ * then reads the value from the data file at the offset stored in the index.
+ * Each value is stored together with its length and a CRC-32 checksum of the
+ * digest and the value that are verified when it's read. Values that fail the
+ * verification are treated as missing.
+ *
+ * The cache is safe to use from multiple threads and from multiple processes at
+ * the same time. Within a process, lookups only hold the read lock of a
+ * read-write lock and run in parallel. Writes hold its write lock and an
+ * exclusive lock on the lock file and pick up the changes other processes made
+ * to the index before changing it. Lookups don't lock the lock file. They may
+ * see an index that another process is changing, in which case they either
+ * don't find the value or find a record that fails the verification. Both are
+ * treated as a miss. The index is only mapped again when another process has
+ * changed its capacity. Since file locks are held by the whole process, each
+ * process may only have one open disk cache per directory.
+ *
+ * Values that are overwritten are not removed from the data file,
+ * {@link #clear()} can be used to reclaim the space. Changes are written to
+ * disk by the operating system eventually and {@link #flush()} or
+ * {@link #close()} force them to be written. If the files are found to be
+ * damaged, the cache starts empty.
+ */
+public class DiskCache implements Closeable {
+  public static final int DIGEST_LENGTH = 32;
+
+  private static final String indexFileName = "index.bin";
+  private static final String dataFileName = "data.bin";
+  private static final String lockFileName = "lock.bin";
+  private static final int indexMagic = 0x474c5449;
+  private static final long dataMagic = 0x474c54444154414cL;
+  private static final int formatVersion = 3;
+
+  // magic, format version, capacity, count
+  private static final int headerSize = 16;
+  private static final int capacityOffset = 8;
+  private static final int countOffset = 12;
+
+  // digest, record offset, value length
+  private static final int slotSize = DIGEST_LENGTH + 8 + 4;
+  private static final int initialCapacity = 1024;
+  private static final int maxCapacity = (Integer.MAX_VALUE - headerSize) / slotSize;
+
+  // value length, checksum of the value
+  private static final int recordHeaderSize = 8;
+
+  private final FileChannel indexChannel;
+  private final FileChannel dataChannel;
+  private final FileChannel lockChannel;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private MappedByteBuffer index;
+  private int capacity;
+  private int count;
+  private long dataSize;
+
+  /**
+   * Opens the disk cache stored in the given directory. The directory and the
+   * cache files are created if they don't exist yet.
+   *
+   * @param directory The directory to store the cache files in
+   * @throws UncheckedIOException If the cache files can't be opened
+   */
+  public DiskCache(Path directory) {
+    try {
+      Files.createDirectories(directory);
+      indexChannel = FileChannel.open(directory.resolve(indexFileName),
+          StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      dataChannel = FileChannel.open(directory.resolve(dataFileName),
+          StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      lockChannel = FileChannel.open(directory.resolve(lockFileName),
+          StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      try (var fileLock = lockFile(false)) {
+        if (!load()) {
+          reset();
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to open the disk cache in " + directory, e);
+    }
+  }
+
+  /**
+   * Locks the lock file. This may only be called while holding the write lock
+   * since file locks are held by the whole process and may not overlap.
+   */
+  private FileLock lockFile(boolean shared) throws IOException {
+    return lockChannel.lock(0, Long.MAX_VALUE, shared);
+  }
+
+  /**
+   * Checks if the mapped index can be used for lookups without syncing first.
+   * This must be called while holding the read or write lock.
+   */
+  private boolean isMappingCurrent() {
+    return index != null
+        && index.getInt(0) == indexMagic
+        && index.getInt(4) == formatVersion
+        && index.getInt(capacityOffset) == capacity
+        && index.getInt(countOffset) >= 0;
+  }
+
+  /**
+   * Picks up the changes other processes made to the cache files while the lock
+   * file wasn't locked. The index only has to be mapped again if its capacity
+   * changed. This must be called while holding the write lock and the lock on
+   * the lock file.
+   *
+   * @return Whether the cache files are valid
+   */
+  private boolean sync() throws IOException {
+    if (index != null
+        && index.getInt(0) == indexMagic
+        && index.getInt(4) == formatVersion
+        && index.getInt(capacityOffset) == capacity) {
+      var storedCount = index.getInt(countOffset);
+      if (storedCount >= 0 && storedCount <= capacity) {
+        count = storedCount;
+        dataSize = dataChannel.size();
+        return dataSize >= 8;
+      }
+    }
+    return load();
+  }
+
+  private boolean load() throws IOException {
+    dataSize = dataChannel.size();
+    if (dataSize < 8 || indexChannel.size() < headerSize) {
+      return false;
+    }
+    var dataHeader = ByteBuffer.allocate(8);
+    dataChannel.read(dataHeader, 0);
+    dataHeader.flip();
+    if (dataHeader.getLong() != dataMagic) {
+      return false;
+    }
+
+    var header = ByteBuffer.allocate(headerSize);
+    indexChannel.read(header, 0);
+    header.flip();
+    if (header.getInt() != indexMagic || header.getInt() != formatVersion) {
+      return false;
+    }
+    var storedCapacity = header.getInt();
+    var storedCount = header.getInt();
+
+    // a negative count means the index was being rebuilt when it was last closed
+    if (storedCapacity <= 0 || storedCapacity > maxCapacity
+        || storedCount < 0 || storedCount > storedCapacity
+        || indexChannel.size() < indexSize(storedCapacity)) {
+      return false;
+    }
+    capacity = storedCapacity;
+    count = storedCount;
+    index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize(capacity));
+    return true;
+  }
+
+  private void reset() throws IOException {
+    dataChannel.truncate(0);
+    var dataHeader = ByteBuffer.allocate(8);
+    dataHeader.putLong(dataMagic);
+    dataHeader.flip();
+    dataChannel.write(dataHeader, 0);
+    dataSize = 8;
+
+    capacity = initialCapacity;
+    count = 0;
+    index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize(capacity));
+    clearSlots();
+    index.putInt(0, indexMagic);
+    index.putInt(4, formatVersion);
+    index.putInt(capacityOffset, capacity);
+    index.putInt(countOffset, count);
+  }
+
+  private static long indexSize(int capacity) {
+    return headerSize + (long) capacity * slotSize;
+  }
+
+  private static int slotPosition(int slot) {
+    return headerSize + slot * slotSize;
+  }
+
+  private void clearSlots() {
+    var end = (int) indexSize(capacity);
+    for (var position = headerSize; position < end; position += 8) {
+      index.putLong(position, 0);
+    }
+  }
+
+  private static void checkDigest(byte[] digest) {
+    if (digest.length != DIGEST_LENGTH) {
+      throw new IllegalArgumentException(
+          "The digest must be " + DIGEST_LENGTH + " bytes long but is " + digest.length + " bytes long.");
+    }
+  }
+
+  private int homeSlot(byte[] digest) {
+    var hash = ((digest[0] & 0xFF) << 24) | ((digest[1] & 0xFF) << 16)
+        | ((digest[2] & 0xFF) << 8) | (digest[3] & 0xFF);
+    return (hash & Integer.MAX_VALUE) % capacity;
+  }
+
+  private boolean slotMatches(int position, byte[] digest) {
+    for (var i = 0; i < DIGEST_LENGTH; i++) {
+      if (index.get(position + i) != digest[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Finds the slot that contains the given digest or the empty slot where it
+   * should be inserted. The index is never full, but a lookup may see the
+   * index of another process while it's being changed, so the search gives up
+   * after looking at every slot.
+   *
+   * @return The slot or -1 if the digest wasn't found in any slot
+   */
+  private int findSlot(byte[] digest) {
+    var slot = homeSlot(digest);
+    for (var i = 0; i < capacity; i++) {
+      var position = slotPosition(slot);
+      if (index.getLong(position + DIGEST_LENGTH) == 0 || slotMatches(position, digest)) {
+        return slot;
+      }
+      slot = slot + 1 == capacity ? 0 : slot + 1;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the value stored for the given digest.
+   *
+   * @param digest The digest to look up
+   * @return The stored value or {@code null} if there is none
+   * @throws UncheckedIOException If the value can't be read
+   */
+  public byte[] get(byte[] digest) {
+    checkDigest(digest);
+    var readLock = lock.readLock();
+    readLock.lock();
+    try {
+      if (!isMappingCurrent()) {
+        // map the index again while no other thread is reading it
+        readLock.unlock();
+        var writeLock = lock.writeLock();
+        writeLock.lock();
+        try (var fileLock = lockFile(true)) {
+          if (!sync()) {
+            return null;
+          }
+        } finally {
+          readLock.lock();
+          writeLock.unlock();
+        }
+      }
+
+      var slot = findSlot(digest);
+      if (slot < 0) {
+        return null;
+      }
+      var position = slotPosition(slot);
+      var offset = index.getLong(position + DIGEST_LENGTH);
+      var length = index.getInt(position + DIGEST_LENGTH + 8);
+
+      // ignore entries that point outside of the data file
+      if (offset == 0 || length < 0 || offset + recordHeaderSize + length > dataChannel.size()) {
+        return null;
+      }
+      return readRecord(digest, offset, length);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read from the disk cache", e);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  private static int checksum(byte[] digest, byte[] value, int valueOffset, int length) {
+    var checksum = new CRC32();
+    checksum.update(digest, 0, DIGEST_LENGTH);
+    checksum.update(value, valueOffset, length);
+    return (int) checksum.getValue();
+  }
+
+  private byte[] readRecord(byte[] digest, long offset, int length) throws IOException {
+    var record = ByteBuffer.allocate(recordHeaderSize + length);
+    while (record.hasRemaining()) {
+      if (dataChannel.read(record, offset + record.position()) < 0) {
+        return null;
+      }
+    }
+    record.flip();
+    var storedLength = record.getInt();
+    var storedChecksum = record.getInt();
+
+    // a torn or overwritten record or a record of another digest doesn't match
+    // the checksum
+    if (storedLength != length
+        || storedChecksum != checksum(digest, record.array(), recordHeaderSize, length)) {
+      return null;
+    }
+    var value = new byte[length];
+    record.get(value);
+    return value;
+  }
+
+  /**
+   * Stores a value for the given digest. An existing value for the same digest
+   * is replaced.
+   *
+   * @param digest The digest to store the value for
+   * @param value  The value to store
+   * @throws UncheckedIOException If the value can't be written
+   * @throws IllegalStateException If the cache is full, in which case nothing
+   *                               is written
+   */
+  public void put(byte[] digest, byte[] value) {
+    checkDigest(digest);
+    var writeLock = lock.writeLock();
+    writeLock.lock();
+    try (var fileLock = lockFile(false)) {
+      if (!sync()) {
+        reset();
+      }
+
+      // make room in the index before the record is appended so that a full cache
+      // doesn't leave an unreachable record in the data file
+      var position = slotPosition(findSlot(digest));
+      var isNew = index.getLong(position + DIGEST_LENGTH) == 0;
+      if (isNew && (count + 1) * 2 > capacity && capacity < maxCapacity) {
+        grow();
+        position = slotPosition(findSlot(digest));
+      } else if (isNew && count + 1 >= capacity) {
+        throw new IllegalStateException("The disk cache is full.");
+      }
+
+      // the record is written completely before the index points to it
+      var offset = dataSize;
+      var record = ByteBuffer.allocate(recordHeaderSize + value.length);
+      record.putInt(value.length);
+      record.putInt(checksum(digest, value, 0, value.length));
+      record.put(value);
+      record.flip();
+      while (record.hasRemaining()) {
+        dataChannel.write(record, offset + record.position());
+      }
+      dataSize += record.limit();
+
+      writeSlot(position, digest, offset, value.length);
+      if (isNew) {
+        count++;
+        index.putInt(countOffset, count);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write to the disk cache", e);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void writeSlot(int position, byte[] digest, long offset, int length) {
+    for (var i = 0; i < DIGEST_LENGTH; i++) {
+      index.put(position + i, digest[i]);
+    }
+    index.putInt(position + DIGEST_LENGTH + 8, length);
+    index.putLong(position + DIGEST_LENGTH, offset);
+  }
+
+  private void grow() throws IOException {
+    // copy the occupied slots out of the index before rebuilding it in place
+    var entries = new byte[count * slotSize];
+    var entryCount = 0;
+    for (var slot = 0; slot < capacity; slot++) {
+      var position = slotPosition(slot);
+      if (index.getLong(position + DIGEST_LENGTH) != 0) {
+        for (var i = 0; i < slotSize; i++) {
+          entries[entryCount * slotSize + i] = index.get(position + i);
+        }
+        entryCount++;
+      }
+    }
+
+    // mark the index as being rebuilt so that an interrupted rebuild is detected
+    index.putInt(countOffset, -1);
+    capacity = (int) Math.min(maxCapacity, (long) capacity * 2);
+    index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize(capacity));
+    clearSlots();
+
+    var entriesBuffer = ByteBuffer.wrap(entries);
+    var digest = new byte[DIGEST_LENGTH];
+    for (var i = 0; i < entryCount; i++) {
+      entriesBuffer.get(digest);
+      var offset = entriesBuffer.getLong();
+      var length = entriesBuffer.getInt();
+      writeSlot(slotPosition(findSlot(digest)), digest, offset, length);
+    }
+    index.putInt(capacityOffset, capacity);
+    index.putInt(countOffset, count);
+  }
+
+  /**
+   * Returns the number of values stored in the cache.
+   *
+   * @return The number of stored values
+   * @throws UncheckedIOException If the cache files can't be read
+   */
+  public int size() {
+    var writeLock = lock.writeLock();
+    writeLock.lock();
+    try (var fileLock = lockFile(true)) {
+      return sync() ? count : 0;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read from the disk cache", e);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Removes all values from the cache and truncates the data file.
+   *
+   * @throws UncheckedIOException If the cache files can't be written
+   */
+  public void clear() {
+    var writeLock = lock.writeLock();
+    writeLock.lock();
+    try (var fileLock = lockFile(false)) {
+      reset();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to clear the disk cache", e);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Forces all changes to be written to disk.
+   *
+   * @throws UncheckedIOException If the cache files can't be written
+   */
+  public void flush() {
+    var readLock = lock.readLock();
+    readLock.lock();
+    try {
+      dataChannel.force(false);
+      index.force();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to flush the disk cache", e);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Flushes and closes the cache files. The cache can't be used afterwards.
+   *
+   * @throws IOException If the cache files can't be written or closed
+   */
+  @Override
+  public void close() throws IOException {
+    var writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      dataChannel.force(false);
+      index.force();
+      indexChannel.close();
+      dataChannel.close();
+      lockChannel.close();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "DiskCache [size=" + size() + ", capacity=" + capacity + "]";
+  }
+}
@@ -3,6 +3,13 @@ package io.github.douira.glsl_transformer.util;
 import java.util.*;
 import java.util.function.*;
 
+/**
+ * A simple LRU cache that isn't thread-safe.
+ * 
+ * @deprecated Use {@link ConcurrentLRUCache} instead, which is thread-safe and
+ *             can also be bounded by weight.
+ */
+@Deprecated
 public class LRUCache<K, V> extends LinkedHashMap<K, V> {
   private final int maxSize;
 
@@ -0,0 +1,95 @@
+#version 460 core
+#extension GL_ARB_shading_language_include : enable
+#pragma optimize(on)
+#define MAX_LIGHTS 4
+#ifdef MAX_LIGHTS
+#endif
+
+precision highp float;
+precision mediump int;
+
+struct Light {
+  vec3 position;
+  vec4 color;
+  float radius[2];
+};
+
+layout(std140, binding = 0) uniform Lights {
+  Light lights[MAX_LIGHTS];
+  int lightCount;
+} lightBlock;
+
+layout(location = 0) in vec3 position;
+layout(location = 1) in vec2 texCoord;
+flat in ivec2 flags;
+smooth out vec4 fragColor;
+layout(rgba8, binding = 1) uniform writeonly image2D image;
+uniform sampler2D diffuse;
+uniform sampler2DArrayShadow shadowMap;
+buffer Data {
+  uint values[];
+};
+shared uint counter;
+const float pi = 3.14159265f, tau = 2.0 * pi;
+const int table[3] = int[3](1, 0x2, 03);
+uniform mat3x4 transforms[2][3];
+invariant gl_Position;
+
+float attenuate(in float distance, const float radius, out bool inside, inout int count);
+subroutine vec4 shade(vec3 normal);
+
+float attenuate(in float distance, const float radius, out bool inside, inout int count) {
+  inside = distance < radius && !(distance <= 0.0) || distance == radius ^^ false;
+  count += inside ? 1 : 0;
+  return clamp(1.0 - distance / radius, 0.0, 1.0e0);
+}
+
+vec4 applyLights(vec3 p) {
+  vec4 result = vec4(0.0);
+  int count = 0;
+  for (int i = 0; i < lightBlock.lightCount; ++i) {
+    Light light = lightBlock.lights[i];
+    bool inside;
+    float a = attenuate(length(light.position - p), light.radius[0], inside, count);
+    if (!inside) {
+      continue;
+    } else if (a > 0.5) {
+      result.rgb += light.color.xyz * a;
+    } else {
+      result.a = max(result.a, a);
+    }
+  }
+  int i = 0;
+  while (i < table.length()) {
+    i++;
+  }
+  do {
+    i -= 1;
+  } while (i > 0);
+  switch (flags.x & 3) {
+    case 0:
+      result *= 2.0;
+      break;
+    case 1:
+    default:
+      result /= float(count + 1);
+  }
+  uint bits = (uint(flags.y) << 2u) >> 1u | 7u;
+  bits ^= ~bits & 0xFFu;
+  bits %= 5u;
+  atomicAdd(values[0], bits);
+  return result;
+}
+
+void main() {
+  vec2 uv = texCoord.st * vec2(2, -2) + 0.5;
+  vec4 color = texture(diffuse, uv) * applyLights(position);
+  color.rgb *= texture(shadowMap, vec4(uv, 0.0, 1.0));
+  imageStore(image, ivec2(gl_FragCoord.xy), color);
+  mat4 m = mat4(1.0);
+  m[0][1] = transforms[1][2][0].x;
+  fragColor = color.a < 0.01 ? vec4(0) : (m * color);
+  if (fragColor.r > 1.0)
+    discard;
+  return;
+}
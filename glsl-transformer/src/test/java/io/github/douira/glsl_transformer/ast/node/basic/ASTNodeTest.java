@@ -2,11 +2,19 @@ package io.github.douira.glsl_transformer.ast.node.basic;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.*;
+
 import org.junit.jupiter.api.Test;
 
+import io.github.douira.glsl_transformer.ast.node.expression.*;
 import io.github.douira.glsl_transformer.ast.node.expression.binary.AdditionExpression;
+import io.github.douira.glsl_transformer.ast.node.expression.unary.FunctionCallExpression;
 import io.github.douira.glsl_transformer.ast.node.external_declaration.FunctionDefinition;
+import io.github.douira.glsl_transformer.ast.node.type.qualifier.StorageQualifier;
+import io.github.douira.glsl_transformer.ast.node.type.qualifier.StorageQualifier.StorageType;
+import io.github.douira.glsl_transformer.ast.node.type.specifier.BuiltinNumericTypeSpecifier;
 import io.github.douira.glsl_transformer.test_util.TestWithSingleASTTransformer;
+import io.github.douira.glsl_transformer.util.Type;
 
 public class ASTNodeTest extends TestWithSingleASTTransformer {
   @Test
@@ -85,4 +93,94 @@ public class ASTNodeTest extends TestWithSingleASTTransformer {
     assertDoesNotThrow(() -> p.transform("void main() { return; }"),
         "It should not throw when changing the root of a null member (null expression in return statement)");
   }
+
+  @Test
+  void testStructuralEquality() {
+    var expression = p.parseSeparateExpression("a + b * 2");
+    var same = p.parseSeparateExpression("a + b * 2");
+    assertTrue(expression.structurallyEquals(same));
+    assertEquals(expression.getStructuralHash(), same.getStructuralHash());
+    assertTrue(expression.structurallyEquals(expression.cloneSeparate()));
+    assertFalse(expression.structurallyEquals(null));
+    assertFalse(expression.structurallyEquals(p.parseSeparateExpression("a + b * 3")));
+    assertFalse(expression.structurallyEquals(p.parseSeparateExpression("a + b * 2u")));
+    assertFalse(expression.structurallyEquals(p.parseSeparateExpression("a + (b * 2)")));
+    assertFalse(expression.structurallyEquals(p.parseSeparateExpression("(a + b) * 2")));
+    assertFalse(p.parseSeparateStatement("for (a;;) ;")
+        .structurallyEquals(p.parseSeparateStatement("for (;a;) ;")),
+        "It should distinguish children in different optional positions");
+  }
+
+  @Test
+  void testStructuralHashInvalidation() {
+    var expression = p.parseSeparateExpression("a + b * 2");
+    var other = p.parseSeparateExpression("a + b * 2");
+    assertTrue(expression.structurallyEquals(other));
+
+    var identifier = other.getRoot().identifierIndex.getOne("a");
+    identifier.setName("c");
+    assertFalse(expression.structurallyEquals(other));
+    assertTrue(other.getRoot().rename("c", "a"));
+    assertTrue(expression.structurallyEquals(other));
+
+    var literal = other.getRoot().nodeIndex.getOne(LiteralExpression.class);
+    literal.changeInteger(3);
+    assertFalse(expression.structurallyEquals(other));
+    literal.changeInteger(2);
+    assertTrue(expression.structurallyEquals(other));
+
+    var addition = (AdditionExpression) other;
+    var left = addition.getLeft();
+    var right = addition.getRight();
+    addition.setLeft(right);
+    addition.setRight(left);
+    assertFalse(expression.structurallyEquals(other));
+    addition.setLeft(left);
+    addition.setRight(right);
+    assertTrue(expression.structurallyEquals(other));
+  }
+
+  @Test
+  void testStructuralHashDataSetters() {
+    var declaration = p.parseSeparateExternalDeclaration("uniform float a;");
+    var other = p.parseSeparateExternalDeclaration("uniform float a;");
+    assertTrue(declaration.structurallyEquals(other));
+
+    var qualifier = other.getRoot().nodeIndex.getOne(StorageQualifier.class);
+    qualifier.setStorageType(StorageType.OUT);
+    assertFalse(declaration.structurallyEquals(other),
+        "It should notice data changed through a setter of a qualifier");
+    qualifier.setStorageType(StorageType.UNIFORM);
+    assertTrue(declaration.structurallyEquals(other));
+
+    var specifier = other.getRoot().nodeIndex.getOne(BuiltinNumericTypeSpecifier.class);
+    specifier.setType(Type.INT32);
+    assertFalse(declaration.structurallyEquals(other),
+        "It should notice data changed through a setter of a type specifier");
+  }
+
+  @Test
+  void testStructuralHashChildList() {
+    var call = (FunctionCallExpression) p.parseSeparateExpression("f(a, b)");
+    var reversed = (FunctionCallExpression) p.parseSeparateExpression("f(b, a)");
+    assertFalse(call.structurallyEquals(reversed));
+    reversed.getParameters().sort(Comparator.comparing(
+        parameter -> ((ReferenceExpression) parameter).getIdentifier().getName()));
+    assertTrue(call.structurallyEquals(reversed));
+
+    var removed = reversed.getParameters().remove(1);
+    assertFalse(call.structurallyEquals(reversed));
+    reversed.getParameters().add(removed);
+    assertTrue(call.structurallyEquals(reversed));
+  }
+
+  @Test
+  void testStructuralKey() {
+    var keys = new HashMap<StructuralKey<?>, Integer>();
+    for (var input : new String[] { "a + b", "a * b", "a + b", "f(a)", "a * b", "a + b" }) {
+      keys.merge(new StructuralKey<>(p.parseSeparateExpression(input)), 1, Integer::sum);
+    }
+    assertEquals(3, keys.size());
+    assertEquals(3, keys.get(new StructuralKey<>(p.parseSeparateExpression("a + b"))));
+  }
 }
@@ -0,0 +1,151 @@
+package io.github.douira.glsl_transformer.ast.query;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.douira.glsl_transformer.ast.node.Identifier;
+import io.github.douira.glsl_transformer.ast.node.basic.*;
+import io.github.douira.glsl_transformer.ast.node.expression.*;
+import io.github.douira.glsl_transformer.ast.node.type.qualifier.*;
+import io.github.douira.glsl_transformer.ast.query.index.*;
+import io.github.douira.glsl_transformer.ast.transform.ASTParser;
+
+public class DenseNodeIndexTest {
+  ASTNode a = new PreciseQualifier();
+  ASTNode b = new PreciseQualifier();
+  ASTNode c = new PreciseQualifier();
+  ASTNode d = new PreciseQualifier();
+  ASTNode e = new TypeQualifier(Stream.empty());
+
+  @Test
+  void testTypeIds() {
+    var precise = NodeTypeInfo.of(PreciseQualifier.class);
+    var part = NodeTypeInfo.of(TypeQualifierPart.class);
+    assertSame(precise, NodeTypeInfo.of(PreciseQualifier.class));
+    assertSame(precise, NodeTypeInfo.byId(precise.id));
+    assertTrue(part.id < precise.id, "Superclasses should have smaller ids");
+    assertTrue(precise.isSubtypeOf(part.id));
+    assertTrue(precise.isSubtypeOf(precise.id));
+    assertFalse(part.isSubtypeOf(precise.id));
+    assertFalse(precise.isSubtypeOf(NodeTypeInfo.getId(InnerASTNode.class)));
+    assertFalse(precise.isSubtypeOf(NodeTypeInfo.getId(TypeQualifier.class)));
+    assertEquals(precise.id, precise.ancestorIds[0]);
+    assertEquals(precise.id, precise.getSubtypeIds()[0]);
+    assertTrue(Arrays.stream(part.getSubtypeIds()).anyMatch(id -> id == precise.id));
+    assertTrue(Arrays.stream(part.getSubtypeIds()).allMatch(id -> NodeTypeInfo.byId(id).isSubtypeOf(part.id)));
+    assertTrue(NodeTypeInfo.getCount() > precise.id);
+  }
+
+  @Test
+  void testExactClasses() {
+    var index = DenseNodeIndex.withExactClasses();
+    index.add(a);
+    index.add(b);
+    index.add(c);
+    index.add(e);
+    assertEquals(3, index.get(a).size());
+    assertEquals(Set.of(a, b, c), index.get(PreciseQualifier.class));
+    assertEquals(0, index.get(TypeQualifierPart.class).size());
+    assertFalse(index.has(TypeQualifierPart.class));
+    assertEquals(e, index.getUnique(TypeQualifier.class));
+    assertThrows(IllegalStateException.class, () -> index.getUnique(PreciseQualifier.class));
+    assertTrue(Set.of(a, b, c).contains(index.getOne(PreciseQualifier.class)));
+    assertNull(index.getOne(Identifier.class));
+    assertTrue(index.index.isEmpty(), "The map index should not be used");
+
+    index.remove(a);
+    index.remove(b);
+    assertEquals(c, index.getUnique(PreciseQualifier.class));
+    assertTrue(index.hasExact(c));
+    assertFalse(index.hasExact(a));
+    assertFalse(index.hasExact(d));
+    index.remove(c);
+    assertFalse(index.has(PreciseQualifier.class));
+    assertTrue(index.has(TypeQualifier.class));
+  }
+
+  @Test
+  void testSuperclasses() {
+    var index = DenseNodeIndex.withSuperclasses();
+    index.add(a);
+    index.add(b);
+    index.add(c);
+    index.add(d);
+    index.add(e);
+    assertEquals(4, index.get(a).size());
+    assertEquals(4, index.get(PreciseQualifier.class).size());
+    assertEquals(4, index.get(TypeQualifierPart.class).size());
+    assertEquals(1, index.get(TypeQualifier.class).size());
+    assertEquals(0, index.get(ASTNode.class).size());
+    assertEquals(0, index.get(InnerASTNode.class).size());
+    assertEquals(0, index.get(ListASTNode.class).size());
+    assertTrue(index.has(TypeQualifierPart.class));
+    assertTrue(index.get(TypeQualifierPart.class).contains(a));
+
+    var parts = index.get(TypeQualifierPart.class);
+    assertSame(parts, index.get(TypeQualifierPart.class), "It should reuse the view");
+    var layout = new LayoutQualifier(Stream.empty());
+    index.add(layout);
+    assertEquals(5, parts.size());
+    assertTrue(parts.contains(layout));
+    assertFalse(parts.contains(e));
+    assertEquals(Set.of(a, b, c, d, layout), new HashSet<>(parts));
+    assertEquals(5, index.getStream(TypeQualifierPart.class).count());
+    assertThrows(IllegalStateException.class, () -> index.getUnique(TypeQualifierPart.class));
+    index.remove(a);
+    index.remove(b);
+    index.remove(c);
+    index.remove(d);
+    assertEquals(layout, index.getUnique(TypeQualifierPart.class));
+  }
+
+  @Test
+  void testSameResultsAsMapIndex() {
+    var input = "int foo = bar + 1; void main() { foo = foo * bar[2] + vec4(1.0).x; }";
+    Root.nodeIndexFactory = DenseNodeIndex::withExactClasses;
+    try {
+      var dense = new ASTParser().parseTranslationUnit(input).getRoot();
+      Root.resetRootFactories();
+      var map = new ASTParser().parseTranslationUnit(input).getRoot();
+      for (var entry : map.nodeIndex.index.entrySet()) {
+        assertEquals(entry.getValue(), dense.nodeIndex.get(entry.getKey()));
+      }
+      assertEquals(0, dense.nodeIndex.get(Expression.class).size());
+    } finally {
+      Root.resetRootFactories();
+    }
+  }
+
+  @Test
+  void testIdentityNodeSet() {
+    var set = new IdentityNodeSet();
+    var nodes = IntStream.range(0, 1000)
+        .mapToObj(i -> new Identifier("a" + i))
+        .collect(Collectors.toList());
+    var expected = new HashSet<ASTNode>();
+    var random = new Random(42);
+    for (var i = 0; i < 20000; i++) {
+      var node = nodes.get(random.nextInt(nodes.size()));
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(node), set.remove(node));
+      } else {
+        assertEquals(expected.add(node), set.add(node));
+      }
+      assertEquals(expected.size(), set.size());
+    }
+    for (var node : nodes) {
+      assertEquals(expected.contains(node), set.contains(node));
+    }
+    assertEquals(expected, new HashSet<>(set));
+    assertTrue(expected.contains(set.getAny()));
+
+    set.clear();
+    assertTrue(set.isEmpty());
+    assertNull(set.getAny());
+    assertFalse(set.iterator().hasNext());
+  }
+}
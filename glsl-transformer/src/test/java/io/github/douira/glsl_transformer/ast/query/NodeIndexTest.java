@@ -2,7 +2,7 @@ package io.github.douira.glsl_transformer.ast.query;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.*;
@@ -38,6 +38,19 @@ public class NodeIndexTest {
     assertEquals(0, index.get(Expression.class).size());
   }
 
+  @Test
+  void testAddAll() {
+    index.add(a);
+    index.addAll(Identifier.class, List.of(b, c, d));
+    assertEquals(1, index.index.size());
+    assertEquals(Set.of(a, b, c, d), index.get(Identifier.class));
+
+    var u = new PreciseQualifier();
+    index.addAll(PreciseQualifier.class, List.of(u));
+    assertEquals(2, index.index.size());
+    assertEquals(u, index.getUnique(PreciseQualifier.class));
+  }
+
   @Test
   void testGetOne() {
     index.add(a);
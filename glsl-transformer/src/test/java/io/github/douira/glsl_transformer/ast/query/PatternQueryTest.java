@@ -0,0 +1,149 @@
+package io.github.douira.glsl_transformer.ast.query;
+
+import static io.github.douira.glsl_transformer.test_util.AssertUtil.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.*;
+
+import io.github.douira.glsl_transformer.ast.query.index.*;
+import io.github.douira.glsl_transformer.ast.transform.ASTParser;
+import io.github.douira.glsl_transformer.test_util.TestWithTrieObjects;
+
+public class PatternQueryTest extends TestWithTrieObjects {
+  private static final String[] regexes = {
+      "a.*", ".*z", "a[bc]+", "(ab|xy)*_?\\d", "[^a]{2,3}", "x{2}.*", ".*", "", "a?b?c?",
+      "[a-c]*1[0-9]", "_\\w{0,2}z", "(a|b)(c|x)(y|z)?", "(?:x|_)+9" };
+
+  private static List<Map<String, Set<Object>>> createTries() {
+    return List.of(new PrefixTrie<>(), new PrefixSuffixTrie<>(), new PermutermTrie<>());
+  }
+
+  private static void putDefaults(Map<String, Set<Object>> trie, Object... values) {
+    var keys = new String[] { "aaa", "tat", "aac", "abc", "fdsfds", "fd" };
+    for (var i = 0; i < keys.length; i++) {
+      trie.put(keys[i], Set.of(values[i]));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Stream<Object> regex(Map<String, Set<Object>> trie, String regex) {
+    return ((PatternQueryable<Set<Object>, Object>) trie).regexQueryFlat(regex);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Stream<Object> glob(Map<String, Set<Object>> trie, String glob) {
+    return ((PatternQueryable<Set<Object>, Object>) trie).globQueryFlat(glob);
+  }
+
+  @Test
+  void testRegexQuery() {
+    for (var trie : createTries()) {
+      putDefaults(trie, a, b, c, d, e, f);
+      assertQuery(Set.of(a, c, d), regex(trie, "a.*"));
+      assertQuery(Set.of(a, c), regex(trie, "aa."));
+      assertQuery(Set.of(b, e, f), regex(trie, "[^a].*"));
+      assertQuery(Set.of(e, f), regex(trie, "(fds)*fd(s)?"));
+      assertQuery(Set.of(a, b, c, d, e, f), regex(trie, ".*"));
+      assertQuery(Set.of(b), regex(trie, "t.t"));
+      assertQuery(Set.of(a, c, d), regex(trie, "a[a-c]{2}"));
+      assertEquals(0, regex(trie, "fds").count());
+      assertEquals(0, regex(trie, "").count());
+      assertEquals(0, regex(trie, "\\$.*").count(), "Key variations are not matched");
+    }
+  }
+
+  @Test
+  void testGlobQuery() {
+    for (var trie : createTries()) {
+      putDefaults(trie, a, b, c, d, e, f);
+      assertQuery(Set.of(a, c, d), glob(trie, "a*"));
+      assertQuery(Set.of(c, d), glob(trie, "*c"));
+      assertQuery(Set.of(e, f), glob(trie, "f?*"));
+      assertQuery(Set.of(a, c, d), glob(trie, "a??"));
+      assertQuery(Set.of(b, e, f), glob(trie, "[!a]*"));
+      assertQuery(Set.of(b, e), glob(trie, "[ft]*[st]"));
+      assertQuery(Set.of(f), glob(trie, "??"));
+    }
+  }
+
+  @Test
+  void testInvalidPatterns() {
+    for (var pattern : new String[] { "(a", "a)", "a{3,1}", "[a", "*a", "a{", "\\q", "a|*" }) {
+      assertThrows(IllegalArgumentException.class, () -> KeyPattern.regex(pattern), pattern);
+    }
+    assertThrows(IllegalArgumentException.class, () -> KeyPattern.glob("[ab"));
+  }
+
+  @Test
+  void testSameResultsAsMatches() {
+    var random = new Random(3);
+    var alphabet = "abcxyz_019";
+    var keys = new TreeSet<String>();
+    for (var i = 0; i < 3000; i++) {
+      var builder = new StringBuilder();
+      var length = random.nextInt(8);
+      for (var j = 0; j < length; j++) {
+        builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      keys.add(builder.toString());
+    }
+
+    var tries = createTries();
+    for (var trie : tries) {
+      for (var key : keys) {
+        trie.put(key, Set.of(key));
+      }
+    }
+    for (var regex : regexes) {
+      var pattern = KeyPattern.regex(regex);
+      var expected = keys.stream().filter(key -> key.matches(regex)).collect(Collectors.toList());
+      for (var key : keys) {
+        assertEquals(key.matches(regex), pattern.matches(key), regex + " " + key);
+      }
+      for (var trie : tries) {
+        @SuppressWarnings("unchecked")
+        var result = ((PatternQueryable<Set<Object>, Object>) trie).patternQueryFlat(pattern)
+            .collect(Collectors.toList());
+        assertEquals(expected, result, regex + " on " + trie.getClass().getSimpleName());
+      }
+    }
+  }
+
+  @Test
+  void testSkipsNonMatchingSubtrees() {
+    var trie = new PrefixTrie<Set<Object>, Object>();
+    for (var i = 0; i < 10000; i++) {
+      trie.put("iris_" + i, Set.of(a));
+    }
+    trie.put("iris_x", Set.of(b));
+    trie.put("zzz", Set.of(c));
+    var seeks = new int[1];
+    var result = KeyPattern.regex("iris_[a-z].*|z+").query(from -> {
+      seeks[0]++;
+      return (from.isEmpty() ? trie : trie.tailMap(from)).entrySet().iterator();
+    }, -1, false).flatMap(Set::stream).collect(Collectors.toSet());
+    assertEquals(Set.of(b, c), result);
+    assertTrue(seeks[0] < 10, "It should skip the keys that can't match");
+  }
+
+  @Test
+  void testIdentifierIndex() {
+    Root.identifierIndexFactory = PrefixIdentifierIndex::withPrefix;
+    try {
+      var tree = new ASTParser().parseTranslationUnit(
+          "int fooBar = barFoo; void main() { fooBar += fooBaz * bar; }");
+      var index = (PrefixIdentifierIndex<?, ?>) tree.getRoot().identifierIndex;
+      assertEquals(3, index.regexQueryFlat("foo.*").count());
+      assertEquals(3, index.globQueryFlat("*[Bb]ar").count());
+      assertEquals(1, index.regexQueryFlat("m[a-z]+").count());
+      assertTrue(tree.getRoot().rename("fooBar", "renamed"));
+      assertEquals(0, index.regexQueryFlat("fooBar").count());
+      assertEquals(2, index.globQueryFlat("re*").count());
+    } finally {
+      Root.resetRootFactories();
+    }
+  }
+}
@@ -2,6 +2,8 @@ package io.github.douira.glsl_transformer.ast.query;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
@@ -9,6 +11,7 @@ import org.junit.jupiter.api.Test;
 import io.github.douira.glsl_transformer.ast.node.Identifier;
 import io.github.douira.glsl_transformer.ast.query.index.PrefixIdentifierIndex;
 import io.github.douira.glsl_transformer.ast.query.match.*;
+import io.github.douira.glsl_transformer.ast.transform.ASTParser;
 import io.github.douira.glsl_transformer.test_util.TestWithSingleASTTransformer;
 
 public class RootTest extends TestWithSingleASTTransformer {
@@ -32,6 +35,79 @@ public class RootTest extends TestWithSingleASTTransformer {
     });
   }
 
+  @Test
+  void testParallelBuildSessions() throws Exception {
+    var executor = Executors.newFixedThreadPool(4);
+    try {
+      var tasks = new ArrayList<Callable<Boolean>>();
+      for (int i = 0; i < 32; i++) {
+        var name = "foo" + i;
+        tasks.add(() -> {
+          var parser = new ASTParser();
+          var tree = parser.parseTranslationUnit("int " + name + " = bar; void main() { " + name + " = 1; }");
+          var clone = tree.cloneSeparate();
+          return tree.getRoot().identifierIndex.get(name).size() == 2
+              && clone.getRoot().identifierIndex.get(name).size() == 2
+              && clone.getRoot() != tree.getRoot()
+              && tree.getRoot().identifierIndex.index.size() == 3;
+        });
+      }
+      for (var result : executor.invokeAll(tasks)) {
+        assertTrue(result.get(), "It should build independent trees on multiple threads");
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertNull(Root.getActiveBuildRoot(), "It should not leave a build root active on this thread");
+  }
+
+  private static void assertSameIndexes(Root expected, Root actual) {
+    actual.indexPendingNodes();
+    assertEquals(expected.nodeIndex.index.keySet(), actual.nodeIndex.index.keySet());
+    for (var entry : expected.nodeIndex.index.entrySet()) {
+      assertEquals(entry.getValue().size(), actual.nodeIndex.index.get(entry.getKey()).size(),
+          "It should index the same number of nodes of type " + entry.getKey());
+    }
+    assertEquals(expected.identifierIndex.index.keySet(), actual.identifierIndex.index.keySet());
+  }
+
+  @Test
+  void testBulkRegistration() {
+    var input = "int foo = bar; void main() { foo = foo + 1; }";
+    var root = new ASTParser().parseTranslationUnit(input).getRoot();
+    assertFalse(root.hasPendingNodes(), "It should index the nodes at the end of the build");
+    assertEquals(3, root.identifierIndex.get("foo").size());
+
+    var parser = new ASTParser();
+    parser.setDeferredIndexing(true);
+    var tree = parser.parseTranslationUnit(input);
+    var deferredRoot = tree.getRoot();
+    assertTrue(deferredRoot.hasPendingNodes(), "It should not index the nodes before they're queried");
+    assertEquals(3, deferredRoot.identifierIndex.get("foo").size());
+    assertFalse(deferredRoot.hasPendingNodes());
+    assertSameIndexes(root, deferredRoot);
+
+    tree.getChildren().add(parser.parseExternalDeclaration(tree, "int foo2 = foo;"));
+    assertTrue(deferredRoot.hasPendingNodes());
+    tree.getChildren().get(0).detachAndDelete();
+    assertFalse(deferredRoot.hasPendingNodes(), "It should index the pending nodes before removing any");
+    assertEquals(3, deferredRoot.identifierIndex.get("foo").size());
+    assertFalse(deferredRoot.identifierIndex.has("bar"));
+  }
+
+  @Test
+  void testDeferredIndexingCached() {
+    var parser = new ASTParser();
+    parser.setDeferredIndexing(true);
+    parser.setCacheStrategy(ASTParser.CacheStrategy.ALL);
+    var input = "int foo = bar; void main() { foo = foo + 1; }";
+    var first = parser.parseTranslationUnit(input).getRoot();
+    var second = parser.parseTranslationUnit(input).getRoot();
+    assertTrue(second.hasPendingNodes(), "It should defer indexing cloned trees");
+    assertSameIndexes(new ASTParser().parseTranslationUnit(input).getRoot(), second);
+    assertEquals(3, first.identifierIndex.get("foo").size());
+  }
+
   @Test
   void testReplace() {
     p.setTransformation((tree, root) -> {
@@ -137,4 +213,42 @@ public class RootTest extends TestWithSingleASTTransformer {
         "int foo = bam + bar + 4 + a[bar + 4]; ",
         "int foo = bam + a[bar + 5] + a[bar + 4];");
   }
+
+  @Test
+  void testHintedMatcherSelectsRarestHint() {
+    var matcher = new AutoHintedMatcher<>("foo[bar]", Matcher.expressionPattern);
+    p.setTransformation((tree, root) -> {
+      assertEquals("foo", matcher.getHint());
+      assertEquals("bar", matcher.selectHint(root.identifierIndex));
+      root.replaceExpressionMatches(p, matcher, "4");
+    });
+    assertTransform(
+        "int x = 4 + foo[1] + foo[2] + 4; ",
+        "int x = foo[bar] + foo[1] + foo[2] + foo[bar];");
+  }
+
+  @Test
+  void testHintedMatcherMissingIdentifier() {
+    var matcher = new HintedMatcher<>("foo[bar]", Matcher.expressionPattern, "foo");
+    p.setTransformation((tree, root) -> {
+      assertNull(matcher.selectHint(root.identifierIndex));
+      assertFalse(root.replaceExpressionMatches(p, matcher, "4"));
+    });
+    assertTransform(
+        "int x = foo[1] + foo[2]; ",
+        "int x = foo[1] + foo[2];");
+  }
+
+  @Test
+  void testHintedMatcherNestedPatternClass() {
+    var matcher = new AutoHintedMatcher<>("aaa + b + c", Matcher.expressionPattern);
+    assertEquals(List.of("aaa", "b", "c"), matcher.getRequiredIdentifiers());
+    assertEquals(List.of("c"), matcher.getHintCandidates());
+    p.setTransformation((tree, root) -> {
+      root.replaceExpressionMatches(p, matcher, "d");
+    });
+    assertTransform(
+        "int x = d; ",
+        "int x = aaa + b + c;");
+  }
 }
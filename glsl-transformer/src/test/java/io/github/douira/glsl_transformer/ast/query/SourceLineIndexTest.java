@@ -0,0 +1,137 @@
+package io.github.douira.glsl_transformer.ast.query;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.*;
+
+import io.github.douira.glsl_transformer.ast.node.*;
+import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
+import io.github.douira.glsl_transformer.ast.node.external_declaration.*;
+import io.github.douira.glsl_transformer.ast.node.statement.CompoundStatement;
+import io.github.douira.glsl_transformer.ast.node.statement.selection.SelectionStatement;
+import io.github.douira.glsl_transformer.ast.query.index.SourceLineIndex;
+import io.github.douira.glsl_transformer.ast.transform.ASTParser;
+
+public class SourceLineIndexTest {
+  private static final String input = String.join("\n",
+      "int a;",
+      "void main() {",
+      "  a = 1;",
+      "  if (a > 0) {",
+      "    a += 2;",
+      "  }",
+      "}",
+      "float b;");
+
+  @BeforeEach
+  void setup() {
+    Root.sourceLineIndexFactory = SourceLineIndex::new;
+  }
+
+  @AfterEach
+  void teardown() {
+    Root.resetRootFactories();
+  }
+
+  private static TranslationUnit parse(String input) {
+    return new ASTParser().parseTranslationUnit(input);
+  }
+
+  @Test
+  void testDisabledByDefault() {
+    Root.resetRootFactories();
+    assertNull(parse(input).getRoot().sourceLineIndex);
+  }
+
+  @Test
+  void testInnermost() {
+    var index = parse(input).getRoot().sourceLineIndex;
+    var identifier = index.getInnermost(3);
+    assertTrue(identifier instanceof Identifier);
+    assertEquals("a", ((Identifier) identifier).getName());
+
+    var body = index.getInnermost(6);
+    assertTrue(body instanceof CompoundStatement);
+    assertTrue(body.getParent() instanceof SelectionStatement);
+
+    assertTrue(index.getInnermost(7) instanceof CompoundStatement);
+    assertNull(index.getInnermost(9));
+  }
+
+  @Test
+  void testInnermostAfterMove() {
+    var tree = parse(String.join("\n",
+        "void main() {",
+        "  b = c; a = 1;",
+        "  if (true) {",
+        "  }",
+        "}"));
+    var index = tree.getRoot().sourceLineIndex;
+    assertTrue(index.getInnermost(2) instanceof Identifier);
+
+    // moving the statement deeper has to invalidate the cached depths
+    var body = ((FunctionDefinition) tree.getChildren().get(0)).getBody();
+    var statement = body.getStatements().remove(1);
+    var selection = (SelectionStatement) body.getStatements().get(1);
+    ((CompoundStatement) selection.getStatements().get(0)).getStatements().add(statement);
+    var identifier = index.getInnermost(2);
+    assertTrue(identifier instanceof Identifier);
+    assertEquals("a", ((Identifier) identifier).getName());
+  }
+
+  @Test
+  void testExternalDeclarations() {
+    var tree = parse(input);
+    var index = tree.getRoot().sourceLineIndex;
+    var children = tree.getChildren();
+    assertEquals(List.of(children.get(0)), index.getExternalDeclarations(1, 1));
+    assertEquals(List.of(children.get(1), children.get(2)), index.getExternalDeclarations(3, 8));
+    assertEquals(List.of(children.get(1)), index.getExternalDeclarations(4, 4));
+    assertTrue(index.getOverlapping(3, 8, FunctionDefinition.class).get(0) == children.get(1));
+    assertEquals(0, index.getExternalDeclarations(9, 20).size());
+  }
+
+  @Test
+  void testUpdates() {
+    var tree = parse(input);
+    var index = tree.getRoot().sourceLineIndex;
+    var definition = tree.getChildren().get(1);
+    definition.detachAndDelete();
+    assertTrue(index.getInnermost(3) instanceof TranslationUnit);
+    assertEquals(2, index.getExternalDeclarations(1, 8).size());
+
+    var declaration = tree.getChildren().get(1);
+    declaration.shiftSourceLines(2);
+    assertEquals(List.of(declaration), index.getExternalDeclarations(10, 10));
+    assertEquals(0, index.getExternalDeclarations(8, 8).size());
+  }
+
+  @Test
+  void testSameResultsAsScan() {
+    var builder = new StringBuilder();
+    for (var i = 0; i < 300; i++) {
+      builder.append(i % 7 == 0 ? "void f" + i + "() {\n  int x;\n}\n" : "int v" + i + ";\n");
+    }
+    var tree = parse(builder.toString());
+    var index = tree.getRoot().sourceLineIndex;
+    var random = new Random(4);
+    var children = new ArrayList<>(tree.getChildren());
+    for (var i = 0; i < 100; i++) {
+      children.remove(random.nextInt(children.size())).detachAndDelete();
+    }
+    for (var i = 0; i < 200; i++) {
+      var start = random.nextInt(400);
+      var end = start + random.nextInt(5);
+      var expected = children.stream()
+          .filter(node -> node.getStartLine() <= end && node.getEndLine() >= start)
+          .collect(Collectors.toList());
+      assertEquals(expected, index.getExternalDeclarations(start, end));
+      for (ASTNode node : index.getOverlapping(start, end)) {
+        assertTrue(node.getStartLine() <= end && node.getEndLine() >= start);
+      }
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package io.github.douira.glsl_transformer.ast.query;
+
+import static io.github.douira.glsl_transformer.test_util.AssertUtil.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.*;
+
+import io.github.douira.glsl_transformer.ast.query.index.*;
+import io.github.douira.glsl_transformer.ast.transform.ASTParser;
+import io.github.douira.glsl_transformer.test_util.TestWithTrieObjects;
+
+public class TrigramIndexTest extends TestWithTrieObjects {
+  static final boolean benchmark = false;
+  TrigramIndex<Set<Object>, Object> trie;
+
+  @BeforeEach
+  void setup() {
+    trie = new TrigramIndex<>();
+  }
+
+  private void putDefaults(String last) {
+    trie.put("aaa", Set.of(a));
+    trie.put("tat", Set.of(b));
+    trie.put("aac", Set.of(c));
+    trie.put("abc", Set.of(d));
+    trie.put(last, Set.of(e));
+  }
+
+  @Test
+  void testGetAndRemove() {
+    putDefaults("fdsfds");
+    assertEquals(5, trie.size());
+    assertTrue(trie.containsKey("fdsfds"));
+    assertEquals(d, trie.get("abc").iterator().next());
+    assertNull(trie.get("aab"));
+    trie.remove("tat");
+    trie.remove("a");
+    trie.remove("fdsfds");
+    assertTrue(trie.containsKey("aaa"));
+    assertFalse(trie.containsKey("tat"));
+    assertFalse(trie.containsKey("fdsfds"));
+    assertEquals(3, trie.size());
+    assertEquals(0, trie.infixQueryFlat("fds").count());
+    assertEquals(0, trie.infixQueryFlat("t").count());
+
+    trie.put("fdsfdsfds", Set.of(f));
+    assertQuery(Set.of(f), trie.infixQueryFlat("sfd"));
+    assertEquals(Set.of("aaa", "aac", "abc", "fdsfdsfds"), trie.keySet());
+  }
+
+  @Test
+  void testInfixQueryFlat() {
+    putDefaults("fdsfds");
+    assertQuery(Set.of(a, b, c, d), trie.infixQueryFlat("a"));
+    assertQuery(Set.of(a, c), trie.infixQueryFlat("aa"));
+    assertQuery(Set.of(c), trie.infixQueryFlat("ac"));
+    assertQuery(Set.of(e), trie.infixQueryFlat("sfd"));
+    assertEquals(0, trie.infixQueryFlat("ca").count());
+    assertEquals(0, trie.infixQueryFlat("ba").count());
+    assertEquals(0, trie.infixQueryFlat("cba").count());
+  }
+
+  @Test
+  void testPrefixQueryFlat() {
+    putDefaults("fdsfds");
+    assertQuery(Set.of(a, c, d), trie.prefixQueryFlat("a"));
+    assertQuery(Set.of(a, c), trie.prefixQueryFlat("aa"));
+    assertQuery(Set.of(d), trie.prefixQueryFlat("ab"));
+    assertEquals(0, trie.prefixQueryFlat("ac").count());
+    assertEquals(0, trie.prefixQueryFlat("ds").count());
+    assertEquals(0, trie.prefixQueryFlat("aaaa").count());
+  }
+
+  @Test
+  void testSuffixPrefixQueryFlat() {
+    putDefaults("aabababbba");
+    assertQuery(Set.of(a, e), trie.invertedInfixQueryFlat("a", "a"));
+    assertQuery(Set.of(a, e), trie.invertedInfixQueryFlat("aa", "a"));
+    assertQuery(Set.of(b), trie.invertedInfixQueryFlat("t", "t"));
+    assertQuery(Set.of(e), trie.invertedInfixQueryFlat("aa", "bbba"));
+    assertQuery(Set.of(a, b, c, d, e), trie.invertedInfixQueryFlat("", ""));
+    assertQuery(Set.of(a, c, d, e), trie.invertedInfixQueryFlat("a", ""));
+    assertQuery(Set.of(a, e), trie.invertedInfixQueryFlat("", "a"));
+    assertQuery(Set.of(b), trie.invertedInfixQueryFlat("", "tat"));
+    assertEquals(0, trie.invertedInfixQueryFlat("aa", "aa").count());
+  }
+
+  @Test
+  void testSuffixQueryFlat() {
+    putDefaults("fdsfds");
+    assertQuery(Set.of(c, d), trie.suffixQueryFlat("c"));
+    assertQuery(Set.of(a), trie.suffixQueryFlat("aa"));
+    assertQuery(Set.of(b), trie.suffixQueryFlat("tat"));
+    assertEquals(0, trie.suffixQueryFlat("ta").count());
+    assertEquals(0, trie.suffixQueryFlat("aaaa").count());
+    assertEquals(0, trie.suffixQueryFlat("fsd").count());
+  }
+
+  @Test
+  void testModifyWhileQuerying() {
+    for (var i = 0; i < 10; i++) {
+      trie.put("key" + i, Set.of("key" + i));
+    }
+    var visited = new ArrayList<Object>();
+    trie.infixQuery("key").forEach(value -> {
+      var key = (String) value.iterator().next();
+      visited.add(key);
+      trie.remove(key);
+      trie.put("new" + key, Set.of("new" + key));
+    });
+    assertEquals(10, visited.size(), "It should visit each match once");
+    assertEquals(10, new HashSet<>(visited).size());
+    assertEquals(0, trie.prefixQuery("key").count());
+    assertEquals(10, trie.prefixQuery("newkey").count());
+    assertEquals(70, trie.getPostingCount(), "It should remove the postings of removed keys");
+  }
+
+  @Test
+  void testIdentifierIndex() {
+    Root.identifierIndexFactory = InfixIdentifierIndex::withTrigrams;
+    try {
+      var tree = new ASTParser().parseTranslationUnit(
+          "int fooBar = barFoo; void main() { fooBar += fooBaz * bar; }");
+      var index = (InfixIdentifierIndex<?>) tree.getRoot().identifierIndex;
+      assertEquals(2, index.get("fooBar").size());
+      assertEquals(3, index.prefixQueryFlat("foo").count());
+      assertEquals(2, index.suffixQueryFlat("Bar").count());
+      assertEquals(3, index.infixQueryFlat("oB").count());
+      assertEquals(1, index.invertedInfixQueryFlat("f", "z").count());
+      assertTrue(tree.getRoot().rename("fooBar", "renamed"));
+      assertEquals(0, index.infixQueryFlat("ooBar").count());
+      assertEquals(2, index.suffixQueryFlat("named").count());
+    } finally {
+      Root.resetRootFactories();
+    }
+  }
+
+  private static List<String> generateKeys(int count, int length, Random random) {
+    var alphabet = "abcdefghijklmnopqrstuvwxyz_ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    var keys = new ArrayList<String>(count);
+    for (var i = 0; i < count; i++) {
+      var builder = new StringBuilder("iris_");
+      while (builder.length() < length) {
+        builder.append(alphabet.charAt(random.nextInt(random.nextBoolean() ? 6 : alphabet.length())));
+      }
+      keys.add(builder.toString());
+    }
+    return keys;
+  }
+
+  private static List<String> generateQueries(List<String> keys, Random random) {
+    var queries = new ArrayList<String>();
+    for (var i = 0; i < 200; i++) {
+      var key = keys.get(random.nextInt(keys.size()));
+      var start = random.nextInt(key.length());
+      queries.add(key.substring(start, Math.min(key.length(), start + 1 + random.nextInt(6))));
+    }
+    return queries;
+  }
+
+  @Test
+  void testSameResultsAsPermuterm() {
+    var random = new Random(1);
+    var keys = generateKeys(500, 20, random);
+    var permuterm = new PermutermTrie<Set<Object>, Object>();
+    for (var key : keys) {
+      var value = Set.<Object>of(key);
+      permuterm.put(key, value);
+      trie.put(key, value);
+    }
+    for (var i = 0; i < 100; i++) {
+      var key = keys.get(i);
+      permuterm.remove(key);
+      trie.remove(key);
+    }
+    for (var query : generateQueries(keys, random)) {
+      assertEquals(permuterm.prefixQueryFlat(query).collect(Collectors.toSet()),
+          trie.prefixQueryFlat(query).collect(Collectors.toSet()));
+      assertEquals(permuterm.suffixQueryFlat(query).collect(Collectors.toSet()),
+          trie.suffixQueryFlat(query).collect(Collectors.toSet()));
+      assertEquals(permuterm.infixQueryFlat(query).collect(Collectors.toSet()),
+          trie.infixQueryFlat(query).collect(Collectors.toSet()));
+      var split = query.length() / 2;
+      assertEquals(
+          permuterm.invertedInfixQueryFlat(query.substring(0, split), query.substring(split))
+              .collect(Collectors.toSet()),
+          trie.invertedInfixQueryFlat(query.substring(0, split), query.substring(split))
+              .collect(Collectors.toSet()));
+    }
+  }
+
+  private static long usedMemory() {
+    var runtime = Runtime.getRuntime();
+    for (var i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static <T extends Map<String, Set<Object>>> T fill(T map, List<String> keys) {
+    for (var key : keys) {
+      map.put(key, Set.of(key));
+    }
+    return map;
+  }
+
+  private static <T extends Map<String, Set<Object>>> long measureMemory(
+      Supplier<T> factory, List<String> keys, List<T> keepAlive) {
+    var before = usedMemory();
+    keepAlive.add(fill(factory.get(), keys));
+    return usedMemory() - before;
+  }
+
+  private static long measureQueries(
+      Map<String, Set<Object>> map, List<String> queries, int n) {
+    var start = System.nanoTime();
+    long count = 0;
+    for (var i = 0; i < n; i++) {
+      for (var query : queries) {
+        count += ((InfixQueryable<?, ?>) map).infixQuery(query).count()
+            + ((SuffixQueryable<?, ?>) map).suffixQuery(query).count();
+      }
+    }
+    assertTrue(count >= 0);
+    return (System.nanoTime() - start) / n;
+  }
+
+  @Test
+  void testPostingCountComparedToPermuterm() {
+    var random = new Random(2);
+    var keys = generateKeys(benchmark ? 20000 : 2000, 64, random);
+    var keepAlive = new ArrayList<Map<String, Set<Object>>>();
+
+    // the memory usage is only meaningful when measured on its own
+    if (benchmark) {
+      long permutermMemory = measureMemory(PermutermTrie::new, keys, keepAlive);
+      long trigramMemory = measureMemory(TrigramIndex::new, keys, keepAlive);
+      System.out.println("permuterm memory: " + permutermMemory / 1024 + " KiB, trigram memory: "
+          + trigramMemory / 1024 + " KiB");
+    } else {
+      keepAlive.add(fill(new PermutermTrie<>(), keys));
+      keepAlive.add(fill(new TrigramIndex<>(), keys));
+    }
+
+    // the permuterm trie stores every rotation of each key with a marker, which is
+    // compared with the number of characters and postings the trigram index stores
+    long keyLength = 0;
+    long permutermLength = 0;
+    for (var key : keys) {
+      keyLength += key.length();
+      permutermLength += (long) (key.length() + 1) * (key.length() + 1);
+    }
+    var trigramIndex = (TrigramIndex<?, ?>) keepAlive.get(1);
+    assertTrue(trigramIndex.getPostingCount() <= keyLength,
+        "It should store at most one posting per character of each key");
+    assertTrue(keyLength + trigramIndex.getPostingCount() < permutermLength,
+        "It should store fewer characters and postings than the permuterm trie stores characters for long keys");
+
+    if (benchmark) {
+      var queries = generateQueries(keys, random);
+      var n = 20;
+      for (var map : keepAlive) {
+        measureQueries(map, queries, 1);
+        System.out.println(map.getClass().getSimpleName() + " query time: "
+            + measureQueries(map, queries, n) / 1000 + " us for " + queries.size() * 2 + " queries");
+      }
+    }
+  }
+}
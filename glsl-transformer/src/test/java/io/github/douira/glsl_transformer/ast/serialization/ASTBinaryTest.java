@@ -0,0 +1,84 @@
+package io.github.douira.glsl_transformer.ast.serialization;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.UncheckedIOException;
+
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.jupiter.api.Test;
+
+import io.github.douira.glsl_transformer.ast.node.TranslationUnit;
+import io.github.douira.glsl_transformer.ast.node.expression.Expression;
+import io.github.douira.glsl_transformer.ast.node.expression.LiteralExpression;
+import io.github.douira.glsl_transformer.ast.print.ASTPrinter;
+import io.github.douira.glsl_transformer.test_util.*;
+import io.github.douira.glsl_transformer.test_util.TestResourceManager.DirectoryLocation;
+
+public class ASTBinaryTest extends TestWithSingleASTTransformer {
+  private void assertRoundTrip(String input) {
+    var tree = p.parseTranslationUnit(input);
+    var expected = ASTPrinter.printCompact(tree);
+    var read = ASTBinaryReader.readTranslationUnit(ASTBinaryWriter.write(tree));
+    assertEquals(expected, ASTPrinter.printCompact(read));
+  }
+
+  @Test
+  void testRoundTrip() {
+    assertRoundTrip("#version 460 core\n#extension GL_foo : enable\n#pragma optimize(on)\n"
+        + "layout(std140, binding = 3) uniform Foo { vec4 a[2]; } foo;\n"
+        + "int x = 0x1F, y = 017, z = -4; uint u = 4u; float f = 1.5, g = 1e-20; double d = 0.1lf;\n"
+        + "bool b = true; struct S { int q; } s;\n"
+        + "subroutine void func_t(int a); subroutine(func_t) void func(int a) {}\n"
+        + "void main() { while (bool c = x > 0) { x--; } for (int i = 0; i < 4; i++) { "
+        + "switch (i) { case 1: break; default: discard; } } "
+        + "if (b) { f = vec2(1.0).x; } else { y = int(f) + foo.a.length(); } }");
+  }
+
+  @Test
+  void testGLSLangTests() {
+    p.getLexer().enableIncludeDirective = true;
+    TestResourceManager
+        .getDirectoryResources(DirectoryLocation.GLSLANG_TESTS)
+        .forEach(resource -> {
+          TranslationUnit tree;
+          try {
+            tree = p.parseTranslationUnit(resource.content());
+          } catch (ParseCancellationException e) {
+            // some of the glslang tests contain invalid code on purpose
+            return;
+          }
+          var read = ASTBinaryReader.readTranslationUnit(ASTBinaryWriter.write(tree));
+          assertEquals(ASTPrinter.printCompact(tree), ASTPrinter.printCompact(read),
+              resource.getScenarioName());
+        });
+  }
+
+  @Test
+  void testRootRegistration() {
+    var tree = p.parseTranslationUnit("int x = foo + 4; void main() { foo(); }");
+    var read = ASTBinaryReader.readTranslationUnit(ASTBinaryWriter.write(tree));
+    var root = read.getRoot();
+    assertNotSame(tree.getRoot(), root);
+    assertEquals(2, root.identifierIndex.getStream("foo").count());
+    assertEquals(4L, root.nodeIndex.getOne(LiteralExpression.class).getInteger());
+    assertTrue(root.nodeIndex.getStream(Expression.class).allMatch(node -> node.getRoot() == root));
+  }
+
+  @Test
+  void testInvalidData() {
+    assertThrows(UncheckedIOException.class,
+        () -> ASTBinaryReader.readTranslationUnit(new byte[] { 1, 2, 3, 4, 5 }));
+    var bytes = ASTBinaryWriter.write(p.parseSeparateExpression("a + b"));
+    assertThrows(UncheckedIOException.class,
+        () -> ASTBinaryReader.read(bytes, TranslationUnit.class),
+        "It should reject nodes of the wrong type");
+    assertNotNull(ASTBinaryReader.read(bytes, Expression.class));
+
+    // the fingerprint follows the magic number and the single byte version
+    var changedEnums = bytes.clone();
+    changedEnums[5] ^= 1;
+    assertThrows(UncheckedIOException.class,
+        () -> ASTBinaryReader.read(changedEnums, Expression.class),
+        "It should reject data written with different enum constants");
+  }
+}
@@ -2,9 +2,12 @@ package io.github.douira.glsl_transformer.ast.transform;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.concurrent.Executors;
+
 import org.junit.jupiter.api.Test;
 
 import io.github.douira.glsl_transformer.ast.node.expression.LiteralExpression;
+import io.github.douira.glsl_transformer.ast.node.external_declaration.FunctionDefinition;
 import io.github.douira.glsl_transformer.test_util.TestWithGroupedASTTransformer;
 
 public class GroupedASTTransformerTest extends TestWithGroupedASTTransformer {
@@ -41,4 +44,37 @@ public class GroupedASTTransformerTest extends TestWithGroupedASTTransformer {
     });
     assertTransform("", null, "", "", null, "");
   }
+
+  @Test
+  void testParallelGroupedTransformation() {
+    var executor = Executors.newFixedThreadPool(3);
+    try {
+      p.setExecutor(executor);
+      p.setTransformation((a, b, c, rootA, rootB, rootC) -> {
+        b.getChildren().add(c.getChildren().get(0));
+        c.getChildren().remove(0);
+        assertTrue(rootB.identifierIndex.has("bar"));
+        assertFalse(rootC.identifierIndex.has("bar"));
+      });
+      for (var i = 0; i < 10; i++) {
+        assertTransform(
+            "int a; int b; ",
+            "int f = 1; int foo = bar; ",
+            "int foo = zou; ",
+            "int a; int b; ",
+            "int f = 1;",
+            "int foo = bar; int foo = zou;");
+      }
+      assertTransform("", null, "", "", null, "");
+
+      p.setLazyFunctionBodies(true);
+      p.setTransformation((a, b, c, rootA, rootB, rootC) -> {
+        assertFalse(((FunctionDefinition) a.getChildren().get(0)).isBodyBuilt(),
+            "The pooled parsers should be configured again after the configuration changed");
+      });
+      p.transform(mapOf("void f() { }", "", ""));
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
@@ -0,0 +1,154 @@
+package io.github.douira.glsl_transformer.ast.transform;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.douira.glsl_transformer.ast.node.TranslationUnit;
+import io.github.douira.glsl_transformer.ast.node.expression.ReferenceExpression;
+import io.github.douira.glsl_transformer.ast.node.external_declaration.FunctionDefinition;
+import io.github.douira.glsl_transformer.ast.node.statement.CompoundStatement;
+import io.github.douira.glsl_transformer.ast.print.*;
+import io.github.douira.glsl_transformer.ast.transform.ASTParser.CacheStrategy;
+
+public class LazyFunctionBodyTest {
+  private static final String input = "#version 330 core\n"
+      + "uniform float u;\n"
+      + "float helper(float x) {\n"
+      + "  for (int i = 0; i < 3; i++) { x += float(i); }\n"
+      + "  if (x > 1.0) return x * helperVar; else { return -x; }\n"
+      + "}\n"
+      + "struct S { int a; };\n"
+      + "void main() {\n"
+      + "  float mainVar = helper(u);\n"
+      + "  int arr[2] = int[2](1, 2);\n"
+      + "  gl_FragColor = vec4(mainVar);\n"
+      + "}\n";
+
+  private static ASTParser createParser(boolean lazy) {
+    var parser = new ASTParser();
+    parser.setLazyFunctionBodies(lazy);
+    return parser;
+  }
+
+  private static List<FunctionDefinition> getDefinitions(TranslationUnit tree) {
+    return tree.getChildren().stream()
+        .filter(FunctionDefinition.class::isInstance)
+        .map(FunctionDefinition.class::cast)
+        .collect(Collectors.toList());
+  }
+
+  private static String printEager(String source) {
+    return ASTPrinter.printSimple(createParser(false).parseTranslationUnit(source));
+  }
+
+  @Test
+  void testBodiesNotBuilt() {
+    var tree = createParser(true).parseTranslationUnit(input);
+    var definitions = getDefinitions(tree);
+    assertEquals(2, definitions.size());
+    for (var definition : definitions) {
+      assertFalse(definition.isBodyBuilt());
+      assertNotNull(definition.getLazyBody());
+    }
+  }
+
+  @Test
+  void testPrintWithoutBuilding() {
+    var eager = createParser(false).parseTranslationUnit(input);
+    var tree = createParser(true).parseTranslationUnit(input);
+    for (var type : PrintType.values()) {
+      assertEquals(ASTPrinter.print(type, eager), ASTPrinter.print(type, tree),
+          "It should print the unbuilt bodies the same as built ones with " + type);
+    }
+    for (var definition : getDefinitions(tree)) {
+      assertFalse(definition.isBodyBuilt(), "Printing should not build the body");
+    }
+  }
+
+  @Test
+  void testBuildOnAccess() {
+    var eager = createParser(false).parseTranslationUnit(input);
+    var tree = createParser(true).parseTranslationUnit(input);
+    var definitions = getDefinitions(tree);
+    var body = definitions.get(0).getBody();
+    assertTrue(definitions.get(0).isBodyBuilt());
+    assertFalse(definitions.get(1).isBodyBuilt(), "Other bodies should stay unbuilt");
+    assertSame(definitions.get(0), body.getParent());
+    assertSame(tree.getRoot(), body.getRoot());
+    assertEquals(getDefinitions(eager).get(0).getBody().getSourceLines(), body.getSourceLines(),
+        "The built body should have the same source lines");
+    assertEquals(ASTPrinter.printSimple(eager), ASTPrinter.printSimple(tree),
+        "A mix of built and unbuilt bodies should print correctly");
+  }
+
+  @Test
+  void testBuildOnQuery() {
+    var tree = createParser(true).parseTranslationUnit(input);
+    var root = tree.getRoot();
+    assertTrue(root.identifierIndex.has("helperVar"));
+    for (var definition : getDefinitions(tree)) {
+      assertTrue(definition.isBodyBuilt(), "Querying an index should build all bodies");
+    }
+    assertEquals(4, root.nodeIndex.get(CompoundStatement.class).size(),
+        "The built bodies and their nested blocks should be indexed");
+
+    tree = createParser(true).parseTranslationUnit(input);
+    assertEquals(1, tree.getRoot().nodeIndex.getStream(ReferenceExpression.class)
+        .filter(reference -> reference.getIdentifier().getName().equals("mainVar")).count());
+    assertTrue(tree.getRoot().rename("mainVar", "renamed"));
+    assertEquals(printEager(input.replace("mainVar", "renamed")), ASTPrinter.printSimple(tree));
+  }
+
+  @Test
+  void testReplaceAndDelete() {
+    var tree = createParser(true).parseTranslationUnit(input);
+    var definitions = getDefinitions(tree);
+    var replacement = createParser(false).parseStatement(tree, "{ gl_FragColor = vec4(1.0); }");
+    definitions.get(1).setBody((CompoundStatement) replacement);
+    assertTrue(definitions.get(1).isBodyBuilt());
+    assertFalse(tree.getRoot().identifierIndex.has("mainVar"),
+        "The replaced body should never be built");
+
+    tree = createParser(true).parseTranslationUnit(input);
+    getDefinitions(tree).get(0).detachAndDelete();
+    assertFalse(tree.getRoot().identifierIndex.has("helperVar"),
+        "A deleted body should not be in the index");
+    assertTrue(tree.getRoot().identifierIndex.has("mainVar"));
+  }
+
+  @Test
+  void testSharedBuildCache() {
+    var lazy = createParser(true);
+    lazy.setCacheStrategy(CacheStrategy.ALL);
+    var eager = createParser(false);
+    lazy.copyConfigurationTo(eager);
+    eager.setLazyFunctionBodies(false);
+    assertSame(lazy.getBuildCache(), eager.getBuildCache());
+
+    lazy.parseTranslationUnit(input);
+    for (var definition : getDefinitions(eager.parseTranslationUnit(input))) {
+      assertTrue(definition.isBodyBuilt(), "An eager parser should not get lazy trees from the cache");
+    }
+    eager.parseTranslationUnit(input);
+    for (var definition : getDefinitions(lazy.parseTranslationUnit(input))) {
+      assertFalse(definition.isBodyBuilt(), "A lazy parser should not get built trees from the cache");
+    }
+  }
+
+  @Test
+  void testClone() {
+    var tree = createParser(true).parseTranslationUnit(input);
+    var clone = tree.cloneSeparate();
+    for (var definition : getDefinitions(clone)) {
+      assertFalse(definition.isBodyBuilt(), "Cloning should not build the body");
+    }
+    assertTrue(clone.getRoot().identifierIndex.has("helperVar"));
+    assertFalse(getDefinitions(tree).get(0).isBodyBuilt(),
+        "Building the clone should not build the original");
+    assertEquals(printEager(input), ASTPrinter.printSimple(clone));
+  }
+}
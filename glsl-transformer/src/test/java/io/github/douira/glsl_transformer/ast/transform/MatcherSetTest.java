@@ -0,0 +1,90 @@
+package io.github.douira.glsl_transformer.ast.transform;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
+import io.github.douira.glsl_transformer.ast.node.expression.Expression;
+import io.github.douira.glsl_transformer.ast.query.match.*;
+import io.github.douira.glsl_transformer.ast.traversal.ASTVoidVisitor;
+import io.github.douira.glsl_transformer.test_util.TestWithSingleASTTransformer;
+
+public class MatcherSetTest extends TestWithSingleASTTransformer {
+  private static final String input = "void main() { x = a + b; y = a + c; z = a * b; w = foo(e) + d; foo(a); }";
+
+  private static List<Matcher<Expression>> createMatchers() {
+    return List.of(
+        new Matcher<>("a + b", Matcher.expressionPattern),
+        new Matcher<>("a + ___", Matcher.expressionPattern, "___"),
+        new Matcher<>("___ + ___", Matcher.expressionPattern, "___"),
+        new Matcher<>("a * b", Matcher.expressionPattern),
+        new Matcher<>("foo(___)", Matcher.expressionPattern, "___"),
+        new Matcher<>("a", Matcher.expressionPattern),
+        new Matcher<>("a + b", Matcher.expressionPattern));
+  }
+
+  private static List<ASTNode> collectNodes(ASTNode tree) {
+    var nodes = new ArrayList<ASTNode>();
+    new ASTVoidVisitor() {
+      @Override
+      public void visitVoid(ASTNode node) {
+        nodes.add(node);
+      }
+    }.startVisit(tree);
+    return nodes;
+  }
+
+  @Test
+  void testSameResultsAsMatchers() {
+    var matchers = createMatchers();
+    var set = new MatcherSet();
+    matchers.forEach(set::add);
+    assertEquals(matchers.size(), set.size());
+
+    var tree = p.parseTranslationUnit(input);
+    var total = 0;
+    for (var node : collectNodes(tree)) {
+      var expected = new ArrayList<Matcher<?>>();
+      for (var matcher : matchers) {
+        if (node instanceof Expression expression && matcher.matches(expression)) {
+          expected.add(matcher);
+        }
+      }
+      assertEquals(expected, set.getMatches(node));
+      total += expected.size();
+    }
+    assertEquals(13, total);
+  }
+
+  @Test
+  void testProcessTree() {
+    var counts = new int[3];
+    var set = new MatcherSet()
+        .add(new Matcher<>("a + b", Matcher.expressionPattern), node -> counts[0]++)
+        .add(new Matcher<>("___ + ___", Matcher.expressionPattern, "___"), node -> counts[1]++)
+        .add(new Matcher<>("bar(___)", Matcher.expressionPattern, "___"), node -> counts[2]++);
+    assertTrue(set.processTree(p.parseTranslationUnit(input)));
+    assertArrayEquals(new int[] { 1, 2, 0 }, counts);
+    assertFalse(set.processTree(p.parseTranslationUnit("int x = 4;")));
+  }
+
+  @Test
+  void testProcessRoot() {
+    var counts = new int[2];
+    var set = new MatcherSet()
+        .add(new HintedMatcher<>("a + ___", Matcher.expressionPattern, "___", "a"), node -> {
+          counts[0]++;
+          node.getRoot().rename("a", "f");
+        })
+        .add(new Matcher<>("foo(___)", Matcher.expressionPattern, "___"), node -> counts[1]++);
+    var tree = p.parseTranslationUnit(input);
+    assertTrue(set.process(tree.getRoot()));
+
+    // all matches are found before the first callback renames the identifiers
+    assertArrayEquals(new int[] { 2, 2 }, counts);
+    assertEquals(0, tree.getRoot().identifierIndex.getStream("a").count());
+  }
+}
@@ -2,6 +2,9 @@ package io.github.douira.glsl_transformer.ast.transform;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
 import org.junit.jupiter.api.Test;
 
 import io.github.douira.glsl_transformer.ast.node.*;
@@ -315,4 +318,113 @@ public class MatcherTest extends TestWithSingleASTTransformer {
     assertMatchED(m, "int foo;");
     assertNoMatchED(m, "out int foo, bar;");
   }
+
+  @Test
+  void testExtractMatchList() {
+    var m = new Matcher<>("int a = foo + 4;", Matcher.externalDeclarationPattern) {
+      {
+        markClassWildcard("member*",
+            pattern.getRoot().identifierIndex.getOne("a").getAncestor(DeclarationMember.class),
+            DeclarationMember.class);
+      }
+    };
+
+    assertExtractED(m, "int foo, bar, baz;");
+    assertEquals("baz", m.getNodeMatch("member*", DeclarationMember.class).getName().getName());
+    assertTrue(m.getDataMatches().isEmpty());
+  }
+
+  @Test
+  void testFailedExtractClearsMatches() {
+    var m = new Matcher<>("uniform vec4 ___a = foo + ___b;",
+        Matcher.externalDeclarationPattern, "___");
+
+    assertExtractED(m, "uniform vec4 bar = foo + bam;");
+    assertEquals(2, m.getDataMatches().size());
+    assertFalse(m.matchesExtract(p.parseSeparateExternalDeclaration("uniform vec4 bar = fob + bam;")));
+    assertTrue(m.getDataMatches().isEmpty(), "It should not keep captures from before the mismatch");
+  }
+
+  @Test
+  void testMarkWildcardAfterCompile() {
+    var m = new Matcher<>("a;", Matcher.translationUnitPattern) {
+      {
+        compile();
+        markClassWildcard("bNode",
+            pattern.getAncestor(TranslationUnit.class)
+                .getChildren().get(0),
+            EmptyDeclaration.class);
+      }
+    };
+
+    assertNoMatchTU(m, "a;");
+    assertMatchTU(m, ";");
+  }
+
+  @Test
+  void testParallelPatternParsing() throws Exception {
+    var executor = Executors.newFixedThreadPool(4);
+    try {
+      var tasks = new ArrayList<Callable<Boolean>>();
+      for (int i = 0; i < 32; i++) {
+        var index = i;
+        tasks.add(() -> {
+          var m = new Matcher<>("foo[" + index + "]", Matcher.expressionPattern);
+          var template = Template.withExpression("bar + " + index);
+          return m.matches(Matcher.expressionPattern.apply("foo[" + index + "]"))
+              && !m.matches(template.getSeparateInstance());
+        });
+      }
+      for (var result : executor.invokeAll(tasks)) {
+        assertTrue(result.get(), "It should parse patterns on multiple threads at the same time");
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testMatchResult() {
+    var m = new Matcher<>("uniform vec4 ___a = foo + ___b;",
+        Matcher.externalDeclarationPattern, "___");
+
+    var declaration = p.parseSeparateExternalDeclaration("uniform vec4 bar = foo + bam;");
+    var result = m.match(declaration);
+    assertNotNull(result);
+    assertSame(declaration, result.getNode());
+    assertEquals("bar", result.getStringDataMatch("a"));
+    assertEquals("bam", result.getStringDataMatch("b"));
+    assertNull(m.getDataMatches(), "It should not store the result in the matcher");
+    assertNull(m.match(p.parseSeparateExternalDeclaration("uniform vec4 bar = fob + bam;")));
+    assertNull(m.match(null));
+  }
+
+  @Test
+  void testSharedCompiledMatcher() throws Exception {
+    var m = new Matcher<>("foo[___index]", Matcher.expressionPattern, "___");
+    m.compile();
+    var executor = Executors.newFixedThreadPool(4);
+    try {
+      var tasks = new ArrayList<Callable<Boolean>>();
+      for (int i = 0; i < 32; i++) {
+        var index = i;
+        tasks.add(() -> {
+          for (int j = 0; j < 50; j++) {
+            var name = "i" + index + "_" + j;
+            var result = m.match(Matcher.expressionPattern.apply("foo[" + name + "]"));
+            if (result == null || !name.equals(result.getStringDataMatch("index"))
+                || m.matches(Matcher.expressionPattern.apply("bar[" + name + "]"))) {
+              return false;
+            }
+          }
+          return true;
+        });
+      }
+      for (var result : executor.invokeAll(tasks)) {
+        assertTrue(result.get(), "It should match with one matcher on multiple threads at the same time");
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
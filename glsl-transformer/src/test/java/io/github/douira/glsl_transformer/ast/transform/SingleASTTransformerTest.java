@@ -12,9 +12,10 @@ import io.github.douira.glsl_transformer.ast.node.*;
 import io.github.douira.glsl_transformer.ast.node.basic.ASTNode;
 import io.github.douira.glsl_transformer.ast.node.expression.*;
 import io.github.douira.glsl_transformer.ast.node.external_declaration.ExternalDeclaration;
-import io.github.douira.glsl_transformer.ast.print.PrintType;
+import io.github.douira.glsl_transformer.ast.print.*;
 import io.github.douira.glsl_transformer.ast.query.Root;
 import io.github.douira.glsl_transformer.ast.query.index.PrefixIdentifierIndex;
+import io.github.douira.glsl_transformer.basic.EnhancedParser;
 import io.github.douira.glsl_transformer.job_parameter.NonFixedJobParameters;
 import io.github.douira.glsl_transformer.test_util.TestWithSingleASTTransformer;
 import io.github.douira.glsl_transformer.util.Type;
@@ -298,4 +299,90 @@ public class SingleASTTransformerTest extends TestWithSingleASTTransformer {
       p.parseSeparateExternalDeclaration("void foo(sampler2D sample) { }");
     }, "It should not throw if disabled keywords are used as identifiers.");
   }
+
+  @Test
+  void testReparseTranslationUnit() {
+    var before = "#version 330\nint a;\nvoid foo() {\n  a = 1;\n}\nvoid main() {\n  foo();\n}\n";
+    var after = "#version 330\nint a;\nvoid foo() {\n  int b;\n  b = 2;\n}\nvoid main() {\n  foo();\n}\n";
+    var tree = p.parseTranslationUnit(before);
+    var declaration = tree.getChildren().get(0);
+    var main = tree.getChildren().get(2);
+    var reparsed = p.reparseTranslationUnit(tree, before, after);
+
+    assertSame(tree, reparsed, "It should update the previous tree");
+    assertSame(declaration, reparsed.getChildren().get(0), "It should reuse unchanged declarations");
+    assertSame(main, reparsed.getChildren().get(2), "It should reuse unchanged declarations");
+    var expected = p.parseTranslationUnit(after);
+    assertEquals(ASTPrinter.printCompact(expected), ASTPrinter.printCompact(reparsed));
+    assertEquals(expected.getChildren().get(2).getStartLine(), main.getStartLine(),
+        "It should shift the source lines of reused declarations");
+    assertEquals(expected.getChildren().get(1).getStartLine(), reparsed.getChildren().get(1).getStartLine());
+
+    var root = reparsed.getRoot();
+    assertEquals(2, root.identifierIndex.get("b").size());
+    assertTrue(root.nodeIndex.get(LiteralExpression.class).stream()
+        .noneMatch(literal -> literal.getInteger() == 1), "It should unregister removed declarations");
+  }
+
+  @Test
+  void testReparseFallback() {
+    var tree = p.parseTranslationUnit("#version 330\nint a;");
+    var reparsed = p.reparseTranslationUnit(tree, "#version 330\nint a;", "#version 400\nint a;");
+    assertNotSame(tree, reparsed, "It should parse everything if the version changed");
+    assertEquals(Version.GLSL40, reparsed.getVersionStatement().version);
+
+    var previous = p.parseTranslationUnit("int a; int b;");
+    assertThrows(ParseCancellationException.class,
+        () -> p.reparseTranslationUnit(previous, "int a; int b;", "int a; int b c;"));
+    assertEquals("int a; int b; ", ASTPrinter.printCompact(previous),
+        "It should leave the previous tree unchanged if parsing fails");
+    assertTrue(previous.getRoot().identifierIndex.get("c").isEmpty());
+
+    var mismatched = p.parseTranslationUnit("int a; void f() { }");
+    assertNotSame(mismatched, p.reparseTranslationUnit(mismatched, "void f() { } int a;", "void f() { } int b;"),
+        "It should parse everything if the previous tree doesn't match the previous source");
+  }
+
+  @Test
+  void testStreamExternalDeclarations() {
+    var input = "#version 330\nint a;\nvoid foo() {\n  a = 1;\n}\nstruct S { int b; };\n";
+    var declarations = p.streamExternalDeclarations(input).collect(Collectors.toList());
+    assertEquals(3, declarations.size());
+    assertEquals("int a; ", ASTPrinter.printCompact(declarations.get(0)));
+    assertEquals(3, declarations.get(1).getStartLine(), "It should keep the source lines");
+    assertNotSame(declarations.get(0).getRoot(), declarations.get(1).getRoot(),
+        "It should build each declaration with its own root");
+
+    var expected = p.parseTranslationUnit(input);
+    for (var i = 0; i < declarations.size(); i++) {
+      assertEquals(ASTPrinter.printCompact(expected.getChildren().get(i)),
+          ASTPrinter.printCompact(declarations.get(i)));
+    }
+
+    assertEquals(1, p.streamExternalDeclarations("int a; int b; int c;").limit(1).count());
+    assertEquals(0, p.streamExternalDeclarations("#version 330\n").count());
+    assertThrows(ParseCancellationException.class,
+        () -> p.streamExternalDeclarations("int a; int b c;").forEach(declaration -> {
+        }));
+  }
+
+  @Test
+  void testExternalDeclarationIteratorBuffer() {
+    var builder = new StringBuilder("#version 330\n");
+    for (var i = 0; i < 2000; i++) {
+      builder.append("// declaration ").append(i).append("\nfloat f").append(i)
+          .append("(float x) { return x * ").append(i).append(".0; }\n");
+    }
+    var iterator = new EnhancedParser().iterateExternalDeclarations(builder.toString());
+    var maxBuffered = 0;
+    var count = 0;
+    while (iterator.hasNext()) {
+      iterator.next();
+      count++;
+      maxBuffered = Math.max(maxBuffered, iterator.getBufferedTokenCount());
+    }
+    assertEquals(2000, count);
+    assertTrue(maxBuffered < 8,
+        "It should only buffer the lookahead between declarations but buffered " + maxBuffered);
+  }
 }
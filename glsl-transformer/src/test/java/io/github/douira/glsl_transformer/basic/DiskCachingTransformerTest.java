@@ -0,0 +1,108 @@
+package io.github.douira.glsl_transformer.basic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.douira.glsl_transformer.ast.print.PrintType;
+import io.github.douira.glsl_transformer.ast.transform.SingleASTTransformer;
+import io.github.douira.glsl_transformer.job_parameter.NonFixedJobParameters;
+import io.github.douira.glsl_transformer.util.DiskCache;
+
+public class DiskCachingTransformerTest {
+  @TempDir
+  Path directory;
+
+  @Test
+  void testCachingTransformer() throws IOException {
+    var transformCount = new AtomicInteger();
+    var transformer = new SingleASTTransformer<NonFixedJobParameters>();
+    transformer.setSLLOnly();
+    transformer.setPrintType(PrintType.COMPACT);
+    transformer.setTransformation(tree -> {
+      transformCount.incrementAndGet();
+      tree.getChildren().add(0, transformer.parseExternalDeclaration(tree, "int x;"));
+    });
+
+    for (var run = 0; run < 2; run++) {
+      try (var cache = new DiskCache(directory)) {
+        var caching = new DiskCachingTransformer<>(
+            transformer, cache, DiskCachingTransformer.STRING_CODEC, "test-1", parameters -> "");
+        assertEquals("int x; int a; ", caching.transform("int a;", NonFixedJobParameters.INSTANCE));
+        assertEquals("int x; int b; ", caching.transform("int b;", NonFixedJobParameters.INSTANCE));
+        assertEquals("int x; int a; ", caching.transform("int a;", NonFixedJobParameters.INSTANCE));
+      }
+    }
+    assertEquals(2, transformCount.get(), "It should only transform unseen inputs");
+
+    try (var cache = new DiskCache(directory)) {
+      var caching = new DiskCachingTransformer<>(
+          transformer, cache, DiskCachingTransformer.STRING_CODEC, "test-2", parameters -> "");
+      caching.transform("int a;", NonFixedJobParameters.INSTANCE);
+    }
+    assertEquals(3, transformCount.get(), "It should not reuse results of other versions");
+  }
+
+  @Test
+  void testFailedPut() throws IOException {
+    var transformCount = new AtomicInteger();
+    var transformer = new SingleASTTransformer<NonFixedJobParameters>();
+    transformer.setSLLOnly();
+    transformer.setPrintType(PrintType.COMPACT);
+    transformer.setTransformation(tree -> transformCount.incrementAndGet());
+
+    try (var cache = new DiskCache(directory) {
+      @Override
+      public void put(byte[] digest, byte[] value) {
+        throw new IllegalStateException("The disk cache is full.");
+      }
+    }) {
+      var caching = new DiskCachingTransformer<>(
+          transformer, cache, DiskCachingTransformer.STRING_CODEC, "test", parameters -> "");
+      assertEquals("int a; ", caching.transform("int a;", NonFixedJobParameters.INSTANCE),
+          "It should return the result even if it can't be stored");
+      assertEquals("int a; ", caching.transform("int a;", NonFixedJobParameters.INSTANCE));
+    }
+    assertEquals(2, transformCount.get(), "It should treat the unstored result as a miss");
+  }
+
+  @Test
+  void testParameterKey() throws IOException {
+    var transformCount = new AtomicInteger();
+    var transformer = new SingleASTTransformer<NonFixedJobParameters>();
+    transformer.setSLLOnly();
+    transformer.setPrintType(PrintType.COMPACT);
+    transformer.setTransformation(tree -> transformCount.incrementAndGet());
+
+    try (var cache = new DiskCache(directory)) {
+      new DiskCachingTransformer<>(
+          transformer, cache, DiskCachingTransformer.STRING_CODEC, "test", parameters -> "a")
+          .transform("int a;", NonFixedJobParameters.INSTANCE);
+      new DiskCachingTransformer<>(
+          transformer, cache, DiskCachingTransformer.STRING_CODEC, "test", parameters -> "b")
+          .transform("int a;", NonFixedJobParameters.INSTANCE);
+    }
+    assertEquals(2, transformCount.get(), "It should not reuse results of other job parameter keys");
+  }
+
+  @Test
+  void testMapCodecOrder() {
+    var codec = DiskCachingTransformer.mapCodec(Function.identity(), Function.identity(), HashMap::new);
+    var forward = new LinkedHashMap<String, String>();
+    var backward = new LinkedHashMap<String, String>();
+    for (var i = 0; i < 20; i++) {
+      forward.put("key" + i, "value" + i);
+      backward.put("key" + (19 - i), "value" + (19 - i));
+    }
+    assertArrayEquals(codec.encode(forward), codec.encode(backward),
+        "It should encode equal maps the same way regardless of their order");
+    assertEquals(forward, codec.decode(codec.encode(backward)));
+  }
+}
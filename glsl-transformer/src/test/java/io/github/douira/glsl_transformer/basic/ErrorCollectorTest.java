@@ -0,0 +1,142 @@
+package io.github.douira.glsl_transformer.basic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.jupiter.api.Test;
+
+import io.github.douira.glsl_transformer.GLSLParser;
+import io.github.douira.glsl_transformer.basic.EnhancedParser.ParsingStrategy;
+
+public class ErrorCollectorTest {
+  private static final String invalid = "int a = ;\nvoid main() {\n  a += ;\n}\n";
+
+  @Test
+  void testValidInput() {
+    var parser = new EnhancedParser();
+    var result = parser.parseCollectingErrors("int a = 1; void main() { a += 2; }");
+    assertNotNull(result.tree);
+    assertFalse(result.hasErrors());
+    assertFalse(result.aborted);
+  }
+
+  @Test
+  void testSameErrorsAsThrown() {
+    var parser = new EnhancedParser();
+    var thrown = assertThrows(ParseCancellationException.class, () -> parser.parse(invalid));
+
+    var result = parser.parseCollectingErrors(invalid);
+    assertNotNull(result.tree, "It should recover from the errors");
+    assertFalse(result.aborted);
+    assertEquals(2, result.errors.size());
+    assertEquals(thrown.getMessage(), result.errors.get(0).toString(),
+        "It should collect the same error that would have been thrown");
+    assertEquals(1, result.errors.get(0).line);
+    assertEquals(";", result.errors.get(0).getOffendingText());
+    assertEquals(3, result.errors.get(1).line);
+
+    assertThrows(ParseCancellationException.class, () -> parser.parse(invalid),
+        "It should throw errors again after collecting them");
+  }
+
+  @Test
+  void testSLLErrorsNotCollected() {
+    var llParser = new EnhancedParser();
+    llParser.setLLOnly();
+    var expected = llParser.parseCollectingErrors(invalid).errors;
+
+    for (var strategy : new ParsingStrategy[] {
+        ParsingStrategy.SLL_AND_LL_ON_ERROR, ParsingStrategy.ADAPTIVE }) {
+      var parser = new EnhancedParser();
+      parser.setParsingStrategy(strategy);
+      var errors = parser.parseCollectingErrors(invalid).errors;
+      assertEquals(expected.size(), errors.size(),
+          "It should only collect the errors of the LL attempt with " + strategy);
+      for (int i = 0; i < errors.size(); i++) {
+        assertEquals(expected.get(i).toString(), errors.get(i).toString());
+      }
+    }
+  }
+
+  @Test
+  void testLexerErrors() {
+    var parser = new EnhancedParser();
+    var result = parser.parseCollectingErrors("int a = 1 @ 2;");
+    assertTrue(result.errors.get(0).isLexerError());
+    assertEquals(1, result.errors.stream().filter(SyntaxError::isLexerError).count(),
+        "It should collect lexer errors only once");
+  }
+
+  @Test
+  void testAbort() {
+    var parser = new EnhancedParser();
+    parser.setMaxCollectedErrors(3);
+    var result = parser.parseCollectingErrors("int a = ;".repeat(10));
+    assertTrue(result.aborted);
+    assertNull(result.tree);
+    assertEquals(3, result.errors.size());
+
+    parser.setMaxCollectedErrors(100);
+    result = parser.parseCollectingErrors("int a = ;".repeat(10));
+    assertFalse(result.aborted);
+    assertTrue(result.errors.size() > 3);
+  }
+
+  @Test
+  void testAbortBoundary() {
+    var parser = new EnhancedParser();
+    var input = "int a = ;".repeat(5);
+    var errorCount = parser.parseCollectingErrors(input).errors.size();
+
+    parser.setMaxCollectedErrors(errorCount);
+    var result = parser.parseCollectingErrors(input);
+    assertFalse(result.aborted, "It should not abort with exactly the maximum number of errors");
+    assertNotNull(result.tree);
+    assertEquals(errorCount, result.errors.size());
+
+    parser.setMaxCollectedErrors(errorCount - 1);
+    result = parser.parseCollectingErrors(input);
+    assertTrue(result.aborted, "It should abort when there is one more error than the maximum");
+    assertNull(result.tree);
+    assertEquals(errorCount - 1, result.errors.size());
+  }
+
+  @Test
+  void testNoLexerStackTraces() {
+    for (var fastLexer : new boolean[] { false, true }) {
+      var parser = new EnhancedParser();
+      parser.setFastLexer(fastLexer);
+      var exceptions = new ArrayList<RecognitionException>();
+      parser.getLexer().addErrorListener(new BaseErrorListener() {
+        @Override
+        public void syntaxError(
+            Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine,
+            String msg, RecognitionException e) {
+          exceptions.add(e);
+        }
+      });
+      var result = parser.parseCollectingErrors("int a = 1 @ 2;");
+      assertTrue(result.hasErrors());
+      assertEquals(1, exceptions.size());
+      assertEquals(0, exceptions.get(0).getStackTrace().length,
+          "It should report lexer errors without stack traces with fastLexer=" + fastLexer);
+    }
+  }
+
+  @Test
+  void testNoStackTraces() {
+    for (var strategy : ParsingStrategy.values()) {
+      var parser = new EnhancedParser();
+      parser.setParsingStrategy(strategy);
+      parser.internalErrorConsumer = (sll, ll) -> {
+        assertEquals(0, sll.getStackTrace().length);
+        assertEquals(0, sll.getCause().getStackTrace().length);
+      };
+      var result = parser.parseCollectingErrors(invalid, GLSLParser::translationUnit);
+      assertTrue(result.hasErrors(), "It should collect the errors with " + strategy);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package io.github.douira.glsl_transformer.basic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+
+import org.antlr.v4.runtime.*;
+import org.junit.jupiter.api.Test;
+
+import io.github.douira.glsl_transformer.GLSLLexer;
+import io.github.douira.glsl_transformer.ast.node.Version;
+import io.github.douira.glsl_transformer.test_util.TestResourceManager;
+import io.github.douira.glsl_transformer.test_util.TestResourceManager.*;
+
+public class FastGLSLLexerTest {
+  private static final String[] snippets = {
+      "#version 330 core\n#extension GL_foo : enable\n#pragma optimize(on)\n#line 4 2\n",
+      "#define FOO(x) x \\\n + 1\n#ifdef FOO\n#endif // c\n#if 1 /* a */ \n#else\n#iffy\n#  \t \n#\\\n\n#\r\n",
+      "#custom foo bar // c\n#custom /* x */ a\n#include \"a/b.h\"\n#include <c.h>\n#custom\n",
+      "int a = 0x1Fu + 017 + 08 + 1us + 2ul + 3l + 4s + 0xAbCl + 0X1;\n",
+      "float f = 1. + .5 + 1e + 1e+ + 1e-5 + 1.5hf + 2.0lf + 3f + .5e3F + 1.e2 + 1ehf + 0.x;\n",
+      "a.length() + b.length( + c.len;\n",
+      "x <<= 1; y >>= 2; z ^^ w; a &&= b; c||d; e != f; g == h; i++ + --j; k %= 2; *= /= ~ ? :;\n",
+      "// comment without newline",
+      "/* unterminated",
+      "a / b /* c */ d // e\r\nf\\\ng\\\r\nh\\x",
+      "sample patch subroutine noperspective atomic_uint isampler2DRect samplerBuffer true false\n",
+      "#version 100\n#version 460 es\n#version 0110\n#version 0x1c\n#exténsion\n",
+      "#error \\\\\n#define X \\\\\\\n#define Y \\\r\n#define Z \\\rx\n#line \\",
+      "#pragma \"a\" <b> / x\n#pragma /* unterminated",
+      "@$`'\"é a\n\\",
+      "#define A \r\r\n#undef B\r",
+      "#include \"unterminated\n#include <x\r\n",
+      "#custom\r\n#custom   \t\n",
+      "uniform buffer in out inout layout struct void identifier_1 _x 1_x\n",
+      "",
+      "#",
+      "#\\",
+      "#define",
+      "\\\r",
+  };
+
+  private static List<String> lex(GLSLLexer lexer, String input, Version version, boolean enableDirectives) {
+    var result = new ArrayList<String>();
+    lexer.version = version;
+    lexer.enableCustomDirective = enableDirectives;
+    lexer.enableIncludeDirective = enableDirectives;
+    lexer.removeErrorListeners();
+    lexer.addErrorListener(new BaseErrorListener() {
+      @Override
+      public void syntaxError(
+          Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine,
+          String msg, RecognitionException e) {
+        result.add(line + ":" + charPositionInLine + " " + msg);
+      }
+    });
+    lexer.setInputStream(CharStreams.fromString(input));
+    Token token;
+    do {
+      token = lexer.nextToken();
+      result.add(token.getType() + " " + token.getChannel() + " "
+          + token.getStartIndex() + "-" + token.getStopIndex() + " "
+          + token.getLine() + ":" + token.getCharPositionInLine() + " "
+          + token.getText());
+    } while (token.getType() != Token.EOF);
+    result.add("mode " + lexer._mode);
+    return result;
+  }
+
+  private static void assertSameTokens(String name, String input) {
+    for (var version : new Version[] { Version.GLSL11, Version.GLSL15, Version.GLSL33, Version.latest }) {
+      for (var enableDirectives : new boolean[] { false, true }) {
+        assertEquals(
+            lex(new GLSLLexer(null), input, version, enableDirectives),
+            lex(new FastGLSLLexer(null), input, version, enableDirectives),
+            "It should produce the same tokens as the generated lexer for " + name
+                + " with " + version + " and directives " + (enableDirectives ? "enabled" : "disabled"));
+      }
+    }
+  }
+
+  @Test
+  void testSnippets() {
+    for (var i = 0; i < snippets.length; i++) {
+      assertSameTokens("snippet " + i, snippets[i]);
+    }
+  }
+
+  @Test
+  void testGLSLangTests() {
+    TestResourceManager
+        .getDirectoryResources(DirectoryLocation.GLSLANG_TESTS)
+        .forEach(resource -> assertSameTokens(resource.getScenarioName(), resource.content()));
+  }
+
+  @Test
+  void testReusedLexer() {
+    var lexer = new FastGLSLLexer(null);
+    var first = lex(lexer, snippets[1], Version.latest, true);
+    lex(lexer, snippets[8], Version.latest, true);
+    assertEquals(first, lex(lexer, snippets[1], Version.latest, true),
+        "It should produce the same tokens when the lexer is reused");
+  }
+
+  @Test
+  void testEnhancedParser() {
+    var input = "#version 330 core\n#extension GL_foo : enable\n#define A 1\n"
+        + "uniform float a[2];\nvoid main() { int b = 0x1F + 017; b <<= 1; gl_FragColor = vec4(a.length()); }\n";
+    var parser = new EnhancedParser();
+    var expected = parser.parse(input).toStringTree(parser.getParser());
+
+    parser.getLexer().enableCustomDirective = true;
+    parser.setFastLexer(true);
+    assertTrue(parser.getFastLexer());
+    assertTrue(parser.getLexer() instanceof FastGLSLLexer);
+    assertTrue(parser.getLexer().enableCustomDirective,
+        "It should copy the settings to the new lexer");
+    assertEquals(expected, parser.parse(input).toStringTree(parser.getParser()));
+
+    parser.setFastLexer(false);
+    assertFalse(parser.getLexer() instanceof FastGLSLLexer);
+    assertEquals(expected, parser.parse(input).toStringTree(parser.getParser()));
+  }
+}
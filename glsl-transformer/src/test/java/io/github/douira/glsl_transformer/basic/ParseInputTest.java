@@ -0,0 +1,103 @@
+package io.github.douira.glsl_transformer.basic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.douira.glsl_transformer.ast.print.ASTPrinter;
+import io.github.douira.glsl_transformer.ast.transform.ASTParser;
+
+public class ParseInputTest {
+  private static final String source = "#version 330\nuniform float a;\nvoid main() {\n  gl_FragColor = vec4(a);\n}\n";
+  private static final String unicodeSource = "int a; // ä 😀\n";
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void testContent() {
+    var bytes = ParseInput.fromUTF8(source.getBytes(StandardCharsets.UTF_8));
+    var unicodeBytes = ParseInput.fromUTF8(unicodeSource.getBytes(StandardCharsets.UTF_8));
+    var chars = ParseInput.of(CharBuffer.wrap(unicodeSource));
+
+    assertEquals(source.hashCode(), bytes.hashCode(), "It should have the same hash as the string");
+    assertEquals(unicodeSource.hashCode(), unicodeBytes.hashCode());
+    assertEquals(source, bytes.toString());
+    assertEquals(unicodeSource, unicodeBytes.toString());
+    assertEquals(unicodeBytes, chars);
+    assertNotEquals(bytes, chars);
+    assertTrue(ParseInput.contentEquals(source, bytes));
+    assertEquals("uniform", bytes.subSequence(13, 20));
+  }
+
+  @Test
+  void testInvalidUTF8() {
+    assertThrows(UncheckedIOException.class,
+        () -> ParseInput.fromUTF8(new byte[] { 'a', (byte) 0xC3 }));
+  }
+
+  @Test
+  void testCharStream() {
+    CharStream stream = ParseInput.fromUTF8(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)))
+        .toCharStream();
+    assertEquals('#', stream.LA(1));
+    stream.consume();
+    assertEquals('#', stream.LA(-1));
+    assertEquals("version", stream.getText(Interval.of(1, 7)));
+    stream.seek(source.length());
+    assertEquals(CharStream.EOF, stream.LA(1));
+
+    var unicodeStream = ParseInput.of(CharBuffer.wrap(unicodeSource)).toCharStream();
+    assertEquals(unicodeSource.codePointCount(0, unicodeSource.length()), unicodeStream.size(),
+        "It should combine surrogate pairs into code points");
+  }
+
+  @Test
+  void testParseFromPath() throws IOException {
+    var file = directory.resolve("shader.glsl");
+    Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+    var input = ParseInput.fromPath(file);
+    assertEquals(file.toString(), input.getSourceName());
+
+    var parser = new ASTParser();
+    assertEquals(
+        ASTPrinter.printCompact(parser.parseTranslationUnit(source)),
+        ASTPrinter.printCompact(parser.parseTranslationUnit(input)));
+  }
+
+  @Test
+  void testCacheLookup() {
+    var parser = new ASTParser();
+    parser.setCacheStrategy(ASTParser.CacheStrategy.ALL);
+    parser.parseTranslationUnit(source);
+    var stats = parser.getBuildCache().getStats();
+    parser.parseTranslationUnit(ParseInput.fromUTF8(source.getBytes(StandardCharsets.UTF_8)));
+    assertEquals(stats.hitCount + 1, parser.getBuildCache().getStats().hitCount,
+        "It should find the tree parsed from a string with the same content");
+  }
+
+  @Test
+  void testCachedInputReuse() {
+    var parser = new ASTParser();
+    parser.setCacheStrategy(ASTParser.CacheStrategy.ALL);
+    var buffer = new char[source.length()];
+    source.getChars(0, source.length(), buffer, 0);
+    var expected = ASTPrinter.printCompact(parser.parseTranslationUnit(ParseInput.of(CharBuffer.wrap(buffer))));
+
+    // reuse the buffer for different content of the same length
+    Arrays.fill(buffer, ' ');
+    var stats = parser.getBuildCache().getStats();
+    assertEquals(expected, ASTPrinter.printCompact(parser.parseTranslationUnit(source)));
+    assertEquals(stats.hitCount + 1, parser.getBuildCache().getStats().hitCount,
+        "It should keep the content of the input at the time it was cached");
+  }
+}
@@ -0,0 +1,82 @@
+package io.github.douira.glsl_transformer.basic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.antlr.v4.runtime.atn.*;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ParserWarmupTest {
+  @TempDir
+  Path directory;
+
+  private static DFA[] createDFA(ATN atn) {
+    var decisionToDFA = new DFA[atn.getNumberOfDecisions()];
+    for (var i = 0; i < decisionToDFA.length; i++) {
+      decisionToDFA[i] = new DFA(atn.getDecisionState(i), i);
+    }
+    return decisionToDFA;
+  }
+
+  /**
+   * Creates a parser with its own empty DFAs so that the shared DFAs don't need
+   * to be cleared, which isn't safe while other tests are parsing.
+   */
+  private static EnhancedParser createIsolatedParser() {
+    var enhancedParser = new EnhancedParser(false);
+    var lexer = enhancedParser.getLexer();
+    var lexerATN = lexer.getATN();
+    lexer.setInterpreter(new LexerATNSimulator(
+        lexer, lexerATN, createDFA(lexerATN), new PredictionContextCache()));
+    var parser = enhancedParser.getParser();
+    var parserATN = parser.getATN();
+    parser.setInterpreter(new ParserATNSimulator(
+        parser, parserATN, createDFA(parserATN), new PredictionContextCache()));
+    return enhancedParser;
+  }
+
+  private static int getDFAStateCount(EnhancedParser parser) {
+    return ParserWarmup.getDFAStateCount(parser.getLexer(), parser.getParser());
+  }
+
+  @Test
+  void testBundledShader() {
+    assertDoesNotThrow(() -> new EnhancedParser(true).parse(ParserWarmup.getBundledShader()),
+        "The bundled warmup shader should parse without errors");
+  }
+
+  @Test
+  void testWarmup() {
+    var parser = createIsolatedParser();
+    assertEquals(0, getDFAStateCount(parser));
+    assertEquals(1, ParserWarmup.warmup(parser, Stream.of(ParserWarmup.getBundledShader())));
+    assertTrue(getDFAStateCount(parser) > 0, "It should fill the DFA caches");
+
+    assertEquals(1, ParserWarmup.warmup());
+    assertTrue(ParserWarmup.getDFAStateCount() > 0, "It should fill the shared DFA caches");
+  }
+
+  @Test
+  void testWarmupDirectory() throws Exception {
+    Files.write(directory.resolve("a.glsl"), "void main() { }".getBytes());
+    Files.createDirectories(directory.resolve("sub"));
+    Files.write(directory.resolve("sub").resolve("b.glsl"), "float x = ;".getBytes());
+    assertEquals(2, ParserWarmup.warmup(directory),
+        "It should parse all files and ignore parse errors");
+  }
+
+  @Test
+  void testWarmupInBackground() throws Exception {
+    var parser = createIsolatedParser();
+    ParserWarmup.warmupInBackground(
+        () -> ParserWarmup.warmup(parser, Stream.of(ParserWarmup.getBundledShader())))
+        .get(1, TimeUnit.MINUTES);
+    assertTrue(getDFAStateCount(parser) > 0);
+    ParserWarmup.warmupInBackground().get(1, TimeUnit.MINUTES);
+  }
+}
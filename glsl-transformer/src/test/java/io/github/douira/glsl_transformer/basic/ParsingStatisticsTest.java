@@ -0,0 +1,130 @@
+package io.github.douira.glsl_transformer.basic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.jupiter.api.Test;
+
+import io.github.douira.glsl_transformer.basic.EnhancedParser.ParsingStrategy;
+
+public class ParsingStatisticsTest {
+  private static final String valid = "int a = 1; void main() { a += 2; }";
+  private static final String invalid = "int a = ; void main() { a += ; }";
+
+  @Test
+  void testFingerprint() {
+    var a = ParsingStatistics.fingerprint(CharStreams.fromString(valid));
+    assertEquals(a, ParsingStatistics.fingerprint(CharStreams.fromString(valid)));
+    assertEquals(a, ParsingStatistics.fingerprint(ParseInput.of(valid).toCharStream()));
+    assertEquals(a, ParsingStatistics.fingerprint(valid));
+    assertEquals(a, ParsingStatistics.fingerprint(ParseInput.of(valid)));
+    assertNotEquals(a, ParsingStatistics.fingerprint(CharStreams.fromString(invalid)));
+    assertNotEquals(ParsingStatistics.NO_FINGERPRINT, ParsingStatistics.fingerprint(CharStreams.fromString("")));
+
+    var unicode = "int a; // ä 😀\n";
+    var stream = CharStreams.fromString(unicode);
+    stream.consume();
+    assertEquals(
+        ParsingStatistics.fingerprint(ParseInput.of(unicode).toCharStream()),
+        ParsingStatistics.fingerprint(stream),
+        "It should hash characters outside the BMP like a string does");
+    assertEquals(1, stream.index(), "It should not move the stream");
+    assertEquals(ParsingStatistics.fingerprint(unicode), ParsingStatistics.fingerprint(stream),
+        "It should match the fingerprint of the string");
+  }
+
+  @Test
+  void testRecordsOutcomes() {
+    var parser = new EnhancedParser(false);
+    var statistics = new ParsingStatistics();
+    parser.setParsingStatistics(statistics);
+
+    parser.parse(valid);
+    parser.parse(invalid);
+    var stats = statistics.getRuleStats().get("translationUnit");
+    assertNotNull(stats);
+    assertEquals(2, stats.sllAttempts);
+    assertEquals(1, stats.sllBailouts);
+    assertEquals(1, stats.llAttempts);
+    assertEquals(1, stats.llFailures);
+    assertEquals(0.5, stats.getBailoutRate());
+    assertFalse(statistics.getBailoutLocations().isEmpty());
+    assertEquals(1, statistics.getFailingInputCount());
+    assertTrue(statistics.isKnownToFail(ParsingStatistics.fingerprint(CharStreams.fromString(invalid))));
+
+    assertTrue(statistics.hasFailingInputs());
+
+    statistics.clear();
+    assertTrue(statistics.getRuleStats().isEmpty());
+    assertEquals(0, statistics.getFailingInputCount());
+    assertFalse(statistics.hasFailingInputs(), "It should forget that there were failing inputs");
+  }
+
+  @Test
+  void testAdaptiveSkipsKnownInputs() {
+    var parser = new EnhancedParser(false);
+    parser.setParsingStrategy(ParsingStrategy.ADAPTIVE);
+    var errors = new int[1];
+    parser.internalErrorConsumer = (sll, ll) -> errors[0]++;
+
+    var expected = parser.parse(invalid).toStringTree(parser.getParser());
+    assertNotNull(parser.getParsingStatistics(),
+        "It should create statistics for the adaptive strategy");
+    assertEquals(1, errors[0]);
+
+    assertEquals(expected, parser.parse(invalid).toStringTree(parser.getParser()),
+        "It should produce the same result when starting with LL");
+    assertEquals(1, errors[0], "It should not attempt SLL for a known failing input");
+    var stats = parser.getParsingStatistics().getRuleStats().get("translationUnit");
+    assertEquals(1, stats.sllAttempts);
+    assertEquals(1, stats.skippedSLLAttempts);
+    assertEquals(2, stats.llAttempts);
+  }
+
+  @Test
+  void testAdaptiveSkipsFailingRules() {
+    var parser = new EnhancedParser(false);
+    parser.setParsingStrategy(ParsingStrategy.ADAPTIVE);
+    var statistics = new ParsingStatistics(100, 4, 0.5, 3);
+    parser.setParsingStatistics(statistics);
+
+    for (var i = 0; i < 4; i++) {
+      parser.parse(invalid + " // " + i);
+    }
+    var before = statistics.getRuleStats().get("translationUnit");
+    assertEquals(4, before.sllBailouts);
+
+    for (var i = 0; i < 6; i++) {
+      parser.parse(invalid + " // other " + i);
+    }
+    var after = statistics.getRuleStats().get("translationUnit");
+    assertEquals(4, after.skippedSLLAttempts,
+        "It should skip SLL except for every third decision");
+    assertEquals(6, after.sllAttempts);
+    assertEquals(10, after.llAttempts);
+  }
+
+  @Test
+  void testDefaultStrategyUnchanged() {
+    var parser = new EnhancedParser(false);
+    var statistics = new ParsingStatistics(10, 1, 0.1, 1000);
+    parser.setParsingStatistics(statistics);
+    var errors = new int[1];
+    parser.internalErrorConsumer = (sll, ll) -> errors[0]++;
+    parser.parse(invalid);
+    parser.parse(invalid);
+    assertEquals(2, errors[0], "It should always attempt SLL with the default strategy");
+    assertEquals(0, statistics.getRuleStats().get("translationUnit").skippedSLLAttempts);
+  }
+
+  @Test
+  void testThrowsWithAdaptive() {
+    var parser = new EnhancedParser(true);
+    parser.setParsingStrategy(ParsingStrategy.ADAPTIVE);
+    assertThrows(ParseCancellationException.class, () -> parser.parse(invalid));
+    assertThrows(ParseCancellationException.class, () -> parser.parse(invalid),
+        "It should still throw when SLL is skipped");
+    assertEquals(2, parser.getParsingStatistics().getRuleStats().get("translationUnit").llFailures);
+  }
+}
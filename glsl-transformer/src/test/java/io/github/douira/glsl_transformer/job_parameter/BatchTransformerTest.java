@@ -0,0 +1,103 @@
+package io.github.douira.glsl_transformer.job_parameter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.jupiter.api.Test;
+
+import io.github.douira.glsl_transformer.ast.print.PrintType;
+import io.github.douira.glsl_transformer.ast.transform.SingleASTTransformer;
+
+public class BatchTransformerTest {
+  record NameParameters(String name) implements JobParameters {
+  }
+
+  private final AtomicInteger transformCount = new AtomicInteger();
+  private final AtomicInteger createdCount = new AtomicInteger();
+
+  private SingleASTTransformer<NameParameters> createTransformer() {
+    createdCount.incrementAndGet();
+    var transformer = new SingleASTTransformer<NameParameters>();
+    transformer.setSLLOnly();
+    transformer.setPrintType(PrintType.COMPACT);
+    transformer.setTransformation((tree, root, parameters) -> {
+      transformCount.incrementAndGet();
+      tree.getChildren().add(0, transformer.parseExternalDeclaration(
+          tree, "int " + parameters.name() + ";"));
+    });
+    return transformer;
+  }
+
+  private static TransformationJob<NameParameters, String> job(String input, String name) {
+    return new TransformationJob<>(input, new NameParameters(name));
+  }
+
+  private void assertBatch(BatchTransformer<NameParameters, String> batch) {
+    transformCount.set(0);
+    var results = batch.transform(List.of(
+        job("int a;", "x"),
+        job("int b;", "x"),
+        job("int a;", "x"),
+        job("int a;", "y"),
+        job("int b;", "x")));
+    assertEquals(List.of(
+        "int x; int a; ",
+        "int x; int b; ",
+        "int x; int a; ",
+        "int y; int a; ",
+        "int x; int b; "), results);
+    assertEquals(3, transformCount.get(), "It should only transform unique jobs");
+  }
+
+  @Test
+  void testSerialBatch() {
+    var batch = new BatchTransformer<>(this::createTransformer);
+    assertBatch(batch);
+    assertEquals(1, createdCount.get(), "It should reuse the transformer within a batch");
+    assertBatch(batch);
+    assertEquals(2, createdCount.get(), "It should not keep transformers after a batch");
+  }
+
+  @Test
+  void testParallelBatch() {
+    var executor = Executors.newFixedThreadPool(4);
+    try {
+      var batch = new BatchTransformer<>(this::createTransformer, executor);
+      for (var i = 0; i < 10; i++) {
+        createdCount.set(0);
+        assertBatch(batch);
+        assertTrue(createdCount.get() <= 3, "It should create at most one transformer per unique job");
+      }
+      assertEquals(
+          List.of("int z; int a; ", "int z; int c; ", "int z; int a; "),
+          batch.transform(List.of("int a;", "int c;", "int a;"), new NameParameters("z")));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testSerialBatchError() {
+    transformCount.set(0);
+    var batch = new BatchTransformer<>(this::createTransformer);
+    assertThrows(ParseCancellationException.class,
+        () -> batch.transform(List.of(job("int a", "x"), job("int b;", "x"))));
+    assertEquals(1, transformCount.get(), "It should run the jobs after the failing job");
+  }
+
+  @Test
+  void testParallelBatchError() {
+    var executor = Executors.newFixedThreadPool(2);
+    try {
+      var batch = new BatchTransformer<>(this::createTransformer, executor);
+      assertThrows(ParseCancellationException.class,
+          () -> batch.transform(List.of(job("int a;", "x"), job("int a", "x"))));
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package io.github.douira.glsl_transformer.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentLRUCacheTest {
+  @Test
+  void testSizeBound() {
+    var cache = new ConcurrentLRUCache<Integer, String>(3);
+    cache.put(1, "a");
+    cache.put(2, "b");
+    cache.put(3, "c");
+    assertEquals("a", cache.get(1));
+    cache.put(4, "d");
+    assertEquals(3, cache.size());
+    assertNull(cache.get(2), "It should evict the least recently used entry");
+    assertEquals("a", cache.get(1));
+    assertEquals("c", cache.get(3));
+    assertEquals("d", cache.get(4));
+    assertEquals(1, cache.getStats().evictionCount);
+  }
+
+  @Test
+  void testWeightBound() {
+    var cache = new ConcurrentLRUCache<String, String>(100, 10, (key, value) -> value.length(), 1, 0.75f);
+    cache.put("a", "aaaa");
+    cache.put("b", "bbbb");
+    assertEquals(8, cache.getWeight());
+    cache.put("c", "cccc");
+    assertEquals(8, cache.getWeight());
+    assertNull(cache.get("a"));
+    cache.put("d", "ddddddddddd");
+    assertNull(cache.get("d"), "It should not store entries heavier than the whole cache");
+    assertEquals(2, cache.size());
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getWeight());
+  }
+
+  @Test
+  void testSegmentBounds() {
+    var cache = new ConcurrentLRUCache<Integer, Integer>(
+        64, 640, (key, value) -> value, 4, 0.75f);
+    for (var i = 0; i < 1000; i++) {
+      cache.put(i, 10);
+      assertTrue(cache.size() <= 64);
+      assertTrue(cache.getWeight() <= 640);
+    }
+    assertEquals(64, cache.size(), "It should fill all segments up to their limits");
+    assertEquals(1000 - 64, cache.getStats().evictionCount);
+
+    cache.put(1000, 400);
+    assertEquals(400, cache.get(1000), "It should store entries heavier than a segment's share");
+    assertTrue(cache.getWeight() <= 640);
+    cache.put(1001, 100);
+    assertEquals(100, cache.get(1001));
+    assertEquals(400, cache.get(1000));
+    assertTrue(cache.getWeight() <= 640);
+    cache.put(1002, 641);
+    assertNull(cache.get(1002), "It should not store entries heavier than the whole cache");
+  }
+
+  @Test
+  void testStats() {
+    var cache = new ConcurrentLRUCache<Integer, String>(10);
+    assertEquals("a", cache.cachedGet(1, () -> "a"));
+    assertEquals("a", cache.cachedGet(1, () -> "b"));
+    assertEquals("a", cache.cachedGet(1, () -> "c"));
+    assertEquals("d", cache.cachedGetHydrateHit(2, () -> "d", value -> value + "!"));
+    assertEquals("d!", cache.cachedGetHydrateHit(2, () -> "e", value -> value + "!"));
+    var stats = cache.getStats();
+    assertEquals(3, stats.hitCount);
+    assertEquals(2, stats.missCount);
+    assertEquals(2, stats.loadCount);
+    assertEquals(0, stats.evictionCount);
+    assertEquals(0.6, stats.getHitRate(), 1e-9);
+  }
+
+  @Test
+  void testConcurrentAccess() throws Exception {
+    var cache = new ConcurrentLRUCache<Integer, Integer>(500);
+    var executor = Executors.newFixedThreadPool(4);
+    try {
+      var tasks = new ArrayList<Callable<Boolean>>();
+      for (int i = 0; i < 8; i++) {
+        tasks.add(() -> {
+          for (int j = 0; j < 10000; j++) {
+            var key = j % 1000;
+            if (cache.cachedGet(key, () -> key * 2) != key * 2) {
+              return false;
+            }
+          }
+          return true;
+        });
+      }
+      for (var result : executor.invokeAll(tasks)) {
+        assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(cache.size() <= 500);
+    var stats = cache.getStats();
+    assertEquals(80000, stats.getRequestCount());
+  }
+}
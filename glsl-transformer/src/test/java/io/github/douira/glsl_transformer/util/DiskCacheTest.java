@@ -0,0 +1,117 @@
+package io.github.douira.glsl_transformer.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DiskCacheTest {
+  @TempDir
+  Path directory;
+
+  private static byte[] digest(int seed) {
+    var digest = new byte[DiskCache.DIGEST_LENGTH];
+    new Random(seed).nextBytes(digest);
+    return digest;
+  }
+
+  private static byte[] value(int i) {
+    return ("value" + i).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void testPutGet() throws IOException {
+    try (var cache = new DiskCache(directory)) {
+      assertNull(cache.get(digest(0)));
+      cache.put(digest(0), value(0));
+      assertArrayEquals(value(0), cache.get(digest(0)));
+      cache.put(digest(0), value(1));
+      assertArrayEquals(value(1), cache.get(digest(0)));
+      assertEquals(1, cache.size());
+      cache.put(digest(1), new byte[0]);
+      assertArrayEquals(new byte[0], cache.get(digest(1)));
+      assertThrows(IllegalArgumentException.class, () -> cache.get(new byte[3]));
+    }
+  }
+
+  @Test
+  void testPersistenceAndGrowth() throws IOException {
+    var count = 5000;
+    try (var cache = new DiskCache(directory)) {
+      for (var i = 0; i < count; i++) {
+        cache.put(digest(i), value(i));
+      }
+    }
+    try (var cache = new DiskCache(directory)) {
+      assertEquals(count, cache.size());
+      for (var i = 0; i < count; i++) {
+        assertArrayEquals(value(i), cache.get(digest(i)));
+      }
+      cache.clear();
+      assertEquals(0, cache.size());
+      assertNull(cache.get(digest(0)));
+    }
+  }
+
+  @Test
+  void testDamagedIndex() throws IOException {
+    try (var cache = new DiskCache(directory)) {
+      cache.put(digest(0), value(0));
+    }
+    Files.write(directory.resolve("index.bin"), new byte[] { 1, 2, 3 });
+    try (var cache = new DiskCache(directory)) {
+      assertEquals(0, cache.size(), "It should start empty if the index is damaged");
+      assertNull(cache.get(digest(0)));
+    }
+  }
+
+  @Test
+  void testChecksum() throws IOException {
+    try (var cache = new DiskCache(directory)) {
+      cache.put(digest(0), value(0));
+    }
+
+    // damage the last byte of the stored value
+    var dataFile = directory.resolve("data.bin");
+    var data = Files.readAllBytes(dataFile);
+    data[data.length - 1] ^= 1;
+    Files.write(dataFile, data);
+    try (var cache = new DiskCache(directory)) {
+      assertNull(cache.get(digest(0)), "It should not return values that fail the checksum");
+      cache.put(digest(0), value(1));
+      assertArrayEquals(value(1), cache.get(digest(0)));
+    }
+  }
+
+  @Test
+  void testConcurrentAccess() throws Exception {
+    var executor = Executors.newFixedThreadPool(4);
+    try (var cache = new DiskCache(directory)) {
+      var tasks = new ArrayList<Callable<Boolean>>();
+      for (var t = 0; t < 4; t++) {
+        var offset = t * 1000;
+        tasks.add(() -> {
+          for (var i = 0; i < 1000; i++) {
+            cache.put(digest(offset + i), value(offset + i));
+            if (!Arrays.equals(value(offset + i / 2), cache.get(digest(offset + i / 2)))) {
+              return false;
+            }
+          }
+          return true;
+        });
+      }
+      for (var result : executor.invokeAll(tasks)) {
+        assertTrue(result.get(), "It should read the stored values while other threads write");
+      }
+      assertEquals(4000, cache.size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}